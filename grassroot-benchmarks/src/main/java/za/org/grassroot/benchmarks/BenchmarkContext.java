@@ -0,0 +1,76 @@
+package za.org.grassroot.benchmarks;
+
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.orm.jpa.EntityManagerFactoryUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import za.org.grassroot.core.GrassrootApplication;
+import za.org.grassroot.webapp.GrassrootWebApplicationConfig;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Starts the full application, as the webapp wires it, against the in-memory H2 database of the default profile, with
+ * the server on a random port (the API documentation needs a servlet context), and with the schedulers that would
+ * compete with the benchmarks pushed out of the way.
+ */
+public class BenchmarkContext {
+
+    private final ConfigurableApplicationContext context;
+
+    private BenchmarkContext(ConfigurableApplicationContext context) {
+        this.context = context;
+    }
+
+    public static BenchmarkContext start() {
+        return start(Collections.emptyMap());
+    }
+
+    // with further properties on top of the benchmark ones, e.g., to point integrations at local stand-ins
+    public static BenchmarkContext start(Map<String, String> extraProperties) {
+        GrassrootApplication application = new GrassrootApplication(GrassrootWebApplicationConfig.class);
+        Map<String, String> properties = benchmarkProperties();
+        properties.putAll(extraProperties);
+        // passed as arguments, so that they take precedence over the default profile's properties
+        String[] args = properties.entrySet().stream()
+                .map(entry -> "--" + entry.getKey() + "=" + entry.getValue()).toArray(String[]::new);
+        return new BenchmarkContext(application.run(args));
+    }
+
+    private static Map<String, String> benchmarkProperties() {
+        Map<String, String> properties = new HashMap<>();
+        properties.put("server.port", "0");
+        properties.put("spring.datasource.url", "jdbc:h2:mem:benchmarks;DB_CLOSE_DELAY=-1");
+        properties.put("spring.jpa.hibernate.ddl-auto", "create");
+        properties.put("spring.jpa.properties.hibernate.jdbc.batch_size", "50");
+        properties.put("spring.jpa.properties.hibernate.order_inserts", "true");
+        properties.put("logging.file", "build/benchmarks.log");
+        properties.put("logging.level.za.org.grassroot", "WARN");
+        properties.put("logging.level.org.springframework", "WARN");
+        properties.put("grassroot.ussd.location.service", "test_local");
+        properties.put("grassroot.broadcast.fanout.interval", Long.toString(Long.MAX_VALUE));
+        return properties;
+    }
+
+    public <T> T bean(Class<T> type) {
+        return context.getBean(type);
+    }
+
+    public TransactionTemplate transactionTemplate() {
+        return new TransactionTemplate(bean(PlatformTransactionManager.class));
+    }
+
+    // the entity manager bound to the current transaction, for flushing inside a measured method
+    public EntityManager transactionalEntityManager() {
+        return EntityManagerFactoryUtils.getTransactionalEntityManager(bean(EntityManagerFactory.class));
+    }
+
+    public void close() {
+        context.close();
+    }
+
+}
@@ -0,0 +1,50 @@
+package za.org.grassroot.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+import za.org.grassroot.core.domain.broadcast.BroadcastSchedule;
+import za.org.grassroot.core.enums.Province;
+import za.org.grassroot.services.broadcasts.BroadcastBroker;
+import za.org.grassroot.services.broadcasts.BroadcastComponents;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sends an immediate SMS broadcast to the fixture group, and generates its notifications, as the scheduled fan out would,
+ * either to the whole group or to those members matching a filter.
+ */
+@BenchmarkMode(Mode.SingleShotTime) @OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3) @Measurement(iterations = 10)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class BroadcastFanOutBenchmark {
+
+    @Benchmark
+    public String broadcastToWholeGroup(GroupFixture fixture) {
+        return sendAndFanOut(fixture, BroadcastComponents.builder());
+    }
+
+    @Benchmark
+    public String broadcastToProvince(GroupFixture fixture) {
+        return sendAndFanOut(fixture, BroadcastComponents.builder().provinces(Collections.singletonList(Province.ZA_GP)));
+    }
+
+    private String sendAndFanOut(GroupFixture fixture, BroadcastComponents.BroadcastComponentsBuilder components) {
+        BroadcastBroker broadcastBroker = fixture.context.bean(BroadcastBroker.class);
+        String broadcastUid = broadcastBroker.sendGroupBroadcast(components
+                .userUid(fixture.organiserUid)
+                .groupUid(fixture.groupUid)
+                .title("Benchmark broadcast")
+                .shortMessage("Benchmark broadcast message")
+                .broadcastSchedule(BroadcastSchedule.IMMEDIATE)
+                .build());
+        broadcastBroker.fanOutPendingBroadcasts();
+        return broadcastUid;
+    }
+
+}
@@ -0,0 +1,129 @@
+package za.org.grassroot.benchmarks;
+
+import com.google.common.base.Stopwatch;
+import lombok.extern.slf4j.Slf4j;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import za.org.grassroot.core.domain.GroupRole;
+import za.org.grassroot.core.domain.User;
+import za.org.grassroot.core.domain.account.Account;
+import za.org.grassroot.core.domain.group.Group;
+import za.org.grassroot.core.domain.group.GroupJoinMethod;
+import za.org.grassroot.core.domain.group.GroupPermissionTemplate;
+import za.org.grassroot.core.domain.group.Membership;
+import za.org.grassroot.core.domain.task.EventReminderType;
+import za.org.grassroot.core.domain.task.Meeting;
+import za.org.grassroot.core.domain.task.MeetingBuilder;
+import za.org.grassroot.core.enums.AccountType;
+import za.org.grassroot.core.enums.Province;
+import za.org.grassroot.core.repository.AccountRepository;
+import za.org.grassroot.core.repository.GroupRepository;
+import za.org.grassroot.core.repository.MeetingRepository;
+import za.org.grassroot.core.repository.MembershipRepository;
+import za.org.grassroot.core.repository.UserRepository;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One paid-for group, with an organiser and the given number of ordinary members, and a meeting called in it. Members
+ * are spread over provinces, languages and join methods, so that filters select a realistic fraction of the group.
+ */
+@State(Scope.Benchmark) @Slf4j
+public class GroupFixture {
+
+    public static final String ORGANISER_PHONE = "27810000001";
+
+    static final List<Province> PROVINCES = Province.ZA_CANONICAL;
+    static final List<String> LANGUAGES = Arrays.asList("en", "zu", "xh", "st", "nso");
+    static final List<GroupJoinMethod> JOIN_METHODS = Arrays.asList(GroupJoinMethod.ADDED_BY_OTHER_MEMBER,
+            GroupJoinMethod.USSD_JOIN_CODE, GroupJoinMethod.BULK_IMPORT, GroupJoinMethod.SELF_JOINED);
+
+    private static final int CHUNK_SIZE = 1000;
+
+    @Param({"1000", "10000", "100000"})
+    public int groupSize;
+
+    public BenchmarkContext context;
+
+    public String organiserUid;
+    public String groupUid;
+    public String meetingUid;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContext.start();
+        Stopwatch stopwatch = Stopwatch.createStarted();
+        createGroup();
+        for (int offset = 0; offset < groupSize; offset += CHUNK_SIZE) {
+            addMembers(offset, Math.min(CHUNK_SIZE, groupSize - offset));
+        }
+        log.info("Generated group of {} members in {} secs", groupSize, stopwatch.elapsed(TimeUnit.SECONDS));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    private void createGroup() {
+        context.transactionTemplate().execute(status -> {
+            User organiser = new User(ORGANISER_PHONE, "Benchmark Organiser", null);
+            organiser.setLanguageCode("en");
+            organiser.setHasInitiatedSession(true);
+            organiser.setHasSetOwnName(true);
+            context.bean(UserRepository.class).save(organiser);
+
+            Group group = new Group("Benchmark group", GroupPermissionTemplate.DEFAULT_GROUP, organiser);
+            group.addMember(organiser, GroupRole.ROLE_GROUP_ORGANIZER, GroupJoinMethod.ADDED_AT_CREATION, null);
+            context.bean(GroupRepository.class).save(group);
+
+            Account account = new Account(organiser, "Benchmark account", AccountType.ENTERPRISE, organiser);
+            account.setEnabled(true);
+            account.addPaidGroup(group);
+            context.bean(AccountRepository.class).save(account);
+
+            Meeting meeting = new MeetingBuilder().setName("Benchmark meeting").setUser(organiser).setParent(group)
+                    .setStartDateTime(Instant.now().plus(3, ChronoUnit.DAYS)).setEventLocation("The hall")
+                    .setReminderType(EventReminderType.GROUP_CONFIGURED).createMeeting();
+            context.bean(MeetingRepository.class).save(meeting);
+
+            organiserUid = organiser.getUid();
+            groupUid = group.getUid();
+            meetingUid = meeting.getUid();
+            return null;
+        });
+    }
+
+    // memberships are saved directly, rather than through the group, so no chunk has to load the members before it
+    private void addMembers(int offset, int count) {
+        context.transactionTemplate().execute(status -> {
+            Group group = context.bean(GroupRepository.class).findOneByUid(groupUid);
+            List<User> members = new ArrayList<>(count);
+            for (int i = offset; i < offset + count; i++) {
+                User member = new User(String.format("2782%07d", i), "Member " + i, null);
+                member.setProvince(PROVINCES.get(i % PROVINCES.size()));
+                member.setLanguageCode(LANGUAGES.get(i % LANGUAGES.size()));
+                members.add(member);
+            }
+            context.bean(UserRepository.class).saveAll(members);
+
+            List<Membership> memberships = new ArrayList<>(count);
+            for (int i = 0; i < members.size(); i++) {
+                memberships.add(new Membership(group, members.get(i), GroupRole.ROLE_ORDINARY_MEMBER, Instant.now(),
+                        JOIN_METHODS.get((offset + i) % JOIN_METHODS.size()), null));
+            }
+            context.bean(MembershipRepository.class).saveAll(memberships);
+            return null;
+        });
+    }
+
+}
@@ -0,0 +1,48 @@
+package za.org.grassroot.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+import za.org.grassroot.core.domain.User;
+import za.org.grassroot.core.dto.membership.MembershipRecipientProjection;
+import za.org.grassroot.core.enums.Province;
+import za.org.grassroot.core.repository.UserRepository;
+import za.org.grassroot.services.group.GroupFetchBroker;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Filters the members of the fixture group, as the member list and broadcast screens do. Each call fetches the
+ * filtering user in the same transaction, as the request would have done under open session in view.
+ */
+@BenchmarkMode(Mode.AverageTime) @OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5) @Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class GroupMemberFilterBenchmark {
+
+    @Benchmark
+    public List<MembershipRecipientProjection> filterWithoutCriteria(GroupFixture fixture) {
+        return filter(fixture, null, null);
+    }
+
+    @Benchmark
+    public List<MembershipRecipientProjection> filterByProvinceAndLanguage(GroupFixture fixture) {
+        return filter(fixture, Arrays.asList(Province.ZA_GP, Province.ZA_KZN), Collections.singletonList("zu"));
+    }
+
+    private List<MembershipRecipientProjection> filter(GroupFixture fixture, List<Province> provinces, List<String> languages) {
+        return fixture.context.transactionTemplate().execute(status -> {
+            User user = fixture.context.bean(UserRepository.class).findOneByUid(fixture.organiserUid);
+            return fixture.context.bean(GroupFetchBroker.class).filterGroupMembers(user, fixture.groupUid, provinces, null,
+                    null, null, null, null, null, null, null, null, null, languages, null);
+        });
+    }
+
+}
@@ -0,0 +1,141 @@
+package za.org.grassroot.benchmarks;
+
+import com.google.common.io.ByteStreams;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.commons.codec.digest.DigestUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * A minimal, in memory stand-in for S3, enough for the storage broker's put, get, head and delete of objects, with
+ * path style addressing. Objects are returned with their MD5 as the ETag, as S3 does, so the client's integrity checks
+ * run as they would against the real thing. Requests are not authenticated.
+ */
+public class LocalS3Server {
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final Map<String, StoredObject> objects = new ConcurrentHashMap<>();
+
+    private LocalS3Server(HttpServer server, ExecutorService executor) {
+        this.server = server;
+        this.executor = executor;
+    }
+
+    public static LocalS3Server start(int threads) {
+        // else small responses sit out the delayed ack, and every fetch looks 40 msecs slower than it is
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+        try {
+            HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+            ExecutorService executor = Executors.newFixedThreadPool(threads);
+            LocalS3Server s3 = new LocalS3Server(server, executor);
+            server.createContext("/", s3::handle);
+            server.setExecutor(executor);
+            server.start();
+            return s3;
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not start local S3 server", e);
+        }
+    }
+
+    public String endpoint() {
+        return "http://localhost:" + server.getAddress().getPort();
+    }
+
+    public int objectCount() {
+        return objects.size();
+    }
+
+    public void stop() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        // path style, i.e., /bucket/key, with the key possibly containing further slashes
+        final String path = exchange.getRequestURI().getPath();
+        try {
+            switch (exchange.getRequestMethod()) {
+                case "PUT":
+                    put(exchange, path);
+                    break;
+                case "GET":
+                    get(exchange, path, true);
+                    break;
+                case "HEAD":
+                    get(exchange, path, false);
+                    break;
+                case "DELETE":
+                    objects.remove(path);
+                    exchange.sendResponseHeaders(204, -1);
+                    break;
+                default:
+                    exchange.sendResponseHeaders(405, -1);
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void put(HttpExchange exchange, String path) throws IOException {
+        byte[] content;
+        try (InputStream body = exchange.getRequestBody()) {
+            content = ByteStreams.toByteArray(body);
+        }
+        StoredObject object = new StoredObject(content, exchange.getRequestHeaders().getFirst("Content-Type"));
+        objects.put(path, object);
+        exchange.getResponseHeaders().add("ETag", object.etag);
+        exchange.sendResponseHeaders(200, -1);
+    }
+
+    private void get(HttpExchange exchange, String path, boolean withBody) throws IOException {
+        StoredObject object = objects.get(path);
+        if (object == null) {
+            byte[] error = ("<?xml version=\"1.0\" encoding=\"UTF-8\"?><Error><Code>NoSuchKey</Code>" +
+                    "<Message>The specified key does not exist.</Message></Error>").getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/xml");
+            exchange.sendResponseHeaders(404, withBody ? error.length : -1);
+            if (withBody) {
+                exchange.getResponseBody().write(error);
+            }
+            return;
+        }
+
+        exchange.getResponseHeaders().add("ETag", object.etag);
+        if (object.contentType != null) {
+            exchange.getResponseHeaders().add("Content-Type", object.contentType);
+        }
+        if (withBody) {
+            exchange.sendResponseHeaders(200, object.content.length);
+            try (OutputStream body = exchange.getResponseBody()) {
+                body.write(object.content);
+            }
+        } else {
+            exchange.getResponseHeaders().add("Content-Length", Integer.toString(object.content.length));
+            exchange.sendResponseHeaders(200, -1);
+        }
+    }
+
+    private static final class StoredObject {
+
+        private final byte[] content;
+        private final String contentType;
+        private final String etag;
+
+        private StoredObject(byte[] content, String contentType) {
+            this.content = content;
+            this.contentType = contentType;
+            this.etag = "\"" + DigestUtils.md5Hex(content) + "\"";
+        }
+    }
+
+}
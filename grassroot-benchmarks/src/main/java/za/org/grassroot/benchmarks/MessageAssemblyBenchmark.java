@@ -0,0 +1,88 @@
+package za.org.grassroot.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.context.support.MessageSourceAccessor;
+import org.springframework.context.support.ResourceBundleMessageSource;
+import za.org.grassroot.core.domain.GroupRole;
+import za.org.grassroot.core.domain.User;
+import za.org.grassroot.core.domain.group.Group;
+import za.org.grassroot.core.domain.group.GroupJoinMethod;
+import za.org.grassroot.core.domain.group.GroupPermissionTemplate;
+import za.org.grassroot.core.domain.task.EventReminderType;
+import za.org.grassroot.core.domain.task.Meeting;
+import za.org.grassroot.core.domain.task.MeetingBuilder;
+import za.org.grassroot.services.MessageAssemblingManager;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Assembles the message for every member of a group, as is done when a meeting is called or reminded. Entities are only
+ * held in memory, so this measures message assembly alone.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime) @OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5) @Measurement(iterations = 5, time = 5) @Fork(1)
+public class MessageAssemblyBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    public int groupSize;
+
+    private MessageAssemblingManager messageAssemblingManager;
+    private Meeting meeting;
+    private List<User> members;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        // as the services config wires it
+        ResourceBundleMessageSource messageSource = new ResourceBundleMessageSource();
+        messageSource.setBasename("notification-messages/messages");
+        messageSource.setFallbackToSystemLocale(true);
+        messageAssemblingManager = new MessageAssemblingManager(new MessageSourceAccessor(messageSource), null);
+        messageAssemblingManager.init();
+
+        User organiser = new User(GroupFixture.ORGANISER_PHONE, "Benchmark Organiser", null);
+        Group group = new Group("Benchmark group", GroupPermissionTemplate.DEFAULT_GROUP, organiser);
+        group.addMember(organiser, GroupRole.ROLE_GROUP_ORGANIZER, GroupJoinMethod.ADDED_AT_CREATION, null);
+        meeting = new MeetingBuilder().setName("Benchmark meeting").setUser(organiser).setParent(group)
+                .setStartDateTime(Instant.now().plus(3, ChronoUnit.DAYS)).setEventLocation("The hall")
+                .setReminderType(EventReminderType.GROUP_CONFIGURED).createMeeting();
+
+        members = new ArrayList<>(groupSize);
+        for (int i = 0; i < groupSize; i++) {
+            User member = new User(String.format("2782%07d", i), "Member " + i, null);
+            member.setLanguageCode(GroupFixture.LANGUAGES.get(i % GroupFixture.LANGUAGES.size()));
+            members.add(member);
+        }
+    }
+
+    @Benchmark
+    public void createEventInfoMessages(Blackhole blackhole) {
+        for (User member : members) {
+            blackhole.consume(messageAssemblingManager.createEventInfoMessage(member, meeting));
+        }
+    }
+
+    @Benchmark
+    public void createScheduledReminderMessages(Blackhole blackhole) {
+        for (User member : members) {
+            blackhole.consume(messageAssemblingManager.createScheduledEventReminderMessage(member, meeting));
+        }
+    }
+
+}
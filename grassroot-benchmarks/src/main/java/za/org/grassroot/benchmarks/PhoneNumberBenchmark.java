@@ -0,0 +1,33 @@
+package za.org.grassroot.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import za.org.grassroot.core.util.PhoneNumberUtil;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Number conversion runs on every USSD hop and for every row of a member import, in each of the forms numbers arrive in.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime) @OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2) @Measurement(iterations = 5, time = 2) @Fork(1)
+public class PhoneNumberBenchmark {
+
+    @Param({"0821234567", "27821234567", "+27 82 123 4567", "082-123-4567"})
+    public String inputNumber;
+
+    @Benchmark
+    public String convertPhoneNumber() {
+        return PhoneNumberUtil.convertPhoneNumber(inputNumber);
+    }
+
+}
@@ -0,0 +1,49 @@
+package za.org.grassroot.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import za.org.grassroot.core.enums.ActionLogType;
+import za.org.grassroot.integration.storage.ImageType;
+import za.org.grassroot.integration.storage.StoredImage;
+
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Uploads and fetches task images through the storage broker, from several threads at once, against the local S3
+ * stand-in, sampling each call's latency so the percentiles under concurrent load can be compared (e.g., with -t).
+ */
+@BenchmarkMode(Mode.SampleTime) @OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5) @Measurement(iterations = 5, time = 5)
+@Threads(8)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class StorageBenchmark {
+
+    @Benchmark
+    public boolean uploadImage(StorageFixture fixture) {
+        return fixture.storageBroker.storeImage(ActionLogType.EVENT_LOG, UUID.randomUUID().toString(), fixture.imageFile());
+    }
+
+    @Benchmark
+    public StoredImage fetchImage(StorageFixture fixture) {
+        return fixture.storageBroker.fetchTaskImage(randomStoredKey(fixture), ImageType.FULL_SIZE);
+    }
+
+    // no micro versions are generated against the stand-in, so this is the fall back to the full image
+    @Benchmark
+    public StoredImage fetchThumbnailWithoutMicro(StorageFixture fixture) {
+        return fixture.storageBroker.fetchThumbnail(randomStoredKey(fixture), ImageType.MICRO);
+    }
+
+    private String randomStoredKey(StorageFixture fixture) {
+        return fixture.storedImageKeys.get(ThreadLocalRandom.current().nextInt(fixture.storedImageKeys.size()));
+    }
+
+}
@@ -0,0 +1,75 @@
+package za.org.grassroot.benchmarks;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import za.org.grassroot.core.enums.ActionLogType;
+import za.org.grassroot.integration.storage.StorageBroker;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+
+/**
+ * The application, with its storage pointed at a local S3 stand-in, and a set of task images already stored in it, so
+ * that uploads and fetches can be timed without the network to S3 in the way.
+ */
+@State(Scope.Benchmark)
+public class StorageFixture {
+
+    static final int STORED_IMAGES = 100;
+    static final String IMAGE_TYPE = "image/jpeg";
+
+    @Param({"50000", "500000"})
+    public int imageBytes;
+
+    public LocalS3Server s3;
+    public BenchmarkContext context;
+    public StorageBroker storageBroker;
+
+    public byte[] image;
+    public final List<String> storedImageKeys = new ArrayList<>();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        s3 = LocalS3Server.start(32);
+        context = BenchmarkContext.start(storageProperties(s3.endpoint()));
+        storageBroker = context.bean(StorageBroker.class);
+
+        image = new byte[imageBytes];
+        new Random(imageBytes).nextBytes(image);
+        for (int i = 0; i < STORED_IMAGES; i++) {
+            String imageKey = UUID.randomUUID().toString();
+            if (!storageBroker.storeImage(ActionLogType.EVENT_LOG, imageKey, imageFile())) {
+                throw new IllegalStateException("Could not store image in local S3");
+            }
+            storedImageKeys.add(imageKey);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+        s3.stop();
+    }
+
+    public BytesMultipartFile imageFile() {
+        return new BytesMultipartFile("image.jpg", IMAGE_TYPE, image);
+    }
+
+    private static Map<String, String> storageProperties(String endpoint) {
+        Map<String, String> properties = new HashMap<>();
+        properties.put("grassroot.s3.endpoint", endpoint);
+        properties.put("grassroot.task.images.bucket", "task-images");
+        properties.put("grassroot.task.images.analyzed.bucket", "task-images-analyzed");
+        properties.put("grassroot.task.images.resized.bucket", "task-images-resized");
+        return properties;
+    }
+
+}
@@ -0,0 +1,77 @@
+package za.org.grassroot.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.DefaultTransactionDefinition;
+import za.org.grassroot.core.domain.User;
+import za.org.grassroot.core.domain.group.Group;
+import za.org.grassroot.core.domain.notification.EventInfoNotification;
+import za.org.grassroot.core.domain.task.EventLog;
+import za.org.grassroot.core.domain.task.Meeting;
+import za.org.grassroot.core.enums.EventLogType;
+import za.org.grassroot.core.repository.GroupRepository;
+import za.org.grassroot.core.repository.MeetingRepository;
+import za.org.grassroot.core.repository.UserRepository;
+import za.org.grassroot.services.util.LogsAndNotificationsBroker;
+import za.org.grassroot.services.util.LogsAndNotificationsBundle;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Stores the bundle for a meeting being called in the fixture group: the creation log, and a notification for each
+ * member. The members are loaded and the bundle assembled before each call, in a transaction that is committed after it,
+ * so the measurement covers storing and flushing the bundle only.
+ */
+@BenchmarkMode(Mode.SingleShotTime) @OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3) @Measurement(iterations = 10)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class StoreBundleBenchmark {
+
+    @State(Scope.Thread)
+    public static class MeetingBundle {
+
+        private PlatformTransactionManager transactionManager;
+        private TransactionStatus transaction;
+        private LogsAndNotificationsBundle bundle;
+
+        @Setup(Level.Invocation)
+        public void assemble(GroupFixture fixture) {
+            transactionManager = fixture.context.bean(PlatformTransactionManager.class);
+            transaction = transactionManager.getTransaction(new DefaultTransactionDefinition());
+            User organiser = fixture.context.bean(UserRepository.class).findOneByUid(fixture.organiserUid);
+            Group group = fixture.context.bean(GroupRepository.class).findOneByUid(fixture.groupUid);
+            Meeting meeting = fixture.context.bean(MeetingRepository.class).findOneByUid(fixture.meetingUid);
+
+            EventLog eventLog = new EventLog(organiser, meeting, EventLogType.CREATED);
+            bundle = new LogsAndNotificationsBundle();
+            bundle.addLog(eventLog);
+            List<User> members = fixture.context.bean(UserRepository.class).findByGroupsPartOfAndIdNot(group, organiser.getId());
+            members.forEach(member -> bundle.addNotification(new EventInfoNotification(member, "Benchmark meeting called", eventLog)));
+        }
+
+        @TearDown(Level.Invocation)
+        public void commit() {
+            transactionManager.commit(transaction);
+        }
+    }
+
+    @Benchmark
+    public void storeMeetingBundle(GroupFixture fixture, MeetingBundle meetingBundle) {
+        fixture.context.bean(LogsAndNotificationsBroker.class).storeBundle(meetingBundle.bundle);
+        fixture.context.transactionalEntityManager().flush();
+    }
+
+}
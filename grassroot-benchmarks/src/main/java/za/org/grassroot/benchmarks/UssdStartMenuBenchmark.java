@@ -0,0 +1,35 @@
+package za.org.grassroot.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+import za.org.grassroot.webapp.controller.ussd.UssdHomeService;
+import za.org.grassroot.webapp.model.ussd.AAT.Request;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Opens the USSD start menu for the organiser of the fixture group, i.e., a returning user with a group, in one
+ * transaction, as the request would have under open session in view.
+ */
+@BenchmarkMode(Mode.AverageTime) @OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5) @Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class UssdStartMenuBenchmark {
+
+    @Benchmark
+    public Request processStartMenu(GroupFixture fixture) {
+        return fixture.context.transactionTemplate().execute(status -> {
+            try {
+                return fixture.context.bean(UssdHomeService.class).processStartMenu(GroupFixture.ORGANISER_PHONE, null);
+            } catch (Exception e) {
+                throw new IllegalStateException("Error opening start menu", e);
+            }
+        });
+    }
+
+}
@@ -1,6 +1,8 @@
 package za.org.grassroot.core;
 
 import org.hibernate.dialect.HSQLDialect;
+import org.hibernate.dialect.function.SQLFunctionTemplate;
+import org.hibernate.type.StandardBasicTypes;
 
 import java.sql.Types;
 
@@ -14,6 +16,10 @@ public class HSQLDialectArray extends HSQLDialect {
 
         registerHibernateType(Types.ARRAY, "array");
         registerColumnType(Types.ARRAY, "ARRAY");
+
+        // counterpart to the one in the Postgres dialect, so the same criteria queries run in tests
+        registerFunction(PostgreSQLDialectArray.TEXT_ARRAY_CONTAINS,
+                new SQLFunctionTemplate(StandardBasicTypes.BOOLEAN, "array_contains(?1, ?2)"));
     }
 
 }
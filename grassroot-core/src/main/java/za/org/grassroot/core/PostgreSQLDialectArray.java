@@ -0,0 +1,21 @@
+package za.org.grassroot.core;
+
+import org.hibernate.dialect.PostgreSQL95Dialect;
+import org.hibernate.dialect.function.SQLFunctionTemplate;
+import org.hibernate.type.StandardBasicTypes;
+
+/**
+ * Adds a function for testing membership of a text array column (e.g., tags), so that filters on those columns
+ * can be pushed into criteria queries rather than done in memory after loading the entities
+ */
+public class PostgreSQLDialectArray extends PostgreSQL95Dialect {
+
+    public static final String TEXT_ARRAY_CONTAINS = "text_array_contains";
+
+    public PostgreSQLDialectArray() {
+        super();
+
+        registerFunction(TEXT_ARRAY_CONTAINS, new SQLFunctionTemplate(StandardBasicTypes.BOOLEAN, "(?2 = any(?1))"));
+    }
+
+}
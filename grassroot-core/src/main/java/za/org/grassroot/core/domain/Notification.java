@@ -40,8 +40,10 @@ public abstract class Notification implements Serializable {
 	// default priority for notification is not overriden with getPriority();
 	private static final int DEFAULT_PRIORITY = 1;
 
+	// sequence (rather than identity) generated, so that Hibernate can batch inserts of large fan-outs
 	@Id
-	@GeneratedValue(strategy = GenerationType.IDENTITY)
+	@GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "notification_id_seq")
+	@SequenceGenerator(name = "notification_id_seq", sequenceName = "notification_id_seq", allocationSize = 50)
 	@Column(name = "id", nullable = false)
 	private Long id;
 
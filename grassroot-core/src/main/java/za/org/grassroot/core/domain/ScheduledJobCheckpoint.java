@@ -0,0 +1,82 @@
+package za.org.grassroot.core.domain;
+
+import lombok.Getter;
+
+import javax.persistence.*;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.Objects;
+
+/*
+Progress of a long running scheduled job that walks entities in id order, so that if the job is interrupted (e.g., by
+a deploy), the next trigger can carry on after the last id processed instead of starting over. The baseline date is
+the run the current one is compared against, for jobs that only recalculate what has changed since then.
+ */
+@Entity
+@Table(name = "scheduled_job_checkpoint") @Getter
+public class ScheduledJobCheckpoint {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "id")
+    private Long id;
+
+    @Column(name = "job_name", nullable = false, updatable = false, unique = true)
+    private String jobName;
+
+    @Column(name = "run_date", nullable = false)
+    private LocalDate runDate;
+
+    @Column(name = "baseline_date")
+    private LocalDate baselineDate;
+
+    @Column(name = "last_processed_id", nullable = false)
+    private long lastProcessedId;
+
+    @Column(name = "completed", nullable = false)
+    private boolean completed;
+
+    @Column(name = "update_date_time", nullable = false)
+    private Instant lastUpdatedTime;
+
+    private ScheduledJobCheckpoint() {
+        // for JPA
+    }
+
+    public ScheduledJobCheckpoint(String jobName) {
+        this.jobName = Objects.requireNonNull(jobName);
+    }
+
+    public void startRun(LocalDate runDate, LocalDate baselineDate) {
+        this.runDate = Objects.requireNonNull(runDate);
+        this.baselineDate = baselineDate;
+        this.lastProcessedId = 0;
+        this.completed = false;
+        this.lastUpdatedTime = Instant.now();
+    }
+
+    public void advanceTo(long lastProcessedId) {
+        this.lastProcessedId = lastProcessedId;
+        this.lastUpdatedTime = Instant.now();
+    }
+
+    public void complete() {
+        this.completed = true;
+        this.lastUpdatedTime = Instant.now();
+    }
+
+    public boolean isIncompleteRunFor(LocalDate date) {
+        return date.equals(runDate) && !completed;
+    }
+
+    @Override
+    public String toString() {
+        return "ScheduledJobCheckpoint{" +
+                "jobName='" + jobName + '\'' +
+                ", runDate=" + runDate +
+                ", baselineDate=" + baselineDate +
+                ", lastProcessedId=" + lastProcessedId +
+                ", completed=" + completed +
+                '}';
+    }
+}
@@ -2,6 +2,7 @@ package za.org.grassroot.core.domain;
 
 import lombok.Getter;
 import org.apache.commons.validator.routines.EmailValidator;
+import org.hibernate.Hibernate;
 import org.hibernate.annotations.LazyCollection;
 import org.hibernate.annotations.LazyCollectionOption;
 import org.springframework.security.core.GrantedAuthority;
@@ -45,7 +46,8 @@ public class User implements GrassrootEntity, UserDetails, Comparable<User> {
     private static final int DEFAULT_NOTIFICATION_PRIORITY = 1;
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "user_profile_id_seq")
+    @SequenceGenerator(name = "user_profile_id_seq", sequenceName = "user_profile_id_seq", allocationSize = 50)
     @Column(name = "id", updatable = false, nullable = false)
     private Long id;
 
@@ -310,6 +312,19 @@ public class User implements GrassrootEntity, UserDetails, Comparable<User> {
         this.memberships.remove(membership);
     }
 
+    // as for the group's equivalents, touches the collection only if it is already loaded
+    public void syncAddedMembership(Membership membership) {
+        if (Hibernate.isInitialized(this.memberships)) {
+            this.memberships.add(membership);
+        }
+    }
+
+    public void syncRemovedMembership(Membership membership) {
+        if (Hibernate.isInitialized(this.memberships)) {
+            this.memberships.remove(membership);
+        }
+    }
+
     public boolean hasSafetyGroup() {
         return safetyGroup != null;
     }
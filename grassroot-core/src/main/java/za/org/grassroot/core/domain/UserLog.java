@@ -18,7 +18,8 @@ import java.util.Objects;
 public class UserLog implements ActionLog {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "user_log_id_seq")
+    @SequenceGenerator(name = "user_log_id_seq", sequenceName = "user_log_id_seq", allocationSize = 50)
     @Column(name="id", nullable = false)
     private Long id;
 
@@ -55,6 +56,15 @@ public class UserLog implements ActionLog {
         this.userInterface = userInterfaceType;
     }
 
+    // for logs written out before they were stored, e.g., to a spill file, so they keep their uid and time when read back
+    public static UserLog restore(String uid, Instant creationTime, String userUid, UserLogType userLogType, String description,
+                                  UserInterfaceType userInterfaceType) {
+        UserLog userLog = new UserLog(userUid, userLogType, description, userInterfaceType);
+        userLog.uid = Objects.requireNonNull(uid);
+        userLog.creationTime = Objects.requireNonNull(creationTime);
+        return userLog;
+    }
+
     public Long getId() {
         return id;
     }
@@ -24,7 +24,8 @@ import java.util.Objects;
 public class AccountLog implements ActionLog {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "account_log_id_seq")
+    @SequenceGenerator(name = "account_log_id_seq", sequenceName = "account_log_id_seq", allocationSize = 50)
     @Column(name="id", nullable = false)
     private Long id;
 
@@ -90,6 +90,21 @@ public class Broadcast implements GrassrootEntity, TagHolder, GrassrootTemplate
     @Column(name = "active")
     @Setter @Builder.Default private boolean active = true;
 
+    /*
+    Section: progress of notification fan-out. Recipients are processed in ascending user id order, in chunks, and
+    the cursor is moved in the same transaction as each chunk's notifications, so a crashed send resumes from there
+     */
+    @Basic
+    @Column(name = "fan_out_pending")
+    @Setter private boolean fanOutPending;
+
+    @Column(name = "fan_out_cursor")
+    private Long fanOutCursor;
+
+    @Basic
+    @Column(name = "recipients_processed")
+    private long recipientsProcessed;
+
     /*
     Section: the meat of it: contents, and some options
      */
@@ -215,6 +230,11 @@ public class Broadcast implements GrassrootEntity, TagHolder, GrassrootTemplate
         }
     }
 
+    public void recordFanOutProgress(long lastRecipientId, int recipientsInChunk) {
+        this.fanOutCursor = lastRecipientId;
+        this.recipientsProcessed += recipientsInChunk;
+    }
+
     public boolean hasShortMessage() {
         return !StringUtils.isEmpty(smsTemplate1);
     }
@@ -21,7 +21,8 @@ import java.util.Objects;
 public class CampaignLog implements ActionLog {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "campaign_log_id_seq")
+    @SequenceGenerator(name = "campaign_log_id_seq", sequenceName = "campaign_log_id_seq", allocationSize = 50)
     @Column(name="id", nullable = false)
     private Long id;
 
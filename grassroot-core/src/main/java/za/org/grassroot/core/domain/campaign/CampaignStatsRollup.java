@@ -0,0 +1,65 @@
+package za.org.grassroot.core.domain.campaign;
+
+import lombok.Getter;
+import za.org.grassroot.core.enums.CampaignLogType;
+
+import javax.persistence.*;
+import java.time.Instant;
+import java.util.Objects;
+
+/**
+ * Hourly rollup of a campaign's engagement, by log type, channel and province. Rows are adjusted as campaign logs are
+ * stored, and rewritten when the campaign's rollup is rebuilt from its logs. As with group stats, there is no unique
+ * constraint on the key: reads sum the rows, so a bucket created twice concurrently is still counted correctly.
+ */
+@Entity @Getter
+@Table(name = "campaign_stats_rollup")
+public class CampaignStatsRollup {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "id", nullable = false)
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "campaign_id", nullable = false, updatable = false, foreignKey = @ForeignKey(name = "fk_campaign_stats_rollup_campaign"))
+    private Campaign campaign;
+
+    @Column(name = "period_start", nullable = false, updatable = false)
+    private Instant periodStart;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "campaign_log_type", nullable = false, length = 50)
+    private CampaignLogType logType;
+
+    // stored as strings, with placeholders for absent values, so that buckets can be matched with a plain equality
+    @Column(name = "channel", nullable = false, length = 50)
+    private String channel;
+
+    @Column(name = "province", nullable = false, length = 50)
+    private String province;
+
+    // users who first reached this stage in the period, never decremented
+    @Column(name = "users_reached", nullable = false)
+    private int usersReached;
+
+    // users whose furthest stage so far was reached in the period, so decremented as they move further along the funnel
+    @Column(name = "users_current", nullable = false)
+    private int usersCurrent;
+
+    private CampaignStatsRollup() {
+        // for JPA
+    }
+
+    public CampaignStatsRollup(Campaign campaign, Instant periodStart, CampaignLogType logType, String channel, String province,
+                               int usersReached, int usersCurrent) {
+        this.campaign = Objects.requireNonNull(campaign);
+        this.periodStart = Objects.requireNonNull(periodStart);
+        this.logType = Objects.requireNonNull(logType);
+        this.channel = Objects.requireNonNull(channel);
+        this.province = Objects.requireNonNull(province);
+        this.usersReached = usersReached;
+        this.usersCurrent = usersCurrent;
+    }
+
+}
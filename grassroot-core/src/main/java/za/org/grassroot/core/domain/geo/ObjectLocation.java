@@ -80,9 +80,13 @@ public class ObjectLocation {
     }
 
     public ObjectLocation (Meeting meeting, TaskLocation meetingLocation) {
+        this(meeting, meetingLocation.getLocation(), meetingLocation.getScore());
+    }
+
+    public ObjectLocation (Meeting meeting, GeoLocation location, float score) {
         this(meeting.getUid(),
-                meeting.getName(), meetingLocation.getLocation().getLatitude(),
-                meetingLocation.getLocation().getLongitude(), meetingLocation.getScore(),
+                meeting.getName(), location.getLatitude(),
+                location.getLongitude(), score,
                 "MEETING",
                 meeting.isPublic(),
                 meeting.getAncestorGroup().getMemberships().size(),
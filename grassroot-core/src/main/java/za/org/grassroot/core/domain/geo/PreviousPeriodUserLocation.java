@@ -19,6 +19,17 @@ public class PreviousPeriodUserLocation implements LocationHolder {
 	@Column(name = "log_count", nullable = false)
 	private int logCount;
 
+	// the sums of the user's logs in the period as unit vectors, from which the location is worked out, so that the
+	// period can be slid along without going back to the logs (null on rows from before these were kept)
+	@Column(name = "sum_x")
+	private Double sumX;
+
+	@Column(name = "sum_y")
+	private Double sumY;
+
+	@Column(name = "sum_z")
+	private Double sumZ;
+
 	private PreviousPeriodUserLocation() {
 		// for JPA
 	}
@@ -32,6 +43,24 @@ public class PreviousPeriodUserLocation implements LocationHolder {
 		this.logCount = logCount;
 	}
 
+	public PreviousPeriodUserLocation(UserAndLocalDateKey key, GeoLocation location, int logCount, double sumX, double sumY, double sumZ) {
+		this(key, location, logCount);
+		this.sumX = sumX;
+		this.sumY = sumY;
+		this.sumZ = sumZ;
+	}
+
+	public void updateSums(GeoLocation location, int logCount, double sumX, double sumY, double sumZ) {
+		if (logCount < 1) {
+			throw new IllegalArgumentException("Log count has to be positive number, but is: " + logCount);
+		}
+		this.location = Objects.requireNonNull(location);
+		this.logCount = logCount;
+		this.sumX = sumX;
+		this.sumY = sumY;
+		this.sumZ = sumZ;
+	}
+
 	public UserAndLocalDateKey getKey() {
 		return key;
 	}
@@ -51,6 +80,18 @@ public class PreviousPeriodUserLocation implements LocationHolder {
 		return logCount;
 	}
 
+	public Double getSumX() {
+		return sumX;
+	}
+
+	public Double getSumY() {
+		return sumY;
+	}
+
+	public Double getSumZ() {
+		return sumZ;
+	}
+
 	public String toString() {
 		final StringBuilder sb = new StringBuilder("PreviousPeriodUserLocation{");
 		sb.append("key=").append(key);
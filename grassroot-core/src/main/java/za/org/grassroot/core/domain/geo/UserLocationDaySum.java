@@ -0,0 +1,61 @@
+package za.org.grassroot.core.domain.geo;
+
+import javax.persistence.Column;
+import javax.persistence.EmbeddedId;
+import javax.persistence.Entity;
+import javax.persistence.Table;
+
+/**
+ * The sum of a user's location logs on one (SAST) day, each taken as a vector on the unit sphere, so that averages over
+ * a period can be built up, and slid along, a day at a time instead of from the logs themselves.
+ */
+@Entity
+@Table(name = "user_location_day_sum")
+public class UserLocationDaySum {
+	@EmbeddedId
+	private UserAndLocalDateKey key;
+
+	@Column(name = "sum_x", nullable = false)
+	private double sumX;
+
+	@Column(name = "sum_y", nullable = false)
+	private double sumY;
+
+	@Column(name = "sum_z", nullable = false)
+	private double sumZ;
+
+	@Column(name = "log_count", nullable = false)
+	private int logCount;
+
+	private UserLocationDaySum() {
+		// for JPA, rows are inserted in bulk (see repository)
+	}
+
+	public UserAndLocalDateKey getKey() {
+		return key;
+	}
+
+	public double getSumX() {
+		return sumX;
+	}
+
+	public double getSumY() {
+		return sumY;
+	}
+
+	public double getSumZ() {
+		return sumZ;
+	}
+
+	public int getLogCount() {
+		return logCount;
+	}
+
+	@Override
+	public String toString() {
+		return "UserLocationDaySum{" +
+				"key=" + key +
+				", logCount=" + logCount +
+				'}';
+	}
+}
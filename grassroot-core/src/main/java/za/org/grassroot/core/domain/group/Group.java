@@ -1,5 +1,6 @@
 package za.org.grassroot.core.domain.group;
 
+import org.hibernate.Hibernate;
 import org.hibernate.annotations.DynamicUpdate;
 import org.hibernate.annotations.Type;
 import za.org.grassroot.core.domain.*;
@@ -61,6 +62,10 @@ public class Group implements TodoContainer, VoteContainer, MeetingContainer, Se
     @Column(name = "last_log_creation_time")
     private Instant lastGroupChangeTime;
 
+    // the later of the two above, kept as a column of its own so that a member's groups can be sorted without aggregating logs
+    @Column(name = "latest_activity")
+    private Instant latestActivity;
+
     @ManyToOne()
     @JoinColumn(name = "created_by_user", nullable = false, updatable = false)
     private User createdByUser;
@@ -194,6 +199,7 @@ public class Group implements TodoContainer, VoteContainer, MeetingContainer, Se
         this.createdByUser = Objects.requireNonNull(createdByUser);
         this.createdDateTime = Instant.now();
         this.lastGroupChangeTime = this.createdDateTime;
+        this.latestActivity = this.createdDateTime;
         this.active = true;
         this.discoverable = true; // make groups discoverable by default
         this.joinApprover = createdByUser; // discoverable groups need a join approver, defaulting to creating user
@@ -342,6 +348,22 @@ public class Group implements TodoContainer, VoteContainer, MeetingContainer, Se
         return removed;
     }
 
+    /**
+     * For memberships written or deleted directly through the repository: keeps this side in step only if it has
+     * already been loaded in this session, so that a single join or removal never loads the whole collection.
+     */
+    public void syncAddedMembership(Membership membership) {
+        if (Hibernate.isInitialized(this.memberships)) {
+            this.memberships.add(membership);
+        }
+    }
+
+    public void syncRemovedMembership(Membership membership) {
+        if (Hibernate.isInitialized(this.memberships)) {
+            this.memberships.remove(membership);
+        }
+    }
+
     public List<String> getJoinTopics() {
         return this.getTagList().stream().filter(s -> s.startsWith(JOIN_TOPIC_PREFIX))
                 .map(s -> s.substring(JOIN_TOPIC_PREFIX.length())).collect(Collectors.toList());
@@ -396,6 +418,7 @@ public class Group implements TodoContainer, VoteContainer, MeetingContainer, Se
 
     public void setLastTaskCreationTime(Instant lastTaskCreationTime) {
         this.lastTaskCreationTime = lastTaskCreationTime;
+        bumpLatestActivity(lastTaskCreationTime);
     }
 
     public Instant getLastGroupChangeTime() {
@@ -404,6 +427,17 @@ public class Group implements TodoContainer, VoteContainer, MeetingContainer, Se
 
     public void setLastGroupChangeTime(Instant lastGroupChangeTime) {
         this.lastGroupChangeTime = lastGroupChangeTime;
+        bumpLatestActivity(lastGroupChangeTime);
+    }
+
+    public Instant getLatestActivity() {
+        return latestActivity;
+    }
+
+    private void bumpLatestActivity(Instant activityTime) {
+        if (activityTime != null && (latestActivity == null || latestActivity.isBefore(activityTime))) {
+            this.latestActivity = activityTime;
+        }
     }
 
     public Instant getLatestChangeOrTaskTime() {
@@ -23,7 +23,8 @@ import java.util.Objects;
 public class GroupLog implements Serializable, ActionLog {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "group_log_id_seq")
+    @SequenceGenerator(name = "group_log_id_seq", sequenceName = "group_log_id_seq", allocationSize = 50)
     @Column(name="id", nullable = false)
     private Long id;
 
@@ -0,0 +1,46 @@
+package za.org.grassroot.core.domain.group;
+
+import lombok.Getter;
+
+import javax.persistence.*;
+import java.time.LocalDate;
+import java.util.Objects;
+
+/**
+ * Members added to and removed from a group on a day, so growth stats do not need to replay the group logs. As with
+ * the stats counts, rows for the same group and day are summed on read, and merged by the reconciliation.
+ */
+@Entity @Getter
+@Table(name = "group_member_daily_change")
+public class GroupMemberDailyChange {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "id", nullable = false)
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "group_id", nullable = false, updatable = false, foreignKey = @ForeignKey(name = "fk_group_member_change_group"))
+    private Group group;
+
+    @Column(name = "change_date", nullable = false)
+    private LocalDate changeDate;
+
+    @Column(name = "members_added", nullable = false)
+    private int membersAdded;
+
+    @Column(name = "members_removed", nullable = false)
+    private int membersRemoved;
+
+    private GroupMemberDailyChange() {
+        // for JPA
+    }
+
+    public GroupMemberDailyChange(Group group, LocalDate changeDate, int membersAdded, int membersRemoved) {
+        this.group = Objects.requireNonNull(group);
+        this.changeDate = Objects.requireNonNull(changeDate);
+        this.membersAdded = membersAdded;
+        this.membersRemoved = membersRemoved;
+    }
+
+}
@@ -0,0 +1,52 @@
+package za.org.grassroot.core.domain.group;
+
+import lombok.Getter;
+
+import javax.persistence.*;
+import java.util.Objects;
+
+/**
+ * One bucket of a group's materialised stats (e.g., members in a province, or with a topic). Counts are adjusted in
+ * place as memberships, their tags and members' provinces change, and rewritten by the reconciliation. There is
+ * deliberately no unique constraint on group, type and key: if two transactions both create a bucket, reads sum them,
+ * and the next reconciliation merges them.
+ */
+@Entity @Getter
+@Table(name = "group_stats_count")
+public class GroupStatsCount {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "id", nullable = false)
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "group_id", nullable = false, updatable = false, foreignKey = @ForeignKey(name = "fk_group_stats_count_group"))
+    private Group group;
+
+    @Column(name = "stat_type", nullable = false, length = 50)
+    @Enumerated(EnumType.STRING)
+    private GroupStatsType statType;
+
+    @Column(name = "stat_key", nullable = false)
+    private String statKey;
+
+    @Column(name = "member_count", nullable = false)
+    private int memberCount;
+
+    // only set on the group's member total, when a change could not be applied, so that the nightly job recounts the group
+    @Column(name = "needs_recount", nullable = false)
+    private boolean needsRecount;
+
+    private GroupStatsCount() {
+        // for JPA
+    }
+
+    public GroupStatsCount(Group group, GroupStatsType statType, String statKey, int memberCount) {
+        this.group = Objects.requireNonNull(group);
+        this.statType = Objects.requireNonNull(statType);
+        this.statKey = Objects.requireNonNull(statKey);
+        this.memberCount = memberCount;
+    }
+
+}
@@ -0,0 +1,11 @@
+package za.org.grassroot.core.domain.group;
+
+public enum GroupStatsType {
+
+    MEMBERS, // a single bucket, with the total, whose presence also marks the group's stats as materialised
+    PROVINCE,
+    SOURCE,
+    AFFILIATION,
+    TOPIC
+
+}
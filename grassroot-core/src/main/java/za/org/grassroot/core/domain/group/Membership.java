@@ -23,11 +23,12 @@ import java.util.stream.Stream;
 public class Membership implements Serializable, TagHolder {
 
     private static final String JOIN_METHOD_DESCRIPTOR_TAG = "JOINDESC:";
-    private static final String AFFILITATION_TAG ="AFFILIATION:";
+    public static final String AFFILIATION_TAG = "AFFILIATION:";
 
     @Setter(AccessLevel.PRIVATE)
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "group_user_membership_id_seq")
+    @SequenceGenerator(name = "group_user_membership_id_seq", sequenceName = "group_user_membership_id_seq", allocationSize = 50)
     @Column(name = "id", nullable = false)
     private Long id;
 
@@ -97,16 +98,16 @@ public class Membership implements Serializable, TagHolder {
 
     public void addAffiliations(Set<String> affiliations) {
         if (affiliations != null && !affiliations.isEmpty()) {
-            this.addTags(affiliations.stream().map(s -> AFFILITATION_TAG + s).collect(Collectors.toList()));
+            this.addTags(affiliations.stream().map(s -> AFFILIATION_TAG + s).collect(Collectors.toList()));
         }
     }
 
     public void setAffiliations(Set<String> affiliations) {
         // first get all the non-affiliation tags
         List<String> tags = getTagList().stream()
-                .filter(s -> !s.startsWith(AFFILITATION_TAG)).collect(Collectors.toList());
+                .filter(s -> !s.startsWith(AFFILIATION_TAG)).collect(Collectors.toList());
         // then add the topics
-        tags.addAll(affiliations.stream().map(s -> AFFILITATION_TAG + s).collect(Collectors.toSet()));
+        tags.addAll(affiliations.stream().map(s -> AFFILIATION_TAG + s).collect(Collectors.toSet()));
         setTags(tags);
     }
 
@@ -117,8 +118,8 @@ public class Membership implements Serializable, TagHolder {
 
 	public static Stream<String> extractAffiliations(Collection<String> tagList) {
 		return tagList.stream()
-                .filter(s -> s.startsWith(AFFILITATION_TAG))
-                .map(s -> s.substring(AFFILITATION_TAG.length()));
+                .filter(s -> s.startsWith(AFFILIATION_TAG))
+                .map(s -> s.substring(AFFILIATION_TAG.length()));
 	}
 
 	public void updateRole(GroupRole role) {
@@ -20,7 +20,8 @@ import java.util.Objects;
 public class LiveWireLog implements ActionLog {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "live_wire_log_id_seq")
+    @SequenceGenerator(name = "live_wire_log_id_seq", sequenceName = "live_wire_log_id_seq", allocationSize = 50)
     @Column(name="id", nullable = false)
     private Long id;
 
@@ -23,7 +23,8 @@ import java.util.Objects;
 public class EventLog implements TaskLog, LocationHolder {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "event_log_id_seq")
+    @SequenceGenerator(name = "event_log_id_seq", sequenceName = "event_log_id_seq", allocationSize = 50)
     @Column(name="id", nullable = false)
     private Long id;
 
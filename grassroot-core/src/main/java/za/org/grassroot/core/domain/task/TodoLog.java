@@ -22,7 +22,8 @@ import java.util.Objects;
 public class TodoLog implements TaskLog {
 
 	@Id
-	@GeneratedValue(strategy = GenerationType.IDENTITY)
+	@GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "action_todo_log_id_seq")
+	@SequenceGenerator(name = "action_todo_log_id_seq", sequenceName = "action_todo_log_id_seq", allocationSize = 50)
 	@Column(name = "id", nullable = false)
 	private Long id;
 
@@ -0,0 +1,41 @@
+package za.org.grassroot.core.domain.task;
+
+import javax.persistence.Column;
+import javax.persistence.EmbeddedId;
+import javax.persistence.Entity;
+import javax.persistence.Table;
+
+/**
+ * A running count of the responses for one option of a vote. Each option is split over a few stripes, with each voter
+ * always counted on the same one, so that voters in a mass vote are not all queued on one row lock; an option's count
+ * is the sum over its stripes (a stripe on its own may go negative, as changed votes are taken off the voter's stripe).
+ */
+@Entity
+@Table(name = "vote_option_tally")
+public class VoteOptionTally {
+	@EmbeddedId
+	private VoteOptionTallyKey key;
+
+	@Column(name = "vote_count", nullable = false)
+	private long count;
+
+	private VoteOptionTally() {
+		// for JPA, rows are only written through bulk statements (see repository)
+	}
+
+	public VoteOptionTallyKey getKey() {
+		return key;
+	}
+
+	public long getCount() {
+		return count;
+	}
+
+	@Override
+	public String toString() {
+		return "VoteOptionTally{" +
+				"key=" + key +
+				", count=" + count +
+				'}';
+	}
+}
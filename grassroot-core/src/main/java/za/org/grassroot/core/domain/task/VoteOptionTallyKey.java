@@ -0,0 +1,70 @@
+package za.org.grassroot.core.domain.task;
+
+import javax.persistence.Column;
+import javax.persistence.Embeddable;
+import java.io.Serializable;
+import java.util.Objects;
+
+/**
+ * Vote, option (trimmed and upper case, as the option tags are compared) and stripe of a vote option tally row.
+ */
+@Embeddable
+public class VoteOptionTallyKey implements Serializable {
+	@Column(name = "vote_id")
+	private Long voteId;
+
+	@Column(name = "vote_option")
+	private String option;
+
+	@Column(name = "stripe")
+	private int stripe;
+
+	protected VoteOptionTallyKey() {
+		// for JPA
+	}
+
+	public VoteOptionTallyKey(Long voteId, String option, int stripe) {
+		this.voteId = Objects.requireNonNull(voteId);
+		this.option = Objects.requireNonNull(option);
+		this.stripe = stripe;
+	}
+
+	public Long getVoteId() {
+		return voteId;
+	}
+
+	public String getOption() {
+		return option;
+	}
+
+	public int getStripe() {
+		return stripe;
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (this == o) {
+			return true;
+		}
+		if (o == null || getClass() != o.getClass()) {
+			return false;
+		}
+
+		VoteOptionTallyKey that = (VoteOptionTallyKey) o;
+		return stripe == that.stripe && voteId.equals(that.voteId) && option.equals(that.option);
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hash(voteId, option, stripe);
+	}
+
+	@Override
+	public String toString() {
+		return "VoteOptionTallyKey{" +
+				"voteId=" + voteId +
+				", option='" + option + '\'' +
+				", stripe=" + stripe +
+				'}';
+	}
+}
@@ -0,0 +1,30 @@
+package za.org.grassroot.core.dto.membership;
+
+import lombok.Value;
+import org.springframework.util.StringUtils;
+import za.org.grassroot.core.enums.DeliveryRoute;
+
+// for filtering and broadcast recipients, where loading the full membership and user entities is too heavy
+@Value
+public class MembershipRecipientProjection {
+
+    Long membershipId;
+    Long userId;
+    String phoneNumber;
+    String emailAddress;
+    DeliveryRoute messagingPreference;
+    String languageCode;
+
+    public boolean hasEmail() {
+        return !StringUtils.isEmpty(emailAddress);
+    }
+
+    public boolean hasPhone() {
+        return !StringUtils.isEmpty(phoneNumber);
+    }
+
+    public boolean hasBoth() {
+        return hasEmail() && hasPhone();
+    }
+
+}
@@ -0,0 +1,26 @@
+package za.org.grassroot.core.dto.task;
+
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
+import za.org.grassroot.core.enums.EventType;
+
+import java.io.Serializable;
+
+/**
+ * Just enough to identify an event, for holding lists of events in caches without holding the (detached) entities.
+ */
+@Getter @ToString @EqualsAndHashCode
+public class EventRefDTO implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String eventUid;
+    private final EventType eventType;
+
+    public EventRefDTO(String eventUid, EventType eventType) {
+        this.eventUid = eventUid;
+        this.eventType = eventType;
+    }
+
+}
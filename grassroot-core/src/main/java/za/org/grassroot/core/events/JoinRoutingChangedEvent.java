@@ -0,0 +1,20 @@
+package za.org.grassroot.core.events;
+
+import lombok.Getter;
+import lombok.ToString;
+import org.springframework.context.ApplicationEvent;
+
+/**
+ * Published when a campaign code or join word, or a group join word, is added, changed or closed, so that the routing
+ * of inbound SMS, USSD and WhatsApp messages can be rebuilt.
+ */
+@Getter @ToString
+public class JoinRoutingChangedEvent extends ApplicationEvent {
+
+    private final String entityUid;
+
+    public JoinRoutingChangedEvent(Object source, String entityUid) {
+        super(source);
+        this.entityUid = entityUid;
+    }
+}
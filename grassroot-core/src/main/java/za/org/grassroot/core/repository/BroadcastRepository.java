@@ -4,11 +4,14 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
 import za.org.grassroot.core.domain.broadcast.Broadcast;
 import za.org.grassroot.core.domain.broadcast.BroadcastSchedule;
 import za.org.grassroot.core.domain.campaign.Campaign;
 import za.org.grassroot.core.domain.group.Group;
 
+import javax.persistence.LockModeType;
 import java.util.List;
 
 public interface BroadcastRepository extends JpaRepository<Broadcast, Integer>, JpaSpecificationExecutor<Broadcast> {
@@ -25,4 +28,12 @@ public interface BroadcastRepository extends JpaRepository<Broadcast, Integer>,
 
     List<Broadcast> findByCampaign(Campaign campaign);
 
+    // row lock, so that two instances resuming the same fan-out cannot both store a chunk
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select b from Broadcast b where b.uid = ?1")
+    Broadcast findOneByUidForUpdate(String uid);
+
+    @Query("select b.uid from Broadcast b where b.fanOutPending = true order by b.id")
+    List<String> findUidsWithFanOutPending();
+
 }
@@ -6,12 +6,14 @@ import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
 import org.springframework.data.jpa.repository.Query;
 import za.org.grassroot.core.domain.User;
+import za.org.grassroot.core.domain.broadcast.Broadcast;
 import za.org.grassroot.core.domain.campaign.Campaign;
 import za.org.grassroot.core.domain.campaign.CampaignLog;
 import za.org.grassroot.core.domain.campaign.CampaignLogProjection;
 import za.org.grassroot.core.enums.CampaignLogType;
 
 import java.math.BigInteger;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 
@@ -21,6 +23,29 @@ public interface CampaignLogRepository extends JpaRepository<CampaignLog, Long>,
 
     List<CampaignLog> findByCampaignLogType(CampaignLogType logType, Pageable pageable);
 
+    CampaignLog findFirstByBroadcastAndCampaignLogType(Broadcast broadcast, CampaignLogType campaignLogType);
+
+    @Query("select distinct cl.user.id from CampaignLog cl where cl.campaign = ?1 and cl.campaignLogType in ?2")
+    List<Long> findDistinctUserIdsByCampaignAndTypes(Campaign campaign, Collection<CampaignLogType> logTypes);
+
+    // one page of the above, keyed on user id
+    @Query("select distinct cl.user.id from CampaignLog cl where cl.campaign = ?1 and cl.campaignLogType in ?2 and cl.user.id > ?3 order by cl.user.id")
+    List<Long> findDistinctUserIdsByCampaignAndTypesAfter(Campaign campaign, Collection<CampaignLogType> logTypes, long afterUserId, Pageable pageable);
+
+    // engagement history, for replaying into the stats rollup: user id, log type, channel, creation time, user's province, log id
+    @Query("select cl.user.id, cl.campaignLogType, cl.channel, cl.creationTime, u.province, cl.id from CampaignLog cl join cl.user u " +
+            "where cl.campaign = ?1 and cl.campaignLogType in ?2 order by cl.creationTime")
+    List<Object[]> findEngagementHistory(Campaign campaign, Collection<CampaignLogType> logTypes);
+
+    @Query("select cl.user.id, cl.campaignLogType, cl.channel, cl.creationTime, u.province, cl.id from CampaignLog cl join cl.user u " +
+            "where cl.campaign = ?1 and cl.user = ?2 and cl.campaignLogType in ?3 order by cl.creationTime")
+    List<Object[]> findUserEngagementHistory(Campaign campaign, User user, Collection<CampaignLogType> logTypes);
+
+    // as above, for all the users whose logs are being stored together
+    @Query("select cl.user.id, cl.campaignLogType, cl.channel, cl.creationTime, u.province, cl.id from CampaignLog cl join cl.user u " +
+            "where cl.campaign = ?1 and cl.user in ?2 and cl.campaignLogType in ?3 order by cl.creationTime")
+    List<Object[]> findUsersEngagementHistory(Campaign campaign, Collection<User> users, Collection<CampaignLogType> logTypes);
+
     void deleteAllByCampaignAndUserAndCampaignLogType(Campaign campaign, User user, CampaignLogType logType);
 
     @Query(value = "select " +
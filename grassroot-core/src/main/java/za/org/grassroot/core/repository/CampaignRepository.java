@@ -29,6 +29,10 @@ public interface CampaignRepository extends JpaRepository<Campaign, Long>, JpaSp
             "where end_date_time > current_timestamp group by uid, tags", nativeQuery = true)
     List<Object[]> fetchAllActiveCampaignTags();
 
+    // rows of uid, code, end time and tags, for routing inbound codes and join words without a query per message
+    @Query(value = "select c.uid, c.campaignCode, c.endDateTime, c.tags from Campaign c where c.endDateTime > ?1")
+    List<Object[]> fetchRoutingDetailsOfCampaignsEndingAfter(Instant time);
+
     @Query(value = "select c.campaignCode from Campaign c where c.endDateTime > current_timestamp")
     Set<String> fetchAllActiveCampaignCodes();
 
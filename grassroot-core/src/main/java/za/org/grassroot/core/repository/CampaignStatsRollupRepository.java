@@ -0,0 +1,39 @@
+package za.org.grassroot.core.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import za.org.grassroot.core.domain.campaign.Campaign;
+import za.org.grassroot.core.domain.campaign.CampaignStatsRollup;
+import za.org.grassroot.core.enums.CampaignLogType;
+
+import java.time.Instant;
+import java.util.List;
+
+public interface CampaignStatsRollupRepository extends JpaRepository<CampaignStatsRollup, Long> {
+
+    boolean existsByCampaign(Campaign campaign);
+
+    // rows of log type, channel, province, users reached, users current
+    @Query("select r.logType, r.channel, r.province, sum(r.usersReached), sum(r.usersCurrent) from CampaignStatsRollup r " +
+            "where r.campaign = ?1 group by r.logType, r.channel, r.province")
+    List<Object[]> sumByCampaign(Campaign campaign);
+
+    // as above, but with the period start first, and only for periods starting in the interval
+    @Query("select r.periodStart, r.logType, r.channel, r.province, sum(r.usersReached), sum(r.usersCurrent) from CampaignStatsRollup r " +
+            "where r.campaign = ?1 and r.periodStart >= ?2 and r.periodStart < ?3 " +
+            "group by r.periodStart, r.logType, r.channel, r.province order by r.periodStart")
+    List<Object[]> sumByCampaignAndPeriod(Campaign campaign, Instant startInclusive, Instant endExclusive);
+
+    // returns the number of rows updated, so the caller knows whether it must create the bucket
+    @Modifying
+    @Query("update CampaignStatsRollup r set r.usersReached = r.usersReached + ?6, r.usersCurrent = r.usersCurrent + ?7 " +
+            "where r.campaign = ?1 and r.periodStart = ?2 and r.logType = ?3 and r.channel = ?4 and r.province = ?5")
+    int adjustRollup(Campaign campaign, Instant periodStart, CampaignLogType logType, String channel, String province,
+                     int reachedDelta, int currentDelta);
+
+    @Modifying
+    @Query("delete from CampaignStatsRollup r where r.campaign = ?1")
+    void deleteByCampaign(Campaign campaign);
+
+}
@@ -3,12 +3,14 @@ package za.org.grassroot.core.repository;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Query;
 import za.org.grassroot.core.domain.User;
 import za.org.grassroot.core.domain.task.Event;
 import za.org.grassroot.core.domain.task.EventLog;
 import za.org.grassroot.core.enums.EventLogType;
 import za.org.grassroot.core.enums.EventType;
 
+import java.util.Collection;
 import java.util.List;
 
 public interface EventLogRepository extends JpaRepository<EventLog, Long>, JpaSpecificationExecutor<EventLog> {
@@ -22,4 +24,15 @@ public interface EventLogRepository extends JpaRepository<EventLog, Long>, JpaSp
     List<EventLog> findByEventAndEventLogType(Event event, EventLogType type);
 
     List<EventLog> findByEventLogTypeAndEventType(EventLogType logType, EventType eventType, Pageable pageable);
+
+    // rows of event id, responding user and response, for all the responses to a set of events
+    @Query("select el.event.id, el.user, el.response from EventLog el " +
+            "where el.event.id in ?1 and el.eventLogType = za.org.grassroot.core.enums.EventLogType.RSVP")
+    List<Object[]> findResponsesByEventIds(Collection<Long> eventIds);
+
+    // rows of option (trimmed and upper case, as isVoteOptionSelection compares them) and count, for a vote's responses
+    @Query("select upper(trim(el.tag)), count(el) from EventLog el " +
+            "where el.event = ?1 and el.eventLogType = za.org.grassroot.core.enums.EventLogType.VOTE_OPTION_RESPONSE " +
+            "and el.tag is not null and trim(el.tag) <> '' group by upper(trim(el.tag))")
+    List<Object[]> countVoteResponsesByOption(Event vote);
 }
@@ -7,8 +7,12 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.transaction.annotation.Transactional;
 import za.org.grassroot.core.domain.User;
 import za.org.grassroot.core.domain.group.Group;
+import za.org.grassroot.core.domain.notification.EventNotification;
 import za.org.grassroot.core.domain.task.Event;
+import za.org.grassroot.core.dto.task.EventRefDTO;
 import za.org.grassroot.core.dto.task.TaskTimeChangedDTO;
+import za.org.grassroot.core.enums.EventLogType;
+import za.org.grassroot.core.enums.EventType;
 
 import java.time.Instant;
 import java.util.Collection;
@@ -50,6 +54,44 @@ public interface EventRepository extends JpaRepository<Event, Long>, JpaSpecific
 			"and e.scheduledReminderActive = true")
 	List<Event> findEventsForReminders(Instant referenceInstant);
 
+	// as above, but only the ids, and with the paid-for check (Group.robustIsPaidFor) done in the query, unless unpaid groups are included
+	@Query(value = "select e.id from Event e " +
+			"inner join e.ancestorGroup g left join g.account a " +
+			"where e.canceled = false " +
+			"and e.eventStartDateTime > ?1 " +
+			"and e.scheduledReminderTime < ?1 " +
+			"and e.scheduledReminderActive = true " +
+			"and (?2 = true or (g.paidFor = true and a.enabled = true and a.currentMonthSpend <= a.monthlySpendingLimit)) " +
+			"order by e.id")
+	List<Long> findEventIdsForReminders(Instant referenceInstant, boolean includeUnpaidGroups);
+
+	// for batch jobs, loading the groups and creators with the events, instead of one by one after
+	@Query(value = "select e from Event e inner join fetch e.ancestorGroup left join fetch e.createdByUser where e.id in ?1")
+	List<Event> findWithGroupAndCreatorByIdIn(Collection<Long> eventIds);
+
+	// rows of event id and assigned member, for events that are not assigned to the whole group
+	@Query(value = "select e.id, u from Event e inner join e.assignedMembers u where e.id in ?1")
+	List<Object[]> findAssignedMembersByEventIds(Collection<Long> eventIds);
+
+	// ids of the event's assigned members not yet sent a notification of the given type about it
+	@Query(value = "select u.id from Event e inner join e.assignedMembers u where e = ?1 and not exists " +
+			"(select n.id from Notification n where n.event = e and n.target = u and type(n) = ?2) " +
+			"order by u.id")
+	List<Long> findAssignedMemberIdsNotNotifiedAboutEvent(Event event, Class<? extends EventNotification> notificationClass);
+
+	// as EventSpecifications.upcomingEventsForUser, leaving out events of the excluded type the user created, and those
+	// the user has already responded to (i.e., has a log of one of the response types for), in one query
+	@Query(value = "select new za.org.grassroot.core.dto.task.EventRefDTO(e.uid, e.type) from Event e " +
+			"inner join e.parentGroup g inner join g.memberships m " +
+			"where m.user = ?1 " +
+			"and e.canceled = false and e.rsvpRequired = true and e.eventStartDateTime > ?2 " +
+			"and (e.assignedMembers is empty or ?1 member of e.assignedMembers) " +
+			"and (e.type <> ?3 or e.createdByUser <> ?1) " +
+			"and not exists (select el.id from EventLog el where el.event = e and el.user = ?1 and el.eventLogType in ?4) " +
+			"order by e.createdDateTime asc")
+	List<EventRefDTO> findUpcomingEventsWithoutResponse(User user, Instant now, EventType excludeCreatedOfType,
+														Collection<EventLogType> responseLogTypes);
+
 	@Query(value = "select v from Vote v where v.eventStartDateTime > ?1 and v.canceled = false")
 	List<Event> findAllVotesAfterTimeStamp(Instant fromInstant);
 
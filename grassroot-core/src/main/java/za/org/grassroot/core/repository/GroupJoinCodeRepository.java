@@ -19,4 +19,8 @@ public interface GroupJoinCodeRepository extends JpaRepository<GroupJoinCode, UU
     Optional<Group> selectGroupWithActiveCode(String code);
 
     List<GroupJoinCode> findByActiveTrue();
+
+    // rows of lower case join word and group uid, without loading the groups
+    @Query("select lower(gjc.code), g.uid from GroupJoinCode gjc inner join gjc.group g where gjc.active = true")
+    List<Object[]> selectLowerCaseActiveJoinWordsWithGroupUids();
 }
@@ -1,11 +1,13 @@
 package za.org.grassroot.core.repository;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import za.org.grassroot.core.domain.geo.GroupLocation;
 import za.org.grassroot.core.domain.group.Group;
 
 import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
 import java.util.Set;
 
@@ -14,6 +16,12 @@ public interface GroupLocationRepository extends JpaRepository<GroupLocation, Lo
 
 	GroupLocation findOneByGroupAndLocalDate(Group group, LocalDate localDate);
 
+	@Modifying
+	@Query("delete from GroupLocation gl where gl.group.id in ?1 and gl.localDate = ?2")
+	void deleteByGroupIdInAndLocalDate(Collection<Long> groupIds, LocalDate localDate);
+
+	List<GroupLocation> findByGroupIdInAndLocalDate(Collection<Long> groupIds, LocalDate localDate);
+
 	int countByGroupAndLocalDateGreaterThan(Group group, LocalDate localDate);
 
 	List<GroupLocation> findByGroupInAndLocalDateAndScoreGreaterThan(Set<Group> groups, LocalDate localDate, float score);
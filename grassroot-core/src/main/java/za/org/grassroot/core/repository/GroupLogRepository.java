@@ -4,6 +4,8 @@ import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Query;
+import za.org.grassroot.core.domain.broadcast.Broadcast;
 import za.org.grassroot.core.domain.group.Group;
 import za.org.grassroot.core.domain.group.GroupLog;
 import za.org.grassroot.core.enums.GroupLogType;
@@ -18,5 +20,10 @@ public interface GroupLogRepository extends JpaRepository<GroupLog, Long>, JpaSp
 
 	GroupLog findFirstByGroupOrderByCreatedDateTimeDesc(Group group);
 
+	GroupLog findFirstByBroadcastAndGroupLogType(Broadcast broadcast, GroupLogType groupLogType);
+
     List<GroupLog> findByGroupLogTypeIn(Collection<GroupLogType> types, Pageable pageable);
+
+    @Query("select distinct gl.group.id from GroupLog gl where gl.group.id in ?1 and gl.groupLogType in ?2 and gl.createdDateTime >= ?3")
+    List<Long> findGroupIdsWithLogTypesSince(Collection<Long> groupIds, Collection<GroupLogType> types, Instant since);
 }
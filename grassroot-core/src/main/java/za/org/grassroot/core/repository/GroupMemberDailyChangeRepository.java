@@ -0,0 +1,27 @@
+package za.org.grassroot.core.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import za.org.grassroot.core.domain.group.Group;
+import za.org.grassroot.core.domain.group.GroupMemberDailyChange;
+
+import java.time.LocalDate;
+import java.util.List;
+
+public interface GroupMemberDailyChangeRepository extends JpaRepository<GroupMemberDailyChange, Long> {
+
+    @Query("select c.changeDate, sum(c.membersAdded), sum(c.membersRemoved) from GroupMemberDailyChange c " +
+            "where c.group.uid = ?1 and c.changeDate >= ?2 and c.changeDate < ?3 group by c.changeDate")
+    List<Object[]> sumChangesByDate(String groupUid, LocalDate startInclusive, LocalDate endExclusive);
+
+    @Modifying
+    @Query("update GroupMemberDailyChange c set c.membersAdded = c.membersAdded + ?3, c.membersRemoved = c.membersRemoved + ?4 " +
+            "where c.group = ?1 and c.changeDate = ?2")
+    int adjustChanges(Group group, LocalDate changeDate, int added, int removed);
+
+    @Modifying
+    @Query("delete from GroupMemberDailyChange c where c.group = ?1 and c.changeDate >= ?2")
+    void deleteByGroupFromDate(Group group, LocalDate fromDate);
+
+}
@@ -8,6 +8,7 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import za.org.grassroot.core.domain.Permission;
@@ -15,6 +16,7 @@ import za.org.grassroot.core.domain.User;
 import za.org.grassroot.core.domain.group.Group;
 
 import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -43,6 +45,34 @@ public interface GroupRepository extends JpaRepository<Group, Long>, JpaSpecific
      */
     Page<Group> findAll(Pageable pageable);
 
+    // bulk updates for the log writer, so storing a bundle of logs does not dirty (and version) each group entity; note
+    // that they bypass the persistence context, so a group already loaded in the session keeps its old timestamps. The
+    // latest activity only ever moves forward, as a bundle stored late (e.g., from the write-behind) may be older.
+    @Modifying
+    @Query("update Group g set g.lastGroupChangeTime = ?2, g.latestActivity = " +
+            "case when g.latestActivity is null or g.latestActivity < ?2 then ?2 else g.latestActivity end where g.id in ?1")
+    int updateLastGroupChangeTime(Collection<Long> groupIds, Instant changeTime);
+
+    @Modifying
+    @Query("update Group g set g.lastTaskCreationTime = ?2, g.latestActivity = " +
+            "case when g.latestActivity is null or g.latestActivity < ?2 then ?2 else g.latestActivity end where g.id in ?1")
+    int updateLastTaskCreationTime(Collection<Long> groupIds, Instant creationTime);
+
+    // a member's active groups, most recently active first; the user's memberships come off idx_membership_user, and
+    // are few enough to sort, so these need no index on the activity column
+    @Query("select g from Membership m inner join m.group g where m.user = ?1 and g.active = true " +
+            "order by g.latestActivity desc, g.id desc")
+    List<Group> findActiveGroupsByLatestActivity(User member, Pageable pageable);
+
+    @Query("select g from Membership m inner join m.group g inner join g.rolePermissions rp " +
+            "where m.user = ?1 and m.role = rp.role and rp.permission = ?2 and g.active = true " +
+            "order by g.latestActivity desc, g.id desc")
+    List<Group> findActiveGroupsWithPermissionByLatestActivity(User member, Permission permission, Pageable pageable);
+
+    // for batch jobs, to walk the active groups in id order without loading the entities
+    @Query("select g.id from Group g where g.active = true and g.id > ?1 order by g.id")
+    List<Long> findActiveGroupIdsAfter(long lastId, Pageable pageable);
+
     /*
     Couple of methods to be able to discover groups, public if user not a member, and their own groups
      */
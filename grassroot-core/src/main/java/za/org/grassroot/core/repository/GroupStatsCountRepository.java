@@ -0,0 +1,49 @@
+package za.org.grassroot.core.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import za.org.grassroot.core.domain.group.Group;
+import za.org.grassroot.core.domain.group.GroupStatsCount;
+import za.org.grassroot.core.domain.group.GroupStatsType;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+public interface GroupStatsCountRepository extends JpaRepository<GroupStatsCount, Long> {
+
+    // summed, as a bucket may (rarely) be split over more than one row; buckets emptied by removals are left out
+    @Query("select c.statKey, sum(c.memberCount) from GroupStatsCount c where c.group.uid = ?1 and c.statType = ?2 " +
+            "group by c.statKey having sum(c.memberCount) > 0")
+    List<Object[]> sumCountsByKey(String groupUid, GroupStatsType statType);
+
+    int countByGroupUidAndStatType(String groupUid, GroupStatsType statType);
+
+    @Query("select distinct c.group.id from GroupStatsCount c where c.statType = za.org.grassroot.core.domain.group.GroupStatsType.MEMBERS " +
+            "and c.group.id in ?1")
+    Set<Long> findIdsOfGroupsWithStats(Collection<Long> groupIds);
+
+    @Query("select distinct c.group.id from GroupStatsCount c where c.statType = za.org.grassroot.core.domain.group.GroupStatsType.MEMBERS " +
+            "and c.group in (select m.group from Membership m where m.user.id = ?1)")
+    List<Long> findIdsOfGroupsWithStatsForMember(Long userId);
+
+    @Query("select distinct c.group.uid from GroupStatsCount c where c.statType = za.org.grassroot.core.domain.group.GroupStatsType.MEMBERS " +
+            "and c.needsRecount = true")
+    List<String> findUidsOfGroupsNeedingRecount();
+
+    @Modifying
+    @Query("update GroupStatsCount c set c.needsRecount = true where c.group = ?1 " +
+            "and c.statType = za.org.grassroot.core.domain.group.GroupStatsType.MEMBERS")
+    void markForRecount(Group group);
+
+    // returns the number of rows updated, so the caller knows whether it must create the bucket
+    @Modifying
+    @Query("update GroupStatsCount c set c.memberCount = c.memberCount + ?4 where c.group = ?1 and c.statType = ?2 and c.statKey = ?3")
+    int adjustCount(Group group, GroupStatsType statType, String statKey, int delta);
+
+    @Modifying
+    @Query("delete from GroupStatsCount c where c.group = ?1")
+    void deleteByGroup(Group group);
+
+}
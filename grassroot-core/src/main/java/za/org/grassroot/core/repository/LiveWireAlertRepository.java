@@ -7,6 +7,7 @@ import za.org.grassroot.core.domain.livewire.LiveWireAlert;
 import za.org.grassroot.core.enums.LiveWireAlertDestType;
 
 import java.util.Collection;
+import java.util.List;
 
 /**
  * Created by luke on 2017/05/07.
@@ -15,6 +16,8 @@ public interface LiveWireAlertRepository extends JpaRepository<LiveWireAlert, Lo
 
     LiveWireAlert findOneByUid(String alertUid);
 
+    List<LiveWireAlert> findByUidIn(Collection<String> alertUids);
+
     Page<LiveWireAlert> findByCompleteTrue(Pageable pageable);
 
     Page<LiveWireAlert> findByCompleteTrueAndReviewedFalse(Pageable pageable);
@@ -45,6 +45,35 @@ public interface MeetingRepository extends JpaRepository<Meeting, Long>, JpaSpec
 			"AND e = el.event) = 0")
     List<Meeting> meetingsForResponseTotals(Instant startTimeAfter, Instant intervalStart, Instant intervalEnd);
 
+	// as above, but only the ids, and only for meetings in paid for groups
+	@Query(value = "SELECT e.id FROM Event e " +
+			"WHERE e.eventStartDateTime > ?1 " +
+			"AND type(e) = Meeting " +
+			"AND e.canceled = FALSE " +
+			"AND e.ancestorGroup.paidFor = TRUE " +
+			"AND (e.createdDateTime BETWEEN ?2 AND ?3) " +
+			"AND (SELECT count(el) FROM EventLog el WHERE el.eventLogType = za.org.grassroot.core.enums.EventLogType.RSVP_TOTAL_MESSAGE " +
+			"AND e = el.event) = 0 " +
+			"ORDER BY e.id")
+	List<Long> findMeetingIdsForResponseTotals(Instant startTimeAfter, Instant intervalStart, Instant intervalEnd);
+
+	@Query(value = "SELECT e.id FROM Event e " +
+			"WHERE type(e) = Meeting " +
+			"AND e.canceled = FALSE " +
+			"AND e.rsvpRequired = TRUE " +
+			"AND e.eventStartDateTime BETWEEN ?1 AND ?2 " +
+			"AND (?3 = TRUE OR e.ancestorGroup.paidFor = TRUE) " +
+			"ORDER BY e.id")
+	List<Long> findMeetingIdsForThankYous(Instant startTimeAfter, Instant startTimeBefore, boolean includeUnpaidGroups);
+
+	@Query(value = "SELECT e.uid FROM Event e " +
+			"WHERE type(e) = Meeting " +
+			"AND e.isPublic = TRUE " +
+			"AND e.canceled = FALSE " +
+			"AND e.eventStartDateTime BETWEEN ?1 AND ?2 " +
+			"ORDER BY e.id")
+	List<String> findPublicMeetingUidsStartingBetween(Instant start, Instant end);
+
 
     @Query(value = "SELECT e FROM Event e " +
 		"WHERE e.isPublic = TRUE " +
@@ -9,7 +9,10 @@ import za.org.grassroot.core.domain.User;
 import za.org.grassroot.core.domain.group.Group;
 import za.org.grassroot.core.domain.GroupRole;
 import za.org.grassroot.core.domain.group.Membership;
+import za.org.grassroot.core.domain.notification.EventNotification;
+import za.org.grassroot.core.domain.task.Event;
 
+import java.time.Instant;
 import java.util.Collection;
 import java.util.List;
 import java.util.Set;
@@ -18,6 +21,8 @@ public interface MembershipRepository extends JpaRepository<Membership, Long>, J
 
     Membership findByGroupAndUser(Group group, User user);
 
+    boolean existsByGroupAndUser(Group group, User user);
+
     Membership findByGroupUidAndUserUid(String groupId, String userUid);
 
     List<Membership> findByGroupAndUserUidIn(Group group, Collection<String> userUids);
@@ -30,8 +35,53 @@ public interface MembershipRepository extends JpaRepository<Membership, Long>, J
 
     int countByGroup(Group group);
 
+    @Query("select m.user.id from Membership m where m.group = ?1 order by m.user.id")
+    List<Long> findUserIdsByGroup(Group group);
+
+    // one page of the above, keyed on user id, so that a large group can be walked without loading all its ids at once
+    @Query("select m.user.id from Membership m where m.group = ?1 and m.user.id > ?2 order by m.user.id")
+    List<Long> findUserIdsByGroupAfter(Group group, long afterUserId, Pageable pageable);
+
+    // which of the given users are already members, so that a bulk add can check a chunk in one query
+    @Query("select m.user.id from Membership m where m.group = ?1 and m.user.id in ?2")
+    Set<Long> findUserIdsByGroupAndUserIdIn(Group group, Collection<Long> userIds);
+
+    // as above, leaving out members already sent a notification of the given type about the event
+    @Query("select m.user.id from Membership m where m.group = ?1 and not exists " +
+            "(select n.id from Notification n where n.event = ?2 and n.target = m.user and type(n) = ?3) " +
+            "order by m.user.id")
+    List<Long> findUserIdsByGroupNotNotifiedAboutEvent(Group group, Event event, Class<? extends EventNotification> notificationClass);
+
+    // rows of group id and member, for fetching the members of several groups in one query
+    @Query("select m.group.id, m.user from Membership m where m.group.id in ?1")
+    List<Object[]> findMembersByGroupIds(Collection<Long> groupIds);
+
+    @Query("select m.group.id, m.user.uid from Membership m where m.group.id in ?1")
+    List<Object[]> findMemberUidsByGroupIds(Collection<Long> groupIds);
+
+    @Query("select m.group.uid from Membership m where m.user = ?1")
+    Set<String> findGroupUidsByUser(User user);
+
+    // groups with a member whose location logs fall in either interval, i.e., whose average location may have moved
+    @Query("select distinct m.group.id from Membership m, UserLocationLog l where m.group.id in ?1 and l.userUid = m.user.uid " +
+            "and ((l.timestamp between ?2 and ?3) or (l.timestamp between ?4 and ?5))")
+    List<Long> findGroupIdsWithMemberLocationLogsBetween(Collection<Long> groupIds, Instant firstStart, Instant firstEnd,
+                                                         Instant secondStart, Instant secondEnd);
+
     @Query("select distinct tags from za.org.grassroot.core.domain.group.Membership where tags is not null and group = ?1")
     Set<String[]> findDistinctMembershipTagsByGroup(Group group);
 
+    // each distinct combination of tags with how many members hold it, so tag stats need not load every membership
+    @Query("select m.tags, count(m) from Membership m where m.group.uid = ?1 and m.tags is not null group by m.tags")
+    List<Object[]> countMembersByTagCombination(String groupUid);
+
+    // one row of the member total, and how many members have an email address, a phone number and a province
+    @Query("select count(m), " +
+            "sum(case when u.emailAddress is not null and u.emailAddress <> '' then 1 else 0 end), " +
+            "sum(case when u.phoneNumber is not null and u.phoneNumber <> '' then 1 else 0 end), " +
+            "sum(case when u.province is not null then 1 else 0 end) " +
+            "from Membership m join m.user u where m.group = ?1")
+    List<Object[]> countMemberDetails(Group group);
+
     List<Membership> findByGroupInAndRole(Collection<Group> groups, GroupRole groupRole);
 }
@@ -4,11 +4,19 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
 import za.org.grassroot.core.domain.Notification;
 import za.org.grassroot.core.domain.User;
+import za.org.grassroot.core.domain.notification.EventNotification;
 import za.org.grassroot.core.domain.notification.NotificationStatus;
 import za.org.grassroot.core.enums.DeliveryRoute;
+import za.org.grassroot.core.enums.UserLogType;
 
+import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
 import java.util.Set;
 
@@ -25,4 +33,22 @@ public interface NotificationRepository extends JpaRepository<Notification,Long>
 
     int countByTargetAndDeliveryChannelAndStatusNot(User target, DeliveryRoute deliveryChannel, NotificationStatus status);
 
+    // rows of event id and target id, for notifications of the given type about any of the events
+    @Query("select e.id, t.id from Notification n " +
+            "inner join n.target t inner join n.event e " +
+            "where e.id in ?1 and type(n) = ?2")
+    List<Object[]> findTargetIdsByEventIdsAndType(Collection<Long> eventIds, Class<? extends EventNotification> notificationClass);
+
+    @Query("select n.target.id from Notification n where n.target.id in ?1 group by n.target.id having count(n) > ?2")
+    List<Long> findTargetIdsWithNotificationCountAbove(Collection<Long> targetIds, long threshold);
+
+    @Query("select distinct n.target.id from Notification n inner join n.userLog ul where n.target.id in ?1 and ul.userLogType = ?2")
+    List<Long> findTargetIdsNotifiedForUserLogType(Collection<Long> targetIds, UserLogType userLogType);
+
+    // in a transaction of its own, as it records the outcome of a send made after the notifications' transaction committed
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    @Modifying
+    @Query("update Notification n set n.status = ?2, n.lastStatusChange = ?3 where n.uid in ?1")
+    int updateStatusByUidIn(Collection<String> uids, NotificationStatus status, Instant changeTime);
+
 }
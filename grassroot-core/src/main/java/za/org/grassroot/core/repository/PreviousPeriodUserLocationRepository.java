@@ -1,6 +1,8 @@
 package za.org.grassroot.core.repository;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.transaction.annotation.Transactional;
 import za.org.grassroot.core.domain.geo.PreviousPeriodUserLocation;
 
@@ -9,8 +11,27 @@ import java.util.List;
 import java.util.Set;
 
 public interface PreviousPeriodUserLocationRepository extends JpaRepository<PreviousPeriodUserLocation, String> {
+	// cleared, so that rows inserted for the date in bulk afterwards are not hidden behind ones already loaded
+	@Modifying(flushAutomatically = true, clearAutomatically = true)
+	@Query("delete from PreviousPeriodUserLocation l where l.key.localDate = ?1")
 	void deleteByKeyLocalDate(LocalDate localDate);
 
+	// one row per user with day sums in the period, with the center worked out as GeoLocationUtils.centralLocation does
+	@Modifying
+	@Query(value = "insert into prev_period_user_location (user_uid, local_date, latitude, longitude, log_count, sum_x, sum_y, sum_z) " +
+			"select s.user_uid, cast(?1 as date), " +
+			"degrees(atan2(sum(s.sum_z), sqrt(sum(s.sum_x) * sum(s.sum_x) + sum(s.sum_y) * sum(s.sum_y))) * 180 / pi()), " +
+			"degrees(atan2(sum(s.sum_y), sum(s.sum_x)) * 180 / pi()), " +
+			"sum(s.log_count), sum(s.sum_x), sum(s.sum_y), sum(s.sum_z) " +
+			"from user_location_day_sum s where s.local_date between ?2 and ?3 group by s.user_uid", nativeQuery = true)
+	int insertFromDaySums(LocalDate localDate, LocalDate periodStart, LocalDate periodEnd);
+
+	@Modifying
+	@Query(value = "insert into prev_period_user_location (user_uid, local_date, latitude, longitude, log_count, sum_x, sum_y, sum_z) " +
+			"select l.user_uid, cast(?2 as date), l.latitude, l.longitude, l.log_count, l.sum_x, l.sum_y, l.sum_z " +
+			"from prev_period_user_location l where l.local_date = ?1", nativeQuery = true)
+	int copyToLocalDate(LocalDate fromDate, LocalDate toDate);
+
 	@Transactional(readOnly = true)
 	List<PreviousPeriodUserLocation> findByKeyLocalDateAndKeyUserUidIn(LocalDate localDate, Set<String> userUids);
 
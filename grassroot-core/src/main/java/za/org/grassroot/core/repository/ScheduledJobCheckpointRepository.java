@@ -0,0 +1,12 @@
+package za.org.grassroot.core.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import za.org.grassroot.core.domain.ScheduledJobCheckpoint;
+
+import java.util.Optional;
+
+public interface ScheduledJobCheckpointRepository extends JpaRepository<ScheduledJobCheckpoint, Long> {
+
+    Optional<ScheduledJobCheckpoint> findOneByJobName(String jobName);
+
+}
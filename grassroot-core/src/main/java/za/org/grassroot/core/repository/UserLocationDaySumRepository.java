@@ -0,0 +1,38 @@
+package za.org.grassroot.core.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import za.org.grassroot.core.domain.geo.UserAndLocalDateKey;
+import za.org.grassroot.core.domain.geo.UserLocationDaySum;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.List;
+
+public interface UserLocationDaySumRepository extends JpaRepository<UserLocationDaySum, UserAndLocalDateKey> {
+
+	// sums the logs in the interval in the DB, so they never have to be loaded; the odd degree conversions match those
+	// in GeoLocationUtils.centralLocation, which previous period locations have always been calculated with
+	@Modifying
+	@Query(value = "insert into user_location_day_sum (user_uid, local_date, sum_x, sum_y, sum_z, log_count) " +
+			"select l.user_uid, cast(?1 as date), " +
+			"sum(cos(radians(l.latitude) * pi() / 180) * cos(radians(l.longitude) * pi() / 180)), " +
+			"sum(cos(radians(l.latitude) * pi() / 180) * sin(radians(l.longitude) * pi() / 180)), " +
+			"sum(sin(radians(l.latitude) * pi() / 180)), count(*) " +
+			"from user_location_log l where l.timestamp >= ?2 and l.timestamp < ?3 group by l.user_uid", nativeQuery = true)
+	int insertSumsForDay(LocalDate localDate, Instant dayStart, Instant dayEnd);
+
+	// rows of user uid, sums and count, rather than entities, as the rows for a day are replaced in bulk within one run
+	@Query("select s.key.userUid, s.sumX, s.sumY, s.sumZ, s.logCount from UserLocationDaySum s where s.key.localDate between ?1 and ?2")
+	List<Object[]> findSumsByLocalDateBetween(LocalDate start, LocalDate end);
+
+	@Modifying
+	@Query("delete from UserLocationDaySum s where s.key.localDate between ?1 and ?2")
+	void deleteByLocalDateBetween(LocalDate start, LocalDate end);
+
+	@Modifying
+	@Query("delete from UserLocationDaySum s where s.key.localDate < ?1")
+	void deleteByLocalDateBefore(LocalDate localDate);
+
+}
@@ -23,4 +23,10 @@ public interface UserLogRepository extends JpaRepository<UserLog, Long>, JpaSpec
     void deleteAllByUserUidAndUserLogTypeIn(String userUid, List<UserLogType> userLogTypeList);
 
     List<UserLog> findByUserUidInAndUserLogType(Collection<String> userUids, UserLogType userLogType);
+
+    @Query("SELECT distinct ul.userUid FROM UserLog ul WHERE ul.userUid in ?1 AND ul.userLogType = ?2")
+    List<String> findDistinctUserUidsByUserUidInAndUserLogType(Collection<String> userUids, UserLogType userLogType);
+
+    @Query("SELECT ul.uid FROM UserLog ul WHERE ul.uid in ?1")
+    List<String> findUidsByUidIn(Collection<String> uids);
 }
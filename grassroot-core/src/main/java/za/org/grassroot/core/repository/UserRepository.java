@@ -2,6 +2,8 @@ package za.org.grassroot.core.repository;
 
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import za.org.grassroot.core.domain.User;
@@ -10,11 +12,18 @@ import za.org.grassroot.core.domain.notification.EventNotification;
 import za.org.grassroot.core.domain.task.Event;
 import za.org.grassroot.core.dto.UserMinimalProjection;
 
+import javax.persistence.LockModeType;
+import java.util.Collection;
 import java.util.List;
 import java.util.Set;
 
 public interface UserRepository extends JpaRepository<User, Long>, JpaSpecificationExecutor<User> {
 
+    // row lock, so that two requests adding the same user to a group cannot both find them not yet a member
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select u from User u where u.id = ?1")
+    User lockById(Long userId);
+
     /*
     Since phoneNumbers are unique, replacing the prior method, which returned a list of Users, with this, for efficiency
     Note: can now no longer rely on NoSuchElement exceptions to catch 'no such user', probably should now do ourselves
@@ -77,9 +86,21 @@ public interface UserRepository extends JpaRepository<User, Long>, JpaSpecificat
             "where e = ?1 and type(n) = ?2")
     List<User> findNotificationTargetsForEvent(Event event, Class<? extends EventNotification> notificationClass);
 
-    @Query("select lower(u.emailAddress) from User u where u.enabled = true")
-    Set<String> fetchUsedEmailAddresses();
+    // for resolving a batch of imported members in one go; callers should keep the collections to a few hundred entries
+    List<User> findByPhoneNumberIn(Collection<String> phoneNumbers);
+
+    @Query("select u from User u where lower(u.emailAddress) in :emailAddresses")
+    List<User> findByLowerCaseEmailAddressIn(@Param("emailAddresses") Collection<String> emailAddresses);
+
+    // these set a profile flag on those of the users that do not have it yet, bumping the version as an entity update would
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update User u set u.hasWebProfile = true, u.version = u.version + 1 where u.uid in ?1 and u.hasWebProfile = false")
+    int setHasWebProfile(Collection<String> userUids);
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update User u set u.hasAndroidProfile = true, u.version = u.version + 1 where u.uid in ?1 and u.hasAndroidProfile = false")
+    int setHasAndroidProfile(Collection<String> userUids);
 
-    @Query("select u.phoneNumber from User u where u.enabled = true")
-    Set<String> fetchUserPhoneNumbers();
+    @Query("select u from User u where u.uid in ?1 and u.hasInitiatedSession = false")
+    List<User> findByUidInWithoutInitiatedSession(Collection<String> userUids);
 }
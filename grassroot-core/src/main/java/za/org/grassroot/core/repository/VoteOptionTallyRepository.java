@@ -0,0 +1,45 @@
+package za.org.grassroot.core.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import za.org.grassroot.core.domain.task.VoteOptionTally;
+import za.org.grassroot.core.domain.task.VoteOptionTallyKey;
+
+import javax.persistence.LockModeType;
+import java.util.Collection;
+import java.util.List;
+
+public interface VoteOptionTallyRepository extends JpaRepository<VoteOptionTally, VoteOptionTallyKey> {
+
+	// returns the number of rows updated, i.e., zero if the vote's tally has not been set up with that option
+	@Modifying
+	@Query("update VoteOptionTally t set t.count = t.count + ?4 where t.key.voteId = ?1 and t.key.option = ?2 and t.key.stripe = ?3")
+	int addToCount(Long voteId, String option, int stripe, long delta);
+
+	@Query("select count(t) from VoteOptionTally t where t.key.voteId = ?1 and t.key.stripe = ?2 and t.key.option in ?3")
+	long countRows(Long voteId, int stripe, Collection<String> options);
+
+	// rows are locked in the order returned, so every caller that locks more than one row must lock through these
+	@Lock(LockModeType.PESSIMISTIC_WRITE)
+	@Query("select t from VoteOptionTally t where t.key.voteId = ?1 and t.key.stripe = ?2 and t.key.option in ?3 order by t.key.option")
+	List<VoteOptionTally> lockRows(Long voteId, int stripe, Collection<String> options);
+
+	@Lock(LockModeType.PESSIMISTIC_WRITE)
+	@Query("select t from VoteOptionTally t where t.key.voteId = ?1 order by t.key.option, t.key.stripe")
+	List<VoteOptionTally> lockRows(Long voteId);
+
+	@Modifying
+	@Query("update VoteOptionTally t set t.count = 0 where t.key.voteId = ?1")
+	void resetCounts(Long voteId);
+
+	@Modifying
+	@Query(value = "insert into vote_option_tally (vote_id, vote_option, stripe, vote_count) values (?1, ?2, ?3, ?4)", nativeQuery = true)
+	void insertCount(Long voteId, String option, int stripe, long count);
+
+	// rows of option and count
+	@Query("select t.key.option, sum(t.count) from VoteOptionTally t where t.key.voteId = ?1 group by t.key.option")
+	List<Object[]> sumCountsByVoteId(Long voteId);
+
+}
@@ -4,12 +4,15 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Lock;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.transaction.annotation.Transactional;
 import za.org.grassroot.core.domain.User;
 import za.org.grassroot.core.domain.group.Group;
 import za.org.grassroot.core.domain.task.Vote;
 
+import javax.persistence.LockModeType;
+
 import java.time.Instant;
 import java.util.List;
 
@@ -30,5 +33,10 @@ public interface VoteRepository extends JpaRepository<Vote, Long>, JpaSpecificat
 			"AND (SELECT count(el) FROM EventLog el WHERE el.eventLogType = za.org.grassroot.core.enums.EventLogType.RESULT AND e = el.event) = 0")
 	List<Vote> findUnsentVoteResults(Instant intervalStart, Instant intervalEnd);
 
+	// so that only one transaction at a time rebuilds a vote's tally
+	@Lock(LockModeType.PESSIMISTIC_WRITE)
+	@Query(value = "select v from Vote v where v.id = ?1")
+	Vote lockById(Long voteId);
+
 
 }
@@ -3,10 +3,16 @@ package za.org.grassroot.core.specifications;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.util.StringUtils;
+import za.org.grassroot.core.PostgreSQLDialectArray;
 import za.org.grassroot.core.domain.GroupRole;
+import za.org.grassroot.core.domain.TagHolder;
 import za.org.grassroot.core.domain.User;
 import za.org.grassroot.core.domain.User_;
+import za.org.grassroot.core.domain.campaign.CampaignLog;
+import za.org.grassroot.core.domain.campaign.CampaignLog_;
+import za.org.grassroot.core.domain.campaign.Campaign_;
 import za.org.grassroot.core.domain.group.*;
+import za.org.grassroot.core.enums.CampaignLogType;
 import za.org.grassroot.core.enums.Province;
 
 import javax.persistence.criteria.*;
@@ -42,7 +48,10 @@ public class MembershipSpecifications {
                                                                   Collection<Province> provinces,
                                                                   Boolean unknownProvince,
                                                                   Collection<String> taskTeamsUids,
+                                                                  Collection<String> topics,
+                                                                  Collection<String> affiliations,
                                                                   Collection<GroupJoinMethod> joinMethods,
+                                                                  Collection<String> joinedCampaignsUids,
                                                                   Integer joinDaysAgo,
                                                                   LocalDate joinDate,
                                                                   JoinDateCondition joinDaysAgoCondition,
@@ -68,10 +77,32 @@ public class MembershipSpecifications {
                 restrictions.add(cb.equal(root.get(Membership_.group), group));
             }
 
+            if (topics != null && !topics.isEmpty()) {
+                // this is an "and" filter, at present
+                topics.forEach(topic -> restrictions.add(hasTag(root, cb, TagHolder.TOPIC_PREFIX + topic)));
+            }
+
+            if (affiliations != null && !affiliations.isEmpty()) {
+                // whereas this is an "or" filter
+                restrictions.add(cb.or(affiliations.stream()
+                        .map(affiliation -> hasTag(root, cb, Membership.AFFILIATION_TAG + affiliation))
+                        .toArray(Predicate[]::new)));
+            }
+
             if (joinMethods != null && !joinMethods.isEmpty()) {
                 restrictions.add(root.get(Membership_.joinMethod).in(joinMethods));
             }
 
+            if (joinedCampaignsUids != null && !joinedCampaignsUids.isEmpty()) {
+                Subquery<Long> campaignJoiners = query.subquery(Long.class);
+                Root<CampaignLog> campaignLog = campaignJoiners.from(CampaignLog.class);
+                campaignJoiners.select(campaignLog.get(CampaignLog_.user).get(User_.id)).where(
+                        cb.equal(campaignLog.get(CampaignLog_.campaignLogType), CampaignLogType.CAMPAIGN_USER_ADDED_TO_MASTER_GROUP),
+                        cb.equal(campaignLog.get(CampaignLog_.campaign).get(Campaign_.masterGroup), group),
+                        campaignLog.get(CampaignLog_.campaign).get(Campaign_.uid).in(joinedCampaignsUids));
+                restrictions.add(root.get(Membership_.user).get(User_.id).in(campaignJoiners));
+            }
+
             if (groupRole != null) {
                 restrictions.add(cb.equal(root.get(Membership_.role), groupRole));
             }
@@ -126,6 +157,11 @@ public class MembershipSpecifications {
 
     }
 
+    private static Predicate hasTag(Root<Membership> root, CriteriaBuilder cb, String tag) {
+        return cb.isTrue(cb.function(PostgreSQLDialectArray.TEXT_ARRAY_CONTAINS, Boolean.class,
+                root.get(Membership_.tags), cb.literal(tag)));
+    }
+
     private static Specification<Membership> hasRole(GroupRole roleName) {
         return (root, query, cb) -> cb.equal(root.get(Membership_.role), roleName);
     }
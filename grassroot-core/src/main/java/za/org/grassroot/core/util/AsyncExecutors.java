@@ -0,0 +1,37 @@
+package za.org.grassroot.core.util;
+
+/**
+ * Names of the executors that @Async work, and the batches of the larger scheduled jobs, are split over, by kind of
+ * work, so that one kind backing up (e.g., a large member import) does not hold up the others (e.g., USSD session logs).
+ * Work not named for one of these goes to the default async executor. Each is bounded, and set up, with what it does
+ * when full, in AsyncExecutorConfig.
+ */
+public final class AsyncExecutors {
+
+    // user logs that are read back or change the user, e.g., logins, language changes; run on the caller when full
+    public static final String USER_LOG = "userLogExecutor";
+
+    // session, interruption and date input logs that the activity buffer could not take, only used for reporting, so
+    // dropped when full
+    public static final String SESSION_LOG = "sessionLogExecutor";
+
+    // storing log and notification bundles after commit; run on the caller when full
+    public static final String NOTIFICATIONS = "notificationExecutor";
+
+    // calls out to the graph, and deletes of stored images; run on the caller when full, as a dropped call is not redone
+    public static final String SIDE_EFFECTS = "sideEffectExecutor";
+
+    // adding members to groups and subgroups off the request thread; run on the caller when full
+    public static final String MEMBER_IMPORT = "memberImportExecutor";
+
+    // batches of event reminders, thank yous and response totals, from the scheduled jobs; run on the caller when full
+    public static final String REMINDERS = "reminderExecutor";
+
+    // batches of group and meeting location calculations, from the nightly job; run on the caller when full
+    public static final String GEO = "geoExecutor";
+
+    private AsyncExecutors() {
+        // constants only
+    }
+
+}
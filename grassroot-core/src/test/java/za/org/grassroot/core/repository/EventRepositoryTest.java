@@ -13,17 +13,21 @@ import org.springframework.test.context.junit4.SpringRunner;
 import za.org.grassroot.TestContextConfiguration;
 import za.org.grassroot.core.domain.GroupRole;
 import za.org.grassroot.core.domain.User;
+import za.org.grassroot.core.domain.account.Account;
 import za.org.grassroot.core.domain.group.Group;
 import za.org.grassroot.core.domain.group.GroupJoinMethod;
 import za.org.grassroot.core.domain.group.GroupPermissionTemplate;
 import za.org.grassroot.core.domain.task.*;
 import za.org.grassroot.core.dto.task.TaskTimeChangedDTO;
+import za.org.grassroot.core.enums.AccountType;
 import za.org.grassroot.core.enums.EventLogType;
 import za.org.grassroot.core.specifications.EventSpecifications;
 import za.org.grassroot.core.util.DateTimeUtil;
 
 import java.time.Instant;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.LocalTime;
 import java.time.ZoneOffset;
 import java.time.temporal.ChronoField;
 import java.time.temporal.ChronoUnit;
@@ -54,6 +58,9 @@ public class EventRepositoryTest {
     @Autowired
     private UserRepository userRepository;
 
+    @Autowired
+    private AccountRepository accountRepository;
+
     @Test
     public void shouldSaveAndRetrieveEventData() {
 
@@ -645,4 +652,38 @@ public class EventRepositoryTest {
 
     }
 
+    @Test
+    public void shouldOnlyFetchReminderIdsForPaidGroupsUnlessIncluded() {
+        User user = userRepository.save(new User("0710002222", null, null));
+        Account account = new Account(user, "test", AccountType.ENTERPRISE, user);
+        account.setEnabled(true);
+        accountRepository.save(account);
+        Group paidGroup = new Group("paid", GroupPermissionTemplate.DEFAULT_GROUP, user);
+        paidGroup.setPaidFor(true);
+        account.addPaidGroup(paidGroup);
+        groupRepository.save(paidGroup);
+        Group unpaidGroup = groupRepository.save(new Group("unpaid", GroupPermissionTemplate.DEFAULT_GROUP, user));
+
+        Instant startTime = LocalDateTime.of(LocalDate.now().plusDays(3), LocalTime.NOON).atZone(DateTimeUtil.getSAST()).toInstant();
+        Event paidMeeting = new MeetingBuilder().setName("paid").setStartDateTime(startTime).setUser(user).setParent(paidGroup)
+                .setEventLocation("loc").setReminderType(EventReminderType.CUSTOM).setCustomReminderMinutes(60).createMeeting();
+        Event unpaidMeeting = new MeetingBuilder().setName("unpaid").setStartDateTime(startTime).setUser(user).setParent(unpaidGroup)
+                .setEventLocation("loc").setReminderType(EventReminderType.CUSTOM).setCustomReminderMinutes(60).createMeeting();
+        paidMeeting.setScheduledReminderActive(true);
+        unpaidMeeting.setScheduledReminderActive(true);
+        eventRepository.save(paidMeeting);
+        eventRepository.save(unpaidMeeting);
+
+        Instant referenceTime = startTime.minus(1, ChronoUnit.MINUTES);
+        List<Long> paidOnly = eventRepository.findEventIdsForReminders(referenceTime, false);
+        assertThat(paidOnly.size(), is(1));
+        assertTrue(paidOnly.contains(paidMeeting.getId()));
+
+        List<Long> allGroups = eventRepository.findEventIdsForReminders(referenceTime, true);
+        assertThat(allGroups.size(), is(2));
+        assertTrue(allGroups.contains(unpaidMeeting.getId()));
+
+        assertTrue(eventRepository.findEventIdsForReminders(startTime.minus(2, ChronoUnit.HOURS), true).isEmpty());
+    }
+
 }
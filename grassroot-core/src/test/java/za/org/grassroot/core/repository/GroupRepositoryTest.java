@@ -5,14 +5,18 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit4.SpringRunner;
 import za.org.grassroot.TestContextConfiguration;
 import za.org.grassroot.core.domain.GroupRole;
 import za.org.grassroot.core.domain.Permission;
 import za.org.grassroot.core.domain.User;
+import za.org.grassroot.core.domain.geo.GeoLocation;
+import za.org.grassroot.core.domain.geo.UserLocationLog;
 import za.org.grassroot.core.domain.group.*;
 import za.org.grassroot.core.domain.task.Event;
 import za.org.grassroot.core.domain.task.MeetingBuilder;
@@ -20,7 +24,9 @@ import za.org.grassroot.core.domain.task.Todo;
 import za.org.grassroot.core.domain.task.TodoType;
 import za.org.grassroot.core.enums.GroupDefaultImage;
 import za.org.grassroot.core.enums.GroupLogType;
+import za.org.grassroot.core.enums.LocationSource;
 import za.org.grassroot.core.enums.Province;
+import za.org.grassroot.core.specifications.MembershipSpecifications;
 
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
@@ -50,12 +56,24 @@ public class GroupRepositoryTest {
     @Autowired
     private GroupLogRepository groupLogRepository;
 
+    @Autowired
+    private MembershipRepository membershipRepository;
+
+    @Autowired
+    private GroupStatsCountRepository groupStatsCountRepository;
+
     @Autowired
     private EventRepository eventRepository;
 
     @Autowired
     private TodoRepository todoRepository;
 
+    @Autowired
+    private UserLocationLogRepository userLocationLogRepository;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
     @Test
     public void shouldSaveUpComingEvents() {
 
@@ -720,6 +738,103 @@ public class GroupRepositoryTest {
         assertFalse(group2.isPaidFor());
     }
 
+    @Test
+    public void shouldFindActiveGroupsWithMemberLocationChanges() {
+        User user1 = userRepository.save(new User("0801112222", null, null));
+        User user2 = userRepository.save(new User("0801112223", null, null));
+        Group group1 = new Group("located", GroupPermissionTemplate.DEFAULT_GROUP, user1);
+        group1.addMember(user1, GroupRole.ROLE_GROUP_ORGANIZER, GroupJoinMethod.ADDED_AT_CREATION, null);
+        Group group2 = new Group("unlocated", GroupPermissionTemplate.DEFAULT_GROUP, user2);
+        group2.addMember(user2, GroupRole.ROLE_GROUP_ORGANIZER, GroupJoinMethod.ADDED_AT_CREATION, null);
+        Group group3 = new Group("inactive", GroupPermissionTemplate.DEFAULT_GROUP, user1);
+        group3.setActive(false);
+        groupRepository.save(group1);
+        groupRepository.save(group2);
+        groupRepository.save(group3);
+
+        Instant now = Instant.now();
+        userLocationLogRepository.save(new UserLocationLog(now, user1.getUid(), new GeoLocation(-26.2, 28.0), LocationSource.LOGGED_PRECISE));
+
+        List<Long> activeGroupIds = groupRepository.findActiveGroupIdsAfter(0, PageRequest.of(0, 10));
+        assertThat(activeGroupIds, is(Arrays.asList(group1.getId(), group2.getId())));
+        assertThat(groupRepository.findActiveGroupIdsAfter(group1.getId(), PageRequest.of(0, 10)), is(Collections.singletonList(group2.getId())));
+
+        List<Long> changedGroupIds = membershipRepository.findGroupIdsWithMemberLocationLogsBetween(activeGroupIds,
+                now.minus(2, ChronoUnit.DAYS), now.minus(1, ChronoUnit.DAYS), now.minus(1, ChronoUnit.HOURS), now.plus(1, ChronoUnit.HOURS));
+        assertThat(changedGroupIds, is(Collections.singletonList(group1.getId())));
+        assertTrue(membershipRepository.findGroupIdsWithMemberLocationLogsBetween(activeGroupIds, now.minus(2, ChronoUnit.DAYS),
+                now.minus(1, ChronoUnit.DAYS), now.plus(1, ChronoUnit.HOURS), now.plus(2, ChronoUnit.HOURS)).isEmpty());
+    }
+
+    @Test
+    public void shouldBulkUpdateChangeTimesWithoutVersioningGroups() {
+        User user = userRepository.save(new User("0801114444", null, null));
+        Group group1 = groupRepository.save(new Group("changed", GroupPermissionTemplate.DEFAULT_GROUP, user));
+        Group group2 = groupRepository.save(new Group("unchanged", GroupPermissionTemplate.DEFAULT_GROUP, user));
+        entityManager.flush();
+        Integer version = group1.getVersion();
+
+        Instant changeTime = Instant.now().plus(1, ChronoUnit.HOURS).truncatedTo(ChronoUnit.SECONDS);
+        assertEquals(1, groupRepository.updateLastGroupChangeTime(Collections.singleton(group1.getId()), changeTime));
+        assertEquals(1, groupRepository.updateLastTaskCreationTime(Collections.singleton(group1.getId()), changeTime));
+        entityManager.clear();
+
+        Group updated = groupRepository.findOneByUid(group1.getUid());
+        assertThat(updated.getLastGroupChangeTime(), is(changeTime));
+        assertThat(updated.getLastTaskCreationTime(), is(changeTime));
+        assertThat(updated.getVersion(), is(version));
+        assertNotEquals(changeTime, groupRepository.findOneByUid(group2.getUid()).getLastGroupChangeTime());
+    }
+
+    @Test
+    public void shouldPageMemberGroupsByLatestActivity() {
+        User user = userRepository.save(new User("0801114445", null, null));
+        List<Group> groups = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            Group group = new Group("activity " + i, GroupPermissionTemplate.DEFAULT_GROUP, user);
+            group.addMember(user, i % 2 == 0 ? GroupRole.ROLE_GROUP_ORGANIZER : GroupRole.ROLE_ORDINARY_MEMBER,
+                    GroupJoinMethod.ADDED_AT_CREATION, null);
+            groups.add(groupRepository.save(group));
+        }
+        entityManager.flush();
+
+        // the oldest group becomes the most recently active, and the two middle ones tie
+        Instant now = Instant.now().truncatedTo(ChronoUnit.SECONDS);
+        groupRepository.updateLastGroupChangeTime(Collections.singleton(groups.get(0).getId()), now.plus(2, ChronoUnit.HOURS));
+        groupRepository.updateLastTaskCreationTime(Arrays.asList(groups.get(1).getId(), groups.get(2).getId()), now.plus(1, ChronoUnit.HOURS));
+        entityManager.clear();
+
+        List<Group> firstPage = groupRepository.findActiveGroupsByLatestActivity(user, PageRequest.of(0, 2));
+        assertThat(firstPage.get(0).getUid(), is(groups.get(0).getUid()));
+        assertThat(firstPage.get(1).getUid(), is(groups.get(2).getUid()));
+
+        List<Group> secondPage = groupRepository.findActiveGroupsByLatestActivity(user, PageRequest.of(1, 2));
+        assertThat(secondPage.size(), is(2));
+        assertThat(secondPage.get(0).getUid(), is(groups.get(1).getUid()));
+
+        List<Group> organiserGroups = groupRepository.findActiveGroupsWithPermissionByLatestActivity(user,
+                Permission.GROUP_PERMISSION_DELETE_GROUP_MEMBER, Pageable.unpaged());
+        assertThat(organiserGroups.size(), is(3));
+        assertThat(organiserGroups.get(1).getUid(), is(groups.get(2).getUid()));
+    }
+
+    @Test
+    public void shouldNotMoveLatestActivityBackwards() {
+        User user = userRepository.save(new User("0801114446", null, null));
+        Group group = groupRepository.save(new Group("late logs", GroupPermissionTemplate.DEFAULT_GROUP, user));
+        entityManager.flush();
+
+        Instant now = Instant.now().truncatedTo(ChronoUnit.SECONDS);
+        groupRepository.updateLastTaskCreationTime(Collections.singleton(group.getId()), now.plus(1, ChronoUnit.HOURS));
+        // e.g., a bundle held back by the write-behind, stored after a later one
+        groupRepository.updateLastGroupChangeTime(Collections.singleton(group.getId()), now.minus(1, ChronoUnit.HOURS));
+        entityManager.clear();
+
+        Group updated = groupRepository.findOneByUid(group.getUid());
+        assertThat(updated.getLastGroupChangeTime(), is(now.minus(1, ChronoUnit.HOURS)));
+        assertThat(updated.getLatestActivity(), is(now.plus(1, ChronoUnit.HOURS)));
+    }
+
     @Test
     public void shouldFindByPermission() {
         assertThat(groupRepository.count(), is(0L));
@@ -872,6 +987,64 @@ public class GroupRepositoryTest {
         assertEquals(Optional.of(1L).get(), Optional.ofNullable(data.get(GroupJoinMethod.ADDED_BY_SYS_ADMIN.name())).get());
     }
 
-}
+    @Test
+    public void shouldFilterMembersOnTopicsAndAffiliationsInQuery() {
+        User createdByUser = userRepository.save(new User("0993234460", null, null));
+        User groupUser1 = userRepository.save(new User("0993234461", null, null));
+        User groupUser2 = userRepository.save(new User("0993234462", null, null));
+        Group group = new Group("test", GroupPermissionTemplate.DEFAULT_GROUP, createdByUser);
+        group.addMember(createdByUser, GroupRole.ROLE_GROUP_ORGANIZER, GroupJoinMethod.ADDED_AT_CREATION, null);
+        Membership member1 = group.addMember(groupUser1, GroupRole.ROLE_ORDINARY_MEMBER, GroupJoinMethod.ADDED_BY_OTHER_MEMBER, null);
+        Membership member2 = group.addMember(groupUser2, GroupRole.ROLE_ORDINARY_MEMBER, GroupJoinMethod.ADDED_BY_OTHER_MEMBER, null);
+        member1.setTopics(new HashSet<>(Arrays.asList("housing", "water")));
+        member1.addAffiliations(Collections.singleton("union"));
+        member2.setTopics(Collections.singleton("water"));
+        groupRepository.save(group);
 
+        List<Membership> withBothTopics = membershipRepository.findAll(MembershipSpecifications.filterGroupMembership(group,
+                null, null, null, Arrays.asList("housing", "water"), null, null, null,
+                null, null, null, null, null, null));
+        assertEquals(1, withBothTopics.size());
+        assertEquals(groupUser1, withBothTopics.get(0).getUser());
+
+        List<Membership> withWater = membershipRepository.findAll(MembershipSpecifications.filterGroupMembership(group,
+                null, null, null, Collections.singletonList("water"), null, null, null,
+                null, null, null, null, null, null));
+        assertEquals(2, withWater.size());
+
+        List<Membership> withAffiliation = membershipRepository.findAll(MembershipSpecifications.filterGroupMembership(group,
+                null, null, null, null, Arrays.asList("union", "church"), null, null,
+                null, null, null, null, null, null));
+        assertEquals(1, withAffiliation.size());
+        assertEquals(groupUser1, withAffiliation.get(0).getUser());
+    }
 
+    @Test
+    public void shouldCountTagCombinationsAndAdjustStats() {
+        User createdByUser = userRepository.save(new User("0993234470", null, null));
+        User groupUser1 = userRepository.save(new User("0993234471", null, null));
+        User groupUser2 = userRepository.save(new User("0993234472", null, null));
+        Group group = new Group("test", GroupPermissionTemplate.DEFAULT_GROUP, createdByUser);
+        group.addMember(createdByUser, GroupRole.ROLE_GROUP_ORGANIZER, GroupJoinMethod.ADDED_AT_CREATION, null);
+        group.addMember(groupUser1, GroupRole.ROLE_ORDINARY_MEMBER, GroupJoinMethod.ADDED_BY_OTHER_MEMBER, null)
+                .setTopics(Collections.singleton("water"));
+        group.addMember(groupUser2, GroupRole.ROLE_ORDINARY_MEMBER, GroupJoinMethod.ADDED_BY_OTHER_MEMBER, null)
+                .setTopics(Collections.singleton("water"));
+        group = groupRepository.save(group);
+
+        List<Object[]> tagCounts = membershipRepository.countMembersByTagCombination(group.getUid());
+        assertEquals(1, tagCounts.size());
+        assertEquals(2L, ((Number) tagCounts.get(0)[1]).longValue());
+
+        assertEquals(0, groupStatsCountRepository.adjustCount(group, GroupStatsType.TOPIC, "water", 1));
+        groupStatsCountRepository.save(new GroupStatsCount(group, GroupStatsType.TOPIC, "water", 2));
+        assertEquals(1, groupStatsCountRepository.adjustCount(group, GroupStatsType.TOPIC, "water", 1));
+        groupStatsCountRepository.save(new GroupStatsCount(group, GroupStatsType.TOPIC, "water", 1));
+
+        List<Object[]> topicCounts = groupStatsCountRepository.sumCountsByKey(group.getUid(), GroupStatsType.TOPIC);
+        assertEquals(1, topicCounts.size());
+        assertEquals(4L, ((Number) topicCounts.get(0)[1]).longValue());
+        assertEquals(0, groupStatsCountRepository.countByGroupUidAndStatType(group.getUid(), GroupStatsType.MEMBERS));
+    }
+
+}
@@ -380,7 +380,7 @@ public class UserRepositoryTest {
 
         User secondUserToCreate = new User("12345", null, null);
 
-        userRepository.save(secondUserToCreate);
+        userRepository.saveAndFlush(secondUserToCreate);
         fail("Saving a user with the phone number of an already existing user should throw an exception");
     }
 
@@ -545,4 +545,18 @@ public class UserRepositoryTest {
 
     }
 
+    @Test
+    public void shouldFindOnlyRequestedUsersByPhoneAndEmail() {
+        userRepository.save(new User("27800000001", "first", "First@Example.com"));
+        userRepository.save(new User("27800000002", "second", null));
+        userRepository.save(new User("27800000003", "third", "third@example.com"));
+
+        List<User> byPhone = userRepository.findByPhoneNumberIn(Arrays.asList("27800000002", "27800000003", "27800000009"));
+        assertThat(byPhone.size(), is(2));
+
+        List<User> byEmail = userRepository.findByLowerCaseEmailAddressIn(Arrays.asList("first@example.com", "none@example.com"));
+        assertThat(byEmail.size(), is(1));
+        assertThat(byEmail.get(0).getPhoneNumber(), is("27800000001"));
+    }
+
 }
@@ -3,7 +3,9 @@ package za.org.grassroot.integration.authentication;
 import org.springframework.http.HttpHeaders;
 import za.org.grassroot.integration.PublicCredentials;
 
+import java.time.Duration;
 import java.util.List;
+import java.util.Optional;
 
 /**
  * Created by luke on 2017/05/22.
@@ -21,6 +23,16 @@ public interface JwtService {
 
     HttpHeaders createHeadersForLambdaCall();
 
+    Duration getTokenLifetime(JwtType jwtType);
+
+    /**
+     * Verifies the token once and returns its claims, or empty if it is invalid or expired. Prefer this to calling
+     * the single-claim methods below one after another, each of which has to look the token up again.
+     */
+    Optional<VerifiedJwt> verifyJwtToken(String token);
+
+    VerifiedJwtCache.Stats getVerificationStats();
+
     boolean isJwtTokenValid(String token);
 
     boolean isJwtTokenExpired(String token);
@@ -9,7 +9,6 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.env.Environment;
 import org.springframework.http.HttpHeaders;
 import org.springframework.stereotype.Service;
-import org.springframework.util.StringUtils;
 import za.org.grassroot.integration.PublicCredentials;
 
 import javax.annotation.PostConstruct;
@@ -18,6 +17,7 @@ import java.time.Duration;
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
 import java.util.*;
+import java.util.function.Function;
 
 /**
  * Created by luke on 2017/05/22.
@@ -37,11 +37,13 @@ public class JwtServiceImpl implements JwtService {
 
     private final Environment environment;
     private final KeyPairProvider keyPairProvider;
+    private final VerifiedJwtCache verifiedJwtCache;
 
     @Autowired
-    public JwtServiceImpl(Environment environment, KeyPairProvider keyPairProvider) {
+    public JwtServiceImpl(Environment environment, KeyPairProvider keyPairProvider, VerifiedJwtCache verifiedJwtCache) {
         this.environment = environment;
         this.keyPairProvider = keyPairProvider;
+        this.verifiedJwtCache = verifiedJwtCache;
     }
 
     @PostConstruct
@@ -85,6 +87,11 @@ public class JwtServiceImpl implements JwtService {
         return headers;
     }
 
+    @Override
+    public Duration getTokenLifetime(JwtType jwtType) {
+        return Duration.ofMillis(convertTypeToExpiryMillis(jwtType));
+    }
+
     private long convertTypeToExpiryMillis(JwtType jwtType) {
         switch (jwtType) {
             case WEB_ANDROID_CLIENT:
@@ -101,29 +108,38 @@ public class JwtServiceImpl implements JwtService {
     }
 
     @Override
-    public boolean isJwtTokenValid(String token) {
+    public Optional<VerifiedJwt> verifyJwtToken(String token) {
         try {
-            Jwts.parser().setSigningKey(keyPairProvider.getJWTKey().getPublic()).parse(token);
-            return true;
+            return Optional.of(verify(token));
         }
         catch (ExpiredJwtException e) {
             logger.error("Token validation failed. The token is expired. Exception: {}", e.getMessage());
-            return false;
+            return Optional.empty();
         }
         catch (SignatureException e) {
             logger.error("Token validation failed, wrong signature. Exception: {}", e.getMessage());
-            return false;
+            return Optional.empty();
         }
         catch (Exception e) {
             logger.error("Unexpected token validation error.", e);
-            return false;
+            return Optional.empty();
         }
     }
 
+    @Override
+    public VerifiedJwtCache.Stats getVerificationStats() {
+        return verifiedJwtCache.getStats();
+    }
+
+    @Override
+    public boolean isJwtTokenValid(String token) {
+        return verifyJwtToken(token).isPresent();
+    }
+
     @Override
     public boolean isJwtTokenExpired(String token) {
         try {
-            Jwts.parser().setSigningKey(keyPairProvider.getJWTKey().getPublic()).parse(token).getBody();
+            verify(token);
             return false;
         }
         catch (ExpiredJwtException e) {
@@ -138,21 +154,18 @@ public class JwtServiceImpl implements JwtService {
 
     @Override
     public String getUserIdFromJwtToken(String token) {
-        return extractFromToken(USER_UID_KEY, token);
+        return extractFromToken(VerifiedJwt::getUserUid, token);
     }
 
     @Override
     public List<String> getPermissionsFromToken(String token) {
-        String permissionList = extractFromToken(PERMISSIONS_KEY, token);
-        return StringUtils.isEmpty(permissionList) ? new ArrayList<>() :
-                Arrays.asList(permissionList.split(","));
+        List<String> permissions = extractFromToken(VerifiedJwt::getPermissions, token);
+        return permissions == null ? new ArrayList<>() : new ArrayList<>(permissions);
     }
 
-    private String extractFromToken(String key, String token) {
+    private <T> T extractFromToken(Function<VerifiedJwt, T> claim, String token) {
         try {
-            Claims claims = Jwts.parser().setSigningKey(keyPairProvider.getJWTKey().getPublic())
-                    .parseClaimsJws(token).getBody();
-            return claims.get(key, String.class);
+            return claim.apply(verify(token));
         } catch (Exception e) {
             logger.error("Failed to get user id from jwt token: {}", e.getMessage());
             return null;
@@ -161,13 +174,17 @@ public class JwtServiceImpl implements JwtService {
 
     @Override
     public List<String> getStandardRolesFromJwtToken(String token) {
-        String joinedRoles = extractClaims(token).get(SYSTEM_ROLE_KEY, String.class);
-        return StringUtils.isEmpty(joinedRoles) ? new ArrayList<>() : Arrays.asList(joinedRoles.split(","));
+        return new ArrayList<>(verify(token).getStandardRoles());
+    }
+
+    // throws if the token is invalid, and otherwise only checks the signature if the token is not already cached
+    private VerifiedJwt verify(String token) {
+        return verifiedJwtCache.get(token, this::parseAndVerify);
     }
 
-    private Claims extractClaims(String token) {
-        return Jwts.parser().setSigningKey(keyPairProvider.getJWTKey().getPublic())
-                .parseClaimsJws(token).getBody();
+    private VerifiedJwt parseAndVerify(String token) {
+        return new VerifiedJwt(Jwts.parser().setSigningKey(keyPairProvider.getJWTKey().getPublic())
+                .parseClaimsJws(token).getBody());
     }
 
     private PublicCredentials refreshPublicCredentials() {
@@ -0,0 +1,91 @@
+package za.org.grassroot.integration.authentication;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * Mints the token used to call our own microservices and hands the same one out until shortly before it expires, so
+ * that a burst of calls (e.g., a broadcast) pays for one RSA signature rather than one per call. A token is handed out
+ * only while it has at least the refresh margin left, which callers that wait between taking the token and sending it
+ * (e.g., for a pooled connection) raise to cover that wait, through {@link #requireValidityOf}.
+ */
+@Component @Slf4j
+public class MicroserviceTokenProvider {
+
+    private final JwtService jwtService;
+
+    @Value("${grassroot.jwt.microservice.refresh-margin.inMilliseconds:1000}")
+    private long refreshMarginMillis;
+
+    private volatile long requiredValidityMillis;
+    private volatile IssuedToken current;
+
+    public MicroserviceTokenProvider(JwtService jwtService) {
+        this.jwtService = jwtService;
+    }
+
+    /**
+     * Makes sure every token handed out stays valid for at least the given time. Called at startup, and fails there if
+     * that is longer than a token lives, rather than have calls rejected as expired later.
+     */
+    public synchronized void requireValidityOf(Duration validity) {
+        Duration lifetime = jwtService.getTokenLifetime(JwtType.GRASSROOT_MICROSERVICE);
+        if (validity.compareTo(lifetime) >= 0) {
+            throw new IllegalStateException("Microservice tokens live for " + lifetime.toMillis() +
+                    " msecs, which does not cover the " + validity.toMillis() + " msecs required of them");
+        }
+        requiredValidityMillis = Math.max(requiredValidityMillis, validity.toMillis());
+        current = null;
+        log.info("Microservice tokens now handed out with at least {} msecs left", refreshMargin());
+    }
+
+    public String getBearerHeader() {
+        return "Bearer " + getToken();
+    }
+
+    public String getToken() {
+        IssuedToken token = current;
+        if (token != null && token.isUsableAt(Instant.now())) {
+            return token.value;
+        }
+        return refresh();
+    }
+
+    // only one thread mints, the others pick up its token on the second check
+    private synchronized String refresh() {
+        final Instant now = Instant.now();
+        IssuedToken token = current;
+        if (token != null && token.isUsableAt(now)) {
+            return token.value;
+        }
+        Duration lifetime = jwtService.getTokenLifetime(JwtType.GRASSROOT_MICROSERVICE);
+        String value = jwtService.createJwt(new CreateJwtTokenRequest(JwtType.GRASSROOT_MICROSERVICE));
+        current = new IssuedToken(value, now.plus(lifetime).minusMillis(refreshMargin()));
+        log.debug("Minted microservice token, reusable for {} msecs", lifetime.toMillis() - refreshMargin());
+        return value;
+    }
+
+    private long refreshMargin() {
+        return Math.max(refreshMarginMillis, requiredValidityMillis);
+    }
+
+    private static final class IssuedToken {
+
+        private final String value;
+        private final Instant reuseUntil;
+
+        private IssuedToken(String value, Instant reuseUntil) {
+            this.value = value;
+            this.reuseUntil = reuseUntil;
+        }
+
+        private boolean isUsableAt(Instant time) {
+            return time.isBefore(reuseUntil);
+        }
+    }
+
+}
@@ -0,0 +1,44 @@
+package za.org.grassroot.integration.authentication;
+
+import io.jsonwebtoken.Claims;
+import lombok.Getter;
+import lombok.ToString;
+import org.springframework.util.StringUtils;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The claims of a token whose signature and expiry have been checked, read out once so that callers (and the cache of
+ * verified tokens) never need to go back to the token itself
+ */
+@Getter @ToString
+public class VerifiedJwt {
+
+    private final String userUid;
+    private final List<String> standardRoles;
+    private final List<String> permissions;
+    private final String type;
+    private final Instant expiry;
+
+    VerifiedJwt(Claims claims) {
+        this.userUid = claims.get(JwtService.USER_UID_KEY, String.class);
+        this.standardRoles = splitList(claims.get(JwtService.SYSTEM_ROLE_KEY, String.class));
+        this.permissions = splitList(claims.get(JwtService.PERMISSIONS_KEY, String.class));
+        this.type = claims.get(JwtService.TYPE_KEY, String.class);
+        this.expiry = claims.getExpiration() == null ? null : claims.getExpiration().toInstant();
+    }
+
+    public boolean isExpiredAt(Instant time) {
+        return expiry != null && !time.isBefore(expiry);
+    }
+
+    private static List<String> splitList(String joined) {
+        return StringUtils.isEmpty(joined) ? Collections.emptyList() :
+                Collections.unmodifiableList(new ArrayList<>(Arrays.asList(joined.split(","))));
+    }
+
+}
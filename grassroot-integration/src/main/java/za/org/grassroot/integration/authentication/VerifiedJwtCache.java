@@ -0,0 +1,125 @@
+package za.org.grassroot.integration.authentication;
+
+import com.google.common.hash.Hashing;
+import lombok.Getter;
+import lombok.ToString;
+import lombok.extern.slf4j.Slf4j;
+import net.sf.ehcache.Cache;
+import net.sf.ehcache.CacheManager;
+import net.sf.ehcache.Element;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Holds the claims of recently verified tokens, so that a client sending the same token on every call only pays for
+ * the signature check once. Entries are keyed by a hash of the token, so the tokens themselves are never held, and
+ * never outlive the token's own expiry. Failed verifications are never cached.
+ */
+@Component @Slf4j
+public class VerifiedJwtCache {
+
+    static final String CACHE_NAME = "jwt_verified_claims";
+
+    private final Cache cache;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder verificationNanos = new LongAdder();
+
+    public VerifiedJwtCache(CacheManager cacheManager) {
+        this.cache = cacheManager.getCache(CACHE_NAME);
+    }
+
+    /**
+     * Returns the cached claims for the token if present and unexpired, else runs the verifier (which should throw if
+     * the token is invalid) and caches the result for whatever is left of the token's lifetime, up to the cache's own
+     */
+    public VerifiedJwt get(String token, Function<String, VerifiedJwt> verifier) {
+        final String key = hashToken(token);
+        final Instant now = Instant.now();
+
+        Element element = cache.get(key);
+        if (element != null) {
+            VerifiedJwt cached = (VerifiedJwt) element.getObjectValue();
+            if (!cached.isExpiredAt(now)) {
+                hits.increment();
+                return cached;
+            }
+            cache.remove(key);
+        }
+
+        misses.increment();
+        final long start = System.nanoTime();
+        VerifiedJwt verified;
+        try {
+            verified = verifier.apply(token);
+        } catch (RuntimeException e) {
+            failures.increment();
+            throw e;
+        } finally {
+            verificationNanos.add(System.nanoTime() - start);
+        }
+
+        put(key, verified, now);
+        return verified;
+    }
+
+    private void put(String key, VerifiedJwt verified, Instant now) {
+        long cacheTtl = cache.getCacheConfiguration().getTimeToLiveSeconds();
+        long secondsLeft = verified.getExpiry() == null ? cacheTtl : Duration.between(now, verified.getExpiry()).getSeconds();
+        long ttl = cacheTtl > 0 ? Math.min(cacheTtl, secondsLeft) : secondsLeft;
+        if (ttl <= 0) {
+            return;
+        }
+        Element element = new Element(key, verified);
+        element.setTimeToLive((int) Math.min(ttl, Integer.MAX_VALUE));
+        cache.put(element);
+    }
+
+    private String hashToken(String token) {
+        return Hashing.sha256().hashString(token, StandardCharsets.UTF_8).toString();
+    }
+
+    public Stats getStats() {
+        return new Stats(hits.sum(), misses.sum(), failures.sum(), verificationNanos.sum(), cache.getSize());
+    }
+
+    @Scheduled(fixedRateString = "${grassroot.jwt.cache.stats.interval:900000}")
+    public void logStats() {
+        Stats stats = getStats();
+        if (stats.getHits() + stats.getMisses() > 0) {
+            log.info("Verified JWT cache: {}", stats);
+        }
+    }
+
+    @Getter @ToString
+    public static class Stats {
+
+        private final long hits;
+        private final long misses;
+        private final long failures;
+        private final long meanVerificationMicros;
+        private final int cachedTokens;
+
+        private Stats(long hits, long misses, long failures, long verificationNanos, int cachedTokens) {
+            this.hits = hits;
+            this.misses = misses;
+            this.failures = failures;
+            this.meanVerificationMicros = misses == 0 ? 0 : TimeUnit.NANOSECONDS.toMicros(verificationNanos / misses);
+            this.cachedTokens = cachedTokens;
+        }
+
+        public double getHitRatio() {
+            return hits + misses == 0 ? 0 : (double) hits / (hits + misses);
+        }
+    }
+
+}
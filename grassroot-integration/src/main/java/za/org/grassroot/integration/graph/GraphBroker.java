@@ -2,12 +2,13 @@ package za.org.grassroot.integration.graph;
 
 import org.springframework.scheduling.annotation.Async;
 import za.org.grassroot.core.enums.TaskType;
+import za.org.grassroot.core.util.AsyncExecutors;
 
 import java.util.List;
 import java.util.Set;
 import java.util.Map;
 
-@Async
+@Async(AsyncExecutors.SIDE_EFFECTS)
 public interface GraphBroker {
 
     void addUserToGraph(String userUid);
@@ -2,6 +2,7 @@ package za.org.grassroot.integration.messaging;
 
 import za.org.grassroot.core.dto.GrassrootEmail;
 
+import java.util.Collection;
 import java.util.Map;
 
 /**
@@ -14,10 +15,17 @@ public interface MessagingServiceBroker {
      */
     void sendSMS(String message, String userUid, boolean userRequested);
 
+    // pushes one message per user (keyed by uid), as many at a time as the client's pool allows
+    void sendSMS(Map<String, String> messagesByUserUid, boolean userRequested);
+
     MessageServicePushResponse sendPrioritySMS(String message, String destinationNumber);
 
     void sendEmail(Map<String, String> recipients, GrassrootEmail grassrootEmail);
 
     boolean sendEmail(GrassrootEmail email);
 
+    // pushes the emails in as few calls as the batch size allows, stopping at the first call that fails, and returns the
+    // emails not sent (those in that call and after it), so that a caller retrying sends only those
+    Collection<GrassrootEmail> sendEmails(Collection<GrassrootEmail> emails);
+
 }
@@ -1,34 +1,48 @@
 package za.org.grassroot.integration.messaging;
 
+import com.google.common.collect.Lists;
+import io.netty.channel.ChannelOption;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.http.*;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestClientException;
-import org.springframework.web.client.RestTemplate;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.ExchangeFunction;
 import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
 import org.springframework.web.util.UriComponentsBuilder;
+import reactor.core.Exceptions;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
 import za.org.grassroot.core.dto.GrassrootEmail;
-import za.org.grassroot.integration.authentication.CreateJwtTokenRequest;
-import za.org.grassroot.integration.authentication.JwtService;
-import za.org.grassroot.integration.authentication.JwtType;
+import za.org.grassroot.integration.authentication.MicroserviceTokenProvider;
 
 import javax.annotation.PostConstruct;
-import java.net.URI;
-import java.util.Collections;
-import java.util.HashSet;
-import java.util.Map;
-import java.util.Set;
+import javax.annotation.PreDestroy;
+import java.net.ConnectException;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
 
 /**
  * Created by luke on 2017/05/23.
+ * All calls go through one pooled, non-blocking client: the pool bounds how many calls are in flight at once, callers
+ * beyond that wait (up to the acquire timeout) for a connection, and calls that fail before reaching the service, or
+ * because it is briefly unavailable, are retried with a backoff. Email chunks go one at a time, so that a failure leaves
+ * a clear split between what was sent and what was not.
  */
 @Service @Slf4j
 public class MessagingServiceBrokerImpl implements MessagingServiceBroker {
 
-    private static final String AUTH_HEADER = "Authorization";
+    private static final Duration RETRY_BACKOFF = Duration.ofMillis(200);
 
     @Value("${grassroot.messaging.service.url:http://localhost}")
     private String messagingServiceUrl;
@@ -36,115 +50,164 @@ public class MessagingServiceBrokerImpl implements MessagingServiceBroker {
     @Value("${grassroot.messaging.service.port:8081}")
     private Integer messagingServicePort;
 
-    private final RestTemplate restTemplate;
-    private final JwtService jwtService;
+    @Value("${grassroot.messaging.client.max-connections:50}")
+    private int maxConnections;
 
+    // the token is attached before a call waits for a connection, so it must outlast that wait plus the send allowance,
+    // which the token provider is told at startup (and which must be under the token's lifetime)
+    @Value("${grassroot.messaging.client.acquire-timeout.inMilliseconds:2000}")
+    private long acquireTimeoutMillis;
+
+    // time allowed, once a connection is acquired, for the call to reach the service
+    @Value("${grassroot.messaging.client.send-allowance.inMilliseconds:500}")
+    private long sendAllowanceMillis;
+
+    @Value("${grassroot.messaging.client.connect-timeout.inMilliseconds:5000}")
+    private int connectTimeoutMillis;
+
+    @Value("${grassroot.messaging.client.retries:2}")
+    private int retries;
+
+    @Value("${grassroot.messaging.client.sync-timeout.inMilliseconds:30000}")
+    private long syncTimeoutMillis;
+
+    @Value("${grassroot.messaging.email.batch.size:100}")
+    private int emailBatchSize;
+
+    private final MicroserviceTokenProvider tokenProvider;
+
+    private final AtomicLong failedSmsCount = new AtomicLong();
+
+    private ConnectionProvider connectionProvider;
     private WebClient asyncWebClient;
 
     @Autowired
-    public MessagingServiceBrokerImpl(RestTemplate restTemplate, JwtService jwtService) {
-        this.restTemplate = restTemplate;
-        this.jwtService = jwtService;
+    public MessagingServiceBrokerImpl(MicroserviceTokenProvider tokenProvider) {
+        this.tokenProvider = tokenProvider;
     }
 
     @PostConstruct
     public void init() {
+        tokenProvider.requireValidityOf(Duration.ofMillis(acquireTimeoutMillis + sendAllowanceMillis));
+        this.connectionProvider = ConnectionProvider.fixed("messaging-service", maxConnections, acquireTimeoutMillis);
+        HttpClient httpClient = HttpClient.create(connectionProvider)
+                .tcpConfiguration(client -> client.option(ChannelOption.CONNECT_TIMEOUT_MILLIS, connectTimeoutMillis));
         this.asyncWebClient = WebClient.builder()
+                .clientConnector(new ReactorClientHttpConnector(httpClient))
                 .baseUrl(baseUri().toUriString())
+                .filter(this::withAuthorization)
                 .build();
     }
 
+    // retrieve() runs the filters when the call is assembled, so the header is only set once the exchange is subscribed
+    // to, which each retry does afresh, so that a retried call picks up a current token
+    private Mono<ClientResponse> withAuthorization(ClientRequest request, ExchangeFunction next) {
+        return Mono.defer(() -> next.exchange(ClientRequest.from(request)
+                .header(HttpHeaders.AUTHORIZATION, tokenProvider.getBearerHeader())
+                .build()));
+    }
+
+    @PreDestroy
+    public void close() {
+        connectionProvider.dispose();
+    }
+
     @Override
     public void sendSMS(String message, String userUid, boolean userRequested) {
-        asyncWebClient.post()
+        pushSMS(message, userUid, userRequested)
+                .subscribe(null, e -> log.warn("SMS to user {} not sent, {} failed since startup", userUid, failedSmsCount.incrementAndGet()));
+    }
+
+    @Override
+    public void sendSMS(Map<String, String> messagesByUserUid, boolean userRequested) {
+        log.info("Pushing {} SMSs to messaging service", messagesByUserUid.size());
+        final AtomicLong failed = new AtomicLong();
+        Flux.fromIterable(messagesByUserUid.entrySet())
+                .flatMap(entry -> pushSMS(entry.getValue(), entry.getKey(), userRequested)
+                        .doOnError(e -> failed.incrementAndGet())
+                        .onErrorResume(e -> Mono.empty()), maxConnections)
+                .subscribe(null, e -> log.error("Error pushing SMSs to messaging service: {}", e.getMessage()),
+                        () -> log.info("Pushed {} of {} SMSs, {} failed since startup", messagesByUserUid.size() - failed.get(),
+                                messagesByUserUid.size(), failedSmsCount.addAndGet(failed.get())));
+    }
+
+    private Mono<String> pushSMS(String message, String userUid, boolean userRequested) {
+        return withRetries(asyncWebClient.post()
                 .uri("/notification/push/system/{userUid}?message={message}&userRequested={userRequested}",
                         userUid, message, userRequested)
-                .header(AUTH_HEADER, jwtHeader())
                 .retrieve()
-                .onStatus(HttpStatus::is4xxClientError, error -> {
-                    log.error("Error! Client error, could not send SMS, failure: {}", error);
-                    return Mono.empty();
-                })
-                .onStatus(HttpStatus::is5xxServerError, error -> {
-                    log.error("Error, Server error, could not send SMS, failure: {}", error);
-                    return Mono.empty();
-                })
-                .bodyToMono(String.class)
-                .log()
-                .subscribe();
+                .bodyToMono(String.class))
+                .doOnError(e -> log.error("Error! Could not send SMS to user {}, failure: {}", userUid, e.getMessage()));
     }
 
     @Override
     public MessageServicePushResponse sendPrioritySMS(String message, String phoneNumber) {
         log.info("Sending a priority SMS ...");
-        URI serviceCallUri = baseUri()
-                .path("/notification/push/priority/{phoneNumber}")
-                .queryParam("message", message)
-                .buildAndExpand(phoneNumber)
-                .toUri();
         try {
-            log.info("Calling: {}", serviceCallUri);
-            ResponseEntity<MessageServicePushResponse> responseEntity =
-                    restTemplate.exchange(
-                            serviceCallUri,
-                            HttpMethod.POST,
-                            new HttpEntity<MessageServicePushResponse>(jwtHeaders()),
-                            MessageServicePushResponse.class
-                    );
-            return responseEntity.getBody();
+            return withRetries(asyncWebClient.post()
+                    .uri("/notification/push/priority/{phoneNumber}?message={message}", phoneNumber, message)
+                        .retrieve()
+                    .bodyToMono(MessageServicePushResponse.class))
+                    .block(Duration.ofMillis(syncTimeoutMillis));
         } catch (Exception e) {
-            log.error("Error connecting to: {}, error: {}", serviceCallUri, e.getMessage());
+            log.error("Error pushing priority SMS, error: {}", e.getMessage());
             return null;
         }
     }
 
     @Override
     public void sendEmail(Map<String, String> recipients, GrassrootEmail email) {
-        UriComponentsBuilder builder = baseUri().path("/email/send");
         Set<GrassrootEmail> emails = new HashSet<>();
         recipients.forEach((address, name) -> emails.add(email.copyIntoNew(address, name)));
-        HttpEntity<Set<GrassrootEmail>> requestEntity = new HttpEntity<>(emails, jwtHeaders());
-
-        try {
-            ResponseEntity<String> responseEntity = restTemplate.exchange(builder.build().toUri(), HttpMethod.POST,
-                            requestEntity, String.class);
-            log.info("what happened ? {}", responseEntity);
-        } catch (RestClientException e) {
-            log.error("Error pushing out emails! {}", e);
-        }
-
+        Collection<GrassrootEmail> unsent = sendEmails(emails);
+        log.info("Pushed {} of {} emails to messaging service", emails.size() - unsent.size(), emails.size());
     }
 
     @Override
     public boolean sendEmail(GrassrootEmail mail) {
-        UriComponentsBuilder builder = baseUri().path("/email/send");
-        HttpEntity<Set<GrassrootEmail>> requestEntity = new HttpEntity<>(Collections.singleton(mail), jwtHeaders());
+        return sendEmails(Collections.singleton(mail)).isEmpty();
+    }
 
-        try {
-            ResponseEntity<String> responseEntity = restTemplate.exchange(builder.build().toUri(), HttpMethod.POST,
-                    requestEntity, String.class);
-            log.info("send email: ? {}", responseEntity);
-            return true;
-        } catch (RestClientException e) {
-            log.error("Error pushing out emails! {}", e);
-            return false;
+    // the email endpoint takes a set, so each chunk goes in one call, and the next only once the last has gone through
+    @Override
+    public Collection<GrassrootEmail> sendEmails(Collection<GrassrootEmail> emails) {
+        List<List<GrassrootEmail>> chunks = Lists.partition(new ArrayList<>(emails), emailBatchSize);
+        for (int i = 0; i < chunks.size(); i++) {
+            try {
+                withRetries(asyncWebClient.post()
+                        .uri("/email/send")
+                        .syncBody(new HashSet<>(chunks.get(i)))
+                        .retrieve()
+                        .bodyToMono(String.class))
+                        .block(Duration.ofMillis(syncTimeoutMillis));
+            } catch (Exception e) {
+                log.error("Error pushing out emails, stopping at chunk {} of {}: {}", i + 1, chunks.size(), e.getMessage());
+                return chunks.subList(i, chunks.size()).stream().flatMap(List::stream).collect(Collectors.toList());
+            }
         }
+        return Collections.emptyList();
     }
 
-    private UriComponentsBuilder baseUri() {
-        return UriComponentsBuilder.fromUriString(messagingServiceUrl)
-                .port(messagingServicePort);
+    // only retries where the service cannot have acted on the call, so that no message goes out twice
+    private <T> Mono<T> withRetries(Mono<T> call) {
+        return call.retryWhen(errors -> errors.zipWith(Flux.range(1, retries + 1), (error, attempt) -> {
+            if (attempt > retries || !isRetryable(error)) {
+                throw Exceptions.propagate(error);
+            }
+            return attempt;
+        }).flatMap(attempt -> Mono.delay(RETRY_BACKOFF.multipliedBy(1L << (attempt - 1)))));
     }
 
-    // this means duplication but getting extreme weirdness on doing generic but
-    private HttpHeaders jwtHeaders() {
-        HttpHeaders headers = new HttpHeaders();
-        headers.add("Authorization", "Bearer " + jwtService.createJwt(new CreateJwtTokenRequest(JwtType.GRASSROOT_MICROSERVICE)));
-        return headers;
+    // a connection that could not be opened (ConnectException, which includes connect timeouts), or not taken from the
+    // pool in time (netty's pool fails with a TimeoutException), never carried the request; other I/O errors may have
+    private boolean isRetryable(Throwable error) {
+        return error instanceof ConnectException || error instanceof TimeoutException || (error instanceof WebClientResponseException &&
+                ((WebClientResponseException) error).getStatusCode() == HttpStatus.SERVICE_UNAVAILABLE);
     }
 
-    private String jwtHeader() {
-        return "Bearer " + jwtService.createJwt(new CreateJwtTokenRequest(JwtType.GRASSROOT_MICROSERVICE));
+    private UriComponentsBuilder baseUri() {
+        return UriComponentsBuilder.fromUriString(messagingServiceUrl)
+                .port(messagingServicePort);
     }
 
 }
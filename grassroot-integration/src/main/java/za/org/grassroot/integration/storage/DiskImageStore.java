@@ -0,0 +1,174 @@
+package za.org.grassroot.integration.storage;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * The on-disk tier of the image cache: one file per image, with the least recently used files deleted once the total
+ * size goes over the bound. The index (and the ETags) live only in memory, so each store writes to a directory of its
+ * own, made under the configured one when it starts, and only ever deletes files it wrote there itself.
+ */
+@Slf4j
+class DiskImageStore {
+
+    private static final String DIRECTORY_PREFIX = "images-";
+
+    private final Path directory;
+    private final long maxBytes;
+
+    // access ordered, so iteration starts from the least recently used
+    private final LinkedHashMap<String, StoredFile> index = new LinkedHashMap<>(256, 0.75f, true);
+    private long totalBytes;
+
+    DiskImageStore(Path parentDirectory, long maxBytes) {
+        this.directory = createDirectory(parentDirectory);
+        this.maxBytes = maxBytes;
+    }
+
+    Optional<StoredImage> get(String key) {
+        StoredFile file;
+        synchronized (this) {
+            file = index.get(key);
+        }
+        if (file == null) {
+            return Optional.empty();
+        }
+
+        // if the file is evicted after we let go of the lock, reading it fails, and that is just a miss
+        try {
+            return Optional.of(new StoredImage(Files.readAllBytes(file.path), file.etag, file.fetchedAt));
+        } catch (NoSuchFileException e) {
+            return Optional.empty();
+        } catch (IOException e) {
+            log.error("Error reading cached image {}: {}", key, e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    boolean contains(String key) {
+        synchronized (this) {
+            return index.containsKey(key);
+        }
+    }
+
+    boolean containsFetchedSince(String key, Instant since) {
+        synchronized (this) {
+            StoredFile file = index.get(key);
+            return file != null && !file.fetchedAt.isBefore(since);
+        }
+    }
+
+    void put(String key, StoredImage image) {
+        if (image.size() > maxBytes || contains(key)) {
+            return;
+        }
+
+        Path path = directory.resolve(fileName(key));
+        Path written = null;
+        try {
+            // written aside and moved in, so a reader never reads a half written file
+            written = Files.write(Files.createTempFile(directory, fileName(key), ".tmp"), image.getContent());
+            Files.move(written, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.error("Error writing image {} to disk cache: {}", key, e.getMessage());
+            if (written != null) {
+                delete(written);
+            }
+            return;
+        }
+
+        synchronized (this) {
+            StoredFile previous = index.put(key, new StoredFile(path, image.size(), image.getEtag(), image.getFetchedAt()));
+            totalBytes += image.size() - (previous == null ? 0 : previous.size);
+            evictOverBound();
+        }
+    }
+
+    synchronized void remove(String key) {
+        StoredFile removed = index.remove(key);
+        if (removed != null) {
+            totalBytes -= removed.size;
+            delete(removed.path);
+        }
+    }
+
+    synchronized long getTotalBytes() {
+        return totalBytes;
+    }
+
+    Path getDirectory() {
+        return directory;
+    }
+
+    // deletes the files this store wrote, and then its directory, which is left alone if anything else is in it
+    void close() {
+        List<StoredFile> stored;
+        synchronized (this) {
+            stored = new ArrayList<>(index.values());
+            index.clear();
+            totalBytes = 0;
+        }
+        stored.forEach(file -> delete(file.path));
+        try {
+            Files.deleteIfExists(directory);
+        } catch (IOException e) {
+            log.warn("Could not remove image cache directory {}: {}", directory, e.getMessage());
+        }
+    }
+
+    private void evictOverBound() {
+        Iterator<Map.Entry<String, StoredFile>> leastRecent = index.entrySet().iterator();
+        while (totalBytes > maxBytes && leastRecent.hasNext()) {
+            StoredFile evicted = leastRecent.next().getValue();
+            leastRecent.remove();
+            totalBytes -= evicted.size;
+            delete(evicted.path);
+        }
+    }
+
+    private static Path createDirectory(Path parentDirectory) {
+        try {
+            Files.createDirectories(parentDirectory);
+            return Files.createTempDirectory(parentDirectory, DIRECTORY_PREFIX);
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not prepare image cache directory in " + parentDirectory, e);
+        }
+    }
+
+    private void delete(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.error("Error deleting cached image file {}: {}", path, e.getMessage());
+        }
+    }
+
+    private static String fileName(String key) {
+        return key.replaceAll("[^A-Za-z0-9-]", "_");
+    }
+
+    private static final class StoredFile {
+
+        private final Path path;
+        private final int size;
+        private final String etag;
+        private final Instant fetchedAt;
+
+        private StoredFile(Path path, int size, String etag, Instant fetchedAt) {
+            this.path = path;
+            this.size = size;
+            this.etag = etag;
+            this.fetchedAt = fetchedAt;
+        }
+    }
+
+}
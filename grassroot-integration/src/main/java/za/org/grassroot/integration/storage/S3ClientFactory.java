@@ -1,21 +1,96 @@
 package za.org.grassroot.integration.storage;
 
+import com.amazonaws.ClientConfiguration;
+import com.amazonaws.auth.AWSStaticCredentialsProvider;
+import com.amazonaws.auth.BasicAWSCredentials;
 import com.amazonaws.auth.profile.ProfileCredentialsProvider;
+import com.amazonaws.client.builder.AwsClientBuilder;
 import com.amazonaws.regions.Regions;
 import com.amazonaws.services.s3.AmazonS3;
 import com.amazonaws.services.s3.AmazonS3ClientBuilder;
+import com.amazonaws.services.s3.transfer.TransferManager;
+import com.amazonaws.services.s3.transfer.TransferManagerBuilder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import javax.annotation.PreDestroy;
 
 /**
  * Created by luke on 2017/02/21.
+ * Holds the one S3 client (and the transfer manager on top of it) that all storage calls share, so that they share
+ * its connection pool and credentials, rather than each call setting up its own. Built on first use, so that nothing
+ * is looked up in contexts that never touch storage. If an endpoint is configured, e.g., a local S3-compatible
+ * stand-in, the client goes there, with path style access and the configured static keys.
  */
+@Component @Slf4j
 public class S3ClientFactory {
 
-    private final AmazonS3ClientBuilder builder = AmazonS3ClientBuilder.standard()
-            .withRegion(Regions.EU_WEST_1)
-            .withCredentials(new ProfileCredentialsProvider("s3images"));
+    @Value("${grassroot.s3.endpoint:}")
+    private String endpoint;
+
+    @Value("${grassroot.s3.credentials.profile:s3images}")
+    private String credentialsProfile;
+
+    @Value("${grassroot.s3.access-key:local}")
+    private String accessKey;
+
+    @Value("${grassroot.s3.secret-key:local}")
+    private String secretKey;
+
+    @Value("${grassroot.s3.max-connections:100}")
+    private int maxConnections;
+
+    private volatile AmazonS3 client;
+    private volatile TransferManager transferManager;
 
-    public AmazonS3 createClient() {
+    public AmazonS3 getClient() {
+        if (client == null) {
+            synchronized (this) {
+                if (client == null) {
+                    client = buildClient();
+                }
+            }
+        }
+        return client;
+    }
+
+    public TransferManager getTransferManager() {
+        if (transferManager == null) {
+            synchronized (this) {
+                if (transferManager == null) {
+                    transferManager = TransferManagerBuilder.standard().withS3Client(getClient()).build();
+                }
+            }
+        }
+        return transferManager;
+    }
+
+    private AmazonS3 buildClient() {
+        AmazonS3ClientBuilder builder = AmazonS3ClientBuilder.standard()
+                .withClientConfiguration(new ClientConfiguration().withMaxConnections(maxConnections));
+        if (StringUtils.isEmpty(endpoint)) {
+            builder.withRegion(Regions.EU_WEST_1)
+                    .withCredentials(new ProfileCredentialsProvider(credentialsProfile));
+        } else {
+            log.info("Using S3 endpoint at {}", endpoint);
+            builder.withEndpointConfiguration(new AwsClientBuilder.EndpointConfiguration(endpoint, Regions.EU_WEST_1.getName()))
+                    .withPathStyleAccessEnabled(true)
+                    .disableChunkedEncoding()
+                    .withCredentials(new AWSStaticCredentialsProvider(new BasicAWSCredentials(accessKey, secretKey)));
+        }
         return builder.build();
     }
 
+    // the transfer manager also shuts down the client under it, so only one or the other is needed
+    @PreDestroy
+    public synchronized void shutdown() {
+        if (transferManager != null) {
+            transferManager.shutdownNow(true);
+        } else if (client != null) {
+            client.shutdown();
+        }
+    }
+
 }
@@ -6,6 +6,7 @@ import za.org.grassroot.core.domain.media.MediaFunction;
 import za.org.grassroot.core.enums.ActionLogType;
 
 import java.io.File;
+import java.io.InputStream;
 import java.util.Set;
 
 /**
@@ -19,9 +20,9 @@ public interface StorageBroker {
 
     void recordImageAffiliation(ActionLogType actionLogType, String imageKey);
 
-    byte[] fetchTaskImage(String uid, ImageType imageType);
+    StoredImage fetchTaskImage(String uid, ImageType imageType);
 
-    byte[] fetchThumbnail(String uid, ImageType imageType);
+    StoredImage fetchThumbnail(String uid, ImageType imageType);
 
     boolean doesImageExist(String uid, ImageType imageType);
 
@@ -33,6 +34,9 @@ public interface StorageBroker {
 
     File fetchFileFromRecord(MediaFileRecord record);
 
+    // the stored file's content, to be streamed on (and closed) by the caller; throws StoredMediaRetrievalFailure if absent
+    InputStream openFileFromRecord(MediaFileRecord record);
+
     String getPresignedUrl(String bucket, String key);
 
 }
@@ -1,16 +1,14 @@
 package za.org.grassroot.integration.storage;
 
-import com.amazonaws.AmazonServiceException;
 import com.amazonaws.HttpMethod;
 import com.amazonaws.SdkClientException;
 import com.amazonaws.services.s3.AmazonS3;
 import com.amazonaws.services.s3.model.*;
-import com.amazonaws.services.s3.transfer.TransferManager;
-import com.amazonaws.services.s3.transfer.TransferManagerBuilder;
 import com.amazonaws.services.s3.transfer.Upload;
+import com.google.common.io.ByteStreams;
 import org.apache.commons.codec.binary.Base64;
+import org.apache.http.HttpStatus;
 import org.apache.commons.codec.digest.DigestUtils;
-import org.apache.poi.util.IOUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -26,19 +24,22 @@ import za.org.grassroot.core.domain.media.MediaFunction;
 import za.org.grassroot.core.enums.ActionLogType;
 import za.org.grassroot.core.repository.ImageRecordRepository;
 import za.org.grassroot.core.repository.MediaFileRecordRepository;
+import za.org.grassroot.core.util.AsyncExecutors;
 import za.org.grassroot.integration.exception.NoMicroVersionException;
 import za.org.grassroot.integration.exception.StoredMediaRetrievalFailure;
 
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
 import java.sql.Date;
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
-import java.time.temporal.TemporalUnit;
 import java.util.Objects;
+import java.util.Optional;
 import java.util.Set;
 import java.util.stream.Stream;
 
@@ -66,14 +67,16 @@ public class StorageBrokerImpl implements StorageBroker {
     private String generalMediaStorageBucket;
 
     private final S3ClientFactory s3ClientFactory;
+    private final TaskImageCache taskImageCache;
     private final ImageRecordRepository imageRecordRepository; // for task images, which get analyzed etc
     private final MediaFileRecordRepository mediaFileRepository; // for other media, which just get stored and retrieved
 
     @Autowired
-    public StorageBrokerImpl(ImageRecordRepository imageRecordRepository, MediaFileRecordRepository mediaFileRepository) {
+    public StorageBrokerImpl(S3ClientFactory s3ClientFactory, TaskImageCache taskImageCache, ImageRecordRepository imageRecordRepository, MediaFileRecordRepository mediaFileRepository) {
+        this.s3ClientFactory = s3ClientFactory;
+        this.taskImageCache = taskImageCache;
         this.imageRecordRepository = imageRecordRepository;
         this.mediaFileRepository = mediaFileRepository;
-        this.s3ClientFactory = new S3ClientFactory();
     }
 
     @Override
@@ -88,6 +91,7 @@ public class StorageBrokerImpl implements StorageBroker {
         String md5result = uploadToS3(taskImagesBucket, imageKey, image);
 
         if (md5result != null) {
+            taskImageCache.evict(imageKey);
             ImageRecord imageRecord = storeImageRecord(actionLogType, imageKey, md5result);
             imageRecord.setStoredTime(Instant.now());
         }
@@ -112,26 +116,23 @@ public class StorageBrokerImpl implements StorageBroker {
         return md5hash != null;
     }
 
+    // the hash is taken as the file streams up, rather than reading it all in first; the SDK checks the upload's own MD5
     private String uploadToS3(String bucket, String key, MultipartFile file) {
-        final AmazonS3 s3 = s3ClientFactory.createClient();
-        final TransferManager transferManager = TransferManagerBuilder.standard().withS3Client(s3).build();
-        try {
+        try (Md5HashingInputStream fileStream = new Md5HashingInputStream(file.getInputStream())) {
             ObjectMetadata metadata = new ObjectMetadata();
             metadata.setContentLength(file.getSize());
             metadata.setContentType(file.getContentType());
 
-            byte[] resultByte = DigestUtils.md5(file.getBytes());
-            String streamMD5 = new String(Base64.encodeBase64(resultByte));
-            metadata.setContentMD5(streamMD5);
-
-            Upload upload = transferManager.upload(bucket, key, file.getInputStream(), metadata);
+            Upload upload = s3ClientFactory.getTransferManager().upload(bucket, key, fileStream, metadata);
             upload.waitForCompletion();
-            return streamMD5;
-        } catch (AmazonServiceException | InterruptedException | IOException e) {
+            return Base64.encodeBase64String(fileStream.getMessageDigest().digest());
+        } catch (SdkClientException | IOException e) {
             logger.error("Error uploading file: {}", e.toString());
             return null;
-        } finally {
-            transferManager.shutdownNow();
+        } catch (InterruptedException e) {
+            logger.error("Interrupted uploading file: {}", e.toString());
+            Thread.currentThread().interrupt();
+            return null;
         }
     }
 
@@ -154,29 +155,51 @@ public class StorageBrokerImpl implements StorageBroker {
     }
 
     @Override
-    public byte[] fetchTaskImage(String uid, ImageType imageType) {
+    public StoredImage fetchTaskImage(String uid, ImageType imageType) {
         Objects.requireNonNull(uid);
         Objects.requireNonNull(imageType);
 
+        Optional<StoredImage> cached = taskImageCache.get(uid, imageType);
+        if (cached.isPresent()) {
+            return cached.get();
+        }
+
+        if (taskImageCache.isKnownMissing(uid, imageType)) {
+            throw missingImageException(imageType);
+        }
+
         final String bucket = selectTaskBucketBySize(imageType);
         logger.debug("for imageType {}, selected bucket {}", imageType, bucket);
-
-        try {
-            InputStream imageData = getObject(bucket, composeKey(uid, imageType)).getObjectContent();
-            byte[] image = IOUtils.toByteArray(imageData);
-            imageData.close();
+        final long cacheGeneration = taskImageCache.currentGeneration();
+
+        // read straight into a buffer of the object's size, rather than through a growing copy
+        try (S3Object object = s3ClientFactory.getClient().getObject(new GetObjectRequest(bucket, composeKey(uid, imageType)))) {
+            byte[] content = new byte[Math.toIntExact(object.getObjectMetadata().getContentLength())];
+            ByteStreams.readFully(object.getObjectContent(), content);
+            StoredImage image = new StoredImage(content, object.getObjectMetadata().getETag());
+            taskImageCache.put(uid, imageType, image, cacheGeneration);
             return image;
-        } catch (StoredMediaRetrievalFailure e) {
-            // todo: try add a check if it's something other than file not found on the bucket, and use that to discriminate error type
+        } catch (AmazonS3Exception e) {
             logger.info("error in retrieving file: {}", e.getMessage());
-            throw ImageType.MICRO.equals(imageType) ? new NoMicroVersionException() : new StoredMediaRetrievalFailure();
+            // only a definite not found is remembered, so that a passing error does not hide the image for a while
+            if (e.getStatusCode() == HttpStatus.SC_NOT_FOUND) {
+                taskImageCache.markMissing(uid, imageType, cacheGeneration);
+            }
+            throw missingImageException(imageType);
+        } catch (SdkClientException e) {
+            logger.error("Error fetching from S3", e);
+            throw missingImageException(imageType);
         } catch (IOException e) {
             throw new StoredMediaRetrievalFailure();
         }
     }
 
+    private RuntimeException missingImageException(ImageType imageType) {
+        return ImageType.MICRO.equals(imageType) ? new NoMicroVersionException() : new StoredMediaRetrievalFailure();
+    }
+
     @Override
-    public byte[] fetchThumbnail(String uid, ImageType imageType) {
+    public StoredImage fetchThumbnail(String uid, ImageType imageType) {
         try {
             return fetchTaskImage(uid, imageType);
         } catch (NoMicroVersionException|StoredMediaRetrievalFailure e) {
@@ -186,10 +209,22 @@ public class StorageBrokerImpl implements StorageBroker {
 
     @Override
     public boolean doesImageExist(String uid, ImageType imageType) {
-        AmazonS3 s3client = s3ClientFactory.createClient();
+        if (taskImageCache.contains(uid, imageType)) {
+            return true;
+        }
+        if (taskImageCache.isKnownMissing(uid, imageType)) {
+            return false;
+        }
+
+        final long cacheGeneration = taskImageCache.currentGeneration();
+        AmazonS3 s3client = s3ClientFactory.getClient();
         logger.info("trying to find key in bucket: {}", selectTaskBucketBySize(imageType));
         try {
-            return s3client.doesObjectExist(selectTaskBucketBySize(imageType), composeKey(uid, imageType));
+            boolean exists = s3client.doesObjectExist(selectTaskBucketBySize(imageType), composeKey(uid, imageType));
+            if (!exists) {
+                taskImageCache.markMissing(uid, imageType, cacheGeneration);
+            }
+            return exists;
         } catch (AmazonS3Exception e) {
             logger.error("S3 exception, of code: {}, for bucket: {}, with key: {}", e.getErrorCode(),
                     selectTaskBucketBySize(imageType), composeKey(uid, imageType));
@@ -197,10 +232,13 @@ public class StorageBrokerImpl implements StorageBroker {
         }
     }
 
-    @Async
+    // with the other outbound side effects, on a bounded executor that runs on the caller when full, as a skipped delete
+    // leaves the image cached and in S3
+    @Async(AsyncExecutors.SIDE_EFFECTS)
     @Override
     public void deleteImage(String uid) {
-        AmazonS3 s3client = s3ClientFactory.createClient();
+        taskImageCache.evict(uid);
+        AmazonS3 s3client = s3ClientFactory.getClient();
         Stream.of(ImageType.values())
                 .filter(t -> s3client.doesObjectExist(selectTaskBucketBySize(t), composeKey(uid, t)))
                 .forEach(t -> {
@@ -226,18 +264,9 @@ public class StorageBrokerImpl implements StorageBroker {
 
     @Override
     public File fetchFileFromRecord(MediaFileRecord record) {
-        try {
-            S3Object s3Object = getObject(record.getBucket(), record.getKey());
-            S3ObjectInputStream s3is = s3Object.getObjectContent();
+        try (InputStream s3is = openFileFromRecord(record)) {
             File outputFile = File.createTempFile(record.getKey(), "jpg"); // todo: extend to MIME types
-            FileOutputStream fos = new FileOutputStream(outputFile);
-            byte[] read_buf = new byte[1024];
-            int read_len = 0;
-            while ((read_len = s3is.read(read_buf)) > 0) {
-                fos.write(read_buf, 0, read_len);
-            }
-            s3is.close();
-            fos.close();
+            Files.copy(s3is, outputFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
             return outputFile;
         } catch (StoredMediaRetrievalFailure e) {
             logger.error("Error fetching from S3", e);
@@ -246,13 +275,17 @@ public class StorageBrokerImpl implements StorageBroker {
             logger.error("Error handling file", e);
             return null;
         }
+    }
 
+    @Override
+    public InputStream openFileFromRecord(MediaFileRecord record) {
+        return getObject(record.getBucket(), record.getKey()).getObjectContent();
     }
 
     @Override
     public String getPresignedUrl(String bucket, String key) {
         try {
-            AmazonS3 s3client = s3ClientFactory.createClient();
+            AmazonS3 s3client = s3ClientFactory.getClient();
             Instant expiration = Instant.now().plus(3L, ChronoUnit.HOURS);
             logger.info("Generating presigned URL for bucket {} and key {}");
             GeneratePresignedUrlRequest request = new GeneratePresignedUrlRequest(bucket, key)
@@ -267,11 +300,10 @@ public class StorageBrokerImpl implements StorageBroker {
         }
     }
 
-    // todo : optimize this (see SDK JavaDocs on possible performance issues)
+    // callers must close the object (or its content), else its connection is not returned to the pool
     private S3Object getObject(String bucket, String key) {
         try {
-            AmazonS3 s3Client = s3ClientFactory.createClient();
-            return s3Client.getObject(new GetObjectRequest(bucket, key));
+            return s3ClientFactory.getClient().getObject(new GetObjectRequest(bucket, key));
         } catch (SdkClientException e) {
             logger.error("Error fetching from S3", e);
             throw new StoredMediaRetrievalFailure();
@@ -302,4 +334,17 @@ public class StorageBrokerImpl implements StorageBroker {
         }
     }
 
+    // the SDK may mark and reset the stream it is given, which would feed bytes to the digest twice, so it must not
+    private static final class Md5HashingInputStream extends DigestInputStream {
+
+        private Md5HashingInputStream(InputStream stream) {
+            super(stream, DigestUtils.getMd5Digest());
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+    }
+
 }
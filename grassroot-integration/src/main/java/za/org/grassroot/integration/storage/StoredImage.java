@@ -0,0 +1,33 @@
+package za.org.grassroot.integration.storage;
+
+import lombok.Getter;
+
+import java.time.Instant;
+
+/**
+ * An image's bytes along with the ETag of the stored object (i.e., its MD5, as storage computed it), so that clients
+ * can revalidate what they hold without downloading it again. Also when it was fetched from storage, which holding it in
+ * a cache, or moving it between the cache's tiers, does not change.
+ */
+@Getter
+public class StoredImage {
+
+    private final byte[] content;
+    private final String etag;
+    private final Instant fetchedAt;
+
+    public StoredImage(byte[] content, String etag) {
+        this(content, etag, Instant.now());
+    }
+
+    public StoredImage(byte[] content, String etag, Instant fetchedAt) {
+        this.content = content;
+        this.etag = etag;
+        this.fetchedAt = fetchedAt;
+    }
+
+    public int size() {
+        return content.length;
+    }
+
+}
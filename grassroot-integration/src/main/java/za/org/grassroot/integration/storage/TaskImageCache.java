@@ -0,0 +1,185 @@
+package za.org.grassroot.integration.storage;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalCause;
+import com.google.common.util.concurrent.Striped;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.stream.Stream;
+
+/**
+ * Keeps recently fetched task images local, so galleries do not go to S3 for every image on every screen. Images sit on
+ * the heap first, and when pushed out of there (least recently used first), move to a bounded on-disk tier, moving
+ * back up when next asked for. Images that turned out not to exist, typically micro versions that have not been
+ * generated yet, are remembered for a while, so that they are not asked for again on every request.
+ *
+ * Each node holds its own copies, and only hears of the images it stored or deleted itself, so an image is only served
+ * from here for a while after it was fetched, after which it is fetched again. Fetches read the cache's generation
+ * before going to S3 and hand it back with what they found, which is dropped if the image was evicted meanwhile.
+ */
+@Component @Slf4j
+public class TaskImageCache {
+
+    @Value("${grassroot.images.cache.heap.mb:64}")
+    private long heapMegabytes;
+
+    @Value("${grassroot.images.cache.disk.mb:1024}")
+    private long diskMegabytes;
+
+    @Value("${grassroot.images.cache.dir:${java.io.tmpdir}/grassroot-image-cache}")
+    private String diskDirectory;
+
+    @Value("${grassroot.images.cache.missing.seconds:600}")
+    private long missingSeconds;
+
+    @Value("${grassroot.images.cache.ttl.seconds:900}")
+    private long ttlSeconds;
+
+    // an image evicted this long ago can no longer be overwritten by a fetch that started before, as none takes as long
+    private static final long EVICTION_MEMORY_SECONDS = 600;
+
+    private Cache<String, StoredImage> heapTier;
+    private DiskImageStore diskTier;
+    private Cache<String, Boolean> knownMissing;
+
+    private final AtomicLong generation = new AtomicLong();
+    private final Cache<String, Long> evictedAt = CacheBuilder.newBuilder()
+            .maximumSize(10000)
+            .expireAfterWrite(EVICTION_MEMORY_SECONDS, TimeUnit.SECONDS)
+            .build();
+    // so that an eviction cannot land between a fetch checking its generation and storing what it fetched
+    private final Striped<Lock> uidLocks = Striped.lock(64);
+
+    @PostConstruct
+    public void init() {
+        diskTier = new DiskImageStore(Paths.get(diskDirectory), diskMegabytes * 1024 * 1024);
+        heapTier = CacheBuilder.newBuilder()
+                .maximumWeight(heapMegabytes * 1024 * 1024)
+                .weigher((String key, StoredImage image) -> image.size())
+                .removalListener(removal -> {
+                    if (removal.getCause() == RemovalCause.SIZE) {
+                        diskTier.put(removal.getKey(), removal.getValue());
+                    }
+                })
+                .build();
+        knownMissing = CacheBuilder.newBuilder()
+                .maximumSize(10000)
+                .expireAfterWrite(missingSeconds, TimeUnit.SECONDS)
+                .build();
+        log.info("Task image cache set up, with {} MB on heap and {} MB on disk, in {}, holding images for {} seconds",
+                heapMegabytes, diskMegabytes, diskTier.getDirectory(), ttlSeconds);
+    }
+
+    @PreDestroy
+    public void close() {
+        diskTier.close();
+    }
+
+    public Optional<StoredImage> get(String uid, ImageType imageType) {
+        final String key = key(uid, imageType);
+        StoredImage image = heapTier.getIfPresent(key);
+        if (image != null) {
+            if (!isExpired(image)) {
+                return Optional.of(image);
+            }
+            heapTier.invalidate(key);
+            return Optional.empty();
+        }
+        // the tiers are kept exclusive, so between them they hold as much as both bounds allow
+        Optional<StoredImage> fromDisk = diskTier.get(key);
+        fromDisk.ifPresent(found -> {
+            diskTier.remove(key);
+            if (!isExpired(found)) {
+                heapTier.put(key, found);
+            }
+        });
+        return fromDisk.filter(found -> !isExpired(found));
+    }
+
+    // to be read before fetching an image from storage, and handed back with what the fetch found
+    public long currentGeneration() {
+        return generation.get();
+    }
+
+    public void put(String uid, ImageType imageType, StoredImage image, long fetchGeneration) {
+        final String key = key(uid, imageType);
+        withUidLock(uid, () -> {
+            if (evictedSince(uid, fetchGeneration)) {
+                log.debug("Image {} evicted while it was being fetched, so not caching it", key);
+                return;
+            }
+            knownMissing.invalidate(key);
+            heapTier.put(key, image);
+        });
+    }
+
+    public boolean contains(String uid, ImageType imageType) {
+        final String key = key(uid, imageType);
+        final StoredImage image = heapTier.getIfPresent(key);
+        return image != null ? !isExpired(image) : diskTier.containsFetchedSince(key, expiryCutoff());
+    }
+
+    public void markMissing(String uid, ImageType imageType, long fetchGeneration) {
+        withUidLock(uid, () -> {
+            if (!evictedSince(uid, fetchGeneration)) {
+                knownMissing.put(key(uid, imageType), Boolean.TRUE);
+            }
+        });
+    }
+
+    public boolean isKnownMissing(String uid, ImageType imageType) {
+        return knownMissing.getIfPresent(key(uid, imageType)) != null;
+    }
+
+    // for when the image is stored afresh or deleted, which makes whatever is held for any of its versions wrong
+    public void evict(String uid) {
+        withUidLock(uid, () -> {
+            evictedAt.put(uid, generation.incrementAndGet());
+            Stream.of(ImageType.values()).map(imageType -> key(uid, imageType)).forEach(key -> {
+                heapTier.invalidate(key);
+                diskTier.remove(key);
+                knownMissing.invalidate(key);
+            });
+        });
+    }
+
+    private boolean isExpired(StoredImage image) {
+        return image.getFetchedAt().isBefore(expiryCutoff());
+    }
+
+    private Instant expiryCutoff() {
+        return Instant.now().minus(Duration.ofSeconds(ttlSeconds));
+    }
+
+    private boolean evictedSince(String uid, long fetchGeneration) {
+        Long evicted = evictedAt.getIfPresent(uid);
+        return evicted != null && evicted > fetchGeneration;
+    }
+
+    private void withUidLock(String uid, Runnable action) {
+        Lock lock = uidLocks.get(uid);
+        lock.lock();
+        try {
+            action.run();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static String key(String uid, ImageType imageType) {
+        return imageType.name() + "-" + uid;
+    }
+
+}
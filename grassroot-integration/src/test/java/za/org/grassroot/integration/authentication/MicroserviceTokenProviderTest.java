@@ -0,0 +1,59 @@
+package za.org.grassroot.integration.authentication;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+
+public class MicroserviceTokenProviderTest {
+
+    private JwtService jwtService;
+    private MicroserviceTokenProvider tokenProvider;
+
+    @Before
+    public void setUp() {
+        jwtService = mock(JwtService.class);
+        given(jwtService.getTokenLifetime(JwtType.GRASSROOT_MICROSERVICE)).willReturn(Duration.ofSeconds(3));
+        given(jwtService.createJwt(any(CreateJwtTokenRequest.class))).willReturn("first", "second");
+        tokenProvider = new MicroserviceTokenProvider(jwtService);
+        ReflectionTestUtils.setField(tokenProvider, "refreshMarginMillis", 1000L);
+    }
+
+    @Test
+    public void shouldReuseTokenWhileItHasRequiredValidityLeft() {
+        tokenProvider.requireValidityOf(Duration.ofMillis(2500));
+
+        assertEquals("first", tokenProvider.getToken());
+        assertEquals("first", tokenProvider.getToken());
+    }
+
+    @Test
+    public void shouldMintNewTokenOnceRequiredValidityNoLongerLeft() {
+        tokenProvider.requireValidityOf(Duration.ofMillis(2999));
+
+        // reusable for only a millisecond after minting
+        assertEquals("first", tokenProvider.getToken());
+        sleepQuietly(5);
+        assertEquals("second", tokenProvider.getToken());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void shouldFailAtStartupIfRequiredValidityExceedsLifetime() {
+        tokenProvider.requireValidityOf(Duration.ofMillis(3000));
+    }
+
+    private void sleepQuietly(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+}
@@ -0,0 +1,126 @@
+package za.org.grassroot.integration.authentication;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureException;
+import net.sf.ehcache.Cache;
+import net.sf.ehcache.CacheManager;
+import net.sf.ehcache.config.CacheConfiguration;
+import net.sf.ehcache.config.Configuration;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.Instant;
+import java.util.Date;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class VerifiedJwtCacheTest {
+
+    private static final int CACHE_TTL_SECONDS = 600;
+
+    private CacheManager cacheManager;
+    private Cache cache;
+    private VerifiedJwtCache verifiedJwtCache;
+
+    @Before
+    public void setUp() {
+        cacheManager = CacheManager.newInstance(new Configuration().name("verified-jwt-cache-test"));
+        cacheManager.addCache(new Cache(new CacheConfiguration(VerifiedJwtCache.CACHE_NAME, 100)
+                .timeToLiveSeconds(CACHE_TTL_SECONDS)));
+        cache = cacheManager.getCache(VerifiedJwtCache.CACHE_NAME);
+        verifiedJwtCache = new VerifiedJwtCache(cacheManager);
+    }
+
+    @After
+    public void tearDown() {
+        cacheManager.shutdown();
+    }
+
+    @Test
+    public void shouldVerifyTokenOnlyOnce() {
+        VerifiedJwt verified = verifiedJwt(Instant.now().plusSeconds(3600));
+        AtomicInteger verifications = new AtomicInteger();
+        Function<String, VerifiedJwt> verifier = token -> {
+            verifications.incrementAndGet();
+            return verified;
+        };
+
+        assertSame(verified, verifiedJwtCache.get("token", verifier));
+        assertSame(verified, verifiedJwtCache.get("token", verifier));
+
+        assertEquals(1, verifications.get());
+        assertEquals(1, verifiedJwtCache.getStats().getHits());
+        assertEquals(1, verifiedJwtCache.getStats().getMisses());
+    }
+
+    @Test
+    public void shouldCapTimeToLiveAtTokenExpiry() {
+        verifiedJwtCache.get("short-lived", token -> verifiedJwt(Instant.now().plusSeconds(30)));
+        verifiedJwtCache.get("long-lived", token -> verifiedJwt(Instant.now().plusSeconds(3600)));
+
+        assertEquals(2, cache.getSize());
+        for (Object key : cache.getKeys()) {
+            VerifiedJwt cached = (VerifiedJwt) cache.get(key).getObjectValue();
+            int ttl = cache.get(key).getTimeToLive();
+            if (cached.getExpiry().isBefore(Instant.now().plusSeconds(60))) {
+                assertTrue("Entry outlives its token, ttl: " + ttl, ttl > 0 && ttl <= 30);
+            } else {
+                assertEquals(CACHE_TTL_SECONDS, ttl);
+            }
+        }
+    }
+
+    @Test
+    public void shouldNotCacheExpiredToken() {
+        AtomicInteger verifications = new AtomicInteger();
+        Function<String, VerifiedJwt> verifier = token -> {
+            verifications.incrementAndGet();
+            return verifiedJwt(Instant.now().minusSeconds(1));
+        };
+
+        verifiedJwtCache.get("expired", verifier);
+        verifiedJwtCache.get("expired", verifier);
+
+        assertEquals(0, cache.getSize());
+        assertEquals(2, verifications.get());
+    }
+
+    @Test
+    public void shouldNotCacheFailedVerification() {
+        VerifiedJwt verified = verifiedJwt(Instant.now().plusSeconds(3600));
+        AtomicInteger verifications = new AtomicInteger();
+        Function<String, VerifiedJwt> failsThenPasses = token -> {
+            if (verifications.incrementAndGet() == 1) {
+                throw new SignatureException("signature does not match");
+            }
+            return verified;
+        };
+
+        try {
+            verifiedJwtCache.get("token", failsThenPasses);
+            fail("Verification failure should be passed to the caller");
+        } catch (SignatureException e) {
+            assertEquals(0, cache.getSize());
+        }
+
+        assertSame(verified, verifiedJwtCache.get("token", failsThenPasses));
+        assertEquals(2, verifications.get());
+        assertEquals(1, verifiedJwtCache.getStats().getFailures());
+        assertEquals(0, verifiedJwtCache.getStats().getHits());
+    }
+
+    private VerifiedJwt verifiedJwt(Instant expiry) {
+        Claims claims = Jwts.claims().setExpiration(Date.from(expiry));
+        claims.put(JwtService.USER_UID_KEY, "user-1");
+        claims.put(JwtService.TYPE_KEY, JwtType.WEB_ANDROID_CLIENT.name());
+        return new VerifiedJwt(claims);
+    }
+
+}
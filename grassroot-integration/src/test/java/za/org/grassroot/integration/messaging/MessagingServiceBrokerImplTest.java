@@ -0,0 +1,149 @@
+package za.org.grassroot.integration.messaging;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Mono;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.server.HttpServer;
+import za.org.grassroot.core.dto.GrassrootEmail;
+import za.org.grassroot.integration.authentication.MicroserviceTokenProvider;
+
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+public class MessagingServiceBrokerImplTest {
+
+    private MicroserviceTokenProvider tokenProvider;
+    private MessagingServiceBrokerImpl messagingServiceBroker;
+
+    // status codes to answer the email endpoint with, in order, then 200 once they run out
+    private final ConcurrentLinkedQueue<Integer> emailStatuses = new ConcurrentLinkedQueue<>();
+    private final List<String> receivedAuthorizations = new CopyOnWriteArrayList<>();
+    private final List<String> receivedBodies = new CopyOnWriteArrayList<>();
+    private DisposableServer messagingService;
+
+    @Before
+    public void setUp() {
+        messagingService = HttpServer.create().host("localhost").port(0)
+                .route(routes -> routes.post("/email/send", (request, response) -> {
+                    receivedAuthorizations.add(request.requestHeaders().get(HttpHeaders.AUTHORIZATION));
+                    return request.receive().aggregate().asString().flatMap(body -> {
+                        receivedBodies.add(body);
+                        Integer status = emailStatuses.poll();
+                        return response.status(status == null ? 200 : status).sendString(Mono.just("done")).then();
+                    });
+                }))
+                .bindNow();
+        tokenProvider = mock(MicroserviceTokenProvider.class);
+        given(tokenProvider.getBearerHeader()).willReturn("Bearer first", "Bearer second", "Bearer third");
+    }
+
+    @After
+    public void tearDown() {
+        if (messagingService != null) {
+            messagingService.disposeNow();
+        }
+        if (messagingServiceBroker != null) {
+            messagingServiceBroker.close();
+        }
+    }
+
+    @Test
+    public void shouldSendFreshTokenOnRetry() {
+        startBroker(messagingService.port(), 10);
+        emailStatuses.add(503);
+
+        assertTrue(messagingServiceBroker.sendEmail(email("one@grassroot.org.za")));
+
+        assertEquals(Arrays.asList("Bearer first", "Bearer second"), receivedAuthorizations);
+    }
+
+    @Test
+    public void shouldNotRetryServerError() {
+        startBroker(messagingService.port(), 10);
+        emailStatuses.add(500);
+
+        assertFalse(messagingServiceBroker.sendEmail(email("one@grassroot.org.za")));
+
+        assertEquals(1, receivedAuthorizations.size());
+    }
+
+    @Test
+    public void shouldRetryConnectionFailure() throws Exception {
+        int closedPort;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            closedPort = socket.getLocalPort();
+        }
+        startBroker(closedPort, 10);
+
+        assertFalse(messagingServiceBroker.sendEmail(email("one@grassroot.org.za")));
+
+        verify(tokenProvider, times(3)).getBearerHeader();
+    }
+
+    @Test
+    public void shouldStopAtFailedChunkAndReturnUnsentEmails() {
+        startBroker(messagingService.port(), 2);
+        emailStatuses.addAll(Arrays.asList(200, 500));
+        List<GrassrootEmail> emails = IntStream.range(0, 5).mapToObj(i -> email("member" + i + "@grassroot.org.za"))
+                .collect(Collectors.toList());
+
+        Collection<GrassrootEmail> unsent = messagingServiceBroker.sendEmails(emails);
+
+        assertEquals(emails.subList(2, 5), new ArrayList<>(unsent));
+        assertEquals(2, receivedBodies.size());
+        assertTrue(receivedBodies.get(0).contains("member0@") && receivedBodies.get(0).contains("member1@"));
+    }
+
+    @Test
+    public void shouldSendEmailToRecipientsBeforeReturning() {
+        startBroker(messagingService.port(), 10);
+        Map<String, String> recipients = new HashMap<>();
+        recipients.put("one@grassroot.org.za", "one");
+        recipients.put("two@grassroot.org.za", "two");
+
+        messagingServiceBroker.sendEmail(recipients, new GrassrootEmail.EmailBuilder("System Email").content("stats").build());
+
+        assertEquals(1, receivedBodies.size());
+        assertTrue(receivedBodies.get(0).contains("one@grassroot.org.za") && receivedBodies.get(0).contains("two@grassroot.org.za"));
+    }
+
+    private void startBroker(int port, int emailBatchSize) {
+        messagingServiceBroker = new MessagingServiceBrokerImpl(tokenProvider);
+        ReflectionTestUtils.setField(messagingServiceBroker, "messagingServiceUrl", "http://localhost");
+        ReflectionTestUtils.setField(messagingServiceBroker, "messagingServicePort", port);
+        ReflectionTestUtils.setField(messagingServiceBroker, "maxConnections", 5);
+        ReflectionTestUtils.setField(messagingServiceBroker, "acquireTimeoutMillis", 2000L);
+        ReflectionTestUtils.setField(messagingServiceBroker, "sendAllowanceMillis", 500L);
+        ReflectionTestUtils.setField(messagingServiceBroker, "connectTimeoutMillis", 1000);
+        ReflectionTestUtils.setField(messagingServiceBroker, "retries", 2);
+        ReflectionTestUtils.setField(messagingServiceBroker, "syncTimeoutMillis", 10000L);
+        ReflectionTestUtils.setField(messagingServiceBroker, "emailBatchSize", emailBatchSize);
+        messagingServiceBroker.init();
+    }
+
+    private GrassrootEmail email(String address) {
+        return new GrassrootEmail.EmailBuilder("Notice").toAddress(address).content("meeting on friday").build();
+    }
+
+}
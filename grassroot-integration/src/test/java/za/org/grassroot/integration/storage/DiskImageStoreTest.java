@@ -0,0 +1,98 @@
+package za.org.grassroot.integration.storage;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class DiskImageStoreTest {
+
+    @Rule
+    public TemporaryFolder cacheFolder = new TemporaryFolder();
+
+    private DiskImageStore store;
+
+    @After
+    public void tearDown() {
+        if (store != null) {
+            store.close();
+        }
+    }
+
+    @Test
+    public void shouldReadBackStoredImage() {
+        store = new DiskImageStore(cacheFolder.getRoot().toPath(), 1000);
+        StoredImage image = image(100, "etag-1");
+
+        store.put("FULL_SIZE-image-1", image);
+
+        StoredImage read = store.get("FULL_SIZE-image-1").get();
+        assertArrayEquals(image.getContent(), read.getContent());
+        assertEquals("etag-1", read.getEtag());
+        assertEquals(100, store.getTotalBytes());
+    }
+
+    @Test
+    public void shouldEvictLeastRecentlyUsedOverBound() {
+        store = new DiskImageStore(cacheFolder.getRoot().toPath(), 300);
+        store.put("first", image(100, "1"));
+        store.put("second", image(100, "2"));
+        store.put("third", image(100, "3"));
+        store.get("first"); // so second is now the least recently used
+
+        store.put("fourth", image(100, "4"));
+
+        assertTrue(store.contains("first"));
+        assertFalse(store.contains("second"));
+        assertFalse(store.get("second").isPresent());
+        assertTrue(store.contains("third"));
+        assertTrue(store.contains("fourth"));
+        assertEquals(300, store.getTotalBytes());
+    }
+
+    @Test
+    public void shouldKeepFilesOnDiskWithinBound() throws Exception {
+        store = new DiskImageStore(cacheFolder.getRoot().toPath(), 250);
+        for (int i = 0; i < 10; i++) {
+            store.put("image-" + i, image(100, String.valueOf(i)));
+        }
+        store.put("too-large", image(300, "large"));
+
+        assertEquals(200, store.getTotalBytes());
+        assertEquals(2, Files.list(store.getDirectory()).count());
+        assertFalse(store.contains("too-large"));
+    }
+
+    @Test
+    public void shouldOnlyDeleteFilesItCreated() throws Exception {
+        Path others = Files.write(cacheFolder.newFile("not-an-image.txt").toPath(), "keep me".getBytes());
+        DiskImageStore previous = new DiskImageStore(cacheFolder.getRoot().toPath(), 1000);
+        previous.put("held-by-previous", image(100, "1"));
+
+        store = new DiskImageStore(cacheFolder.getRoot().toPath(), 1000);
+        store.put("held-by-this", image(100, "2"));
+        store.close();
+
+        assertTrue(Files.exists(others));
+        assertFalse(Files.exists(store.getDirectory()));
+        assertTrue(previous.get("held-by-previous").isPresent());
+        previous.close();
+    }
+
+    private StoredImage image(int size, String etag) {
+        byte[] content = new byte[size];
+        for (int i = 0; i < size; i++) {
+            content[i] = (byte) (i + etag.hashCode());
+        }
+        return new StoredImage(content, etag);
+    }
+
+}
@@ -0,0 +1,121 @@
+package za.org.grassroot.integration.storage;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.stream.IntStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TaskImageCacheTest {
+
+    private static final int IMAGE_BYTES = 256 * 1024;
+
+    @Rule
+    public TemporaryFolder cacheFolder = new TemporaryFolder();
+
+    private TaskImageCache taskImageCache;
+    private DiskImageStore diskTier;
+
+    @Before
+    public void setUp() {
+        taskImageCache = new TaskImageCache();
+        ReflectionTestUtils.setField(taskImageCache, "heapMegabytes", 1L);
+        ReflectionTestUtils.setField(taskImageCache, "diskMegabytes", 2L);
+        ReflectionTestUtils.setField(taskImageCache, "diskDirectory", cacheFolder.getRoot().getAbsolutePath());
+        ReflectionTestUtils.setField(taskImageCache, "missingSeconds", 600L);
+        ReflectionTestUtils.setField(taskImageCache, "ttlSeconds", 900L);
+        taskImageCache.init();
+        diskTier = (DiskImageStore) ReflectionTestUtils.getField(taskImageCache, "diskTier");
+    }
+
+    @After
+    public void tearDown() {
+        taskImageCache.close();
+    }
+
+    @Test
+    public void shouldMoveImagesPushedOffHeapToDiskAndBackOnRead() {
+        IntStream.range(0, 6).forEach(i -> put("image-" + i, ImageType.FULL_SIZE, image(i)));
+
+        // six images do not fit in the heap's megabyte, so some went to disk, but none were lost
+        assertTrue(diskTier.getTotalBytes() > 0);
+        IntStream.range(0, 6).forEach(i -> assertTrue(taskImageCache.contains("image-" + i, ImageType.FULL_SIZE)));
+
+        String onDisk = IntStream.range(0, 6).mapToObj(i -> "image-" + i)
+                .filter(uid -> diskTier.contains("FULL_SIZE-" + uid)).findFirst().get();
+        assertEquals("etag-" + onDisk.substring("image-".length()), taskImageCache.get(onDisk, ImageType.FULL_SIZE).get().getEtag());
+        assertFalse(diskTier.contains("FULL_SIZE-" + onDisk));
+    }
+
+    @Test
+    public void shouldDropImagesOnceBothTiersAreFull() {
+        IntStream.range(0, 20).forEach(i -> put("image-" + i, ImageType.FULL_SIZE, image(i)));
+
+        assertEquals(2 * 1024 * 1024, diskTier.getTotalBytes());
+        long held = IntStream.range(0, 20).filter(i -> taskImageCache.contains("image-" + i, ImageType.FULL_SIZE)).count();
+        assertTrue("Holding " + held + " images", held > 8 && held <= 12);
+    }
+
+    @Test
+    public void shouldEvictAllVersionsFromBothTiers() {
+        IntStream.range(0, 6).forEach(i -> put("image-" + i, ImageType.FULL_SIZE, image(i)));
+        put("image-0", ImageType.LARGE_THUMBNAIL, image(0));
+        taskImageCache.markMissing("image-0", ImageType.MICRO, taskImageCache.currentGeneration());
+
+        IntStream.range(0, 6).forEach(i -> taskImageCache.evict("image-" + i));
+
+        assertEquals(0, diskTier.getTotalBytes());
+        IntStream.range(0, 6).forEach(i -> assertFalse(taskImageCache.contains("image-" + i, ImageType.FULL_SIZE)));
+        assertFalse(taskImageCache.contains("image-0", ImageType.LARGE_THUMBNAIL));
+        assertFalse(taskImageCache.isKnownMissing("image-0", ImageType.MICRO));
+    }
+
+    @Test
+    public void shouldNotCacheWhatWasFetchedBeforeAnEviction() {
+        long fetchGeneration = taskImageCache.currentGeneration();
+        taskImageCache.evict("image-0");
+
+        taskImageCache.put("image-0", ImageType.FULL_SIZE, image(0), fetchGeneration);
+        taskImageCache.markMissing("image-0", ImageType.MICRO, fetchGeneration);
+
+        assertFalse(taskImageCache.get("image-0", ImageType.FULL_SIZE).isPresent());
+        assertFalse(taskImageCache.isKnownMissing("image-0", ImageType.MICRO));
+
+        // a fetch started after the eviction is cached as usual
+        put("image-0", ImageType.FULL_SIZE, image(0));
+        assertTrue(taskImageCache.get("image-0", ImageType.FULL_SIZE).isPresent());
+    }
+
+    @Test
+    public void shouldStopServingImagesOnceHeldPastTheirTime() {
+        Instant longAgo = Instant.now().minus(Duration.ofHours(1));
+        IntStream.range(0, 6).forEach(i -> put("image-" + i, ImageType.FULL_SIZE,
+                new StoredImage(new byte[IMAGE_BYTES], "etag-" + i, longAgo)));
+
+        // on either tier
+        assertTrue(diskTier.getTotalBytes() > 0);
+        IntStream.range(0, 6).forEach(i -> {
+            assertFalse(taskImageCache.contains("image-" + i, ImageType.FULL_SIZE));
+            assertFalse(taskImageCache.get("image-" + i, ImageType.FULL_SIZE).isPresent());
+        });
+        assertEquals(0, diskTier.getTotalBytes());
+    }
+
+    private void put(String uid, ImageType imageType, StoredImage image) {
+        taskImageCache.put(uid, imageType, image, taskImageCache.currentGeneration());
+    }
+
+    private StoredImage image(int index) {
+        return new StoredImage(new byte[IMAGE_BYTES], "etag-" + index);
+    }
+
+}
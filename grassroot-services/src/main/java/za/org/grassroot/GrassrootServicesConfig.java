@@ -43,6 +43,7 @@ public class GrassrootServicesConfig implements SchedulingConfigurer {
         taskRegistrar.setScheduler(taskExecutor());
     }
 
+    // only runs the scheduled jobs, @Async work has its own executors (see AsyncExecutorConfig)
     @Bean(destroyMethod="shutdown")
     public Executor taskExecutor() {
         return Executors.newScheduledThreadPool(10);
@@ -4,21 +4,13 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
-import za.org.grassroot.core.domain.group.Group;
-import za.org.grassroot.core.domain.task.Event;
-import za.org.grassroot.core.repository.GroupRepository;
-import za.org.grassroot.core.repository.MeetingRepository;
-import za.org.grassroot.core.specifications.EventSpecifications;
 import za.org.grassroot.core.util.DateTimeUtil;
 import za.org.grassroot.integration.location.MunicipalFilteringBroker;
-import za.org.grassroot.services.geo.GeoLocationBroker;
+import za.org.grassroot.services.geo.GeoAggregationBroker;
 
 import java.time.Instant;
 import java.time.LocalDate;
 import java.time.temporal.ChronoUnit;
-import java.util.List;
-
-import static org.springframework.data.jpa.domain.Specification.where;
 
 /**
  * Created by luke on 2017/04/05.
@@ -29,19 +21,13 @@ public class ScheduledGeoCalculations {
 
     private static final long DAYS_TO_CALC_MTGS = 7;
 
-    private final GeoLocationBroker geoLocationBroker;
-    private final GroupRepository groupRepository;
-    private final MeetingRepository meetingRepository;
+    private final GeoAggregationBroker geoAggregationBroker;
 
     private MunicipalFilteringBroker municipalFilteringBroker;
 
     @Autowired
-    public ScheduledGeoCalculations(GeoLocationBroker geoLocationBroker,
-                                    GroupRepository groupRepository,
-                                    MeetingRepository meetingRepository) {
-        this.geoLocationBroker = geoLocationBroker;
-        this.groupRepository = groupRepository;
-        this.meetingRepository = meetingRepository;
+    public ScheduledGeoCalculations(GeoAggregationBroker geoAggregationBroker) {
+        this.geoAggregationBroker = geoAggregationBroker;
     }
 
     @Autowired(required = false)
@@ -55,15 +41,13 @@ public class ScheduledGeoCalculations {
         // other being executed in order...
 
         LocalDate today = LocalDate.now();
-        geoLocationBroker.calculatePreviousPeriodUserLocations(today);
-
         log.info("Calculating group locations for date {}", today);
-        List<Group> groups = groupRepository.findAll();
-        for (Group group : groups) {
-            // we don't want one big TX for all groups, so we separate each group location
-            // calculation into its own transaction
-            geoLocationBroker.calculateGroupLocation(group.getUid(), today);
-        }
+        geoAggregationBroker.calculateGroupLocations(today);
+    }
+
+    @Scheduled(fixedDelay = 1800000, initialDelay = 300000) // every half hour, to pick up a run interrupted by a restart
+    public void resumeAggregateLocations() {
+        geoAggregationBroker.resumeGroupLocations(LocalDate.now());
     }
 
     @Scheduled(cron = "0 0 3 * * *") // runs at 3am UTC every day, so can assume above is done
@@ -73,17 +57,7 @@ public class ScheduledGeoCalculations {
         // (but do need to include meetings in recent past, as may have taken photo etc)
         Instant start = Instant.now().minus(DAYS_TO_CALC_MTGS, ChronoUnit.DAYS);
         Instant end = DateTimeUtil.getVeryLongAwayInstant(); // may change to 1 month in future
-
-        List<Event> publicMeetings = meetingRepository.findAll(
-                where(EventSpecifications.isPublic())
-                .and(EventSpecifications.notCancelled())
-                .and(EventSpecifications.startDateTimeBetween(start, end)));
-
-        log.info("Calculating meeting locations for {} public meetings", publicMeetings.size());
-        // as above: do this in separate TX rather than all as one
-        publicMeetings.forEach(event -> {
-            geoLocationBroker.calculateMeetingLocationScheduled(event.getUid(), today);
-        });
+        geoAggregationBroker.calculatePublicMeetingLocations(today, start, end);
     }
 
     // disabling this until confident in behaviour
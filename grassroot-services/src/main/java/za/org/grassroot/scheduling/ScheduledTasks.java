@@ -12,25 +12,20 @@ import org.springframework.stereotype.Component;
 import org.springframework.util.StringUtils;
 import za.org.grassroot.core.domain.ConfigVariable;
 import za.org.grassroot.core.domain.SafetyEvent;
-import za.org.grassroot.core.domain.group.Group;
-import za.org.grassroot.core.domain.task.Event;
-import za.org.grassroot.core.domain.task.Meeting;
 import za.org.grassroot.core.domain.task.Todo;
 import za.org.grassroot.core.events.AlterConfigVariableEvent;
 import za.org.grassroot.core.repository.ConfigRepository;
-import za.org.grassroot.core.repository.EventRepository;
-import za.org.grassroot.core.repository.MeetingRepository;
 import za.org.grassroot.core.repository.SafetyEventRepository;
 import za.org.grassroot.core.repository.TodoRepository;
 import za.org.grassroot.core.repository.VoteRepository;
 import za.org.grassroot.core.specifications.TodoSpecifications;
 import za.org.grassroot.services.SafetyEventBroker;
-import za.org.grassroot.services.task.EventBroker;
+import za.org.grassroot.services.group.GroupStatsBroker;
+import za.org.grassroot.services.task.EventReminderBroker;
 import za.org.grassroot.services.task.TodoBroker;
 import za.org.grassroot.services.task.VoteBroker;
 
 import javax.annotation.PostConstruct;
-import javax.persistence.criteria.Join;
 import java.time.Instant;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
@@ -40,7 +35,6 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
 
 import static za.org.grassroot.core.util.DateTimeUtil.convertToSystemTime;
 import static za.org.grassroot.core.util.DateTimeUtil.getSAST;
@@ -64,7 +58,7 @@ public class ScheduledTasks implements ApplicationListener<AlterConfigVariableEv
     private ConfigRepository configRepository;
 
     @Autowired
-    private EventBroker eventBroker;
+    private EventReminderBroker eventReminderBroker;
 
     @Autowired
     private VoteBroker voteBroker;
@@ -76,14 +70,11 @@ public class ScheduledTasks implements ApplicationListener<AlterConfigVariableEv
     private SafetyEventBroker safetyEventBroker;
 
     @Autowired
-    private EventRepository eventRepository;
+    private GroupStatsBroker groupStatsBroker;
 
     @Autowired
     private VoteRepository voteRepository;
 
-    @Autowired
-    private MeetingRepository meetingRepository;
-
     @Autowired
     private TodoRepository todoRepository;
 
@@ -100,20 +91,7 @@ public class ScheduledTasks implements ApplicationListener<AlterConfigVariableEv
     @Scheduled(fixedRate = 300000) //runs every 5 minutes
     public void sendReminders() {
         final boolean sendUnpaidEventReminders = Boolean.parseBoolean(configVariables.getOrDefault("tasks.reminders.unpaid.send", "false"));
-        List<Event> events = eventRepository.findEventsForReminders(Instant.now())
-                .stream().filter(event -> sendUnpaidEventReminders || event.getAncestorGroup().robustIsPaidFor())
-                .collect(Collectors.toList());
-
-        log.debug("Sending scheduled reminders for {} event(s)", events.size());
-
-        for (Event event : events) {
-            try {
-                eventBroker.sendScheduledReminder(event.getUid());
-            } catch (Exception e) {
-                log.error("Error while sending scheduled reminder of event " + event + ": " + e.getMessage(), e);
-            }
-        }
-
+        eventReminderBroker.sendEventReminders(Instant.now(), sendUnpaidEventReminders);
         log.info("Sending scheduled reminders...done");
     }
 
@@ -140,26 +118,8 @@ public class ScheduledTasks implements ApplicationListener<AlterConfigVariableEv
         Instant start = convertToSystemTime(LocalDateTime.of(yesterday, LocalTime.MIN), getSAST());
         Instant end = convertToSystemTime(LocalDateTime.of(yesterday, LocalTime.MAX), getSAST());
 
-        Specification<Event> mtgCharacteristics = (root, query, cb) -> cb.and(cb.isFalse(root.get("canceled")),
-                cb.isTrue(root.get("rsvpRequired")), cb.between(root.get("eventStartDateTime"), start, end));
-        Specification<Event> ancestorGroupPaidFor = (root, query, cb) -> {
-            Join<Meeting, Group> groupJoin = root.join("ancestorGroup");
-            return cb.isTrue(groupJoin.get("paidFor"));
-        };
-
         final boolean sendForUnpaidGroups = Boolean.parseBoolean(configVariables.getOrDefault("meetings.thankyou.unpaid.send", "false"));
-        Specification<Event> specs = sendForUnpaidGroups ? mtgCharacteristics : mtgCharacteristics.and(ancestorGroupPaidFor);
-        List<Event> meetings = meetingRepository.findAll(specs);
-
-        log.info("Sending out meeting thank you for {} meetings", meetings.size());
-
-        for (Event meeting : meetings) {
-            try {
-                eventBroker.sendMeetingAcknowledgements(meeting.getUid());
-            } catch (Exception ex) {
-                log.error("Error while sending acknowledgments for meeting " + meeting + ": " + ex.getMessage(), ex);
-            }
-        }
+        eventReminderBroker.sendMeetingThankYous(start, end, sendForUnpaidGroups);
     }
 
     @Scheduled(fixedRate = 3600000) // runs every hour
@@ -168,17 +128,7 @@ public class ScheduledTasks implements ApplicationListener<AlterConfigVariableEv
         Instant start = Instant.now().minus(48, ChronoUnit.HOURS);
 		Instant end = start.minus(1, ChronoUnit.HOURS);
 
-        List<Meeting> meetings = meetingRepository.meetingsForResponseTotals(Instant.now(), start, end)
-                .stream().filter(meeting -> meeting.getAncestorGroup().isPaidFor()).collect(Collectors.toList());
-
-		log.info("Sending out RSVP totals for {} meetings", meetings.size());
-        for (Meeting meeting : meetings) {
-            try {
-                eventBroker.sendMeetingRSVPsToDate(meeting.getUid());
-            } catch (Exception e) {
-                log.error("Error while sending responses for meeting " + meeting + ": " + e.getMessage(), e);
-            }
-        }
+        eventReminderBroker.sendMeetingResponseTotals(Instant.now(), start, end);
     }
 
     @Scheduled(fixedRate = 300000) //runs every 5 minutes
@@ -203,6 +153,31 @@ public class ScheduledTasks implements ApplicationListener<AlterConfigVariableEv
         todos.forEach(todo -> todoBroker.sendScheduledReminder(todo.getUid()));
     }
 
+    @Scheduled(fixedRate = 60000) //runs every 1 minute
+    public void countAwaitedGroupStats() {
+        // groups from before the stats were kept are counted when first asked for, here rather than on the read
+        reconcileGroupStats(groupStatsBroker.fetchGroupsAwaitingStats());
+    }
+
+    @Scheduled(cron = "0 30 3 * * *") // runs at 3:30am every day
+    public void reconcileGroupStats() {
+        // stats are adjusted as members, their tags and provinces change, so only groups with a change that could not
+        // be applied are recounted
+        reconcileGroupStats(groupStatsBroker.fetchGroupsToReconcile());
+    }
+
+    private void reconcileGroupStats(List<String> groupUids) {
+        if (!groupUids.isEmpty())
+            log.info("Counting materialised stats for {} groups", groupUids.size());
+        for (String groupUid : groupUids) {
+            try {
+                groupStatsBroker.reconcileGroupStats(groupUid);
+            } catch (Exception e) {
+                log.error("Error while reconciling stats of group " + groupUid + ": " + e.getMessage(), e);
+            }
+        }
+    }
+
     @Override
     public void onApplicationEvent(AlterConfigVariableEvent event) {
         if (!StringUtils.isEmpty(event.getKey()) && configVariables.containsKey(event.getKey())) {
@@ -37,6 +37,7 @@ import za.org.grassroot.core.repository.UserRepository;
 import za.org.grassroot.core.specifications.GroupSpecifications;
 import za.org.grassroot.core.util.DateTimeUtil;
 import za.org.grassroot.services.group.GroupBroker;
+import za.org.grassroot.services.group.MembershipWriter;
 import za.org.grassroot.services.util.LogsAndNotificationsBroker;
 import za.org.grassroot.services.util.LogsAndNotificationsBundle;
 
@@ -65,6 +66,7 @@ public class AdminManager implements AdminService, ApplicationEventPublisherAwar
     private final UserLogRepository userLogRepository;
     private final PasswordEncoder passwordEncoder;
     private final MembershipRepository membershipRepository;
+    private final MembershipWriter membershipWriter;
 
     private ConfigRepository configRepository;
     private LogsAndNotificationsBroker logsAndNotificationsBroker;
@@ -73,13 +75,15 @@ public class AdminManager implements AdminService, ApplicationEventPublisherAwar
 
     @Autowired
     public AdminManager(UserRepository userRepository, GroupRepository groupRepository, GroupBroker groupBroker, GroupLogRepository groupLogRepository, 
-                        UserLogRepository userLogRepository, MembershipRepository membershipRepository, PasswordEncoder passwordEncoder) {
+                        UserLogRepository userLogRepository, MembershipRepository membershipRepository, MembershipWriter membershipWriter,
+                        PasswordEncoder passwordEncoder) {
         this.userRepository = userRepository;
         this.groupRepository = groupRepository;
         this.groupBroker = groupBroker;
         this.groupLogRepository = groupLogRepository;
         this.userLogRepository = userLogRepository;
         this.membershipRepository = membershipRepository;
+        this.membershipWriter = membershipWriter;
         this.passwordEncoder = passwordEncoder;
     }
 
@@ -130,10 +134,7 @@ public class AdminManager implements AdminService, ApplicationEventPublisherAwar
         User user = userRepository.findOneByUid(userUid);
         Set<Membership> memberships = user.getMemberships();
         logger.info("admin user now removing user from {} groups", memberships.size());
-        for (Membership membership : memberships) {
-            Group group = membership.getGroup();
-            group.removeMembership(membership); // concurrency?
-        }
+        membershipWriter.removeMemberships(memberships);
     }
 
     @Override
@@ -0,0 +1,171 @@
+package za.org.grassroot.services;
+
+import com.google.common.collect.ImmutableMap;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.util.StringUtils;
+import za.org.grassroot.core.domain.campaign.Campaign;
+import za.org.grassroot.core.events.JoinRoutingChangedEvent;
+import za.org.grassroot.core.repository.CampaignRepository;
+import za.org.grassroot.core.repository.GroupJoinCodeRepository;
+
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Where an inbound campaign code (e.g., a USSD suffix) or join word (SMS, WhatsApp) should go, held as an immutable
+ * snapshot so that routing a message takes a map lookup and no queries. The snapshot is rebuilt whole and swapped in,
+ * after the commit of any change to codes or join words on this node, and periodically to pick up changes made on other
+ * nodes. Campaigns are held with their end time and dropped at lookup once it has passed, so a campaign stops matching
+ * when it ends even if no rebuild has run since.
+ *
+ * A word matched here still has to be loaded and checked by whoever acts on it; this only answers where it points.
+ */
+@Component @Slf4j
+public class JoinRoutingTable implements ApplicationListener<JoinRoutingChangedEvent> {
+
+    private final CampaignRepository campaignRepository;
+    private final GroupJoinCodeRepository groupJoinCodeRepository;
+
+    private final AtomicReference<Snapshot> snapshot = new AtomicReference<>();
+
+    @Autowired
+    public JoinRoutingTable(CampaignRepository campaignRepository, GroupJoinCodeRepository groupJoinCodeRepository) {
+        this.campaignRepository = campaignRepository;
+        this.groupJoinCodeRepository = groupJoinCodeRepository;
+    }
+
+    public Optional<String> campaignForCode(String code) {
+        return code == null ? Optional.empty() : snapshot().campaignsByCode.lookup(code.trim());
+    }
+
+    public Optional<String> campaignForJoinWord(String joinWord) {
+        return joinWord == null ? Optional.empty() : snapshot().campaignsByJoinWord.lookup(normalize(joinWord));
+    }
+
+    public Optional<String> groupForJoinWord(String joinWord) {
+        return joinWord == null ? Optional.empty() : snapshot().groupsByJoinWord.lookup(normalize(joinWord));
+    }
+
+    @Override
+    public void onApplicationEvent(JoinRoutingChangedEvent event) {
+        log.debug("Join routing changed, for entity {}, rebuilding", event.getEntityUid());
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCommit() {
+                    rebuild();
+                }
+            });
+        } else {
+            rebuild();
+        }
+    }
+
+    @Scheduled(initialDelay = 10000, fixedDelayString = "${grassroot.join.routing.reload.interval:120000}")
+    public void rebuild() {
+        try {
+            snapshot.set(load());
+        } catch (RuntimeException e) {
+            // keep routing with what we had, rather than dropping every inbound word until the next rebuild
+            log.error("Failed to rebuild join routing, keeping prior snapshot", e);
+        }
+    }
+
+    private Snapshot snapshot() {
+        Snapshot current = snapshot.get();
+        if (current == null) {
+            current = load();
+            snapshot.compareAndSet(null, current);
+        }
+        return current;
+    }
+
+    private Snapshot load() {
+        Map<String, Route> campaignsByCode = new HashMap<>();
+        Map<String, Route> campaignsByJoinWord = new HashMap<>();
+        List<Object[]> campaignRows = campaignRepository.fetchRoutingDetailsOfCampaignsEndingAfter(Instant.now());
+        for (Object[] row : campaignRows) {
+            final Route route = new Route((String) row[0], (Instant) row[2]);
+            final String code = (String) row[1];
+            if (!StringUtils.isEmpty(code)) {
+                campaignsByCode.merge(code.trim(), route, Route::laterEnding);
+            }
+            final String[] tags = (String[]) row[3];
+            if (tags != null) {
+                for (String tag : tags) {
+                    if (tag != null && tag.startsWith(Campaign.PUBLIC_JOIN_WORD_PREFIX)) {
+                        campaignsByJoinWord.merge(normalize(tag.substring(Campaign.PUBLIC_JOIN_WORD_PREFIX.length())),
+                                route, Route::laterEnding);
+                    }
+                }
+            }
+        }
+
+        Map<String, Route> groupsByJoinWord = new HashMap<>();
+        groupJoinCodeRepository.selectLowerCaseActiveJoinWordsWithGroupUids().forEach(row ->
+                groupsByJoinWord.putIfAbsent(((String) row[0]).trim(), new Route((String) row[1], null)));
+
+        log.info("Built join routing: {} campaign codes, {} campaign join words, {} group join words",
+                campaignsByCode.size(), campaignsByJoinWord.size(), groupsByJoinWord.size());
+        return new Snapshot(new Routes(campaignsByCode), new Routes(campaignsByJoinWord), new Routes(groupsByJoinWord));
+    }
+
+    private static String normalize(String joinWord) {
+        return joinWord.trim().toLowerCase();
+    }
+
+    private static final class Snapshot {
+
+        private final Routes campaignsByCode;
+        private final Routes campaignsByJoinWord;
+        private final Routes groupsByJoinWord;
+
+        private Snapshot(Routes campaignsByCode, Routes campaignsByJoinWord, Routes groupsByJoinWord) {
+            this.campaignsByCode = campaignsByCode;
+            this.campaignsByJoinWord = campaignsByJoinWord;
+            this.groupsByJoinWord = groupsByJoinWord;
+        }
+    }
+
+    private static final class Routes {
+
+        private final ImmutableMap<String, Route> routes;
+
+        private Routes(Map<String, Route> routes) {
+            this.routes = ImmutableMap.copyOf(routes);
+        }
+
+        private Optional<String> lookup(String key) {
+            Route route = routes.get(key);
+            return route == null || (route.endTime != null && !route.endTime.isAfter(Instant.now())) ?
+                    Optional.empty() : Optional.of(route.uid);
+        }
+    }
+
+    private static final class Route {
+
+        private final String uid;
+        private final Instant endTime; // null if it does not lapse by itself
+
+        private Route(String uid, Instant endTime) {
+            this.uid = uid;
+            this.endTime = endTime;
+        }
+
+        // should two running campaigns share a code or word, the one running longer wins
+        private static Route laterEnding(Route one, Route other) {
+            return one.endTime == null || (other.endTime != null && !other.endTime.isAfter(one.endTime)) ? one : other;
+        }
+    }
+
+}
@@ -3,6 +3,8 @@ package za.org.grassroot.services;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.security.access.AccessDeniedException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -13,8 +15,6 @@ import za.org.grassroot.core.domain.group.Group;
 import za.org.grassroot.core.domain.group.Membership;
 import za.org.grassroot.core.repository.GroupRepository;
 
-import javax.persistence.EntityManager;
-import javax.persistence.Query;
 import java.util.*;
 
 @Service
@@ -24,34 +24,18 @@ public class PermissionBrokerImpl implements PermissionBroker {
 
     private final GroupRepository groupRepository;
 
-    private final EntityManager entityManager;
-
     @Autowired
-    public PermissionBrokerImpl(GroupRepository groupRepository, EntityManager entityManager) {
+    public PermissionBrokerImpl(GroupRepository groupRepository) {
         this.groupRepository = groupRepository;
-        this.entityManager = entityManager;
     }
 
 
-    private Query fetchGroupsWithPermission(User user, Permission permission) {
-        return entityManager.createNativeQuery("select group_profile.*, greatest(last_task_creation_time, last_log_creation_time) as latest_activity from group_profile " +
-                "inner join group_user_membership as membership on (group_profile.id = membership.group_id and group_profile.active = true and membership.user_id = :user) " +
-                "where group_profile.active = true " +
-                "and :permission in (select permission from group_role_permission where role = membership.role and group_id = group_profile.id) " +
-                "order by latest_activity desc", Group.class)
-                .setParameter("user", user.getId())
-                .setParameter("permission", permission.getName());
-    }
-
-    private Query fetchAllGroupsSortedForUser(User user) {
-        log.info("about to execute select query ...");
-        return entityManager.createNativeQuery("SELECT group_profile.*, greatest(latest_group_change, latest_event, latest_todo) as latest_activity from group_profile " +
-                "inner join group_user_membership as membership on (group_profile.id = membership.group_id and group_profile.active=true and membership.user_id= :user) " +
-                "left outer join (select group_id, max(created_date_time) as latest_group_change from group_log group by group_id) as group_log on (group_log.group_id=group_profile.id) " +
-                "left outer join (select parent_group_id, max(created_date_time) as latest_event from event group by parent_group_id) as event on (event.parent_group_id=group_profile.id) " +
-                "left outer join (select parent_group_id, max(created_date_time) as latest_todo from action_todo group by parent_group_id) as todo on (todo.parent_group_id = group_profile.id) " +
-                "order by latest_activity desc", Group.class)
-                .setParameter("user", user.getId());
+    // both sorted on the maintained latest activity column, so a member's groups come straight off the membership and
+    // group indexes, rather than from aggregates over every log, event and todo in the system
+    private List<Group> fetchGroupsSortedForUser(User user, Permission permission, Pageable pageable) {
+        return permission == null ?
+                groupRepository.findActiveGroupsByLatestActivity(user, pageable) :
+                groupRepository.findActiveGroupsWithPermissionByLatestActivity(user, permission, pageable);
     }
 
     public void validateGroupPermission(User user, Group targetGroup, Permission requiredPermission) {
@@ -67,23 +51,17 @@ public class PermissionBrokerImpl implements PermissionBroker {
 
     @Override
     @Transactional(readOnly = true)
-    @SuppressWarnings("unchecked")
     public Set<Group> getActiveGroupsWithPermission(User user, Permission requiredPermission) {
         Objects.requireNonNull(user, "User cannot be null");
-        Query resultQuery = requiredPermission == null ? fetchAllGroupsSortedForUser(user) : fetchGroupsWithPermission(user, requiredPermission);
-        List<Group> activeGroups = resultQuery.getResultList();
-        log.info("Found {} active groups in query", activeGroups == null ? "none" : activeGroups.size());
-        return activeGroups == null ? new HashSet<>() : new HashSet<>(activeGroups);
+        List<Group> activeGroups = fetchGroupsSortedForUser(user, requiredPermission, Pageable.unpaged());
+        log.info("Found {} active groups in query", activeGroups.size());
+        return new HashSet<>(activeGroups);
     }
 
     @Override
     @Transactional(readOnly = true)
-    @SuppressWarnings("unchecked")
     public List<Group> getPageOfGroups(User user, Permission requiredPermission, int pageNumber, int pageSize) {
-        Query query = requiredPermission == null ? fetchAllGroupsSortedForUser(user) : fetchGroupsWithPermission(user, requiredPermission);
-        return query.setFirstResult((pageNumber) * pageSize)
-                    .setMaxResults(pageSize)
-                    .getResultList();
+        return fetchGroupsSortedForUser(user, requiredPermission, PageRequest.of(pageNumber, pageSize));
     }
 
     @Override
@@ -100,11 +78,8 @@ public class PermissionBrokerImpl implements PermissionBroker {
 
     @Override
     @Transactional(readOnly = true)
-    @SuppressWarnings("unchecked")
     public List<Group> getActiveGroupsSorted(User user, Permission requiredPermission) {
-        Query resultQuery = requiredPermission == null ?
-                fetchAllGroupsSortedForUser(user) : fetchGroupsWithPermission(user, requiredPermission);
-        return resultQuery.getResultList();
+        return fetchGroupsSortedForUser(user, requiredPermission, Pageable.unpaged());
     }
 
     @Override
@@ -22,7 +22,9 @@ import za.org.grassroot.services.util.CacheUtilService;
 
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 
 /**
@@ -198,12 +200,13 @@ public class SafetyEventBrokerImpl implements SafetyEventBroker {
             safetyEvent.setActive(false);
         }
 
+        Map<String, String> messages = new HashMap<>();
         for (User respondent : group.getMembers()) {
             if (!respondent.equals(requestor)) {
-                String message = messageAssemblingService.createSafetyEventMessage(respondent, requestor, address, true);
-                messagingServiceBroker.sendSMS(message, respondent.getUid(), false);
+                messages.put(respondent.getUid(), messageAssemblingService.createSafetyEventMessage(respondent, requestor, address, true));
             }
         }
+        messagingServiceBroker.sendSMS(messages, false);
 
     }
 
@@ -0,0 +1,88 @@
+package za.org.grassroot.services.async;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.scheduling.annotation.AsyncConfigurer;
+import org.springframework.transaction.PlatformTransactionManager;
+import za.org.grassroot.core.util.AsyncExecutors;
+
+import java.util.concurrent.Executor;
+
+import static za.org.grassroot.services.async.BoundedAsyncExecutor.WhenFull.DROP;
+import static za.org.grassroot.services.async.BoundedAsyncExecutor.WhenFull.RUN_ON_CALLER;
+
+/**
+ * The executors that @Async work runs on, one per kind of work (see AsyncExecutors), plus a default for the rest, so
+ * that none of it shares the scheduler's pool or an unbounded queue. Sizes are set through properties, read from the
+ * environment, since this is created before @Value placeholders can be resolved. Work that runs on its caller when a
+ * pool is full is run outside the caller's transaction, so @Async @Transactional methods still get one of their own.
+ */
+@Configuration
+public class AsyncExecutorConfig implements AsyncConfigurer {
+
+    private final Environment environment;
+    private final ObjectProvider<PlatformTransactionManager> transactionManager;
+
+    public AsyncExecutorConfig(Environment environment, ObjectProvider<PlatformTransactionManager> transactionManager) {
+        this.environment = environment;
+        this.transactionManager = transactionManager;
+    }
+
+    @Bean
+    public BoundedAsyncExecutor asyncExecutor() {
+        return executor("asyncExecutor", "default", 8, 2000, RUN_ON_CALLER);
+    }
+
+    @Bean(name = AsyncExecutors.USER_LOG)
+    public BoundedAsyncExecutor userLogExecutor() {
+        return executor(AsyncExecutors.USER_LOG, "userlog", 2, 2000, RUN_ON_CALLER);
+    }
+
+    @Bean(name = AsyncExecutors.SESSION_LOG)
+    public BoundedAsyncExecutor sessionLogExecutor() {
+        return executor(AsyncExecutors.SESSION_LOG, "sessionlog", 2, 5000, DROP);
+    }
+
+    @Bean(name = AsyncExecutors.NOTIFICATIONS)
+    public BoundedAsyncExecutor notificationExecutor() {
+        return executor(AsyncExecutors.NOTIFICATIONS, "notifications", 4, 1000, RUN_ON_CALLER);
+    }
+
+    @Bean(name = AsyncExecutors.SIDE_EFFECTS)
+    public BoundedAsyncExecutor sideEffectExecutor() {
+        return executor(AsyncExecutors.SIDE_EFFECTS, "sideeffects", 4, 5000, RUN_ON_CALLER);
+    }
+
+    @Bean(name = AsyncExecutors.MEMBER_IMPORT)
+    public BoundedAsyncExecutor memberImportExecutor() {
+        return executor(AsyncExecutors.MEMBER_IMPORT, "memberimport", 2, 200, RUN_ON_CALLER);
+    }
+
+    @Bean(name = AsyncExecutors.REMINDERS)
+    public BoundedAsyncExecutor reminderExecutor() {
+        return executor(AsyncExecutors.REMINDERS, "reminders", 4, 1000, RUN_ON_CALLER);
+    }
+
+    @Bean(name = AsyncExecutors.GEO)
+    public BoundedAsyncExecutor geoExecutor() {
+        return executor(AsyncExecutors.GEO, "geo", 4, 100, RUN_ON_CALLER);
+    }
+
+    @Override
+    public Executor getAsyncExecutor() {
+        return asyncExecutor();
+    }
+
+    // e.g., grassroot.async.sessionlog.threads and grassroot.async.sessionlog.queue
+    private BoundedAsyncExecutor executor(String name, String propertyKey, int defaultThreads, int defaultQueue,
+                                          BoundedAsyncExecutor.WhenFull whenFull) {
+        final String prefix = "grassroot.async." + propertyKey;
+        return new BoundedAsyncExecutor(name,
+                environment.getProperty(prefix + ".threads", Integer.class, defaultThreads),
+                environment.getProperty(prefix + ".queue", Integer.class, defaultQueue), whenFull,
+                transactionManager::getIfAvailable);
+    }
+
+}
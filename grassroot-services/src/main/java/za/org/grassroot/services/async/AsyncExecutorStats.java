@@ -0,0 +1,23 @@
+package za.org.grassroot.services.async;
+
+import lombok.Value;
+
+// counts since startup for one of the async executors, and its state when fetched, for admins to see where work backs up
+@Value
+public class AsyncExecutorStats {
+
+    String name;
+    String whenFull;
+    int threads;
+    int queueCapacity;
+    int queueDepth;
+    int activeThreads;
+    long submitted; // taken by the pool, or run on the caller; tasks dropped are only counted below
+    long completed;
+    long ranOnCaller;
+    long dropped;
+    long meanWaitMillis;
+    long maxWaitMillis;
+    long meanRunMillis;
+
+}
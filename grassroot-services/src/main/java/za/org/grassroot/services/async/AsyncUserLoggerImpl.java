@@ -2,13 +2,13 @@ package za.org.grassroot.services.async;
 
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.scheduling.annotation.Async;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
-import za.org.grassroot.core.domain.StandardRole;
 import za.org.grassroot.core.domain.UidIdentifiable;
-import za.org.grassroot.core.domain.User;
 import za.org.grassroot.core.domain.UserLog;
 import za.org.grassroot.core.domain.geo.GeoLocation;
 import za.org.grassroot.core.domain.geo.UserLocationLog;
@@ -17,11 +17,12 @@ import za.org.grassroot.core.enums.UserInterfaceType;
 import za.org.grassroot.core.enums.UserLogType;
 import za.org.grassroot.core.repository.UserLocationLogRepository;
 import za.org.grassroot.core.repository.UserLogRepository;
-import za.org.grassroot.core.repository.UserRepository;
+import za.org.grassroot.core.util.AsyncExecutors;
 import za.org.grassroot.services.util.CacheUtilService;
 
 import java.time.Instant;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Objects;
 import java.util.Set;
 
@@ -32,68 +33,57 @@ import static za.org.grassroot.core.specifications.UserLogSpecifications.*;
 
 /**
  * Created by luke on 2016/02/22.
+ * Session, interruption and date input logs are handed to the activity buffer on the caller's thread, which only
+ * appends them to its spill file, so they are queued once; only those it refuses go to the session log executor.
  */
 @Service @Slf4j
 public class AsyncUserLoggerImpl implements AsyncUserLogger {
 
-    private final UserRepository userRepository;
     private final UserLogRepository userLogRepository;
     private final UserLocationLogRepository userLocationLogRepository;
     private final CacheUtilService cacheUtilService;
+    private final UserActivityBuffer userActivityBuffer;
+    private final UserActivityWriter userActivityWriter;
+    private final ThreadPoolTaskExecutor sessionLogExecutor;
 
     @Autowired
-    public AsyncUserLoggerImpl(UserRepository userRepository, UserLogRepository userLogRepository, UserLocationLogRepository userLocationLogRepository, CacheUtilService cacheUtilService) {
-        this.userRepository = userRepository;
+    public AsyncUserLoggerImpl(UserLogRepository userLogRepository, UserLocationLogRepository userLocationLogRepository, CacheUtilService cacheUtilService,
+                               UserActivityBuffer userActivityBuffer, UserActivityWriter userActivityWriter,
+                               @Qualifier(AsyncExecutors.SESSION_LOG) ThreadPoolTaskExecutor sessionLogExecutor) {
         this.userLogRepository = userLogRepository;
         this.userLocationLogRepository = userLocationLogRepository;
         this.cacheUtilService = cacheUtilService;
+        this.userActivityBuffer = userActivityBuffer;
+        this.userActivityWriter = userActivityWriter;
+        this.sessionLogExecutor = sessionLogExecutor;
     }
 
-    @Async
+    @Async(AsyncExecutors.USER_LOG)
     @Override
-    @Transactional
     public void logUserLogin(String userUid, UserInterfaceType channel) {
         Objects.requireNonNull(userUid);
-        User user = userRepository.findOneByUid(userUid);
-
         log.info("Recording user login (should be off main thread), user ID : {}, channel : {}", userUid, channel);
-
-        // note: WhatsApp approval requires something different, so do _not_ set it here (because will be recorded based on 'within band' WhatsApp use)
-        if (UserInterfaceType.WEB.equals(channel) || UserInterfaceType.WEB_2.equals(channel)) {
-            user.setHasWebProfile(true);
-        } else if (UserInterfaceType.ANDROID.equals(channel) || UserInterfaceType.ANDROID_2.equals(channel)) {
-            user.setHasAndroidProfile(true);
-        }
-
-        if (!user.isHasInitiatedSession()) {
-            user.setHasInitiatedSession(true);
-            user.addStandardRole(StandardRole.ROLE_FULL_USER);
-        }
-
-        userLogRepository.save(new UserLog(userUid, UserLogType.USER_SESSION, "", channel));
+        recordActivity(new UserLog(userUid, UserLogType.USER_SESSION, "", channel), UserProfileFlag.forLogin(channel));
     }
 
-    @Async
+    @Async(AsyncExecutors.USER_LOG)
     @Override
-    @Transactional
     public void recordUserLog(String userUid, UserLogType userLogType, String description, UserInterfaceType channel) {
         Objects.requireNonNull(userUid);
         Objects.requireNonNull(userLogType);
         UserLog userLog = new UserLog(userUid, userLogType, description,
                 channel == null ? UNKNOWN : channel);
-        userLogRepository.saveAndFlush(userLog);
+        recordActivity(userLog, Collections.emptySet());
     }
 
-    @Async
+    @Async(AsyncExecutors.USER_LOG)
     @Override
     @Transactional
     public void storeUserLogs(Set<UserLog> userLogSet) {
         userLogRepository.saveAll(userLogSet);
     }
 
-    @Async
     @Override
-    @Transactional
     public void recordUserSession(String userUid, UserInterfaceType interfaceType, UidIdentifiable linkedEntity) {
         Objects.requireNonNull(userUid);
         Objects.requireNonNull(interfaceType);
@@ -109,10 +99,10 @@ public class AsyncUserLoggerImpl implements AsyncUserLogger {
         log.info("Recording new session, have a linked entity? : {}", linkedEntity != null);
         final String description = linkedEntity != null ? linkedEntity.getUid() : recentSession ? "INTERRUPTED_USSD" : "";
 
-        log.debug("New session for user, recording in logs ... should be off main thread. User ID: {}, channel: {}", userUid, interfaceType);
+        log.debug("New session for user, recording in logs. User ID: {}, channel: {}", userUid, interfaceType);
 
         cacheUtilService.setSessionOpen(userUid, interfaceType);
-        userLogRepository.save(new UserLog(userUid, UserLogType.USER_SESSION, description, interfaceType));
+        recordSessionActivity(new UserLog(userUid, UserLogType.USER_SESSION, description, interfaceType));
     }
 
     @Override
@@ -124,15 +114,13 @@ public class AsyncUserLoggerImpl implements AsyncUserLogger {
         log.info("Completed log recording");
     }
 
-    @Async
     @Override
-    @Transactional
     public void recordUssdInterruption(String userUid, String savedUrl) {
         Objects.requireNonNull(userUid);
         Objects.requireNonNull(savedUrl);
 
         // note: given pattern of USSD calls, this may not catch all (e.g., "set my name")
-        userLogRepository.save(new UserLog(userUid, UserLogType.USSD_INTERRUPTED, stripParameters(savedUrl), USSD));
+        recordSessionActivity(new UserLog(userUid, UserLogType.USSD_INTERRUPTED, stripParameters(savedUrl), USSD));
     }
 
     private String stripParameters(String url) {
@@ -146,9 +134,7 @@ public class AsyncUserLoggerImpl implements AsyncUserLogger {
         return stripped;
     }
 
-    @Async
     @Override
-    @Transactional
     public void recordUserInputtedDateTime(String userUid, String dateTimeString, String action, UserInterfaceType interfaceType) {
 
         Objects.requireNonNull(userUid);
@@ -156,7 +142,22 @@ public class AsyncUserLoggerImpl implements AsyncUserLogger {
 
         String description = ((action != null) ? "action: " + action + ", " : "") + "input: " + dateTimeString;
         log.info("Storing user inputted date-time as ... {}", description);
-        userLogRepository.save(new UserLog(userUid, UserLogType.USSD_DATE_ENTERED, description, interfaceType));
+        recordSessionActivity(new UserLog(userUid, UserLogType.USSD_DATE_ENTERED, description, interfaceType));
+    }
+
+    // only for reporting, so if the buffer refuses it and the executor is full too, it is dropped (and counted there)
+    private void recordSessionActivity(UserLog userLog) {
+        if (!userActivityBuffer.buffer(userLog, Collections.emptySet())) {
+            sessionLogExecutor.execute(() -> userActivityWriter.write(Collections.singletonList(userLog), Collections.emptyMap()));
+        }
+    }
+
+    // held for the next flush if the buffer is on and has room, else stored straight away, as before
+    private void recordActivity(UserLog userLog, Set<UserProfileFlag> profileFlags) {
+        if (!userActivityBuffer.buffer(userLog, profileFlags)) {
+            userActivityWriter.write(Collections.singletonList(userLog),
+                    profileFlags.isEmpty() ? Collections.emptyMap() : Collections.singletonMap(userLog.getUserUid(), profileFlags));
+        }
     }
 
     @Override
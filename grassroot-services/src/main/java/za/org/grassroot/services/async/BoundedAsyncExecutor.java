@@ -0,0 +1,133 @@
+package za.org.grassroot.services.async;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * A fixed size pool with a bounded queue, for one kind of @Async work, that counts what it is given, how long tasks
+ * wait in the queue and run, and what it did with tasks that arrived when the queue was full.
+ */
+@Slf4j
+public class BoundedAsyncExecutor extends ThreadPoolTaskExecutor {
+
+    public enum WhenFull {
+        RUN_ON_CALLER, // slows the submitting thread down to the pool's pace, for work that must not be lost
+        DROP // for work that is only nice to have, logged every so often
+    }
+
+    private static final long DROP_WARNING_INTERVAL = 1000;
+
+    private final String name;
+    private final WhenFull whenFull;
+    private final int threads;
+    private final int queueCapacity;
+    private final Supplier<PlatformTransactionManager> transactionManager;
+
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder ranOnCaller = new LongAdder();
+    private final AtomicLong dropped = new AtomicLong();
+    private final LongAdder totalWaitMillis = new LongAdder();
+    private final AtomicLong maxWaitMillis = new AtomicLong();
+    private final LongAdder totalRunMillis = new LongAdder();
+
+    public BoundedAsyncExecutor(String name, int threads, int queueCapacity, WhenFull whenFull) {
+        this(name, threads, queueCapacity, whenFull, () -> null);
+    }
+
+    // the transaction manager is only needed, and so only looked up, when a task has to run on its caller
+    public BoundedAsyncExecutor(String name, int threads, int queueCapacity, WhenFull whenFull,
+                                Supplier<PlatformTransactionManager> transactionManager) {
+        this.name = name;
+        this.transactionManager = transactionManager;
+        this.whenFull = whenFull;
+        this.threads = threads;
+        this.queueCapacity = queueCapacity;
+
+        setBeanName(name);
+        setThreadNamePrefix(name + "-");
+        setCorePoolSize(threads);
+        setMaxPoolSize(threads);
+        setQueueCapacity(queueCapacity);
+        setTaskDecorator(this::instrument);
+        setRejectedExecutionHandler(whenFull == WhenFull.DROP ? dropHandler() : callerRunsHandler());
+        setWaitForTasksToCompleteOnShutdown(true);
+        setAwaitTerminationSeconds(30);
+    }
+
+    public AsyncExecutorStats stats() {
+        ThreadPoolExecutor pool = getThreadPoolExecutor();
+        long completedCount = completed.sum();
+        return new AsyncExecutorStats(name, whenFull.name(), threads, queueCapacity,
+                pool.getQueue().size(), pool.getActiveCount(), submitted.sum(), completedCount,
+                ranOnCaller.sum(), dropped.get(),
+                completedCount == 0 ? 0 : totalWaitMillis.sum() / completedCount, maxWaitMillis.get(),
+                completedCount == 0 ? 0 : totalRunMillis.sum() / completedCount);
+    }
+
+    private Runnable instrument(Runnable task) {
+        submitted.increment();
+        final long queuedAt = System.currentTimeMillis();
+        return () -> {
+            final long startedAt = System.currentTimeMillis();
+            final long waited = startedAt - queuedAt;
+            totalWaitMillis.add(waited);
+            maxWaitMillis.accumulateAndGet(waited, Math::max);
+            try {
+                task.run();
+            } finally {
+                totalRunMillis.add(System.currentTimeMillis() - startedAt);
+                completed.increment();
+            }
+        };
+    }
+
+    private RejectedExecutionHandler callerRunsHandler() {
+        return (task, pool) -> {
+            if (!pool.isShutdown()) {
+                ranOnCaller.increment();
+                runOutsideCallerTransaction(task);
+            }
+        };
+    }
+
+    // run as is, the task's @Transactional would join whatever the caller has open (or, from an afterCommit callback,
+    // one that has already committed), so that is suspended while it runs, as it would be on a pool thread
+    private void runOutsideCallerTransaction(Runnable task) {
+        PlatformTransactionManager manager = TransactionSynchronizationManager.isActualTransactionActive() ?
+                transactionManager.get() : null;
+        if (manager == null) {
+            task.run();
+            return;
+        }
+        TransactionTemplate suspending = new TransactionTemplate(manager);
+        suspending.setPropagationBehavior(TransactionDefinition.PROPAGATION_NOT_SUPPORTED);
+        suspending.execute(status -> {
+            task.run();
+            return null;
+        });
+    }
+
+    private RejectedExecutionHandler dropHandler() {
+        return (task, pool) -> {
+            // it was counted as submitted when decorated, on its way to the queue, so it is taken back out of that here
+            submitted.decrement();
+            long droppedCount = dropped.incrementAndGet();
+            if (droppedCount % DROP_WARNING_INTERVAL == 1) {
+                log.warn("Async executor {} is full, with {} queued, dropping tasks, {} dropped so far",
+                        name, pool.getQueue().size(), droppedCount);
+            }
+        };
+    }
+
+}
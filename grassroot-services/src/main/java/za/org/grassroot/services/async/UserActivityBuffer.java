@@ -0,0 +1,355 @@
+package za.org.grassroot.services.async;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+import za.org.grassroot.core.domain.UserLog;
+import za.org.grassroot.core.enums.UserInterfaceType;
+import za.org.grassroot.core.enums.UserLogType;
+import za.org.grassroot.services.util.BatchRetry;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Optional buffer for the user logs and login profile flags recorded through AsyncUserLogger, which USSD sessions
+ * produce several of a minute per user, so that they are stored together every so often (or once enough have built
+ * up), rather than each in a transaction of its own. Flags for the same user are merged while waiting.
+ *
+ * The buffer holds at most a set number of entries: once full, activity is just written straight away, as it was
+ * before. Each entry is also appended to a local spill file as it is taken, one file per flush, and the file is only
+ * removed once all of its entries are stored. A file that could not be stored is kept and read back: later in this run
+ * if none of it could be stored (e.g., the database was down), else on the next start, along with any files a node that
+ * died left behind. Logs keep their uid, so any that were stored before are skipped. Files are read back by the flushing
+ * thread, never during start up, so a database that is not yet reachable only delays them. The spill directory must be
+ * local to the node.
+ */
+@Component @Slf4j
+public class UserActivityBuffer {
+
+    private static final String SPILL_PREFIX = "user-activity-";
+    private static final String SPILL_SUFFIX = ".spill";
+
+    @Value("${grassroot.userlog.buffer.enabled:true}")
+    private boolean enabled;
+
+    @Value("${grassroot.userlog.buffer.capacity:10000}")
+    private int capacity;
+
+    @Value("${grassroot.userlog.buffer.flush.size:500}")
+    private int flushSize;
+
+    @Value("${grassroot.userlog.buffer.flush.interval:1000}")
+    private long flushIntervalMillis;
+
+    @Value("${grassroot.userlog.buffer.spill.dir:}")
+    private String spillDirectory;
+
+    @Value("${grassroot.userlog.buffer.spill.retry:60000}")
+    private long spillRetryMillis;
+
+    private final UserActivityWriter userActivityWriter;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final AtomicLong spillSequence = new AtomicLong();
+
+    // all guarded by the lock: entries taken and appended to the spill file together, so each file holds one batch
+    private final Object lock = new Object();
+    private List<UserLog> pendingLogs = new ArrayList<>();
+    private Map<String, Set<UserProfileFlag>> pendingFlags = new HashMap<>();
+    private Path spillPath;
+    private Path spillFile;
+    private BufferedWriter spillWriter;
+
+    // spill files to read back, by when to next try each, oldest first
+    private final ConcurrentNavigableMap<Path, Long> restoreDue = new ConcurrentSkipListMap<>();
+
+    private ExecutorService worker;
+    private volatile boolean running;
+
+    public UserActivityBuffer(UserActivityWriter userActivityWriter) {
+        this.userActivityWriter = userActivityWriter;
+    }
+
+    @PostConstruct
+    public void init() throws IOException {
+        if (!enabled) {
+            return;
+        }
+
+        spillPath = Paths.get(StringUtils.isEmpty(spillDirectory) ?
+                System.getProperty("java.io.tmpdir") + "/grassroot-user-activity" : spillDirectory);
+        Files.createDirectories(spillPath);
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(spillPath, SPILL_PREFIX + "*" + SPILL_SUFFIX)) {
+            files.forEach(file -> restoreDue.put(file, 0L));
+        }
+        if (!restoreDue.isEmpty()) {
+            log.info("Found {} user activity spill files from before the last stop, to read back once running", restoreDue.size());
+        }
+        synchronized (lock) {
+            openSpillFile();
+        }
+
+        running = true;
+        worker = Executors.newSingleThreadExecutor(new ThreadFactoryBuilder().setNameFormat("user-activity-%d").build());
+        worker.submit(this::flushPeriodically);
+        log.info("Started user activity buffer, capacity: {}, flush size: {}, interval: {} msecs, spilling to {}",
+                capacity, flushSize, flushIntervalMillis, spillPath);
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        if (worker != null) {
+            running = false;
+            synchronized (lock) {
+                lock.notifyAll();
+            }
+            worker.shutdown();
+            worker.awaitTermination(10, TimeUnit.SECONDS);
+            flush();
+            closeEmptySpillFile();
+        }
+    }
+
+    public boolean buffer(UserLog userLog) {
+        return buffer(userLog, Collections.emptySet());
+    }
+
+    /**
+     * Takes the log, and any profile flags to set on its user, to be stored with the next flush. Returns false if the
+     * buffer is off or full, in which case the caller should store them itself.
+     */
+    public boolean buffer(UserLog userLog, Set<UserProfileFlag> profileFlags) {
+        if (!running) {
+            return false;
+        }
+
+        synchronized (lock) {
+            final boolean newFlags = !profileFlags.isEmpty() && !pendingFlags.containsKey(userLog.getUserUid());
+            if (pendingLogs.size() + pendingFlags.size() + (newFlags ? 1 : 0) >= capacity) {
+                log.debug("User activity buffer full, caller to store log directly");
+                return false;
+            }
+
+            try {
+                spillWriter.write(toSpillLine(userLog, profileFlags));
+                spillWriter.newLine();
+                spillWriter.flush(); // only to the OS, which is enough to survive the process dying
+            } catch (IOException | RuntimeException e) {
+                log.error("Could not append to user activity spill file, storing directly: {}", e.getMessage());
+                return false;
+            }
+
+            pendingLogs.add(userLog);
+            if (!profileFlags.isEmpty()) {
+                pendingFlags.computeIfAbsent(userLog.getUserUid(), uid -> EnumSet.noneOf(UserProfileFlag.class)).addAll(profileFlags);
+            }
+            if (pendingLogs.size() >= flushSize) {
+                lock.notifyAll();
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Stores whatever has been taken since the last flush, and removes its spill file if all of it was stored
+     */
+    public void flush() {
+        final List<UserLog> logs;
+        final Map<String, Set<UserProfileFlag>> flags;
+        final Path batchFile;
+        synchronized (lock) {
+            if (pendingLogs.isEmpty() && pendingFlags.isEmpty()) {
+                return;
+            }
+            logs = pendingLogs;
+            flags = pendingFlags;
+            pendingLogs = new ArrayList<>();
+            pendingFlags = new HashMap<>();
+            batchFile = spillFile;
+            try {
+                spillWriter.close();
+                if (running) {
+                    openSpillFile();
+                }
+            } catch (IOException e) {
+                // the next buffer() call will fail to append and fall back to storing directly, until a flush reopens one
+                log.error("Could not start new user activity spill file: {}", e.getMessage());
+            }
+        }
+
+        settleSpillFile(batchFile, writeBatch(logs, flags, false), logs.size());
+    }
+
+    private void flushPeriodically() {
+        while (running) {
+            try {
+                synchronized (lock) {
+                    if (running && pendingLogs.size() < flushSize) {
+                        lock.wait(flushIntervalMillis);
+                    }
+                }
+                flush();
+                restoreSpilled();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                log.error("Error flushing user activity buffer", e);
+            }
+        }
+    }
+
+    // returns the logs that could not be stored; each log is written with the flags of its user, which are idempotent
+    private List<UserLog> writeBatch(List<UserLog> logs, Map<String, Set<UserProfileFlag>> flags, boolean restored) {
+        List<UserLog> failed = BatchRetry.apply(restored ? "restored user logs" : "buffered user logs", logs, batch -> {
+            write(batch, flagsFor(batch, flags), restored);
+            return batch.size();
+        }).getFailed();
+        log.debug("Stored {} buffered user logs, and flags for {} users", logs.size() - failed.size(), flags.size());
+        return failed;
+    }
+
+    private Map<String, Set<UserProfileFlag>> flagsFor(List<UserLog> logs, Map<String, Set<UserProfileFlag>> flags) {
+        return logs.stream().map(UserLog::getUserUid).distinct().filter(flags::containsKey)
+                .collect(Collectors.toMap(uid -> uid, flags::get));
+    }
+
+    // a file is only removed once all its entries are stored; if none could be, it is tried again in a while
+    private void settleSpillFile(Path file, List<UserLog> failed, int entries) {
+        if (failed.isEmpty()) {
+            deleteQuietly(file);
+        } else if (failed.size() == entries) {
+            log.warn("None of the {} user logs in spill file {} could be stored, trying again in {} msecs", entries, file, spillRetryMillis);
+            restoreDue.put(file, System.currentTimeMillis() + spillRetryMillis);
+        } else {
+            log.warn("{} of the {} user logs in spill file {} could not be stored, keeping it to read back on restart",
+                    failed.size(), entries, file);
+        }
+    }
+
+    private void write(List<UserLog> logs, Map<String, Set<UserProfileFlag>> flags, boolean restored) {
+        if (restored) {
+            userActivityWriter.writeRestored(logs, flags);
+        } else {
+            userActivityWriter.write(logs, flags);
+        }
+    }
+
+    private void openSpillFile() throws IOException {
+        spillFile = spillPath.resolve(SPILL_PREFIX + System.currentTimeMillis() + "-" + spillSequence.incrementAndGet() + SPILL_SUFFIX);
+        spillWriter = Files.newBufferedWriter(spillFile, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+    // flush() leaves the file open if there was nothing to store, so on a clean stop there is nothing to restore
+    private void closeEmptySpillFile() {
+        synchronized (lock) {
+            if (pendingLogs.isEmpty() && pendingFlags.isEmpty()) {
+                try {
+                    spillWriter.close();
+                } catch (IOException e) {
+                    log.error("Could not close user activity spill file: {}", e.getMessage());
+                }
+                deleteQuietly(spillFile);
+            }
+        }
+    }
+
+    // files left from before the last stop, or that could not be stored since, that are due another try
+    void restoreSpilled() {
+        final long now = System.currentTimeMillis();
+        List<Path> due = restoreDue.entrySet().stream().filter(entry -> entry.getValue() <= now)
+                .map(Map.Entry::getKey).collect(Collectors.toList());
+
+        for (Path file : due) {
+            restoreDue.remove(file);
+            List<UserLog> logs = new ArrayList<>();
+            Map<String, Set<UserProfileFlag>> flags = new HashMap<>();
+            List<String> lines;
+            try {
+                lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+            } catch (IOException e) {
+                log.error("Could not read user activity spill file {}, trying again in {} msecs: {}", file, spillRetryMillis, e.getMessage());
+                restoreDue.put(file, now + spillRetryMillis);
+                continue;
+            }
+            for (String line : lines) {
+                try {
+                    readSpillLine(line, logs, flags);
+                } catch (IOException | RuntimeException e) {
+                    // most likely the last line, cut off part way through being written
+                    log.warn("Skipping unreadable line in user activity spill file {}: {}", file, e.getMessage());
+                }
+            }
+            log.info("Restoring {} user logs from spill file {}", logs.size(), file);
+            settleSpillFile(file, logs.isEmpty() ? Collections.emptyList() : writeBatch(logs, flags, true), logs.size());
+        }
+    }
+
+    private String toSpillLine(UserLog userLog, Set<UserProfileFlag> profileFlags) throws IOException {
+        ObjectNode node = objectMapper.createObjectNode();
+        node.put("uid", userLog.getUid());
+        node.put("time", userLog.getCreationTime().toEpochMilli());
+        node.put("user", userLog.getUserUid());
+        node.put("type", userLog.getUserLogType().name());
+        node.put("description", userLog.getDescription());
+        node.put("channel", userLog.getUserInterface() == null ? null : userLog.getUserInterface().name());
+        ArrayNode flags = node.putArray("flags");
+        profileFlags.forEach(flag -> flags.add(flag.name()));
+        return objectMapper.writeValueAsString(node);
+    }
+
+    private void readSpillLine(String line, List<UserLog> logs, Map<String, Set<UserProfileFlag>> flags) throws IOException {
+        if (StringUtils.isEmpty(line.trim())) {
+            return;
+        }
+        JsonNode node = objectMapper.readTree(line);
+        final String userUid = node.get("user").asText();
+        logs.add(UserLog.restore(node.get("uid").asText(), Instant.ofEpochMilli(node.get("time").asLong()), userUid,
+                UserLogType.valueOf(node.get("type").asText()), textOrNull(node.get("description")),
+                node.get("channel").isNull() ? null : UserInterfaceType.valueOf(node.get("channel").asText())));
+        node.get("flags").forEach(flag -> flags.computeIfAbsent(userUid, uid -> EnumSet.noneOf(UserProfileFlag.class))
+                .add(UserProfileFlag.valueOf(flag.asText())));
+    }
+
+    private String textOrNull(JsonNode node) {
+        return node == null || node.isNull() ? null : node.asText();
+    }
+
+    private void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.error("Could not remove user activity spill file {}, its entries will be checked again on restart: {}", file, e.getMessage());
+        }
+    }
+
+}
@@ -0,0 +1,20 @@
+package za.org.grassroot.services.async;
+
+import za.org.grassroot.core.domain.UserLog;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Stores user logs and sets login profile flags in bulk, in one transaction: the logs in JDBC batches, and each flag with
+ * one update over all the users that need it
+ */
+public interface UserActivityWriter {
+
+    void write(Collection<UserLog> userLogs, Map<String, Set<UserProfileFlag>> profileFlags);
+
+    // as above, for activity read back from a spill file, so leaves out any logs that were stored before it crashed
+    void writeRestored(Collection<UserLog> userLogs, Map<String, Set<UserProfileFlag>> profileFlags);
+
+}
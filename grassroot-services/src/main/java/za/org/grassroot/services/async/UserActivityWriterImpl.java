@@ -0,0 +1,73 @@
+package za.org.grassroot.services.async;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import za.org.grassroot.core.domain.StandardRole;
+import za.org.grassroot.core.domain.UserLog;
+import za.org.grassroot.core.repository.UserLogRepository;
+import za.org.grassroot.core.repository.UserRepository;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+@Service @Slf4j
+public class UserActivityWriterImpl implements UserActivityWriter {
+
+    private final UserRepository userRepository;
+    private final UserLogRepository userLogRepository;
+
+    @Autowired
+    public UserActivityWriterImpl(UserRepository userRepository, UserLogRepository userLogRepository) {
+        this.userRepository = userRepository;
+        this.userLogRepository = userLogRepository;
+    }
+
+    @Override
+    @Transactional
+    public void write(Collection<UserLog> userLogs, Map<String, Set<UserProfileFlag>> profileFlags) {
+        if (!userLogs.isEmpty()) {
+            userLogRepository.saveAll(userLogs);
+        }
+
+        // few users are logging in for the first time, so these are loaded and changed as entities, before the bulk updates
+        Set<String> initiatingUids = usersWithFlag(profileFlags, UserProfileFlag.INITIATED_SESSION);
+        if (!initiatingUids.isEmpty()) {
+            userRepository.findByUidInWithoutInitiatedSession(initiatingUids).forEach(user -> {
+                user.setHasInitiatedSession(true);
+                user.addStandardRole(StandardRole.ROLE_FULL_USER);
+            });
+        }
+
+        Set<String> webUids = usersWithFlag(profileFlags, UserProfileFlag.WEB_PROFILE);
+        if (!webUids.isEmpty()) {
+            userRepository.setHasWebProfile(webUids);
+        }
+
+        Set<String> androidUids = usersWithFlag(profileFlags, UserProfileFlag.ANDROID_PROFILE);
+        if (!androidUids.isEmpty()) {
+            userRepository.setHasAndroidProfile(androidUids);
+        }
+    }
+
+    @Override
+    @Transactional
+    public void writeRestored(Collection<UserLog> userLogs, Map<String, Set<UserProfileFlag>> profileFlags) {
+        Set<String> storedUids = userLogs.isEmpty() ? new HashSet<>() : new HashSet<>(userLogRepository.findUidsByUidIn(
+                userLogs.stream().map(UserLog::getUid).collect(Collectors.toSet())));
+        List<UserLog> unstored = userLogs.stream().filter(userLog -> !storedUids.contains(userLog.getUid())).collect(Collectors.toList());
+        log.info("Restoring {} user logs from spill, {} of them already stored", userLogs.size(), storedUids.size());
+        write(unstored, profileFlags);
+    }
+
+    private Set<String> usersWithFlag(Map<String, Set<UserProfileFlag>> profileFlags, UserProfileFlag flag) {
+        return profileFlags.entrySet().stream().filter(entry -> entry.getValue().contains(flag))
+                .map(Map.Entry::getKey).collect(Collectors.toSet());
+    }
+
+}
@@ -0,0 +1,26 @@
+package za.org.grassroot.services.async;
+
+import za.org.grassroot.core.enums.UserInterfaceType;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+// the flags on a user that a login sets, if they are not set already
+public enum UserProfileFlag {
+
+    WEB_PROFILE,
+    ANDROID_PROFILE,
+    INITIATED_SESSION;
+
+    // note: WhatsApp approval requires something different, so is _not_ set here (it is recorded on 'within band' WhatsApp use)
+    public static Set<UserProfileFlag> forLogin(UserInterfaceType channel) {
+        Set<UserProfileFlag> flags = EnumSet.of(INITIATED_SESSION);
+        if (UserInterfaceType.WEB.equals(channel) || UserInterfaceType.WEB_2.equals(channel)) {
+            flags.add(WEB_PROFILE);
+        } else if (UserInterfaceType.ANDROID.equals(channel) || UserInterfaceType.ANDROID_2.equals(channel)) {
+            flags.add(ANDROID_PROFILE);
+        }
+        return flags;
+    }
+
+}
@@ -35,6 +35,9 @@ public interface BroadcastBroker {
 
     // needs to be in interface so picked up by entities, todo : find why not called anymore
     void sendScheduledBroadcasts();
+
+    // as above, scheduled, and also picks up any fan out interrupted part way through
+    void fanOutPendingBroadcasts();
     
     void cancelScheduledBroadcast(String userUid, String broadcastUid);
 
@@ -15,49 +15,33 @@ import org.springframework.security.access.AccessDeniedException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import za.org.grassroot.core.GrassrootApplicationProfiles;
-import za.org.grassroot.core.domain.ActionLog;
-import za.org.grassroot.core.domain.Notification;
 import za.org.grassroot.core.domain.User;
-import za.org.grassroot.core.domain.User_;
 import za.org.grassroot.core.domain.account.Account;
 import za.org.grassroot.core.domain.account.AccountLog;
 import za.org.grassroot.core.domain.broadcast.Broadcast;
 import za.org.grassroot.core.domain.broadcast.BroadcastSchedule;
 import za.org.grassroot.core.domain.campaign.Campaign;
 import za.org.grassroot.core.domain.campaign.CampaignLog;
-import za.org.grassroot.core.domain.campaign.CampaignLog_;
 import za.org.grassroot.core.domain.group.Group;
 import za.org.grassroot.core.domain.group.GroupLog;
-import za.org.grassroot.core.domain.group.JoinDateCondition;
-import za.org.grassroot.core.domain.group.Membership;
 import za.org.grassroot.core.domain.media.MediaFunction;
 import za.org.grassroot.core.domain.notification.BroadcastNotification;
-import za.org.grassroot.core.domain.notification.CampaignBroadcastNotification;
-import za.org.grassroot.core.domain.notification.GroupBroadcastNotification;
-import za.org.grassroot.core.domain.notification.NotificationStatus;
 import za.org.grassroot.core.dto.BroadcastDTO;
-import za.org.grassroot.core.dto.GrassrootEmail;
 import za.org.grassroot.core.dto.task.TaskDTO;
 import za.org.grassroot.core.enums.*;
 import za.org.grassroot.core.repository.*;
 import za.org.grassroot.core.util.DebugUtil;
 import za.org.grassroot.core.util.UIDGenerator;
-import za.org.grassroot.integration.messaging.MessagingServiceBroker;
 import za.org.grassroot.integration.socialmedia.*;
 import za.org.grassroot.services.exception.NoPaidAccountException;
-import za.org.grassroot.services.group.GroupFetchBroker;
 import za.org.grassroot.services.task.TaskBroker;
-import za.org.grassroot.services.user.PasswordTokenService;
 import za.org.grassroot.services.util.LogsAndNotificationsBroker;
 import za.org.grassroot.services.util.LogsAndNotificationsBundle;
 
 import java.time.Instant;
-import java.time.LocalDate;
-import java.time.ZoneOffset;
 import java.util.*;
 import java.util.stream.Collectors;
 
-import static za.org.grassroot.core.enums.CampaignLogType.*;
 import static za.org.grassroot.core.specifications.NotificationSpecifications.*;
 
 @Service @Slf4j
@@ -68,6 +52,9 @@ public class BroadcastBrokerImpl implements BroadcastBroker {
     @Value("${grassroot.broadcast.mocksm.enabled:false}")
     private boolean mockSocialMediaBroadcasts;
 
+    @Value("${grassroot.broadcast.fanout.chunk:500}")
+    private int fanOutChunkSize;
+
     // note, make configurable, possibly, and/or use i18n
     private final BroadcastRepository broadcastRepository;
     private final UserRepository userRepository;
@@ -76,11 +63,10 @@ public class BroadcastBrokerImpl implements BroadcastBroker {
     private final CampaignRepository campaignRepository;
     private final MembershipRepository membershipRepository;
 
-    // for heavy lifting on filtering, and for getting event members
-    private final GroupFetchBroker groupFetchBroker;
     private final TaskBroker taskBroker;
 
-    private final MessagingServiceBroker messagingServiceBroker;
+    // does the heavy lifting of filtering recipients and generating notifications
+    private final BroadcastFanOutBroker fanOutBroker;
     private final SocialMediaBroker socialMediaBroker;
 
     private final LogsAndNotificationsBroker logsAndNotificationsBroker;
@@ -89,12 +75,10 @@ public class BroadcastBrokerImpl implements BroadcastBroker {
 
     private final Environment environment;
 
-    private PasswordTokenService tokenService;
-
     @Autowired
     public BroadcastBrokerImpl(BroadcastRepository broadcastRepository, UserRepository userRepository, GroupRepository groupRepository,
-                               CampaignRepository campaignRepository, MembershipRepository membershipRepository, GroupFetchBroker groupFetchBroker,
-                               TaskBroker taskBroker, MessagingServiceBroker messagingServiceBroker, SocialMediaBroker socialMediaBroker,
+                               CampaignRepository campaignRepository, MembershipRepository membershipRepository,
+                               TaskBroker taskBroker, BroadcastFanOutBroker fanOutBroker, SocialMediaBroker socialMediaBroker,
                                LogsAndNotificationsBroker logsAndNotificationsBroker, AccountLogRepository accountLogRepository,
                                CampaignLogRepository campaignLogRepository, Environment environment) {
         this.broadcastRepository = broadcastRepository;
@@ -102,9 +86,8 @@ public class BroadcastBrokerImpl implements BroadcastBroker {
         this.groupRepository = groupRepository;
         this.campaignRepository = campaignRepository;
         this.membershipRepository = membershipRepository;
-        this.groupFetchBroker = groupFetchBroker;
         this.taskBroker = taskBroker;
-        this.messagingServiceBroker = messagingServiceBroker;
+        this.fanOutBroker = fanOutBroker;
         this.socialMediaBroker = socialMediaBroker;
         this.logsAndNotificationsBroker = logsAndNotificationsBroker;
         this.accountLogRepository = accountLogRepository;
@@ -112,11 +95,6 @@ public class BroadcastBrokerImpl implements BroadcastBroker {
         this.environment = environment;
     }
 
-    @Autowired
-    public void setTokenService(PasswordTokenService tokenService) {
-        this.tokenService = tokenService;
-    }
-
     @Override
     @Transactional(readOnly = true)
     public BroadcastInfo fetchGroupBroadcastParams(String userUid, String groupUid) {
@@ -186,26 +164,14 @@ public class BroadcastBrokerImpl implements BroadcastBroker {
         TwitterAccount twitterAccount = socialMediaBroker.isTwitterAccountConnected(userUid);
         builder.isTwitterConnected(twitterAccount != null).twitterAccount(twitterAccount);
 
-        int campaignMembersSize = getCampaignJoinedUsers(campaign).size();
+        int campaignMembersSize = campaignLogRepository.findDistinctUserIdsByCampaignAndTypes(campaign,
+                BroadcastFanOutBrokerImpl.CAMPAIGN_ENGAGEMENT_TYPES).size();
         builder.allMemberCount(campaignMembersSize);
         log.info("count of engaged users fo campaign: {}", campaignMembersSize);
 
         return builder.build();
     }
 
-    private Specification<CampaignLog> engagementLogsForCampaign(Campaign campaign) {
-        Specification<CampaignLog> forCampaign = (root, query, cb) -> cb.equal(root.get(CampaignLog_.campaign), campaign);
-        List<CampaignLogType> types = Arrays.asList(CAMPAIGN_PETITION_SIGNED, CAMPAIGN_USER_ADDED_TO_MASTER_GROUP,
-                CAMPAIGN_SHARED, CAMPAIGN_USER_TAGGED);
-        Specification<CampaignLog> engaged = (root, query, cb) -> root.get(CampaignLog_.campaignLogType).in(types);
-        return Specification.where(forCampaign).and(engaged);
-    }
-
-    private List<User> getCampaignJoinedUsers(Campaign campaign) {
-        return campaignLogRepository.findAll(engagementLogsForCampaign(campaign))
-                .stream().map(CampaignLog::getUser).distinct().collect(Collectors.toList());
-    }
-
     private Account findAccountToChargeBroadcast(User user, String groupUid) {
         return user.getPrimaryAccount() != null ? user.getPrimaryAccount() : groupRepository.findOneByUid(groupUid).getAccount();
     }
@@ -304,8 +270,7 @@ public class BroadcastBrokerImpl implements BroadcastBroker {
             copyOverContent(original, broadcast);
             copyOverFilters(original, broadcast);
 
-            bundle.addBundle(broadcast.getCampaign() == null ?
-                    generateGroupBroadcastBundle(broadcast) : generateCampaignBroadcastBundle(broadcast));
+            bundle.addBundle(prepareFanOut(broadcast));
         }
 
         if (resendFb && original.hasFbPost()) {
@@ -370,7 +335,7 @@ public class BroadcastBrokerImpl implements BroadcastBroker {
 
         broadcastRepository.saveAndFlush(broadcast);
 
-        logsAndNotificationsBroker.storeBundle(generateGroupBroadcastBundle(broadcast));
+        logsAndNotificationsBroker.storeBundle(prepareFanOut(broadcast));
 
         return broadcast.getUid();
     }
@@ -424,9 +389,27 @@ public class BroadcastBrokerImpl implements BroadcastBroker {
 
         broadcast.setSentTime(Instant.now());
 
-        return bc.isCampaignBroadcast() ?
-                generateCampaignBroadcastBundle(broadcast) :
-                generateGroupBroadcastBundle(broadcast);
+        return prepareFanOut(broadcast);
+    }
+
+    // records the sending log, which the notifications hang off, and leaves generating them to the chunked fan-out
+    private LogsAndNotificationsBundle prepareFanOut(Broadcast bc) {
+        LogsAndNotificationsBundle bundle = new LogsAndNotificationsBundle();
+
+        if (bc.getCampaign() == null) {
+            GroupLog groupLog = new GroupLog(bc.getGroup(), bc.getCreatedByUser(), GroupLogType.BROADCAST_SENT,
+                    null, null, bc.getAccount(), null);
+            groupLog.setBroadcast(bc);
+            bundle.addLog(groupLog);
+        } else {
+            CampaignLog campaignLog = new CampaignLog(bc.getCreatedByUser(), CampaignLogType.CAMPAIGN_BROADCAST_SENT,
+                    bc.getCampaign(), null, null);
+            campaignLog.setBroadcast(bc);
+            bundle.addLog(campaignLog);
+        }
+
+        bc.setFanOutPending(true);
+        return bundle;
     }
 
     private boolean postToFacebook(List<FBPostBuilder> fbPosts) {
@@ -476,8 +459,7 @@ public class BroadcastBrokerImpl implements BroadcastBroker {
         }
 
         try {
-            LogsAndNotificationsBundle bundle = bc.getCampaign() == null ? generateGroupBroadcastBundle(bc) : generateCampaignBroadcastBundle(bc);
-            logsAndNotificationsBroker.storeBundle(bundle);
+            logsAndNotificationsBroker.storeBundle(prepareFanOut(bc));
         } catch (Exception e) {
             // todo : mail broadcast creator?
             log.error("Exception in storing scheduled broadcast notifications!", e);
@@ -501,48 +483,6 @@ public class BroadcastBrokerImpl implements BroadcastBroker {
         }
     }
 
-    private void handleBroadcastEmails(Broadcast broadcast, ActionLog actionLog, Set<User> recipients,
-                                       LogsAndNotificationsBundle bundle) {
-        if (!recipients.isEmpty()) {
-
-            Set<String> recipientUids = recipients.stream().map(User::getUid).collect(Collectors.toSet());
-            EmailBroadcast emailBc = EmailBroadcast.builder()
-                    .broadcastUid(broadcast.getUid())
-                    .subject(broadcast.getTitle().replace(RESEND_PREFIX, ""))
-                    .content(broadcast.getEmailContent())
-                    .deliveryRoute(broadcast.getEmailDeliveryRoute())
-                    .attachmentFileRecordUids(broadcast.getEmailAttachments())
-                    .build();
-
-            emailBc.setFromFieldsIfEmpty(broadcast.getCreatedByUser());
-            GrassrootEmail email = emailBc.toGrassrootEmail();
-            email.setToUserUids(recipientUids);
-            email.setGroupUid(broadcast.getGroup().getUid());
-            log.info("email, with base ID = {}", email.getBaseId());
-
-            log.info("generating unsubscribe tokens ....");
-
-            tokenService.generateResponseTokens(recipientUids, broadcast.getGroup().getUid(), null);
-
-            boolean deliverySucceeded = messagingServiceBroker.sendEmail(email);
-
-            bundle.addNotifications(recordEmailNotifications(broadcast, recipients, emailBc, actionLog, deliverySucceeded));
-        }
-    }
-
-    // for counting / auditing purposes, hence also trim it so we don't get huge text blobs gumming up an already big table
-    private Set<Notification> recordEmailNotifications(Broadcast broadcast, Set<User> recipients, EmailBroadcast emailBc, ActionLog actionLog, boolean deliveryCompleted) {
-        boolean isCampaign = broadcast.getCampaign() != null;
-        return recipients.stream().map(user -> {
-            final String trimmedMsg = StringUtils.abbreviate(emailBc.getContent(), 255);
-            Notification n = isCampaign ? new CampaignBroadcastNotification(user, trimmedMsg, broadcast, broadcast.getEmailDeliveryRoute(), (CampaignLog) actionLog) :
-                    new GroupBroadcastNotification(user, emailBc.getContent(), broadcast, broadcast.getEmailDeliveryRoute(), (GroupLog) actionLog);
-            n.setSendAttempts(1);
-            n.setStatus(deliveryCompleted ? NotificationStatus.DELIVERED : NotificationStatus.DELIVERY_FAILED);
-            return n;
-        }).collect(Collectors.toSet());
-    }
-
     private void recordFbPosts(List<FBPostBuilder> posts, Broadcast broadcast) {
         if (posts != null && !posts.isEmpty()) {
             FBPostBuilder post = posts.iterator().next();
@@ -585,173 +525,6 @@ public class BroadcastBrokerImpl implements BroadcastBroker {
                 .build();
     }
 
-    private LogsAndNotificationsBundle generateGroupBroadcastBundle(Broadcast bc) {
-        log.debug("generating notifications for group broadcast ...");
-        LogsAndNotificationsBundle bundle = new LogsAndNotificationsBundle();
-
-        Group group = bc.getGroup();
-
-        GroupLog groupLog = new GroupLog(group, bc.getCreatedByUser(), GroupLogType.BROADCAST_SENT,
-                null, null, bc.getAccount(), null);
-        groupLog.setBroadcast(bc);
-        bundle.addLog(groupLog);
-
-        List<String> topicRestrictions = bc.getTopics();
-        List<Province> provinceResrictions = bc.getProvinces();
-        List<String> taskTeamUids = bc.getTaskTeams();
-        List<String> affiliations = bc.getAffiliations();
-        JoinDateCondition joinDateCondition = bc.getJoinDateCondition().orElse(null);
-        LocalDate joinDate = bc.getJoinDate().orElse(null);
-
-        List<Membership> membersToReceive;
-
-        log.info("Generating group broadcast, join date condition {}, join date {}", joinDateCondition, joinDate);
-
-        if (bc.hasFilter()) {
-            membersToReceive = groupFetchBroker.filterGroupMembers(
-                    bc.getCreatedByUser(), group.getUid(),
-                    provinceResrictions, bc.getNoProvinceRestriction().orElse(null),
-                    taskTeamUids, topicRestrictions, affiliations, bc.getJoinMethods(),
-                    null, null, joinDate, joinDateCondition, bc.getNamePhoneEmailFilter(), bc.getFilterLanguages(), null);
-        } else if (bc.hasTask()) {
-            membersToReceive = taskBroker.fetchMembersAssignedToTask(bc.getCreatedByUser().getUid(),
-                    bc.getTaskUid(), bc.getTaskType(), bc.taskOnlyPositive());
-        } else {
-            membersToReceive = membershipRepository.findByGroupUid(group.getUid());
-        }
-
-        log.info("finished fetching members by topic, province, join date, etc., found {} members", membersToReceive.size());
-
-        if (bc.hasEmail()) {
-            Set<User> emailUsers = membersToReceive.stream().map(Membership::getUser)
-                    .filter(User::hasEmailAddress).collect(Collectors.toSet());
-            log.info("broadcast has an email, sending it to {} users, bc ID = {}", emailUsers.size(), bc.getUid());
-            handleBroadcastEmails(bc, groupLog, emailUsers, bundle);
-        }
-
-        long smsCount = 0;
-        if (bc.hasShortMessage()) {
-            boolean skipUsersWithEmail = bc.isSkipSmsIfEmail() && bc.hasEmail();
-            log.info("sending short message ... skipping emails? {}", skipUsersWithEmail);
-            Set<User> shortMessageUsers = skipUsersWithEmail ?
-                    membersToReceive.stream().map(Membership::getUser).filter(u -> !u.hasEmailAddress() && u.hasPhoneNumber()).collect(Collectors.toSet()) :
-                    membersToReceive.stream().map(Membership::getUser).filter(User::hasPhoneNumber).collect(Collectors.toSet());
-            log.info("now generating {} notifications", shortMessageUsers.size());
-            Set<Notification> shortMessageNotifications = new HashSet<>();
-            shortMessageUsers.forEach(u -> {
-                DeliveryRoute route = u.getMessagingPreference() == DeliveryRoute.SMS ? DeliveryRoute.LONG_SMS : u.getMessagingPreference();
-                GroupBroadcastNotification notification = new GroupBroadcastNotification(u,
-                        bc.getShortMsgIncludingMerge(u), bc, route, groupLog);
-                notification.setUseOnlyFreeChannels(bc.isOnlyUseFreeChannels());
-                shortMessageNotifications.add(notification);
-            });
-            bundle.addNotifications(shortMessageNotifications);
-            smsCount = shortMessageUsers.size();
-        }
-
-        if (bc.getAccount() != null) {
-            bundle.addLog(costAccountLog(bc, smsCount));
-        }
-
-        return bundle;
-    }
-
-    private LogsAndNotificationsBundle generateCampaignBroadcastBundle(Broadcast bc) {
-        LogsAndNotificationsBundle bundle = new LogsAndNotificationsBundle();
-
-        log.info("generating campaign broadcast bundle from broadcast: {}", bc);
-        Campaign campaign = bc.getCampaign();
-        CampaignLog campaignLog = new CampaignLog(bc.getCreatedByUser(), CampaignLogType.CAMPAIGN_BROADCAST_SENT,
-                campaign, null, null);
-        campaignLog.setBroadcast(bc);
-        bundle.addLog(campaignLog);
-
-        log.info("should be about to filter, has filter? : {}", bc.hasFilter());
-        Set<User> usersToReceive = bc.hasFilter() ? filterCampaignUsers(bc, campaign) :
-                new HashSet<>(getCampaignJoinedUsers(campaign));
-        log.info("post-filtering, for campaign, {} many users", usersToReceive.size());
-
-        if (bc.hasEmail()) {
-            Set<User> emailUsers = usersToReceive.stream().filter(User::hasEmailAddress).collect(Collectors.toSet());
-            log.info("campaign broadcast has an email, sending it to {} users, bc ID = {}", emailUsers.size(), bc.getUid());
-            handleBroadcastEmails(bc, campaignLog, emailUsers, bundle);
-        }
-
-        long smsCount = 0;
-        if (bc.hasShortMessage()) {
-            boolean skipUsersWithEmail = bc.isSkipSmsIfEmail() && bc.hasEmail();
-            log.info("sending short message ... skipping emails? {}", skipUsersWithEmail);
-            Set<User> shortMessageUsers = skipUsersWithEmail ?
-                    usersToReceive.stream().filter(u -> !u.hasEmailAddress() && u.hasPhoneNumber()).collect(Collectors.toSet()) :
-                    usersToReceive.stream().filter(User::hasPhoneNumber).collect(Collectors.toSet());
-            log.info("now generating {} notifications", shortMessageUsers.size());
-            Set<Notification> shortMessageNotifications = new HashSet<>();
-            shortMessageUsers.forEach(u -> {
-                CampaignBroadcastNotification notification = new CampaignBroadcastNotification(u,
-                        bc.getShortMsgIncludingMerge(u), bc,
-                        u.getMessagingPreference(), campaignLog);
-                notification.setUseOnlyFreeChannels(bc.isOnlyUseFreeChannels());
-                shortMessageNotifications.add(notification);
-            });
-            bundle.addNotifications(shortMessageNotifications);
-            smsCount = shortMessageUsers.size();
-        }
-
-        bundle.addLog(costAccountLog(bc, smsCount));
-        return bundle;
-    }
-
-    private Set<User> filterCampaignUsers(Broadcast bc, Campaign campaign) {
-        log.info("filtering campaign users, or should be, with provinces: {}", bc.getProvinces());
-
-        Specification<CampaignLog> specs = engagementLogsForCampaign(campaign);
-
-        if (!bc.getProvinces().isEmpty()) {
-            log.info("wiring up for province: {}", bc.getProvinces());
-            specs = specs.and((root, query, cb) -> root.get(CampaignLog_.user).get(User_.province).in(bc.getProvinces()));
-        }
-
-        if (bc.getJoinDateCondition().isPresent()) {
-            log.info("join date condition present, setting");
-            specs = specs.and(joinDateCondition(bc.getJoinDateCondition().get(), bc.getJoinDate()
-                    .orElseThrow(() -> new IllegalArgumentException("Join date condition without join date"))));
-        }
-
-        if (!bc.getTopics().isEmpty()) {
-            log.info("topics present, setting: {}", bc.getTopics());
-            List<String> prefixedTopics = bc.getTopics().stream().map(s -> Campaign.JOIN_TOPIC_PREFIX + s).collect(Collectors.toList());
-            specs = specs.and((root, query, cb) -> root.get(CampaignLog_.description).in(prefixedTopics));
-        }
-
-        return campaignLogRepository.findAll(specs).stream().distinct().map(CampaignLog::getUser).distinct()
-                .collect(Collectors.toSet());
-    }
-
-    private Specification<CampaignLog> joinDateCondition(JoinDateCondition condition, LocalDate joinDate) {
-        Instant startOfDay = joinDate.atStartOfDay().toInstant(ZoneOffset.UTC);
-        Instant endOfDay = joinDate.atStartOfDay().toInstant(ZoneOffset.UTC);
-
-        switch (condition) {
-            case EXACT:
-                return (root, query, cb) -> cb.between(root.get(CampaignLog_.creationTime), startOfDay, endOfDay);
-            case BEFORE:
-                return (root, query, cb) -> cb.lessThan(root.get(CampaignLog_.creationTime), startOfDay);
-            case AFTER: // doing as inclusive
-                return (root, query, cb) -> cb.greaterThan(root.get(CampaignLog_.creationTime), startOfDay);
-            default:
-                throw new IllegalArgumentException("Unsupported join date condition");
-        }
-    }
-
-    private AccountLog costAccountLog(Broadcast bc, long smsCount) {
-        return new AccountLog.Builder(bc.getAccount())
-                .user(bc.getCreatedByUser())
-                .group(bc.getGroup())
-                .broadcast(bc)
-                .accountLogType(AccountLogType.BROADCAST_MESSAGE_SENT)
-                .billedOrPaid(bc.getAccount().getFreeFormCost() * smsCount).build();
-    }
-
     @Override
     @Transactional(readOnly = true)
     public BroadcastDTO fetchBroadcast(String broadcastUid, String fetchingUserId) {
@@ -811,6 +584,36 @@ public class BroadcastBrokerImpl implements BroadcastBroker {
         }
     }
 
+    @Override
+    @Scheduled(fixedDelayString = "${grassroot.broadcast.fanout.interval:10000}")
+    public void fanOutPendingBroadcasts() {
+        List<String> pendingBroadcasts = fanOutBroker.fetchBroadcastsPendingFanOut();
+        if (!pendingBroadcasts.isEmpty()) {
+            log.info("found {} broadcasts pending fan out", pendingBroadcasts.size());
+            pendingBroadcasts.forEach(this::fanOutBroadcast);
+        }
+    }
+
+    // deliberately not transactional: each chunk commits on its own, so memory and transaction length stay bounded
+    private void fanOutBroadcast(String broadcastUid) {
+        try {
+            log.info("fanning out broadcast {}, in chunks of {}", broadcastUid, fanOutChunkSize);
+            long startTime = System.currentTimeMillis();
+            int notificationCount = 0;
+            // each chunk moves the cursor past its last recipient, so the next fetch starts after it
+            List<Long> chunk = fanOutBroker.fetchOutstandingRecipientIds(broadcastUid, fanOutChunkSize);
+            while (!chunk.isEmpty()) {
+                notificationCount += fanOutBroker.fanOutToRecipients(broadcastUid, chunk);
+                chunk = fanOutBroker.fetchOutstandingRecipientIds(broadcastUid, fanOutChunkSize);
+            }
+            fanOutBroker.completeFanOut(broadcastUid);
+            log.info("broadcast {} fan out done, {} notifications in {} msecs", broadcastUid, notificationCount,
+                    System.currentTimeMillis() - startTime);
+        } catch (Exception e) {
+            log.error("Error fanning out broadcast {}, will resume from last stored chunk", broadcastUid, e);
+        }
+    }
+
     @Override
     @Transactional
     public void cancelScheduledBroadcast(String userUid, String broadcastUid) {
@@ -0,0 +1,26 @@
+package za.org.grassroot.services.broadcasts;
+
+import java.util.List;
+
+/**
+ * Generates a broadcast's notifications in fixed-size chunks of recipients, each chunk in its own transaction, and
+ * moves the broadcast's fan-out cursor in the same transaction, so an interrupted send resumes where it stopped. A
+ * chunk's emails are pushed once it has committed, so a chunk that fails and is resumed does not send them twice.
+ */
+public interface BroadcastFanOutBroker {
+
+    List<String> fetchBroadcastsPendingFanOut();
+
+    /**
+     * The next page of recipient user ids above the broadcast's cursor, in ascending order, or none once its fan out is
+     * complete. The page is cut by the database, so a send never holds more than a page of ids. As recipients are
+     * walked in id order, a user who already existed and joins the group or campaign while the send is under way is
+     * only reached if their id is still above the cursor; newly created users always are, as ids only increase.
+     */
+    List<Long> fetchOutstandingRecipientIds(String broadcastUid, int pageSize);
+
+    int fanOutToRecipients(String broadcastUid, List<Long> recipientIds);
+
+    void completeFanOut(String broadcastUid);
+
+}
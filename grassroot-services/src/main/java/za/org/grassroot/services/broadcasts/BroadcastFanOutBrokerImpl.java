@@ -0,0 +1,369 @@
+package za.org.grassroot.services.broadcasts;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import za.org.grassroot.core.domain.ActionLog;
+import za.org.grassroot.core.domain.Notification;
+import za.org.grassroot.core.domain.User;
+import za.org.grassroot.core.domain.User_;
+import za.org.grassroot.core.domain.account.AccountLog;
+import za.org.grassroot.core.domain.broadcast.Broadcast;
+import za.org.grassroot.core.domain.campaign.Campaign;
+import za.org.grassroot.core.domain.campaign.CampaignLog;
+import za.org.grassroot.core.domain.campaign.CampaignLog_;
+import za.org.grassroot.core.domain.group.Group;
+import za.org.grassroot.core.domain.group.GroupLog;
+import za.org.grassroot.core.domain.group.JoinDateCondition;
+import za.org.grassroot.core.domain.group.Membership;
+import za.org.grassroot.core.domain.group.Membership_;
+import za.org.grassroot.core.domain.notification.BroadcastNotification;
+import za.org.grassroot.core.domain.notification.CampaignBroadcastNotification;
+import za.org.grassroot.core.domain.notification.GroupBroadcastNotification;
+import za.org.grassroot.core.domain.notification.NotificationStatus;
+import za.org.grassroot.core.dto.GrassrootEmail;
+import za.org.grassroot.core.enums.AccountLogType;
+import za.org.grassroot.core.enums.CampaignLogType;
+import za.org.grassroot.core.enums.DeliveryRoute;
+import za.org.grassroot.core.enums.GroupLogType;
+import za.org.grassroot.core.repository.*;
+import za.org.grassroot.core.specifications.MembershipSpecifications;
+import za.org.grassroot.integration.messaging.MessagingServiceBroker;
+import za.org.grassroot.services.task.TaskBroker;
+import za.org.grassroot.services.user.PasswordTokenService;
+import za.org.grassroot.services.util.LogsAndNotificationsBroker;
+import za.org.grassroot.services.util.LogsAndNotificationsBundle;
+
+import javax.persistence.EntityManager;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Path;
+import javax.persistence.criteria.Root;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static za.org.grassroot.core.enums.CampaignLogType.*;
+import static za.org.grassroot.core.specifications.NotificationSpecifications.forBroadcast;
+import static za.org.grassroot.core.specifications.NotificationSpecifications.forShortMessage;
+
+@Service @Slf4j
+public class BroadcastFanOutBrokerImpl implements BroadcastFanOutBroker {
+
+    private static final String RESEND_PREFIX = "[RESENT] ";
+
+    static final List<CampaignLogType> CAMPAIGN_ENGAGEMENT_TYPES = Arrays.asList(CAMPAIGN_PETITION_SIGNED,
+            CAMPAIGN_USER_ADDED_TO_MASTER_GROUP, CAMPAIGN_SHARED, CAMPAIGN_USER_TAGGED);
+
+    private final BroadcastRepository broadcastRepository;
+    private final UserRepository userRepository;
+    private final MembershipRepository membershipRepository;
+    private final GroupLogRepository groupLogRepository;
+    private final CampaignLogRepository campaignLogRepository;
+    private final NotificationRepository notificationRepository;
+    private final BroadcastNotificationRepository broadcastNotificationRepository;
+
+    private final TaskBroker taskBroker;
+    private final MessagingServiceBroker messagingServiceBroker;
+    private final LogsAndNotificationsBroker logsAndNotificationsBroker;
+    private final EntityManager entityManager;
+
+    private PasswordTokenService tokenService;
+
+    @Autowired
+    public BroadcastFanOutBrokerImpl(BroadcastRepository broadcastRepository, UserRepository userRepository, MembershipRepository membershipRepository,
+                                     GroupLogRepository groupLogRepository, CampaignLogRepository campaignLogRepository,
+                                     NotificationRepository notificationRepository, BroadcastNotificationRepository broadcastNotificationRepository,
+                                     TaskBroker taskBroker, MessagingServiceBroker messagingServiceBroker,
+                                     LogsAndNotificationsBroker logsAndNotificationsBroker, EntityManager entityManager) {
+        this.broadcastRepository = broadcastRepository;
+        this.userRepository = userRepository;
+        this.membershipRepository = membershipRepository;
+        this.groupLogRepository = groupLogRepository;
+        this.campaignLogRepository = campaignLogRepository;
+        this.notificationRepository = notificationRepository;
+        this.broadcastNotificationRepository = broadcastNotificationRepository;
+        this.taskBroker = taskBroker;
+        this.messagingServiceBroker = messagingServiceBroker;
+        this.logsAndNotificationsBroker = logsAndNotificationsBroker;
+        this.entityManager = entityManager;
+    }
+
+    @Autowired
+    public void setTokenService(PasswordTokenService tokenService) {
+        this.tokenService = tokenService;
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<String> fetchBroadcastsPendingFanOut() {
+        return broadcastRepository.findUidsWithFanOutPending();
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<Long> fetchOutstandingRecipientIds(String broadcastUid, int pageSize) {
+        Broadcast bc = broadcastRepository.findOneByUid(Objects.requireNonNull(broadcastUid));
+        if (!bc.isFanOutPending()) {
+            return Collections.emptyList();
+        }
+
+        final long cursor = bc.getFanOutCursor() == null ? 0 : bc.getFanOutCursor();
+        List<Long> recipientIds = bc.getCampaign() == null ? groupRecipientIds(bc, cursor, pageSize) :
+                campaignRecipientIds(bc, cursor, pageSize);
+
+        log.info("Broadcast {} has {} recipients in next page above cursor {}, {} already processed", bc.getUid(),
+                recipientIds.size(), cursor, bc.getRecipientsProcessed());
+        return recipientIds;
+    }
+
+    private List<Long> groupRecipientIds(Broadcast bc, long cursor, int pageSize) {
+        Group group = bc.getGroup();
+        JoinDateCondition joinDateCondition = bc.getJoinDateCondition().orElse(null);
+        LocalDate joinDate = bc.getJoinDate().orElse(null);
+
+        log.debug("Fetching group broadcast recipients, join date condition {}, join date {}", joinDateCondition, joinDate);
+
+        if (bc.hasFilter()) {
+            Specification<Membership> filter = MembershipSpecifications.filterGroupMembership(group,
+                    bc.getProvinces(), bc.getNoProvinceRestriction().orElse(null),
+                    bc.getTaskTeams(), bc.getTopics(), bc.getAffiliations(), bc.getJoinMethods(),
+                    null, null, joinDate, joinDateCondition, bc.getNamePhoneEmailFilter(), bc.getFilterLanguages(), null);
+            return pageOfUserIds(Membership.class, root -> root.get(Membership_.user).get(User_.id), filter, false, cursor, pageSize);
+        } else if (bc.hasTask()) {
+            // a task's assignees are already loaded whole to resolve them, so are only paged here
+            return taskBroker.fetchMembersAssignedToTask(bc.getCreatedByUser().getUid(), bc.getTaskUid(), bc.getTaskType(), bc.taskOnlyPositive())
+                    .stream().map(m -> m.getUser().getId()).filter(id -> id > cursor).distinct().sorted()
+                    .limit(pageSize).collect(Collectors.toList());
+        } else {
+            return membershipRepository.findUserIdsByGroupAfter(group, cursor, PageRequest.of(0, pageSize));
+        }
+    }
+
+    private List<Long> campaignRecipientIds(Broadcast bc, long cursor, int pageSize) {
+        return bc.hasFilter() ?
+                pageOfUserIds(CampaignLog.class, root -> root.get(CampaignLog_.user).get(User_.id), campaignFilter(bc), true, cursor, pageSize) :
+                campaignLogRepository.findDistinctUserIdsByCampaignAndTypesAfter(bc.getCampaign(), CAMPAIGN_ENGAGEMENT_TYPES,
+                        cursor, PageRequest.of(0, pageSize));
+    }
+
+    // the next page of user ids above the cursor, with the paging done by the database, and only the ids selected
+    private <T> List<Long> pageOfUserIds(Class<T> entityClass, Function<Root<T>, Path<Long>> userId, Specification<T> filter,
+                                         boolean distinct, long cursor, int pageSize) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Long> query = cb.createQuery(Long.class);
+        Root<T> root = query.from(entityClass);
+        Path<Long> idPath = userId.apply(root);
+        query.select(idPath).distinct(distinct)
+                .where(filter.toPredicate(root, query, cb), cb.greaterThan(idPath, cursor))
+                .orderBy(cb.asc(idPath));
+        return entityManager.createQuery(query).setMaxResults(pageSize).getResultList();
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public int fanOutToRecipients(String broadcastUid, List<Long> recipientIds) {
+        Broadcast bc = broadcastRepository.findOneByUidForUpdate(Objects.requireNonNull(broadcastUid));
+        if (!bc.isFanOutPending()) {
+            log.info("Broadcast {} fan out already completed, skipping chunk", broadcastUid);
+            return 0;
+        }
+
+        // another instance may have stored some of these while we waited for the lock, so we re-check against the cursor
+        final long cursor = bc.getFanOutCursor() == null ? 0 : bc.getFanOutCursor();
+        List<Long> idsToProcess = recipientIds.stream().filter(id -> id > cursor).collect(Collectors.toList());
+        if (idsToProcess.isEmpty()) {
+            return 0;
+        }
+
+        ActionLog actionLog = bc.getCampaign() == null ?
+                groupLogRepository.findFirstByBroadcastAndGroupLogType(bc, GroupLogType.BROADCAST_SENT) :
+                campaignLogRepository.findFirstByBroadcastAndCampaignLogType(bc, CampaignLogType.CAMPAIGN_BROADCAST_SENT);
+        if (actionLog == null) {
+            throw new IllegalStateException("Broadcast fan out pending but no sending log stored, for broadcast: " + broadcastUid);
+        }
+
+        List<User> users = userRepository.findAllById(idsToProcess);
+        Set<Notification> notifications = new HashSet<>();
+
+        if (bc.hasEmail()) {
+            Set<User> emailUsers = users.stream().filter(User::hasEmailAddress).collect(Collectors.toSet());
+            notifications.addAll(prepareBroadcastEmails(bc, actionLog, emailUsers));
+        }
+
+        if (bc.hasShortMessage()) {
+            boolean skipUsersWithEmail = bc.isSkipSmsIfEmail() && bc.hasEmail();
+            users.stream()
+                    .filter(u -> u.hasPhoneNumber() && !(skipUsersWithEmail && u.hasEmailAddress()))
+                    .map(u -> shortMessageNotification(bc, actionLog, u))
+                    .forEach(notifications::add);
+        }
+
+        notificationRepository.saveAll(notifications);
+        bc.recordFanOutProgress(Collections.max(idsToProcess), idsToProcess.size());
+
+        log.info("Stored {} notifications for broadcast {}, cursor now at {}", notifications.size(), broadcastUid, bc.getFanOutCursor());
+        return notifications.size();
+    }
+
+    private Notification shortMessageNotification(Broadcast bc, ActionLog actionLog, User u) {
+        BroadcastNotification notification;
+        if (actionLog instanceof CampaignLog) {
+            notification = new CampaignBroadcastNotification(u, bc.getShortMsgIncludingMerge(u), bc,
+                    u.getMessagingPreference(), (CampaignLog) actionLog);
+        } else {
+            DeliveryRoute route = u.getMessagingPreference() == DeliveryRoute.SMS ? DeliveryRoute.LONG_SMS : u.getMessagingPreference();
+            notification = new GroupBroadcastNotification(u, bc.getShortMsgIncludingMerge(u), bc, route, (GroupLog) actionLog);
+        }
+        notification.setUseOnlyFreeChannels(bc.isOnlyUseFreeChannels());
+        return notification;
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public void completeFanOut(String broadcastUid) {
+        Broadcast bc = broadcastRepository.findOneByUidForUpdate(Objects.requireNonNull(broadcastUid));
+        if (!bc.isFanOutPending()) {
+            return;
+        }
+
+        if (bc.getAccount() != null) {
+            // counted from what was stored, rather than carried through the chunks, so it is right after a resume too
+            long smsCount = broadcastNotificationRepository.count(Specification.where(forBroadcast(bc)).and(forShortMessage()));
+            LogsAndNotificationsBundle bundle = new LogsAndNotificationsBundle();
+            bundle.addLog(costAccountLog(bc, smsCount));
+            logsAndNotificationsBroker.storeBundle(bundle);
+        }
+
+        bc.setFanOutPending(false);
+        log.info("Completed fan out of broadcast {}, to {} recipients", broadcastUid, bc.getRecipientsProcessed());
+    }
+
+    // the emails are only pushed once the chunk has committed, so a chunk that rolls back and is resumed does not mail
+    // its recipients twice; until pushed, their notifications are left as sending
+    private Set<Notification> prepareBroadcastEmails(Broadcast broadcast, ActionLog actionLog, Set<User> recipients) {
+        if (recipients.isEmpty()) {
+            return Collections.emptySet();
+        }
+
+        Set<String> recipientUids = recipients.stream().map(User::getUid).collect(Collectors.toSet());
+        EmailBroadcast emailBc = EmailBroadcast.builder()
+                .broadcastUid(broadcast.getUid())
+                .subject(broadcast.getTitle().replace(RESEND_PREFIX, ""))
+                .content(broadcast.getEmailContent())
+                .deliveryRoute(broadcast.getEmailDeliveryRoute())
+                .attachmentFileRecordUids(broadcast.getEmailAttachments())
+                .build();
+
+        final String groupUid = broadcast.getGroup() != null ? broadcast.getGroup().getUid() :
+                broadcast.getCampaign().getMasterGroup().getUid();
+
+        emailBc.setFromFieldsIfEmpty(broadcast.getCreatedByUser());
+        GrassrootEmail email = emailBc.toGrassrootEmail();
+        email.setToUserUids(recipientUids);
+        email.setGroupUid(groupUid);
+
+        Set<Notification> notifications = recordEmailNotifications(broadcast, recipients, emailBc, actionLog);
+        Set<String> notificationUids = notifications.stream().map(Notification::getUid).collect(Collectors.toSet());
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+            @Override
+            public void afterCommit() {
+                pushBroadcastEmail(email, notificationUids);
+            }
+        });
+
+        tokenService.generateResponseTokens(recipientUids, groupUid, null);
+        return notifications;
+    }
+
+    private void pushBroadcastEmail(GrassrootEmail email, Set<String> notificationUids) {
+        log.info("email, with base ID = {}, to {} recipients", email.getBaseId(), notificationUids.size());
+        try {
+            boolean deliverySucceeded = messagingServiceBroker.sendEmail(email);
+            notificationRepository.updateStatusByUidIn(notificationUids,
+                    deliverySucceeded ? NotificationStatus.DELIVERED : NotificationStatus.DELIVERY_FAILED, Instant.now());
+        } catch (Exception e) {
+            log.error("Error recording broadcast email delivery, with base ID: {}", email.getBaseId(), e);
+        }
+    }
+
+    // for counting / auditing purposes, hence also trim it so we don't get huge text blobs gumming up an already big table
+    private Set<Notification> recordEmailNotifications(Broadcast broadcast, Set<User> recipients, EmailBroadcast emailBc, ActionLog actionLog) {
+        boolean isCampaign = broadcast.getCampaign() != null;
+        return recipients.stream().map(user -> {
+            final String trimmedMsg = StringUtils.abbreviate(emailBc.getContent(), 255);
+            Notification n = isCampaign ? new CampaignBroadcastNotification(user, trimmedMsg, broadcast, broadcast.getEmailDeliveryRoute(), (CampaignLog) actionLog) :
+                    new GroupBroadcastNotification(user, emailBc.getContent(), broadcast, broadcast.getEmailDeliveryRoute(), (GroupLog) actionLog);
+            n.setSendAttempts(1);
+            n.setStatus(NotificationStatus.SENDING);
+            return n;
+        }).collect(Collectors.toSet());
+    }
+
+    private Specification<CampaignLog> campaignFilter(Broadcast bc) {
+        log.info("filtering campaign users, or should be, with provinces: {}", bc.getProvinces());
+
+        Specification<CampaignLog> specs = engagementLogsForCampaign(bc.getCampaign());
+
+        if (!bc.getProvinces().isEmpty()) {
+            log.info("wiring up for province: {}", bc.getProvinces());
+            specs = specs.and((root, query, cb) -> root.get(CampaignLog_.user).get(User_.province).in(bc.getProvinces()));
+        }
+
+        if (bc.getJoinDateCondition().isPresent()) {
+            log.info("join date condition present, setting");
+            specs = specs.and(joinDateCondition(bc.getJoinDateCondition().get(), bc.getJoinDate()
+                    .orElseThrow(() -> new IllegalArgumentException("Join date condition without join date"))));
+        }
+
+        if (!bc.getTopics().isEmpty()) {
+            log.info("topics present, setting: {}", bc.getTopics());
+            List<String> prefixedTopics = bc.getTopics().stream().map(s -> Campaign.JOIN_TOPIC_PREFIX + s).collect(Collectors.toList());
+            specs = specs.and((root, query, cb) -> root.get(CampaignLog_.description).in(prefixedTopics));
+        }
+
+        return specs;
+    }
+
+    private Specification<CampaignLog> engagementLogsForCampaign(Campaign campaign) {
+        Specification<CampaignLog> forCampaign = (root, query, cb) -> cb.equal(root.get(CampaignLog_.campaign), campaign);
+        Specification<CampaignLog> engaged = (root, query, cb) -> root.get(CampaignLog_.campaignLogType).in(CAMPAIGN_ENGAGEMENT_TYPES);
+        return Specification.where(forCampaign).and(engaged);
+    }
+
+    private Specification<CampaignLog> joinDateCondition(JoinDateCondition condition, LocalDate joinDate) {
+        Instant startOfDay = joinDate.atStartOfDay().toInstant(ZoneOffset.UTC);
+        Instant endOfDay = joinDate.atStartOfDay().toInstant(ZoneOffset.UTC);
+
+        switch (condition) {
+            case EXACT:
+                return (root, query, cb) -> cb.between(root.get(CampaignLog_.creationTime), startOfDay, endOfDay);
+            case BEFORE:
+                return (root, query, cb) -> cb.lessThan(root.get(CampaignLog_.creationTime), startOfDay);
+            case AFTER: // doing as inclusive
+                return (root, query, cb) -> cb.greaterThan(root.get(CampaignLog_.creationTime), startOfDay);
+            default:
+                throw new IllegalArgumentException("Unsupported join date condition");
+        }
+    }
+
+    private AccountLog costAccountLog(Broadcast bc, long smsCount) {
+        return new AccountLog.Builder(bc.getAccount())
+                .user(bc.getCreatedByUser())
+                .group(bc.getGroup())
+                .broadcast(bc)
+                .accountLogType(AccountLogType.BROADCAST_MESSAGE_SENT)
+                .billedOrPaid(bc.getAccount().getFreeFormCost() * smsCount).build();
+    }
+
+}
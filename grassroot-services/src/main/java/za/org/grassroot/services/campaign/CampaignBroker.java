@@ -49,7 +49,7 @@ public interface CampaignBroker {
     List<Campaign> broadSearchForCampaign(String userId, String searchTerm);
 
     // returns all in lower case
-    Map<String, String> getActiveCampaignJoinWords(); // todo : cache this
+    Map<String, String> getActiveCampaignJoinWords(); // read fresh, for checking new words; inbound words go through JoinRoutingTable
 
     boolean isTextJoinWordTaken(String joinWord, String campaignUid);
 
@@ -35,11 +35,13 @@ import za.org.grassroot.core.domain.notification.NotificationStatus;
 import za.org.grassroot.core.enums.CampaignLogType;
 import za.org.grassroot.core.enums.MessageVariationAssignment;
 import za.org.grassroot.core.enums.UserInterfaceType;
+import za.org.grassroot.core.events.JoinRoutingChangedEvent;
 import za.org.grassroot.core.repository.CampaignMessageRepository;
 import za.org.grassroot.core.repository.CampaignRepository;
 import za.org.grassroot.core.specifications.CampaignMessageSpecifications;
 import za.org.grassroot.core.util.AfterTxCommitTask;
 import za.org.grassroot.integration.MediaFileBroker;
+import za.org.grassroot.services.JoinRoutingTable;
 import za.org.grassroot.services.PermissionBroker;
 import za.org.grassroot.services.account.AccountFeaturesBroker;
 import za.org.grassroot.services.exception.CampaignCodeTakenException;
@@ -76,6 +78,7 @@ public class CampaignBrokerImpl implements CampaignBroker {
     private final LogsAndNotificationsBroker logsAndNotificationsBroker;
     private final PermissionBroker permissionBroker;
     private final MediaFileBroker mediaFileBroker;
+    private final JoinRoutingTable joinRoutingTable;
 
     private final ApplicationEventPublisher eventPublisher;
 
@@ -83,7 +86,7 @@ public class CampaignBrokerImpl implements CampaignBroker {
 
     @Autowired
     public CampaignBrokerImpl(CampaignRepository campaignRepository, CampaignMessageRepository campaignMessageRepository, CampaignStatsBroker campaignStatsBroker, GroupBroker groupBroker, AccountFeaturesBroker accountFeaturesBroker, UserManagementService userManagementService,
-                              LogsAndNotificationsBroker logsAndNotificationsBroker, PermissionBroker permissionBroker, MediaFileBroker mediaFileBroker, ApplicationEventPublisher eventPublisher){
+                              LogsAndNotificationsBroker logsAndNotificationsBroker, PermissionBroker permissionBroker, MediaFileBroker mediaFileBroker, JoinRoutingTable joinRoutingTable, ApplicationEventPublisher eventPublisher){
         this.campaignRepository = campaignRepository;
         this.campaignMessageRepository = campaignMessageRepository;
         this.campaignStatsBroker = campaignStatsBroker;
@@ -93,6 +96,7 @@ public class CampaignBrokerImpl implements CampaignBroker {
         this.logsAndNotificationsBroker = logsAndNotificationsBroker;
         this.permissionBroker = permissionBroker;
         this.mediaFileBroker = mediaFileBroker;
+        this.joinRoutingTable = joinRoutingTable;
         this.eventPublisher = eventPublisher;
     }
 
@@ -273,10 +277,7 @@ public class CampaignBrokerImpl implements CampaignBroker {
             return campaign;
         }
 
-        // todo: will definitely want to cache these soon
-        Map<String, String> activeWords = getActiveCampaignJoinWords();
-        final String trimmed = joinWord.trim().toLowerCase();
-        campaign = activeWords.containsKey(trimmed) ? campaignRepository.findOneByUid(activeWords.get(trimmed)) : null;
+        campaign = joinRoutingTable.campaignForJoinWord(joinWord).map(campaignRepository::findOneByUid).orElse(null);
 
         if (campaign != null) {
             recordEngagement(campaign.getUid(), userId, channel, joinWord);
@@ -425,6 +426,7 @@ public class CampaignBrokerImpl implements CampaignBroker {
         Campaign persistedCampaign = campaignRepository.saveAndFlush(newCampaign);
         CampaignLog campaignLog = new CampaignLog(newCampaign.getCreatedByUser(), CampaignLogType.CREATED_IN_DB, newCampaign, null, null);
         persistCampaignLog(campaignLog);
+        eventPublisher.publishEvent(new JoinRoutingChangedEvent(this, persistedCampaign.getUid()));
         return persistedCampaign;
     }
 
@@ -628,6 +630,7 @@ public class CampaignBrokerImpl implements CampaignBroker {
 
         AfterTxCommitTask task = () -> logsAndNotificationsBroker.storeBundle(bundle);
         eventPublisher.publishEvent(task);
+        eventPublisher.publishEvent(new JoinRoutingChangedEvent(this, campaignUid));
     }
 
     private CampaignLog reactivateCampaign(Campaign campaign, User user, Instant newEndDate, String newCode) {
@@ -808,6 +811,7 @@ public class CampaignBrokerImpl implements CampaignBroker {
 
         persistCampaignLog(new CampaignLog(user, CampaignLogType.CAMPAIGN_DEACTIVATED, campaign, null,
                 "Prior end date: " + priorEndDate));
+        eventPublisher.publishEvent(new JoinRoutingChangedEvent(this, campaignUid));
     }
 
     @Override
@@ -838,6 +842,10 @@ public class CampaignBrokerImpl implements CampaignBroker {
     // Hibernate / Hikari should be caching this but because of sheer volume on peak, adding an extra layer of caching
     private Campaign getCampaignByCampaignCode(String campaignCode){
         Objects.requireNonNull(campaignCode);
+        // most codes that come in are not campaigns (e.g., group join codes), so those get turned away without a query
+        if (!joinRoutingTable.campaignForCode(campaignCode).isPresent()) {
+            return null;
+        }
 
         Cache campaignCache = cacheManager.getCache("campaign_lookup_codes");
         if (campaignCache != null && campaignCache.isKeyInCache(campaignCode)) {
@@ -1,9 +1,13 @@
 package za.org.grassroot.services.campaign;
 
+import za.org.grassroot.core.domain.User;
+import za.org.grassroot.core.domain.campaign.Campaign;
 import za.org.grassroot.core.domain.campaign.CampaignLog;
 import za.org.grassroot.core.dto.CampaignLogsDataCollection;
+import za.org.grassroot.core.enums.CampaignLogType;
 
 import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 
@@ -27,4 +31,13 @@ public interface CampaignStatsBroker {
 
     Map<String, String> getCampaignBillingStatsInPeriod(String campaignUid, Instant start, Instant end);
 
+    // called as campaign logs are stored, within that transaction, to keep the campaign's stats rollup current
+    void recordCampaignLogs(Collection<CampaignLog> campaignLogs);
+
+    // called before the user's logs of that type are removed, to take them out of the rollup
+    void recordCampaignLogsRemoval(Campaign campaign, User user, CampaignLogType logType);
+
+    // discards the campaign's rollup and replays its engagement logs into a new one
+    void rebuildCampaignStats(String campaignUid);
+
 }
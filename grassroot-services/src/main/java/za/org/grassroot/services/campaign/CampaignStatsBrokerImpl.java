@@ -1,30 +1,31 @@
 package za.org.grassroot.services.campaign;
 
+import lombok.Value;
 import lombok.extern.slf4j.Slf4j;
 import net.sf.ehcache.Cache;
 import net.sf.ehcache.CacheManager;
 import net.sf.ehcache.Element;
 import net.sf.ehcache.config.CacheConfiguration;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import za.org.grassroot.core.domain.User;
 import za.org.grassroot.core.domain.campaign.Campaign;
 import za.org.grassroot.core.domain.campaign.CampaignLog;
 import za.org.grassroot.core.domain.campaign.CampaignLog_;
+import za.org.grassroot.core.domain.campaign.CampaignStatsRollup;
 import za.org.grassroot.core.dto.CampaignLogsDataCollection;
 import za.org.grassroot.core.enums.CampaignLogType;
 import za.org.grassroot.core.enums.Province;
 import za.org.grassroot.core.enums.UserInterfaceType;
 import za.org.grassroot.core.repository.CampaignLogRepository;
 import za.org.grassroot.core.repository.CampaignRepository;
-import za.org.grassroot.core.repository.UserRepository;
+import za.org.grassroot.core.repository.CampaignStatsRollupRepository;
 import za.org.grassroot.core.util.DateTimeUtil;
 
-import javax.persistence.criteria.Join;
-import java.math.BigInteger;
 import java.time.Clock;
 import java.time.Instant;
 import java.time.LocalDate;
@@ -32,18 +33,22 @@ import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Comparator;
+import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 import static java.time.temporal.ChronoUnit.DAYS;
+import static java.time.temporal.ChronoUnit.HOURS;
 
 @Service @Slf4j
 public class CampaignStatsBrokerImpl implements CampaignStatsBroker {
@@ -59,10 +64,17 @@ public class CampaignStatsBrokerImpl implements CampaignStatsBroker {
 
     private final CampaignRepository campaignRepository;
     private final CampaignLogRepository campaignLogRepository;
-    private final UserRepository userRepository;
+    private final CampaignStatsRollupRepository rollupRepository;
 
     private final CacheManager cacheManager;
 
+    // campaigns known to have a stored rollup, so that neither reads nor stored logs need to check again
+    private final Set<Long> campaignsWithRollup = ConcurrentHashMap.newKeySet();
+
+    // placeholders in the rollup's keys
+    private static final String NO_CHANNEL = "NONE";
+    private static final String UNKNOWN_PROVINCE = "UNKNOWN";
+
     // NB: sequence here must be in order of importance, i.e., later in sequence -> later in user journey
     private static final List<CampaignLogType> ENGAGEMENT_LOG_TYPES = Arrays.asList(
             CampaignLogType.CAMPAIGN_FOUND,
@@ -95,10 +107,11 @@ public class CampaignStatsBrokerImpl implements CampaignStatsBroker {
     }
 
     @Autowired
-    public CampaignStatsBrokerImpl(CampaignRepository campaignRepository, CampaignLogRepository campaignLogRepository, UserRepository userRepository, CacheManager cacheManager) {
+    public CampaignStatsBrokerImpl(CampaignRepository campaignRepository, CampaignLogRepository campaignLogRepository,
+                                   CampaignStatsRollupRepository rollupRepository, CacheManager cacheManager) {
         this.campaignRepository = campaignRepository;
         this.campaignLogRepository = campaignLogRepository;
-        this.userRepository = userRepository;
+        this.rollupRepository = rollupRepository;
         this.cacheManager = cacheManager;
     }
 
@@ -111,17 +124,18 @@ public class CampaignStatsBrokerImpl implements CampaignStatsBroker {
     // something in staging DB has made this method a complete nightmare, and it is proving impossible to replciate the null pointer.
     // hence, overriding.
     @Override
+    @Transactional(readOnly = true)
     public CampaignLogsDataCollection getCampaignLogData(String campaignUid) {
         Campaign campaign = campaignRepository.findOneByUid(campaignUid);
-        // trying one route, then the other
         long startTime = System.currentTimeMillis();
-        Map<String, BigInteger> otherCollection = campaignLogRepository.selectCampaignLogCounts(campaign.getId());
-        // at some point maybe we remove even that final query, but for now it already strips it way down
+        // users reaching a stage are only counted once per stage, so these are the distinct users with each log type
+        Map<CampaignLogType, Long> reachedByType = fetchRollup(campaign).stream()
+                .collect(Collectors.groupingBy(row -> (CampaignLogType) row[0], Collectors.summingLong(row -> ((Number) row[3]).longValue())));
         try {
             CampaignLogsDataCollection collection2 = CampaignLogsDataCollection.builder()
-                    .totalEngaged(otherCollection.getOrDefault("total_engaged", BigInteger.ZERO).longValue())
-                    .totalSigned(otherCollection.getOrDefault("total_signed", BigInteger.ZERO).longValue())
-                    .totalJoined(otherCollection.getOrDefault("total_joined", BigInteger.ZERO).longValue())
+                    .totalEngaged(reachedByType.getOrDefault(CampaignLogType.CAMPAIGN_FOUND, 0L))
+                    .totalSigned(reachedByType.getOrDefault(CampaignLogType.CAMPAIGN_PETITION_SIGNED, 0L))
+                    .totalJoined(reachedByType.getOrDefault(CampaignLogType.CAMPAIGN_USER_ADDED_TO_MASTER_GROUP, 0L))
                     .lastActivityEpochMilli(campaignLogRepository.findFirstByCampaignOrderByCreationTimeDesc(campaign).getCreationTime().toEpochMilli())
                     .build();
             log.info("Collecting campaign counts took {} msecs to assemble", System.currentTimeMillis() - startTime);
@@ -150,49 +164,31 @@ public class CampaignStatsBrokerImpl implements CampaignStatsBroker {
         Instant startTimeInstant = startTime.atStartOfDay(Clock.systemDefaultZone().getZone()).toInstant();
         Instant endTimeInstant = endTime.atStartOfDay(Clock.systemDefaultZone().getZone()).toInstant();
 
-        Specification<CampaignLog> memberAdded = (root, query, cb) -> cb.equal(root.get("campaignLogType"),
-                CampaignLogType.CAMPAIGN_USER_ADDED_TO_MASTER_GROUP);
-        Specification<CampaignLog> withinTime = (root, query, cb) -> cb.between(root.get("creationTime"),
-                startTimeInstant, endTimeInstant);
-        List<CampaignLog> matchingLogs = campaignLogRepository.findAll(Specification
-                .where(forCampaign(campaign)).and(memberAdded).and(withinTime));
-
-        // strip out duplicates, so we have only the first entry
-        Map<Long, CampaignLog> lastStageMap = new LinkedHashMap<>();
-        matchingLogs.stream().filter(log -> !lastStageMap.containsKey(log.getUser().getId()))
-                .forEach(log -> lastStageMap.put(log.getUser().getId(), log));
-        log.debug("Latest stage map: {}", lastStageMap);
+        // users are only counted as reaching a stage once, so this is the first time each joined
+        final DateTimeFormatter timeFormat = year != null && month != null ? STATS_DAY_FORMAT : STATS_MONTH_FORMAT;
+        Map<String, Integer> changes = fetchRollup(campaign, startTimeInstant, endTimeInstant).stream()
+                .filter(row -> CampaignLogType.CAMPAIGN_USER_ADDED_TO_MASTER_GROUP.equals(row[1]))
+                .collect(Collectors.groupingBy(row -> timeFormat.format(((Instant) row[0]).atZone(ZONE)),
+                        Collectors.summingInt(row -> ((Number) row[4]).intValue())));
 
         int currentMemberCount = 0; // replace with count of group at start
-
-        List<CampaignLog> distinctLogs = new ArrayList<>(lastStageMap.values());
         Map<String, Integer> results = new LinkedHashMap<>();
 
         if (year != null && month != null) {
             // do it by day
-            Map<String, List<CampaignLog>> changes = distinctLogs .stream().collect(Collectors.groupingBy(
-                    cl -> STATS_DAY_FORMAT.format(cl.getCreationTime().atZone(Clock.systemDefaultZone().getZone()))));
             LocalDate currDay = startTime;
             while (currDay.isBefore(endTime)) {
                 String dayKey = STATS_DAY_FORMAT.format(currDay);
-                List<CampaignLog> dayChanges = changes.get(dayKey);
-                if (dayChanges != null) {
-                    currentMemberCount += dayChanges.size();
-                }
+                currentMemberCount += changes.getOrDefault(dayKey, 0);
                 results.put(dayKey, currentMemberCount);
                 currDay = currDay.plusDays(1);
             }
         } else {
             // do it by months
-            Map<String, List<CampaignLog>> changes = distinctLogs .stream().collect(Collectors.groupingBy(
-                    cl -> STATS_MONTH_FORMAT.format(cl.getCreationTime().atZone(Clock.systemDefaultZone().getZone()))));
             LocalDate currMonth = startTime;
             while (currMonth.getYear() < endTime.getYear() || currMonth.getMonthValue() < endTime.getMonthValue()) {
                 String monthKey = STATS_MONTH_FORMAT.format(currMonth);
-                List<CampaignLog> monthChanges = changes.get(monthKey);
-                if (monthChanges != null) {
-                    currentMemberCount += monthChanges.size();
-                }
+                currentMemberCount += changes.getOrDefault(monthKey, 0);
                 results.put(monthKey, currentMemberCount);
                 currMonth = currMonth.plusMonths(1);
             }
@@ -212,20 +208,9 @@ public class CampaignStatsBrokerImpl implements CampaignStatsBroker {
             return cacheResult;
         }
 
+        // the rollup's current counts hold each user once, under their furthest stage
         Campaign campaign = campaignRepository.findOneByUid(campaignUid);
-
-        // step 1: get all engagement logs and sort them in ascending order of degree of engagement
-        List<CampaignLog> allEngagementLogs = campaignLogRepository.findAll(engagementLogsForCampaign(campaign));
-        allEngagementLogs.sort(Comparator.comparingInt(log -> ENGAGEMENT_LOG_TYPES.indexOf(log.getCampaignLogType())));
-
-        // step 2: divide into a map, for each user, of their latest engagement status (hence sorting above imporant)
-        Map<Long, CampaignLogType> lastStageMap = new LinkedHashMap<>();
-        allEngagementLogs.forEach(log -> lastStageMap.put(log.getUser().getId(), log.getCampaignLogType()));
-        log.debug("latest stage map: {}", lastStageMap);
-
-        // step 3: count the number of users in a particular stage
-        Map<String, Long> result = lastStageMap.entrySet().stream()
-                .collect(Collectors.groupingBy(entry -> entry.getValue().toString(), Collectors.counting()));
+        Map<String, Long> result = sumCurrentUsers(fetchRollup(campaign), row -> row[0].toString());
         log.debug("okay and the collected map = {}", result);
 
         cache.put(new Element(cacheKey, result));
@@ -293,23 +278,9 @@ public class CampaignStatsBrokerImpl implements CampaignStatsBroker {
             return cacheResult;
         }
 
-        // step 1: get all engagement logs
         Campaign campaign = campaignRepository.findOneByUid(campaignUid);
-        List<CampaignLog> engagementLogs = campaignLogRepository.findAll(engagementLogsForCampaign(campaign));
-
-        // step 2: strip out duplicate user-interface pairs (uses a slight redundancy but not seeing a more elegant way right now)
-        Map<String, UserInterfaceType> channelMap = new LinkedHashMap<>();
-        engagementLogs.stream()
-                .filter(log -> log.getChannel() != null)
-                .forEach(log -> {
-            final String key = log.getUser().getId() + "_" + log.getChannel().name();
-            channelMap.put(key, log.getChannel());
-        });
-
-        // step 3: count the number of interfaces
-        log.debug("okay, channel map now looks like: {}", channelMap);
-        Map<String, Long> result = channelMap.entrySet().stream()
-                .collect(Collectors.groupingBy(entry -> entry.getValue().name(), Collectors.counting()));
+        List<Object[]> rollup = fetchRollup(campaign).stream().filter(row -> !NO_CHANNEL.equals(row[1])).collect(Collectors.toList());
+        Map<String, Long> result = sumCurrentUsers(rollup, row -> (String) row[1]);
 
         cache.put(new Element(cacheKey, result));
         return result;
@@ -325,19 +296,8 @@ public class CampaignStatsBrokerImpl implements CampaignStatsBroker {
             return cacheResult;
         }
 
-        // step 1: get all users that have engaged
         Campaign campaign = campaignRepository.findOneByUid(campaignUid);
-        Specification<User> engagedUsers = (root, query, cb) -> {
-            Join<User, CampaignLog> campaignLogs = root.join("campaignLogs");
-            query.distinct(true);
-            return cb.and(cb.equal(campaignLogs.get("campaign"), campaign),
-                    campaignLogs.get("campaignLogType").in(ENGAGEMENT_LOG_TYPES));
-        };
-
-        List<User> users = userRepository.findAll(engagedUsers);
-        Map<String, Long> result = users.stream().collect(
-                Collectors.groupingBy(user -> user.getProvince() == null ?
-                        "UNKNOWN" : user.getProvince().name(), Collectors.counting()));
+        Map<String, Long> result = sumCurrentUsers(fetchRollup(campaign), row -> (String) row[2]);
 
         cache.put(new Element(cacheKey, result));
 
@@ -355,21 +315,15 @@ public class CampaignStatsBrokerImpl implements CampaignStatsBroker {
             return cacheResult;
         }
 
-        // step 1 : get engagement logs that need dividing up, depending on time period
+        // step 1 : get the rollup for the time period, in which each user is at the hour they reached their furthest stage
         Campaign campaign = campaignRepository.findOneByUid(campaignUid);
 
         Instant startTime = request.getStartTime(campaign.getCreatedDateTime());
         Instant endTime = request.getEndTime(campaign.getCreatedDateTime());
 
-        Specification<CampaignLog> withinPeriod = (root, query, cb) -> cb.between(root.get("creationTime"), startTime, endTime);
-        List<CampaignLog> allEngagementLogs = campaignLogRepository.findAll(engagementLogsForCampaign(campaign).and(withinPeriod),
-                new Sort(Sort.Direction.ASC, "creationTime"));
-
-        // step 2: as above, filter out user's duplicates in funnel
-        Map<Long, CampaignLog> lastStageMap = new LinkedHashMap<>();
-        allEngagementLogs.forEach(log -> lastStageMap.put(log.getUser().getId(), log));
+        List<Object[]> rollup = fetchRollup(campaign, startTime, endTime);
 
-        // step 3: create a formatter for the time, for grouping the entities, depending on duration
+        // step 2: create a formatter for the time, for grouping the entities, depending on duration
         long daysBetween = DAYS.between(startTime, endTime);
         log.info("start time: {}, end time: {}, days between: {}", startTime, endTime, daysBetween);
         DateTimeFormatter groupingFormatter = daysBetween > 31 ? DateTimeFormatter.ofPattern("MMM") :
@@ -379,37 +333,180 @@ public class CampaignStatsBrokerImpl implements CampaignStatsBroker {
                 .map(groupingFormatter::format).distinct().collect(Collectors.toList());
         log.info("alright, time keys = {}", timeKeys);
 
-        // step 4: divide up the data, into channels or provinces, grouped by the set above
+        // step 3: divide up the data, into channels or provinces, grouped by the set above
         Map<String, Object> results = new HashMap<>();
         results.put("TIME_UNITS", timeKeys);
 
-        List<CampaignLog> logs = new ArrayList<>(lastStageMap.values());
-        if (request.isByChannel()) {
-            Set<UserInterfaceType> channels = logs.stream().map(CampaignLog::getChannel).filter(Objects::nonNull).collect(Collectors.toSet());
-            channels.forEach(channel -> {
-                // step 5: group logs by formatted date string (note: may be a clever way to do this just in the stream,
-                // though preserving ordering is useful (more so than a little additional elegance in code)
-                results.put(channel.name(), groupLogsByTime(logs, log -> channel.equals(log.getChannel()), groupingFormatter, timeKeys));
-            });
-        } else {
-            List<User> users = userRepository.findAllById(lastStageMap.keySet());
-            List<Province> provinces = users.stream().map(User::getProvince).filter(Objects::nonNull).collect(Collectors.toList());
-            provinces.forEach(province -> {
-                // these user entities should be Hibernate-cached by this stage, but watch this query in any case
-                results.put(province.toString(), groupLogsByTime(logs, log -> province.equals(log.getUser().getProvince()), groupingFormatter, timeKeys));
-            });
-            results.put("UNKNOWN", groupLogsByTime(logs, log -> log.getUser().getProvince() == null, groupingFormatter, timeKeys));
+        final int divisionIndex = request.isByChannel() ? 2 : 3;
+        Map<String, Long> totalsByDivision = sumCurrentUsers(rollup, row -> (String) row[divisionIndex]);
+        totalsByDivision.keySet().stream().filter(division -> !NO_CHANNEL.equals(division)).forEach(division ->
+                results.put(division, groupRollupByTime(rollup, row -> division.equals(row[divisionIndex]), groupingFormatter, timeKeys)));
+        if (!request.isByChannel()) {
+            results.putIfAbsent(UNKNOWN_PROVINCE, groupRollupByTime(rollup, row -> UNKNOWN_PROVINCE.equals(row[3]), groupingFormatter, timeKeys));
         }
 
         cache.put(new Element(cacheKey, results));
         return results;
     }
 
-    private Map<String, Integer> groupLogsByTime(List<CampaignLog> logs, Predicate<CampaignLog> filter, DateTimeFormatter groupingFormatter, List<String> timeKeys) {
+    @Override
+    @Transactional
+    public void recordCampaignLogs(Collection<CampaignLog> campaignLogs) {
+        Map<Campaign, List<CampaignLog>> logsByCampaign = campaignLogs.stream()
+                .filter(cl -> cl.getUser() != null && ENGAGEMENT_LOG_TYPES.contains(cl.getCampaignLogType()))
+                .collect(Collectors.groupingBy(CampaignLog::getCampaign));
+
+        logsByCampaign.forEach((campaign, logs) -> {
+            // the logs are already stored in this transaction, so a rebuild will include them
+            if (!hasRollup(campaign)) {
+                rebuildRollup(campaign);
+                return;
+            }
+
+            // replay the users' earlier engagement without recording it, so we know what stage each has reached
+            final Set<Long> newLogIds = logs.stream().map(CampaignLog::getId).collect(Collectors.toSet());
+            final Set<User> users = logs.stream().map(CampaignLog::getUser).collect(Collectors.toSet());
+            EngagementReplay replay = new EngagementReplay();
+            campaignLogRepository.findUsersEngagementHistory(campaign, users, ENGAGEMENT_LOG_TYPES).stream()
+                    .filter(row -> !newLogIds.contains(row[5]))
+                    .forEach(row -> replay.apply(row, false));
+
+            logs.stream().sorted(Comparator.comparing(CampaignLog::getCreationTime)).forEach(cl -> replay.apply(cl.getUser().getId(),
+                    cl.getCampaignLogType(), cl.getChannel(), cl.getCreationTime(), cl.getUser().getProvince(), true));
+
+            applyDeltas(campaign, replay.deltas);
+        });
+    }
+
+    @Override
+    @Transactional
+    public void recordCampaignLogsRemoval(Campaign campaign, User user, CampaignLogType logType) {
+        if (!hasRollup(campaign)) {
+            return; // will be built in full, without the removed logs, when next logged to
+        }
+
+        // take away the user's contribution to the rollup, then put back what remains once the logs are removed
+        List<Object[]> history = campaignLogRepository.findUserEngagementHistory(campaign, user, ENGAGEMENT_LOG_TYPES);
+        EngagementReplay withRemoved = new EngagementReplay();
+        history.forEach(row -> withRemoved.apply(row, true));
+        EngagementReplay withoutRemoved = new EngagementReplay();
+        history.stream().filter(row -> !logType.equals(row[1])).forEach(row -> withoutRemoved.apply(row, true));
+
+        Map<RollupKey, int[]> deltas = new LinkedHashMap<>(withoutRemoved.deltas);
+        withRemoved.deltas.forEach((key, delta) -> {
+            int[] net = deltas.computeIfAbsent(key, k -> new int[2]);
+            net[0] -= delta[0];
+            net[1] -= delta[1];
+        });
+        applyDeltas(campaign, deltas);
+    }
+
+    private void applyDeltas(Campaign campaign, Map<RollupKey, int[]> deltas) {
+        deltas.forEach((key, delta) -> {
+            if (delta[0] == 0 && delta[1] == 0) {
+                return;
+            }
+            if (rollupRepository.adjustRollup(campaign, key.getPeriodStart(), key.getLogType(), key.getChannel(),
+                    key.getProvince(), delta[0], delta[1]) == 0) {
+                rollupRepository.save(key.toRollup(campaign, delta));
+            }
+        });
+    }
+
+    @Override
+    @Transactional
+    public void rebuildCampaignStats(String campaignUid) {
+        rebuildRollup(campaignRepository.findOneByUid(campaignUid));
+        clearCampaignStatsCache(campaignUid);
+    }
+
+    private void rebuildRollup(Campaign campaign) {
+        long startTime = System.currentTimeMillis();
+        Map<RollupKey, int[]> rollup = replayHistory(campaign);
+
+        rollupRepository.deleteByCampaign(campaign);
+        rollupRepository.saveAll(rollup.entrySet().stream()
+                .map(entry -> entry.getKey().toRollup(campaign, entry.getValue())).collect(Collectors.toList()));
+        log.info("Rebuilt stats rollup for campaign {}, with {} rows, in {} msecs", campaign.getName(), rollup.size(),
+                System.currentTimeMillis() - startTime);
+        if (!rollup.isEmpty()) {
+            markRolledUp(campaign);
+        }
+    }
+
+    private Map<RollupKey, int[]> replayHistory(Campaign campaign) {
+        EngagementReplay replay = new EngagementReplay();
+        campaignLogRepository.findEngagementHistory(campaign, ENGAGEMENT_LOG_TYPES).forEach(row -> replay.apply(row, true));
+        return replay.deltas;
+    }
+
+    private boolean hasRollup(Campaign campaign) {
+        if (campaignsWithRollup.contains(campaign.getId())) {
+            return true;
+        }
+        boolean stored = rollupRepository.existsByCampaign(campaign);
+        if (stored) {
+            markRolledUp(campaign);
+        }
+        return stored;
+    }
+
+    // only once committed, as the rows may be this transaction's own, and go if it rolls back
+    private void markRolledUp(Campaign campaign) {
+        final Long campaignId = campaign.getId();
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            campaignsWithRollup.add(campaignId);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+            @Override
+            public void afterCommit() {
+                campaignsWithRollup.add(campaignId);
+            }
+        });
+    }
+
+    // campaigns without a rollup are built as they are next logged to; until then, reads replay their logs without storing
+    private List<Object[]> fetchRollup(Campaign campaign) {
+        if (hasRollup(campaign)) {
+            return rollupRepository.sumByCampaign(campaign);
+        }
+        Map<List<Object>, long[]> sums = new LinkedHashMap<>();
+        replayHistory(campaign).forEach((key, delta) -> {
+            long[] sum = sums.computeIfAbsent(Arrays.asList(key.getLogType(), key.getChannel(), key.getProvince()), k -> new long[2]);
+            sum[0] += delta[0];
+            sum[1] += delta[1];
+        });
+        return sums.entrySet().stream().map(entry -> new Object[] { entry.getKey().get(0), entry.getKey().get(1),
+                entry.getKey().get(2), entry.getValue()[0], entry.getValue()[1] }).collect(Collectors.toList());
+    }
+
+    private List<Object[]> fetchRollup(Campaign campaign, Instant start, Instant end) {
+        if (hasRollup(campaign)) {
+            return rollupRepository.sumByCampaignAndPeriod(campaign, start, end);
+        }
+        return replayHistory(campaign).entrySet().stream()
+                .filter(entry -> !entry.getKey().getPeriodStart().isBefore(start) && entry.getKey().getPeriodStart().isBefore(end))
+                .sorted(Comparator.comparing(entry -> entry.getKey().getPeriodStart()))
+                .map(entry -> new Object[] { entry.getKey().getPeriodStart(), entry.getKey().getLogType(), entry.getKey().getChannel(),
+                        entry.getKey().getProvince(), (long) entry.getValue()[0], (long) entry.getValue()[1] })
+                .collect(Collectors.toList());
+    }
+
+    // sums the users currently at each stage (the last column of either form of the rollup), dropping empty keys
+    private Map<String, Long> sumCurrentUsers(List<Object[]> rollup, Function<Object[], String> keyMapper) {
+        Map<String, Long> sums = rollup.stream().collect(Collectors.groupingBy(keyMapper,
+                Collectors.summingLong(row -> ((Number) row[row.length - 1]).longValue())));
+        sums.values().removeIf(count -> count <= 0);
+        return sums;
+    }
+
+    private Map<String, Integer> groupRollupByTime(List<Object[]> rollup, Predicate<Object[]> filter, DateTimeFormatter groupingFormatter, List<String> timeKeys) {
+        Map<String, Integer> groupedCounts = rollup.stream().filter(filter)
+                .collect(Collectors.groupingBy(row -> groupingFormatter.format(((Instant) row[0]).atZone(ZONE)),
+                        Collectors.summingInt(row -> ((Number) row[5]).intValue())));
         Map<String, Integer> timeUnitsCount = new LinkedHashMap<>();
-        Map<String, List<CampaignLog>> groupedLogs = logs.stream()
-                .filter(filter).collect(Collectors.groupingBy(log -> groupingFormatter.format(log.getCreationTime().atZone(ZONE))));
-        timeKeys.forEach(timeKey -> timeUnitsCount.put(timeKey, groupedLogs.containsKey(timeKey) ? groupedLogs.get(timeKey).size() : 0));
+        timeKeys.forEach(timeKey -> timeUnitsCount.put(timeKey, groupedCounts.getOrDefault(timeKey, 0)));
         return timeUnitsCount;
     }
 
@@ -432,4 +529,56 @@ public class CampaignStatsBrokerImpl implements CampaignStatsBroker {
         }
     }
 
+    @Value
+    private static class RollupKey {
+        Instant periodStart;
+        CampaignLogType logType;
+        String channel;
+        String province;
+
+        CampaignStatsRollup toRollup(Campaign campaign, int[] delta) {
+            return new CampaignStatsRollup(campaign, periodStart, logType, channel, province, delta[0], delta[1]);
+        }
+    }
+
+    /*
+    Walks users' engagement logs in time order, tracking the stages each has reached and their furthest stage, and
+    collects the changes to the rollup that the recorded logs produce: a first log of a type counts as reaching that
+    stage, and moving to a further stage shifts the user's current count from the old bucket to the new one
+     */
+    private static class EngagementReplay {
+        private final Map<Long, Set<CampaignLogType>> reachedByUser = new HashMap<>();
+        private final Map<Long, RollupKey> furthestByUser = new HashMap<>();
+        private final Map<RollupKey, int[]> deltas = new LinkedHashMap<>();
+
+        void apply(Object[] row, boolean record) {
+            apply((Long) row[0], (CampaignLogType) row[1], (UserInterfaceType) row[2], (Instant) row[3], (Province) row[4], record);
+        }
+
+        void apply(Long userId, CampaignLogType logType, UserInterfaceType channel, Instant time, Province province, boolean record) {
+            RollupKey key = new RollupKey(time.truncatedTo(HOURS), logType, channel == null ? NO_CHANNEL : channel.name(),
+                    province == null ? UNKNOWN_PROVINCE : province.name());
+
+            boolean firstOfType = reachedByUser.computeIfAbsent(userId, id -> EnumSet.noneOf(CampaignLogType.class)).add(logType);
+            if (firstOfType && record) {
+                delta(key)[0]++;
+            }
+
+            RollupKey priorFurthest = furthestByUser.get(userId);
+            if (priorFurthest == null || ENGAGEMENT_LOG_TYPES.indexOf(logType) > ENGAGEMENT_LOG_TYPES.indexOf(priorFurthest.getLogType())) {
+                furthestByUser.put(userId, key);
+                if (record) {
+                    delta(key)[1]++;
+                    if (priorFurthest != null) {
+                        delta(priorFurthest)[1]--;
+                    }
+                }
+            }
+        }
+
+        private int[] delta(RollupKey key) {
+            return deltas.computeIfAbsent(key, k -> new int[2]);
+        }
+    }
+
 }
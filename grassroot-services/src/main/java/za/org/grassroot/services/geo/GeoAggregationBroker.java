@@ -0,0 +1,20 @@
+package za.org.grassroot.services.geo;
+
+import java.time.Instant;
+import java.time.LocalDate;
+
+/**
+ * Runs the nightly location aggregations, walking group ids in batches on a bounded pool of workers, and keeping a
+ * checkpoint of the group run so that an interrupted run can be resumed instead of started over
+ */
+public interface GeoAggregationBroker {
+
+    // calculates user locations for the period, then group locations; does nothing if the run for the date is done
+    void calculateGroupLocations(LocalDate localDate);
+
+    // carries on a run for the date that was interrupted, if there is one and it is not already running
+    void resumeGroupLocations(LocalDate localDate);
+
+    void calculatePublicMeetingLocations(LocalDate localDate, Instant startTimeAfter, Instant startTimeBefore);
+
+}
@@ -0,0 +1,184 @@
+package za.org.grassroot.services.geo;
+
+import com.google.common.base.Stopwatch;
+import com.google.common.collect.Lists;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+import za.org.grassroot.core.domain.ScheduledJobCheckpoint;
+import za.org.grassroot.core.repository.GroupRepository;
+import za.org.grassroot.core.repository.MeetingRepository;
+import za.org.grassroot.core.repository.ScheduledJobCheckpointRepository;
+import za.org.grassroot.core.util.AsyncExecutors;
+import za.org.grassroot.services.util.BatchRetry;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+@Service @Slf4j
+public class GeoAggregationBrokerImpl implements GeoAggregationBroker {
+
+    private static final String GROUP_LOCATIONS_JOB = "group_locations";
+
+    @Value("${grassroot.geo.batch.size:100}")
+    private int batchSize;
+
+    private final GeoLocationBroker geoLocationBroker;
+    private final GroupRepository groupRepository;
+    private final MeetingRepository meetingRepository;
+    private final ScheduledJobCheckpointRepository checkpointRepository;
+    private final ThreadPoolTaskExecutor geoExecutor;
+
+    // so that the resume check does not pick up a run that is still going
+    private final AtomicBoolean groupRunInProgress = new AtomicBoolean(false);
+
+    public GeoAggregationBrokerImpl(GeoLocationBroker geoLocationBroker, GroupRepository groupRepository,
+                                    MeetingRepository meetingRepository, ScheduledJobCheckpointRepository checkpointRepository,
+                                    @Qualifier(AsyncExecutors.GEO) ThreadPoolTaskExecutor geoExecutor) {
+        this.geoLocationBroker = geoLocationBroker;
+        this.groupRepository = groupRepository;
+        this.meetingRepository = meetingRepository;
+        this.checkpointRepository = checkpointRepository;
+        this.geoExecutor = geoExecutor;
+    }
+
+    @Override
+    public void calculateGroupLocations(LocalDate localDate) {
+        if (!groupRunInProgress.compareAndSet(false, true)) {
+            log.info("Group location run already in progress, skipping");
+            return;
+        }
+
+        try {
+            ScheduledJobCheckpoint checkpoint = checkpointRepository.findOneByJobName(GROUP_LOCATIONS_JOB)
+                    .orElseGet(() -> new ScheduledJobCheckpoint(GROUP_LOCATIONS_JOB));
+
+            if (localDate.equals(checkpoint.getRunDate())) {
+                if (checkpoint.isCompleted()) {
+                    log.info("Group locations already calculated for {}, skipping", localDate);
+                } else {
+                    runGroupLocations(checkpoint);
+                }
+                return;
+            }
+
+            // if the last run did not complete, some groups will not have locations for its date, so keep comparing
+            // against the run before it
+            LocalDate baselineDate = checkpoint.isCompleted() ? checkpoint.getRunDate() : checkpoint.getBaselineDate();
+            geoLocationBroker.calculatePreviousPeriodUserLocations(localDate);
+
+            checkpoint.startRun(localDate, baselineDate);
+            runGroupLocations(checkpointRepository.save(checkpoint));
+        } finally {
+            groupRunInProgress.set(false);
+        }
+    }
+
+    @Override
+    public void resumeGroupLocations(LocalDate localDate) {
+        boolean interrupted = checkpointRepository.findOneByJobName(GROUP_LOCATIONS_JOB)
+                .map(checkpoint -> checkpoint.isIncompleteRunFor(localDate)).orElse(false);
+        if (interrupted && !groupRunInProgress.get()) {
+            log.info("Resuming interrupted group location run for {}", localDate);
+            calculateGroupLocations(localDate);
+        }
+    }
+
+    // group ids are fetched a page at a time, and the checkpoint is only moved past a batch once it and all the batches
+    // before it are done, so that a resumed run may redo some batches but never skips one
+    private void runGroupLocations(ScheduledJobCheckpoint checkpoint) {
+        final Stopwatch stopwatch = Stopwatch.createStarted();
+        final LocalDate localDate = checkpoint.getRunDate();
+        final LocalDate baselineDate = checkpoint.getBaselineDate();
+        final int pageSize = batchSize * geoExecutor.getCorePoolSize() * 4;
+
+        log.info("Calculating group locations for {}, against baseline {}, after group id {}", localDate, baselineDate,
+                checkpoint.getLastProcessedId());
+
+        int groupsSelected = 0;
+        int groupsRecalculated = 0;
+        List<Long> groupIds = groupRepository.findActiveGroupIdsAfter(checkpoint.getLastProcessedId(), PageRequest.of(0, pageSize));
+        while (!groupIds.isEmpty()) {
+            List<List<Long>> batches = Lists.partition(groupIds, batchSize);
+            List<Future<Integer>> results = batches.stream()
+                    .map(batch -> geoExecutor.submit(() -> calculateBatch(new ArrayList<>(batch), localDate, baselineDate)))
+                    .collect(Collectors.toList());
+
+            for (int i = 0; i < batches.size(); i++) {
+                try {
+                    groupsRecalculated += results.get(i).get();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    log.error("Interrupted while calculating group locations, will resume from group id {}", checkpoint.getLastProcessedId());
+                    return;
+                } catch (ExecutionException e) {
+                    log.error("Error calculating group location batch: {}", e.getMessage());
+                }
+                List<Long> batch = batches.get(i);
+                checkpoint.advanceTo(batch.get(batch.size() - 1));
+                checkpoint = checkpointRepository.save(checkpoint);
+            }
+
+            groupsSelected += groupIds.size();
+            groupIds = groupRepository.findActiveGroupIdsAfter(checkpoint.getLastProcessedId(), PageRequest.of(0, pageSize));
+        }
+
+        checkpoint.complete();
+        checkpointRepository.save(checkpoint);
+        log.info("Completed group locations for {}: {} groups, {} recalculated, took {} msecs", localDate, groupsSelected,
+                groupsRecalculated, stopwatch.elapsed(TimeUnit.MILLISECONDS));
+
+        // batches have already put their groups in the nearby index, this also drops what is no longer there
+        geoLocationBroker.loadNearbyLocationIndex();
+    }
+
+    private int calculateBatch(List<Long> groupIds, LocalDate localDate, LocalDate baselineDate) {
+        return BatchRetry.apply("group locations", groupIds,
+                batch -> geoLocationBroker.calculateGroupLocations(batch, localDate, baselineDate)).getResult();
+    }
+
+    @Override
+    public void calculatePublicMeetingLocations(LocalDate localDate, Instant startTimeAfter, Instant startTimeBefore) {
+        final Stopwatch stopwatch = Stopwatch.createStarted();
+        List<String> meetingUids = meetingRepository.findPublicMeetingUidsStartingBetween(startTimeAfter, startTimeBefore);
+        log.info("Calculating meeting locations for {} public meetings", meetingUids.size());
+
+        // each meeting is still calculated in its own transaction, as before, but spread over the workers
+        List<Future<?>> results = Lists.partition(meetingUids, batchSize).stream()
+                .map(batch -> geoExecutor.submit(() -> new ArrayList<>(batch).forEach(uid -> calculateMeetingLocation(uid, localDate))))
+                .collect(Collectors.toList());
+
+        for (Future<?> result : results) {
+            try {
+                result.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                log.error("Interrupted while calculating meeting locations");
+                return;
+            } catch (ExecutionException e) {
+                log.error("Error calculating meeting location batch: {}", e.getMessage());
+            }
+        }
+
+        log.info("Completed meeting locations, took {} msecs", stopwatch.elapsed(TimeUnit.MILLISECONDS));
+    }
+
+    private void calculateMeetingLocation(String meetingUid, LocalDate localDate) {
+        try {
+            geoLocationBroker.calculateMeetingLocationScheduled(meetingUid, localDate);
+        } catch (Exception e) {
+            log.error("Error calculating location for meeting " + meetingUid + ": " + e.getMessage(), e);
+        }
+    }
+
+}
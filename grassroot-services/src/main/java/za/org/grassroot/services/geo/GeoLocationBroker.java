@@ -26,6 +26,11 @@ public interface GeoLocationBroker {
 
 	void calculateGroupLocation(String groupUid, LocalDate localDate);
 
+	// as above for a batch of groups, in its own transaction; only groups with member location or membership changes
+	// since the baseline date are recalculated, the others have their baseline location carried forward (all groups are
+	// recalculated if there is no baseline). returns the number of groups recalculated
+	int calculateGroupLocations(List<Long> groupIds, LocalDate localDate, LocalDate baselineDate);
+
 	void calculateGroupLocationInstant(String groupUid, GeoLocation location, UserInterfaceType coordSourceInterface);
 
 	// used for recalculating / improving existing meetings
@@ -63,4 +68,7 @@ public interface GeoLocationBroker {
 			throws InvalidParameterException;
 
 	GeoLocation fetchBestGuessUserLocation(String userUid);
+
+	// reloads the in-memory index that the nearby searches use, from the latest group, upcoming meeting and released alert locations
+	void loadNearbyLocationIndex();
 }
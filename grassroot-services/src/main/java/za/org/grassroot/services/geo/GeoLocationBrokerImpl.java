@@ -1,13 +1,18 @@
 package za.org.grassroot.services.geo;
 
+import com.google.common.base.Stopwatch;
+import com.google.common.collect.Lists;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.scheduling.annotation.Async;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 import za.org.grassroot.core.domain.JpaEntityType;
+import za.org.grassroot.core.domain.ScheduledJobCheckpoint;
 import za.org.grassroot.core.domain.User;
 import za.org.grassroot.core.domain.geo.*;
 import za.org.grassroot.core.domain.group.Group;
@@ -15,6 +20,7 @@ import za.org.grassroot.core.domain.task.Event;
 import za.org.grassroot.core.domain.task.EventLog;
 import za.org.grassroot.core.domain.task.Meeting;
 import za.org.grassroot.core.enums.EventType;
+import za.org.grassroot.core.enums.GroupLogType;
 import za.org.grassroot.core.enums.LocationSource;
 import za.org.grassroot.core.enums.UserInterfaceType;
 import za.org.grassroot.core.repository.*;
@@ -25,14 +31,15 @@ import za.org.grassroot.integration.graph.GraphBroker;
 import za.org.grassroot.integration.location.UssdLocationServicesBroker;
 
 import javax.persistence.EntityManager;
-import javax.persistence.TypedQuery;
 import java.security.InvalidParameterException;
 import java.time.Instant;
 import java.time.LocalDate;
 import java.time.temporal.ChronoUnit;
 import java.util.*;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static za.org.grassroot.core.enums.LocationSource.convertFromInterface;
 
@@ -43,30 +50,48 @@ public class GeoLocationBrokerImpl implements GeoLocationBroker {
 	private final static int PRIVATE_LEVEL = -1;
 	private final static int PUBLIC_LEVEL = 1;
 
+	// keeps the user uid IN clauses well below the bind parameter limit, when a batch has large groups
+	private final static int USER_UID_CHUNK_SIZE = 1000;
+
+	private final static String USER_LOCATIONS_JOB = "user_locations";
+
+	// as far back as the alert search goes
+	private final static int ALERT_DAYS_INDEXED = 21;
+
 	private final UserLocationLogRepository userLocationLogRepository;
 	private final PreviousPeriodUserLocationRepository previousPeriodUserLocationRepository;
+	private final UserLocationDaySumRepository userLocationDaySumRepository;
+	private final ScheduledJobCheckpointRepository checkpointRepository;
 	private final UserRepository userRepository;
 	private final GroupRepository groupRepository;
 	private final GroupLocationRepository groupLocationRepository;
 	private final EventRepository eventRepository;
 	private final EventLogRepository eventLogRepository;
 	private final TaskLocationRepository taskLocationRepository;
+	private final MembershipRepository membershipRepository;
+	private final GroupLogRepository groupLogRepository;
 	private final EntityManager entityManager;
+	private final NearbyLocationIndex nearbyLocationIndex;
 
 	private UssdLocationServicesBroker ussdLocationServicesBroker;
 	private GraphBroker graphBroker;
 
     @Autowired
-    public GeoLocationBrokerImpl(UserLocationLogRepository userLocationLogRepository, PreviousPeriodUserLocationRepository previousPeriodUserLocationRepository, UserRepository userRepository, GroupRepository groupRepository, GroupLocationRepository groupLocationRepository, EventRepository eventRepository, EventLogRepository eventLogRepository, TaskLocationRepository taskLocationRepository, EntityManager entityManager) {
+    public GeoLocationBrokerImpl(UserLocationLogRepository userLocationLogRepository, PreviousPeriodUserLocationRepository previousPeriodUserLocationRepository, UserLocationDaySumRepository userLocationDaySumRepository, ScheduledJobCheckpointRepository checkpointRepository, UserRepository userRepository, GroupRepository groupRepository, GroupLocationRepository groupLocationRepository, EventRepository eventRepository, EventLogRepository eventLogRepository, TaskLocationRepository taskLocationRepository, MembershipRepository membershipRepository, GroupLogRepository groupLogRepository, EntityManager entityManager, NearbyLocationIndex nearbyLocationIndex) {
         this.userLocationLogRepository = userLocationLogRepository;
         this.previousPeriodUserLocationRepository = previousPeriodUserLocationRepository;
+        this.userLocationDaySumRepository = userLocationDaySumRepository;
+        this.checkpointRepository = checkpointRepository;
         this.userRepository = userRepository;
         this.groupRepository = groupRepository;
         this.groupLocationRepository = groupLocationRepository;
         this.eventRepository = eventRepository;
         this.eventLogRepository = eventLogRepository;
         this.taskLocationRepository = taskLocationRepository;
+        this.membershipRepository = membershipRepository;
+        this.groupLogRepository = groupLogRepository;
         this.entityManager = entityManager;
+        this.nearbyLocationIndex = nearbyLocationIndex;
     }
 
     @Autowired(required = false)
@@ -138,30 +163,118 @@ public class GeoLocationBrokerImpl implements GeoLocationBroker {
 		Objects.requireNonNull(localDate);
 
 		logger.info("calculating user locations for period of one month ending on date {} (inclusive)", localDate);
-		int periodDurationInMonths = 1;
-		Instant intervalStart = convertStartOfDayToSASTInstant(localDate.plusDays(1).minusMonths(periodDurationInMonths));
-		Instant intervalEnd = convertStartOfDayToSASTInstant(localDate.plusDays(1)); // since we want period date end to be inclusive...
-		List<UserLocationLog> locationLogs = userLocationLogRepository.findByTimestampBetween(intervalStart, intervalEnd);
+		final Stopwatch stopwatch = Stopwatch.createStarted();
+		final LocalDate periodStart = userLocationPeriodStart(localDate);
+
+		// the period can only be slid along from the day before if that was calculated, with its sums, by the last run
+		ScheduledJobCheckpoint checkpoint = checkpointRepository.findOneByJobName(USER_LOCATIONS_JOB)
+				.orElseGet(() -> new ScheduledJobCheckpoint(USER_LOCATIONS_JOB));
+		final LocalDate priorDate = localDate.minusDays(1);
+		final boolean slide = checkpoint.isCompleted() && priorDate.equals(checkpoint.getRunDate());
 
-		logger.debug("Deleting all previous period user locations for date: {}", localDate);
 		previousPeriodUserLocationRepository.deleteByKeyLocalDate(localDate);
+		if (slide) {
+			slidePreviousPeriodUserLocations(localDate, periodStart);
+		} else {
+			logger.info("No user locations calculated for {}, so summing the whole period", priorDate);
+			userLocationDaySumRepository.deleteByLocalDateBetween(periodStart, localDate);
+			for (LocalDate day = periodStart; !day.isAfter(localDate); day = day.plusDays(1)) {
+				sumUserLocationsForDay(day);
+			}
+			int stored = previousPeriodUserLocationRepository.insertFromDaySums(localDate, periodStart, localDate);
+			logger.info("Stored {} previous period user locations", stored);
+		}
+		userLocationDaySumRepository.deleteByLocalDateBefore(periodStart);
 
-		Map<String, List<GeoLocation>> locationsPerUserUid = locationLogs.stream()
-				.collect(Collectors.groupingBy(UserLocationLog::getUserUid,
-						Collectors.mapping(UserLocationLog::getLocation, Collectors.toList())));
+		checkpoint.startRun(localDate, slide ? priorDate : null);
+		checkpoint.complete();
+		checkpointRepository.save(checkpoint);
+		logger.info("Calculated user locations for {}, slid from prior day: {}, took {} msecs", localDate, slide,
+				stopwatch.elapsed(TimeUnit.MILLISECONDS));
+	}
 
-		logger.info("Storing {} previous period user locations", locationsPerUserUid.size());
+	// the prior day's locations are carried over in the DB, and only users with logs on the days that have entered or left
+	// the period are loaded and adjusted, so the work done depends on the logs since the last run, not on a month of them
+	private void slidePreviousPeriodUserLocations(LocalDate localDate, LocalDate periodStart) {
+		final LocalDate priorDate = localDate.minusDays(1);
+		final LocalDate priorPeriodStart = userLocationPeriodStart(priorDate);
+		final Map<String, LocationSums> changes = new HashMap<>();
+
+		// the prior day was still going when it was last summed, so it is summed again, and its old sums come off
+		userLocationDaySumRepository.findSumsByLocalDateBetween(priorDate, localDate).forEach(sum -> addChange(changes, sum, -1));
+		userLocationDaySumRepository.deleteByLocalDateBetween(priorDate, localDate);
+		sumUserLocationsForDay(priorDate);
+		sumUserLocationsForDay(localDate);
+		userLocationDaySumRepository.findSumsByLocalDateBetween(priorDate, localDate).forEach(sum -> addChange(changes, sum, 1));
+
+		// usually one day, but more or none at month ends
+		if (priorPeriodStart.isBefore(periodStart)) {
+			userLocationDaySumRepository.findSumsByLocalDateBetween(priorPeriodStart, periodStart.minusDays(1))
+					.forEach(sum -> addChange(changes, sum, -1));
+		}
 
-		Set<PreviousPeriodUserLocation> userLocations = new HashSet<>();
-		for (Map.Entry<String, List<GeoLocation>> entry : locationsPerUserUid.entrySet()) {
-			String userUid = entry.getKey();
-			List<GeoLocation> locations = entry.getValue();
-			GeoLocation center = GeoLocationUtils.centralLocation(locations);
-			PreviousPeriodUserLocation userLocation = new PreviousPeriodUserLocation(new UserAndLocalDateKey(userUid, localDate), center, locations.size());
-			userLocations.add(userLocation);
+		int carried = previousPeriodUserLocationRepository.copyToLocalDate(priorDate, localDate);
+		logger.info("Carried over {} user locations, adjusting {}", carried, changes.size());
+
+		for (List<String> uidChunk : Lists.partition(new ArrayList<>(changes.keySet()), USER_UID_CHUNK_SIZE)) {
+			Map<String, PreviousPeriodUserLocation> current = previousPeriodUserLocationRepository
+					.findByKeyLocalDateAndKeyUserUidIn(localDate, new HashSet<>(uidChunk)).stream()
+					.collect(Collectors.toMap(location -> location.getKey().getUserUid(), location -> location));
+
+			List<PreviousPeriodUserLocation> toSave = new ArrayList<>();
+			List<PreviousPeriodUserLocation> toDelete = new ArrayList<>();
+			for (String userUid : uidChunk) {
+				PreviousPeriodUserLocation location = current.get(userUid);
+				LocationSums sums = changes.get(userUid);
+				if (location != null) {
+					sums.add(location.getSumX(), location.getSumY(), location.getSumZ(), location.getLogCount());
+				}
+
+				if (sums.count < 1) {
+					if (location != null) {
+						toDelete.add(location);
+					}
+				} else if (location == null) {
+					toSave.add(new PreviousPeriodUserLocation(new UserAndLocalDateKey(userUid, localDate),
+							GeoLocationUtils.centralLocation(sums.x, sums.y, sums.z), sums.count, sums.x, sums.y, sums.z));
+				} else {
+					location.updateSums(GeoLocationUtils.centralLocation(sums.x, sums.y, sums.z), sums.count, sums.x, sums.y, sums.z);
+					toSave.add(location);
+				}
+			}
+			previousPeriodUserLocationRepository.deleteAll(toDelete);
+			previousPeriodUserLocationRepository.saveAll(toSave);
 		}
+	}
+
+	// logs that come in for a day after it has been summed for the last time are left out, as they were never added
+	private void sumUserLocationsForDay(LocalDate day) {
+		userLocationDaySumRepository.insertSumsForDay(day, convertStartOfDayToSASTInstant(day),
+				convertStartOfDayToSASTInstant(day.plusDays(1)));
+	}
+
+	private void addChange(Map<String, LocationSums> changes, Object[] daySum, int sign) {
+		changes.computeIfAbsent((String) daySum[0], uid -> new LocationSums())
+				.add(sign * (double) daySum[1], sign * (double) daySum[2], sign * (double) daySum[3], sign * (int) daySum[4]);
+	}
 
-		previousPeriodUserLocationRepository.saveAll(userLocations);
+	// the one month period ending on the date (inclusive)
+	private LocalDate userLocationPeriodStart(LocalDate localDate) {
+		return localDate.plusDays(1).minusMonths(1);
+	}
+
+	private static final class LocationSums {
+		private double x;
+		private double y;
+		private double z;
+		private int count;
+
+		private void add(double x, double y, double z, int count) {
+			this.x += x;
+			this.y += y;
+			this.z += z;
+			this.count += count;
+		}
 	}
 
 	private Instant convertStartOfDayToSASTInstant(LocalDate date) {
@@ -189,6 +302,7 @@ public class GeoLocationBrokerImpl implements GeoLocationBroker {
 			float score = result.getEntityCount() / (float) memberUids.size();
 			GroupLocation groupLocation = new GroupLocation(group, localDate, result.getCenter(), score, LocationSource.CALCULATED);
 			groupLocationRepository.save(groupLocation);
+			nearbyLocationIndex.putAfterCommit(Collections.singletonList(IndexedLocation.forGroup(groupLocation)));
 
 			// now update group location annotation in graph
 			Map<String, String> groupProperties = new HashMap<>();
@@ -200,6 +314,83 @@ public class GeoLocationBrokerImpl implements GeoLocationBroker {
 		}
 	}
 
+	@Override
+	@Transactional(propagation = Propagation.REQUIRES_NEW)
+	public int calculateGroupLocations(List<Long> groupIds, LocalDate localDate, LocalDate baselineDate) {
+		Objects.requireNonNull(groupIds);
+		Objects.requireNonNull(localDate);
+
+		Set<Long> changedGroupIds = baselineDate == null ? new HashSet<>(groupIds) :
+				findGroupsWithMemberChanges(groupIds, localDate, baselineDate);
+
+		// delete so we can recalculate (or carry forward), in case this batch was partly done before an interruption
+		groupLocationRepository.deleteByGroupIdInAndLocalDate(groupIds, localDate);
+
+		if (!changedGroupIds.isEmpty()) {
+			Map<Long, Set<String>> memberUids = new HashMap<>();
+			membershipRepository.findMemberUidsByGroupIds(changedGroupIds).forEach(row ->
+					memberUids.computeIfAbsent((Long) row[0], id -> new HashSet<>()).add((String) row[1]));
+
+			Set<String> allUids = memberUids.values().stream().flatMap(Set::stream).collect(Collectors.toSet());
+			Map<String, PreviousPeriodUserLocation> userLocations = new HashMap<>();
+			for (List<String> uidChunk : Lists.partition(new ArrayList<>(allUids), USER_UID_CHUNK_SIZE)) {
+				previousPeriodUserLocationRepository.findByKeyLocalDateAndKeyUserUidIn(localDate, new HashSet<>(uidChunk))
+						.forEach(location -> userLocations.put(location.getKey().getUserUid(), location));
+			}
+
+			List<GroupLocation> groupLocations = new ArrayList<>();
+			for (Group group : groupRepository.findAllById(changedGroupIds)) {
+				Set<String> groupMemberUids = memberUids.getOrDefault(group.getId(), Collections.emptySet());
+				List<PreviousPeriodUserLocation> memberLocations = groupMemberUids.stream().map(userLocations::get)
+						.filter(Objects::nonNull).collect(Collectors.toList());
+				if (!memberLocations.isEmpty()) {
+					CenterCalculationResult result = calculateCenter(memberLocations);
+					float score = result.getEntityCount() / (float) groupMemberUids.size();
+					groupLocations.add(new GroupLocation(group, localDate, result.getCenter(), score, LocationSource.CALCULATED));
+				}
+			}
+			groupLocationRepository.saveAll(groupLocations);
+			nearbyLocationIndex.putAfterCommit(groupLocations.stream().map(IndexedLocation::forGroup).collect(Collectors.toList()));
+
+			if (graphBroker != null) {
+				groupLocations.forEach(this::annotateGroupLocationInGraph);
+			}
+		}
+
+		if (baselineDate != null && changedGroupIds.size() < groupIds.size()) {
+			List<Long> unchangedGroupIds = groupIds.stream().filter(id -> !changedGroupIds.contains(id)).collect(Collectors.toList());
+			List<GroupLocation> carriedForward = groupLocationRepository.findByGroupIdInAndLocalDate(unchangedGroupIds, baselineDate).stream()
+					.map(gl -> new GroupLocation(gl.getGroup(), localDate, gl.getLocation(), gl.getScore(), gl.getSource()))
+					.collect(Collectors.toList());
+			groupLocationRepository.saveAll(carriedForward);
+		}
+
+		logger.debug("Calculated locations for batch of {} groups, {} recalculated", groupIds.size(), changedGroupIds.size());
+		return changedGroupIds.size();
+	}
+
+	// a group's center can only move if its members have changed, or if a member's average location has, i.e., if a
+	// member has location logs that entered or left the one month period between the baseline date and this one
+	private Set<Long> findGroupsWithMemberChanges(List<Long> groupIds, LocalDate localDate, LocalDate baselineDate) {
+		Instant baselinePeriodStart = convertStartOfDayToSASTInstant(baselineDate.plusDays(1).minusMonths(1));
+		Instant baselinePeriodEnd = convertStartOfDayToSASTInstant(baselineDate.plusDays(1));
+		Instant periodStart = convertStartOfDayToSASTInstant(localDate.plusDays(1).minusMonths(1));
+		Instant periodEnd = convertStartOfDayToSASTInstant(localDate.plusDays(1));
+
+		Set<Long> changedGroupIds = new HashSet<>(membershipRepository.findGroupIdsWithMemberLocationLogsBetween(groupIds,
+				baselinePeriodStart, periodStart, baselinePeriodEnd, periodEnd));
+		changedGroupIds.addAll(groupLogRepository.findGroupIdsWithLogTypesSince(groupIds,
+				GroupLogType.targetUserAddedOrRemovedTypes, convertStartOfDayToSASTInstant(baselineDate)));
+		return changedGroupIds;
+	}
+
+	private void annotateGroupLocationInGraph(GroupLocation groupLocation) {
+		Map<String, String> groupProperties = new HashMap<>();
+		groupProperties.put(IncomingAnnotation.latitude, String.valueOf(groupLocation.getLocation().getLatitude()));
+		groupProperties.put(IncomingAnnotation.longitude, String.valueOf(groupLocation.getLocation().getLongitude()));
+		graphBroker.annotateGroup(groupLocation.getGroup().getUid(), groupProperties, null, false);
+	}
+
 	@Override
 	@Transactional
 	public void calculateGroupLocationInstant(String groupUid, GeoLocation location, UserInterfaceType coordSourceInterface) {
@@ -211,6 +402,7 @@ public class GeoLocationBrokerImpl implements GeoLocationBroker {
 		GroupLocation groupLocation = new GroupLocation(group, LocalDate.now(), location, (float) 1.0,
 				convertFromInterface(coordSourceInterface));
 		groupLocationRepository.save(groupLocation);
+		nearbyLocationIndex.putAfterCommit(Collections.singletonList(IndexedLocation.forGroup(groupLocation)));
 	}
 
 	@Override
@@ -245,6 +437,7 @@ public class GeoLocationBrokerImpl implements GeoLocationBroker {
 
 		if (meetingLocation != null) {
 			taskLocationRepository.save(meetingLocation);
+			nearbyLocationIndex.putAfterCommit(Collections.singletonList(IndexedLocation.forMeeting(meetingLocation)));
 		}
     }
 
@@ -257,6 +450,7 @@ public class GeoLocationBrokerImpl implements GeoLocationBroker {
 			TaskLocation mtgLocation = new TaskLocation(meeting, location, (float) 1.0, EventType.MEETING,
 					convertFromInterface(coordSourceInterface));
 			taskLocationRepository.save(mtgLocation);
+			nearbyLocationIndex.putAfterCommit(Collections.singletonList(IndexedLocation.forMeeting(mtgLocation)));
 		} else {
 			LocalDate inLastMonth = LocalDate.now().minusMonths(1L);
 			Group ancestor = meeting.getAncestorGroup();
@@ -394,36 +588,27 @@ public class GeoLocationBrokerImpl implements GeoLocationBroker {
 		assertRadius(radiusInMetres);
 		assertGeolocation(location);
 
-		// Mount restriction
-		String restrictionClause = "";
-		if (publicOrPrivate == null || publicOrPrivate == PUBLIC_LEVEL) {
-			restrictionClause = "g.discoverable = true AND ";
-		}
-		else if (publicOrPrivate == PRIVATE_LEVEL) {
-			restrictionClause = "g.discoverable = false AND ";
+		Map<String, IndexedLocation> nearby = nearbyLocationIndex.findWithin(JpaEntityType.GROUP, location, radiusInMetres)
+				.stream().collect(Collectors.toMap(IndexedLocation::getUid, entry -> entry));
+		if (nearby.isEmpty()) {
+			return new ArrayList<>();
 		}
 
-		// Mount query
-		String query =
-				"SELECT NEW za.org.grassroot.core.domain.geo.ObjectLocation( " +
-						"g.uid, g.groupName, l.location.latitude, l.location.longitude, l.score, 'GROUP', g.description, g.discoverable) " +
-						"FROM GroupLocation l " +
-						"INNER JOIN l.group g " +
-						"WHERE " + restrictionClause +
-						" l.localDate <= :date " +
-						" AND l.localDate = (SELECT MAX(ll.localDate) FROM GroupLocation ll WHERE ll.group = l.group) AND " +
-						GeoLocationUtils.locationFilterSuffix("l.location");
-
-		logger.debug(query);
-
-		TypedQuery<ObjectLocation> typedQuery = entityManager.createQuery(query, ObjectLocation.class)
-				.setParameter("date", LocalDate.now());
-		GeoLocationUtils.addLocationParamsToQuery(typedQuery, location, radiusInMetres);
-
-		return typedQuery.getResultList();
-
+		// restriction is checked on the groups themselves, as discoverability can change after a location is indexed
+		Predicate<Group> restriction = publicOrPrivate == null || publicOrPrivate == PUBLIC_LEVEL ? Group::isDiscoverable :
+				publicOrPrivate == PRIVATE_LEVEL ? group -> !group.isDiscoverable() : group -> true;
+
+		return groupRepository.findByUidIn(nearby.keySet()).stream()
+				.filter(restriction)
+				.map(group -> {
+					IndexedLocation entry = nearby.get(group.getUid());
+					return new ObjectLocation(group.getUid(), group.getGroupName(), entry.getLocation().getLatitude(),
+							entry.getLocation().getLongitude(), entry.getScore(), "GROUP", group.getDescription(), group.isDiscoverable());
+				})
+				.collect(Collectors.toList());
 	}
 
+	@Transactional(readOnly = true)
 	public List<ObjectLocation> fetchMeetingLocationsNearUser(User user, GeoLocation geoLocation, Integer radiusInMetres, GeographicSearchType searchType, String searchTerm) {
 		Objects.requireNonNull(user);
 		Objects.requireNonNull(searchType);
@@ -437,32 +622,78 @@ public class GeoLocationBrokerImpl implements GeoLocationBroker {
 			return new ArrayList<>();
 		}
 
-		final String usersOwnGroups = "m.ancestorGroup IN (SELECT mm.group FROM Membership mm WHERE mm.user = :user) AND ";
-		final String publicGroupsNotUser = "m.isPublic = true AND m.ancestorGroup NOT IN (SELECT mm.group FROM Membership mm WHERE mm.user = :user) AND ";
-
-		final String groupRestriction = GeographicSearchType.PUBLIC.equals(searchType) ? publicGroupsNotUser :
-				GeographicSearchType.PRIVATE.equals(searchType) ? usersOwnGroups : "";
-
-		logger.info("Group restrictions: {}", groupRestriction);
-
-		String strQuery =
-				"SELECT NEW za.org.grassroot.core.domain.geo.ObjectLocation(m, l) " +
-						"FROM TaskLocation l INNER JOIN l.meeting m " +
-						"WHERE " + groupRestriction + " m.eventStartDateTime >= :present AND "
-						+ GeoLocationUtils.locationFilterSuffix("l.location");
-
-		logger.info("we have a search location, it looks like: {}, and query: {}", searchCentre, strQuery);
-
-		TypedQuery<ObjectLocation> query = entityManager.createQuery(strQuery,ObjectLocation.class)
-				.setParameter("present", Instant.now());
+		final Instant present = Instant.now();
+		Stream<IndexedLocation> nearby = nearbyLocationIndex.findWithin(JpaEntityType.MEETING, searchCentre, radiusInMetres)
+				.stream().filter(entry -> !entry.getTime().isBefore(present));
 
+		// public means meetings in groups the user is not part of, private the meetings of their own groups
 		if (!GeographicSearchType.BOTH.equals(searchType)) {
-			query.setParameter("user", user);
+			final Set<String> usersGroupUids = membershipRepository.findGroupUidsByUser(user);
+			final boolean inUsersGroups = GeographicSearchType.PRIVATE.equals(searchType);
+			nearby = nearby.filter(entry -> usersGroupUids.contains(entry.getOwnerUid()) == inUsersGroups);
+		}
+
+		Map<String, IndexedLocation> meetingLocations = nearby.collect(Collectors.toMap(IndexedLocation::getUid, entry -> entry));
+		logger.info("we have a search location, it looks like: {}, and {} meetings near it", searchCentre, meetingLocations.size());
+		if (meetingLocations.isEmpty()) {
+			return new ArrayList<>();
 		}
 
-		GeoLocationUtils.addLocationParamsToQuery(query, geoLocation, radiusInMetres);
+		// start time and publicity are checked on the meetings themselves, as they may have changed since indexing
+		final boolean publicOnly = GeographicSearchType.PUBLIC.equals(searchType);
+		return eventRepository.findByUidIn(meetingLocations.keySet()).stream()
+				.filter(event -> event instanceof Meeting && !event.getEventStartDateTime().isBefore(present))
+				.map(event -> (Meeting) event)
+				.filter(meeting -> !publicOnly || meeting.isPublic())
+				.map(meeting -> {
+					IndexedLocation entry = meetingLocations.get(meeting.getUid());
+					return new ObjectLocation(meeting, entry.getLocation(), entry.getScore());
+				})
+				.collect(Collectors.toList());
+	}
+
+	@Override
+	@Transactional(readOnly = true)
+	@Scheduled(initialDelay = 20000, fixedDelayString = "${grassroot.geo.index.reload.interval:1800000}")
+	public void loadNearbyLocationIndex() {
+		final Stopwatch stopwatch = Stopwatch.createStarted();
+		final Instant present = Instant.now();
+
+		long mark = nearbyLocationIndex.mark();
+		List<IndexedLocation> groupLocations = entityManager.createQuery("select g.uid, l.location.latitude, l.location.longitude, l.score " +
+				"from GroupLocation l inner join l.group g " +
+				"where l.localDate = (select max(ll.localDate) from GroupLocation ll where ll.group = l.group)", Object[].class)
+				.getResultList().stream()
+				.map(row -> new IndexedLocation(JpaEntityType.GROUP, (String) row[0], new GeoLocation((double) row[1], (double) row[2]),
+						(float) row[3], null, null))
+				.collect(Collectors.toList());
+		nearbyLocationIndex.load(JpaEntityType.GROUP, groupLocations, mark);
+
+		// ordered so that where a meeting has several locations, the most recently calculated is the one kept
+		mark = nearbyLocationIndex.mark();
+		Map<String, IndexedLocation> meetingLocations = new HashMap<>();
+		entityManager.createQuery("select m.uid, l.location.latitude, l.location.longitude, l.score, m.eventStartDateTime, a.uid " +
+				"from TaskLocation l inner join l.meeting m inner join m.ancestorGroup a " +
+				"where m.eventStartDateTime >= :present order by l.calculatedDateTime", Object[].class)
+				.setParameter("present", present)
+				.getResultList()
+				.forEach(row -> meetingLocations.put((String) row[0], new IndexedLocation(JpaEntityType.MEETING, (String) row[0],
+						new GeoLocation((double) row[1], (double) row[2]), (float) row[3], (Instant) row[4], (String) row[5])));
+		nearbyLocationIndex.load(JpaEntityType.MEETING, meetingLocations.values(), mark);
+
+		mark = nearbyLocationIndex.mark();
+		List<IndexedLocation> alertLocations = entityManager.createQuery("select a.uid, a.location.latitude, a.location.longitude, " +
+				"a.creationTime, u.uid from LiveWireAlert a inner join a.creatingUser u " +
+				"where a.sent = true and a.creationTime > :since and a.location.latitude is not null", Object[].class)
+				.setParameter("since", present.minus(ALERT_DAYS_INDEXED, ChronoUnit.DAYS))
+				.getResultList().stream()
+				.map(row -> new IndexedLocation(JpaEntityType.LIVEWIRE, (String) row[0], new GeoLocation((double) row[1], (double) row[2]),
+						1.0f, (Instant) row[3], (String) row[4]))
+				.collect(Collectors.toList());
+		nearbyLocationIndex.load(JpaEntityType.LIVEWIRE, alertLocations, mark);
 
-		return query.getResultList();
+		logger.info("Loaded nearby location index, {} groups, {} meetings, {} alerts, took {} msecs", groupLocations.size(),
+				meetingLocations.size(), alertLocations.size(), stopwatch.elapsed(TimeUnit.MILLISECONDS));
 	}
 
 	@Override
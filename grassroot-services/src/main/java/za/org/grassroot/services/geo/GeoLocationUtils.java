@@ -12,7 +12,7 @@ import java.util.Objects;
 
 public class GeoLocationUtils {
 
-	private final static double M_PER_DEGREE = 111045;
+	final static double M_PER_DEGREE = 111045;
 	public final static int DEFAULT_RADIUS = 5000;
 
 	private GeoLocationUtils() {
@@ -43,13 +43,15 @@ public class GeoLocationUtils {
 			z += Math.sin(latitude);
 		}
 
-		x = x / locationCount;
-		y = y / locationCount;
-		z = z / locationCount;
+		return centralLocation(x, y, z);
+	}
 
-		double centralLongitude = Math.atan2(y, x);
-		double centralSquareRoot = Math.sqrt(x * x + y * y);
-		double centralLatitude = Math.atan2(z, centralSquareRoot);
+	// from the sums of the locations as vectors (as above), which need not be divided by their count first, since only
+	// the direction matters; note the extra degree conversions, which the stored locations have always been based on
+	public static GeoLocation centralLocation(double sumX, double sumY, double sumZ) {
+		double centralLongitude = Math.atan2(sumY, sumX);
+		double centralSquareRoot = Math.sqrt(sumX * sumX + sumY * sumY);
+		double centralLatitude = Math.atan2(sumZ, centralSquareRoot);
 
 		double midPointLatitude = Math.toDegrees(centralLatitude * 180 / Math.PI);
 		double midPointLongitude = Math.toDegrees(centralLongitude * 180 / Math.PI);
@@ -0,0 +1,54 @@
+package za.org.grassroot.services.geo;
+
+import lombok.Getter;
+import lombok.ToString;
+import za.org.grassroot.core.domain.JpaEntityType;
+import za.org.grassroot.core.domain.geo.GeoLocation;
+import za.org.grassroot.core.domain.geo.GroupLocation;
+import za.org.grassroot.core.domain.geo.TaskLocation;
+import za.org.grassroot.core.domain.livewire.LiveWireAlert;
+
+import java.time.Instant;
+import java.util.Objects;
+
+/**
+ * An entry in the nearby location index: where an entity is, plus what the radius searches filter on before the entity
+ * itself is loaded, i.e., for a meeting its start time and the uid of its ancestor group, and for an alert its creation
+ * time and the uid of the user who created it.
+ */
+@Getter @ToString
+public class IndexedLocation {
+
+    private final JpaEntityType entityType;
+    private final String uid;
+    private final GeoLocation location;
+    private final float score;
+    private final Instant time;
+    private final String ownerUid;
+
+    public IndexedLocation(JpaEntityType entityType, String uid, GeoLocation location, float score, Instant time, String ownerUid) {
+        this.entityType = Objects.requireNonNull(entityType);
+        this.uid = Objects.requireNonNull(uid);
+        this.location = Objects.requireNonNull(location);
+        this.score = score;
+        this.time = time;
+        this.ownerUid = ownerUid;
+    }
+
+    public static IndexedLocation forGroup(GroupLocation groupLocation) {
+        return new IndexedLocation(JpaEntityType.GROUP, groupLocation.getGroup().getUid(), groupLocation.getLocation(),
+                groupLocation.getScore(), null, null);
+    }
+
+    public static IndexedLocation forMeeting(TaskLocation meetingLocation) {
+        return new IndexedLocation(JpaEntityType.MEETING, meetingLocation.getMeeting().getUid(), meetingLocation.getLocation(),
+                meetingLocation.getScore(), meetingLocation.getMeeting().getEventStartDateTime(),
+                meetingLocation.getMeeting().getAncestorGroup().getUid());
+    }
+
+    public static IndexedLocation forAlert(LiveWireAlert alert) {
+        return new IndexedLocation(JpaEntityType.LIVEWIRE, alert.getUid(), alert.getLocation(), 1.0f,
+                alert.getCreationTime(), alert.getCreatingUser().getUid());
+    }
+
+}
@@ -0,0 +1,229 @@
+package za.org.grassroot.services.geo;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import za.org.grassroot.core.domain.JpaEntityType;
+import za.org.grassroot.core.domain.geo.GeoLocation;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Holds the latest location of each group, meeting and released LiveWire alert in memory, bucketed into a grid of
+ * latitude / longitude cells, so that radius searches only look at the few cells around the search centre instead of
+ * running a bounding box and ACOS filter over the location tables. The index only answers which entities are nearby;
+ * the brokers still check the entities themselves (e.g., whether a group is discoverable) once they have the uids.
+ *
+ * Entries are added or moved as locations are calculated, and the whole index is reloaded from the DB periodically and
+ * after the nightly geo calculations. Every write is stamped from a single counter, so that a reload leaves alone an
+ * entry written after it started reading, rather than putting back the older location that it read.
+ */
+@Component @Slf4j
+public class NearbyLocationIndex {
+
+    @Value("${grassroot.geo.index.cell.degrees:0.05}")
+    private double cellDegrees;
+
+    private final Map<JpaEntityType, LocationGrid> grids = new ConcurrentHashMap<>();
+    private final AtomicLong writeCounter = new AtomicLong();
+
+    public void put(IndexedLocation entry) {
+        grid(entry.getEntityType()).put(entry, writeCounter.incrementAndGet(), Long.MAX_VALUE);
+    }
+
+    // so that a location only shows up in searches once the transaction that stored it has committed
+    public void putAfterCommit(Collection<IndexedLocation> entries) {
+        if (entries.isEmpty()) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCommit() {
+                    entries.forEach(NearbyLocationIndex.this::put);
+                }
+            });
+        } else {
+            entries.forEach(this::put);
+        }
+    }
+
+    public void remove(JpaEntityType entityType, String uid) {
+        grid(entityType).remove(uid);
+    }
+
+    // to be taken before reading the entries for a load, and passed to it
+    public long mark() {
+        return writeCounter.get();
+    }
+
+    // replaces whatever is held for the type, except for entries written since the mark was taken
+    public void load(JpaEntityType entityType, Collection<IndexedLocation> entries, long mark) {
+        LocationGrid grid = grid(entityType);
+        entries.forEach(entry -> grid.put(entry, writeCounter.incrementAndGet(), mark));
+        Set<String> loadedUids = entries.stream().map(IndexedLocation::getUid).collect(Collectors.toSet());
+        grid.removeUnless(loadedUids, mark);
+        log.debug("Loaded {} locations into nearby index for {}, index now holds {}", entries.size(), entityType, grid.size());
+    }
+
+    public List<IndexedLocation> findWithin(JpaEntityType entityType, GeoLocation centre, int radiusInMetres) {
+        return grid(entityType).findWithin(centre, radiusInMetres);
+    }
+
+    public int size(JpaEntityType entityType) {
+        return grid(entityType).size();
+    }
+
+    private LocationGrid grid(JpaEntityType entityType) {
+        return grids.computeIfAbsent(entityType, type -> new LocationGrid(cellDegrees));
+    }
+
+    private static final class Slot {
+
+        private final IndexedLocation entry;
+        private final long written;
+        private final long cell;
+
+        private Slot(IndexedLocation entry, long written, long cell) {
+            this.entry = entry;
+            this.written = written;
+            this.cell = cell;
+        }
+    }
+
+    private static final class LocationGrid {
+
+        private final double cellDegrees;
+        private final int latitudeCells;
+        private final int longitudeCells;
+
+        private final ConcurrentMap<String, Slot> slotsByUid = new ConcurrentHashMap<>();
+        private final ConcurrentMap<Long, ConcurrentMap<String, Slot>> cells = new ConcurrentHashMap<>();
+
+        private LocationGrid(double cellDegrees) {
+            this.cellDegrees = cellDegrees;
+            this.latitudeCells = (int) Math.ceil(180 / cellDegrees) + 1;
+            this.longitudeCells = (int) Math.ceil(360 / cellDegrees);
+        }
+
+        // keeps the existing slot if it was written after the given mark
+        private void put(IndexedLocation entry, long written, long unlessWrittenAfter) {
+            slotsByUid.compute(entry.getUid(), (uid, prior) -> {
+                if (prior != null && prior.written > unlessWrittenAfter) {
+                    return prior;
+                }
+                if (prior != null) {
+                    removeFromCell(uid, prior);
+                }
+                Slot slot = new Slot(entry, written, cellOf(entry.getLocation()));
+                cells.compute(slot.cell, (cell, slots) -> {
+                    ConcurrentMap<String, Slot> cellSlots = slots == null ? new ConcurrentHashMap<>() : slots;
+                    cellSlots.put(uid, slot);
+                    return cellSlots;
+                });
+                return slot;
+            });
+        }
+
+        private void remove(String uid) {
+            slotsByUid.computeIfPresent(uid, (key, prior) -> {
+                removeFromCell(key, prior);
+                return null;
+            });
+        }
+
+        private void removeUnless(Set<String> keptUids, long writtenBefore) {
+            slotsByUid.keySet().stream().filter(uid -> !keptUids.contains(uid)).forEach(uid ->
+                    slotsByUid.computeIfPresent(uid, (key, prior) -> {
+                        if (prior.written > writtenBefore) {
+                            return prior;
+                        }
+                        removeFromCell(key, prior);
+                        return null;
+                    }));
+        }
+
+        private void removeFromCell(String uid, Slot slot) {
+            cells.computeIfPresent(slot.cell, (cell, slots) -> {
+                slots.remove(uid, slot);
+                return slots.isEmpty() ? null : slots;
+            });
+        }
+
+        private List<IndexedLocation> findWithin(GeoLocation centre, int radiusInMetres) {
+            final double latitudeSpan = radiusInMetres / GeoLocationUtils.M_PER_DEGREE;
+            final double minLatitude = Math.max(-90, centre.getLatitude() - latitudeSpan);
+            final double maxLatitude = Math.min(90, centre.getLatitude() + latitudeSpan);
+
+            // degrees of longitude are narrowest at the edge of the box closest to the pole, so widen to cover that
+            final double widestCos = Math.cos(Math.toRadians(Math.max(Math.abs(minLatitude), Math.abs(maxLatitude))));
+            final double longitudeSpan = widestCos < 1e-6 ? 180 : radiusInMetres / (GeoLocationUtils.M_PER_DEGREE * widestCos);
+
+            final int fromLatitudeCell = latitudeCell(minLatitude);
+            final int toLatitudeCell = latitudeCell(maxLatitude);
+            int fromLongitudeCell = rawLongitudeCell(centre.getLongitude() - longitudeSpan);
+            int toLongitudeCell = rawLongitudeCell(centre.getLongitude() + longitudeSpan);
+            if (toLongitudeCell - fromLongitudeCell + 1 >= longitudeCells) {
+                fromLongitudeCell = 0;
+                toLongitudeCell = longitudeCells - 1;
+            }
+
+            List<IndexedLocation> found = new ArrayList<>();
+            long cellsInBox = (long) (toLatitudeCell - fromLatitudeCell + 1) * (toLongitudeCell - fromLongitudeCell + 1);
+            if (cellsInBox > cells.size()) {
+                // a very wide search, so quicker to go over what is held than over the empty cells
+                slotsByUid.values().forEach(slot -> addIfWithin(slot, centre, radiusInMetres, found));
+                return found;
+            }
+
+            for (int latitudeCell = fromLatitudeCell; latitudeCell <= toLatitudeCell; latitudeCell++) {
+                for (int rawCell = fromLongitudeCell; rawCell <= toLongitudeCell; rawCell++) {
+                    Map<String, Slot> slots = cells.get(cellKey(latitudeCell, Math.floorMod(rawCell, longitudeCells)));
+                    if (slots != null) {
+                        slots.values().forEach(slot -> addIfWithin(slot, centre, radiusInMetres, found));
+                    }
+                }
+            }
+            return found;
+        }
+
+        private void addIfWithin(Slot slot, GeoLocation centre, int radiusInMetres, List<IndexedLocation> found) {
+            if (centre.calculateDistanceInMetersFrom(slot.entry.getLocation()) <= radiusInMetres) {
+                found.add(slot.entry);
+            }
+        }
+
+        private int size() {
+            return slotsByUid.size();
+        }
+
+        private long cellOf(GeoLocation location) {
+            return cellKey(latitudeCell(location.getLatitude()),
+                    Math.floorMod(rawLongitudeCell(location.getLongitude()), longitudeCells));
+        }
+
+        private long cellKey(int latitudeCell, int longitudeCell) {
+            return (long) latitudeCell * longitudeCells + longitudeCell;
+        }
+
+        private int latitudeCell(double latitude) {
+            return Math.min(latitudeCells - 1, (int) Math.floor((latitude + 90) / cellDegrees));
+        }
+
+        // may fall outside the grid when a search box crosses the antimeridian, so wrap before use as a key
+        private int rawLongitudeCell(double longitude) {
+            return (int) Math.floor((longitude + 180) / cellDegrees);
+        }
+    }
+
+}
@@ -1,5 +1,6 @@
 package za.org.grassroot.services.group;
 
+import com.google.common.collect.Lists;
 import lombok.Setter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -26,15 +27,18 @@ import za.org.grassroot.core.domain.notification.JoinCodeNotification;
 import za.org.grassroot.core.domain.task.Meeting;
 import za.org.grassroot.core.dto.membership.MembershipInfo;
 import za.org.grassroot.core.enums.*;
+import za.org.grassroot.core.events.JoinRoutingChangedEvent;
 import za.org.grassroot.core.repository.*;
 import za.org.grassroot.core.specifications.GroupSpecifications;
 import za.org.grassroot.core.specifications.MembershipSpecifications;
 import za.org.grassroot.core.util.AfterTxCommitTask;
+import za.org.grassroot.core.util.AsyncExecutors;
 import za.org.grassroot.core.util.DebugUtil;
 import za.org.grassroot.core.util.InvalidPhoneNumberException;
 import za.org.grassroot.core.util.PhoneNumberUtil;
 import za.org.grassroot.integration.UrlShortener;
 import za.org.grassroot.integration.graph.GraphBroker;
+import za.org.grassroot.services.JoinRoutingTable;
 import za.org.grassroot.services.MessageAssemblingService;
 import za.org.grassroot.services.PermissionBroker;
 import za.org.grassroot.services.account.AccountFeaturesBroker;
@@ -44,6 +48,8 @@ import za.org.grassroot.services.util.LogsAndNotificationsBroker;
 import za.org.grassroot.services.util.LogsAndNotificationsBundle;
 import za.org.grassroot.services.util.TokenGeneratorService;
 
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceUnitUtil;
 import java.io.IOException;
 import java.time.Duration;
 import java.time.Instant;
@@ -62,6 +68,8 @@ public class GroupBrokerImpl implements GroupBroker, ApplicationContextAware {
 
     private final Logger logger = LoggerFactory.getLogger(GroupBrokerImpl.class);
 
+    private static final int USER_LOOKUP_CHUNK_SIZE = 500;
+
     @Value("${grassroot.groups.join.words.max:3}")
     private int maxJoinWords;
 
@@ -70,6 +78,7 @@ public class GroupBrokerImpl implements GroupBroker, ApplicationContextAware {
     private final GroupRepository groupRepository;
     private final UserRepository userRepository;
     private final MembershipRepository membershipRepository;
+    private final MembershipWriter membershipWriter;
     private final GroupJoinCodeRepository groupJoinCodeRepository;
     private final BroadcastRepository broadcastRepository;
 
@@ -80,6 +89,8 @@ public class GroupBrokerImpl implements GroupBroker, ApplicationContextAware {
 
     private final LogsAndNotificationsBroker logsAndNotificationsBroker;
     private final UrlShortener urlShortener;
+    private final JoinRoutingTable joinRoutingTable;
+    private final EntityManager entityManager;
 
     private GcmRegistrationBroker gcmRegistrationBroker;
     private GraphBroker graphBroker;
@@ -90,13 +101,15 @@ public class GroupBrokerImpl implements GroupBroker, ApplicationContextAware {
 
     @Autowired
     public GroupBrokerImpl(GroupRepository groupRepository, Environment environment, UserRepository userRepository,
-                           MembershipRepository membershipRepository, GroupJoinCodeRepository groupJoinCodeRepository, BroadcastRepository broadcastRepository, PermissionBroker permissionBroker,
+                           MembershipRepository membershipRepository, MembershipWriter membershipWriter, GroupJoinCodeRepository groupJoinCodeRepository, BroadcastRepository broadcastRepository, PermissionBroker permissionBroker,
                            ApplicationEventPublisher applicationEventPublisher, LogsAndNotificationsBroker logsAndNotificationsBroker,
-                           TokenGeneratorService tokenGeneratorService, MessageAssemblingService messageAssemblingService, UrlShortener urlShortener) {
+                           TokenGeneratorService tokenGeneratorService, MessageAssemblingService messageAssemblingService, UrlShortener urlShortener,
+                           JoinRoutingTable joinRoutingTable, EntityManager entityManager) {
         this.groupRepository = groupRepository;
         this.environment = environment;
         this.userRepository = userRepository;
         this.membershipRepository = membershipRepository;
+        this.membershipWriter = membershipWriter;
         this.groupJoinCodeRepository = groupJoinCodeRepository;
         this.broadcastRepository = broadcastRepository;
         this.permissionBroker = permissionBroker;
@@ -105,6 +118,8 @@ public class GroupBrokerImpl implements GroupBroker, ApplicationContextAware {
         this.tokenGeneratorService = tokenGeneratorService;
         this.messageAssemblingService = messageAssemblingService;
         this.urlShortener = urlShortener;
+        this.joinRoutingTable = joinRoutingTable;
+        this.entityManager = entityManager;
     }
 
     @Autowired(required = false)
@@ -312,7 +327,7 @@ public class GroupBrokerImpl implements GroupBroker, ApplicationContextAware {
             permissionBroker.validateSystemRole(user, StandardRole.ROLE_SYSTEM_ADMIN);
         }
 
-        logger.info("Adding members: group={}, memberships={}, user={}", group, membershipInfos, user);
+        logger.info("Adding members: group={}, number memberships={}, user={}", group, membershipInfos.size(), user);
         try {
             LogsAndNotificationsBundle bundle = addMemberships(user, group, membershipInfos, joinMethod, user.getName(), false, true, true);
             storeBundleAfterCommit(bundle);
@@ -399,7 +414,7 @@ public class GroupBrokerImpl implements GroupBroker, ApplicationContextAware {
                 null, subgroup, null, newName)));
     }
 
-    @Async
+    @Async(AsyncExecutors.MEMBER_IMPORT)
     @Override
     @Transactional
     public void asyncMemberToSubgroupAdd(String userUid, String groupUid, Set<MembershipInfo> membershipInfos) {
@@ -435,11 +450,12 @@ public class GroupBrokerImpl implements GroupBroker, ApplicationContextAware {
         LogsAndNotificationsBundle bundle = new LogsAndNotificationsBundle();
 
         Set<String> userUids = new HashSet<>();
+        final Set<Meeting> upcomingMeetings = fetchUpcomingMeetings(toGroup);
         for (User u  : userSet) {
             userUids.add(u.getUid());
             GroupLog groupLog = new GroupLog(toGroup, user, GroupLogType.GROUP_MEMBER_ADDED, u, null, null, fromGroupUid);
             bundle.addLog(groupLog);
-            notifyNewMembersOfUpcomingMeetings(bundle, u, toGroup, groupLog);
+            notifyNewMemberOfUpcomingMeetings(bundle, u, toGroup, groupLog, upcomingMeetings);
         }
 
         Set<Membership> allMembers = new HashSet<>(membershipRepository.findByGroupAndUserIn(toGroup, userSet)); // so topics etc affect all, even ones already in
@@ -589,20 +605,19 @@ public class GroupBrokerImpl implements GroupBroker, ApplicationContextAware {
 
     private Membership selfJoinViaCode(User user, Group group, GroupJoinMethod joinMethod, String code, Broadcast broadcast, List<String> topics, Set<UserLog> userLogs) {
         logger.info("Adding a member via token code: code={}, group={}, user={}", code, group, user);
-        boolean wasAlreadyMember = false;
-
-        Membership membership;
-        if (user.isMemberOf(group)) {
-            // means user was already part of group, so we will just add topics etc.
-            membership = user.getMembership(group);
-            wasAlreadyMember = true;
+        // if user was already part of group, we will just add topics etc.
+        Membership membership = membershipRepository.findByGroupAndUser(group, user);
+        final boolean wasAlreadyMember = membership != null;
 
-        } else {
-            // we are going to assume this at present, and hence do in service layer - but switch to a view layer toggle if user feedback implies should
-            membership = user.addMappedByMembership(group, GroupRole.ROLE_ORDINARY_MEMBER, joinMethod, code);
-            membership.setViewPriority(GroupViewPriority.PINNED);
-            // we have to save via repository because we cannot just add cascading persist due to inverse side (Group's membership having that), otherwise double insert fails
-            membership = this.membershipRepository.save(membership);
+        if (!wasAlreadyMember) {
+            membership = membershipWriter.addMembership(group, user, GroupRole.ROLE_ORDINARY_MEMBER, joinMethod, code);
+            if (membership == null) {
+                // a concurrent request added them since the check above, so carry on with theirs
+                membership = membershipRepository.findByGroupAndUser(group, user);
+            } else {
+                // we are going to assume this at present, and hence do in service layer - but switch to a view layer toggle if user feedback implies should
+                membership.setViewPriority(GroupViewPriority.PINNED);
+            }
         }
 
         if (topics != null) {
@@ -613,10 +628,7 @@ public class GroupBrokerImpl implements GroupBroker, ApplicationContextAware {
         // recursively add user to all parent groups
         Group parentGroup = group.getParent();
         while (parentGroup != null) {
-            if (!user.isMemberOf(parentGroup)) {
-                Membership parentMembership = user.addMappedByMembership(parentGroup, GroupRole.ROLE_ORDINARY_MEMBER, GroupJoinMethod.SELF_JOINED, code);
-                parentMembership = this.membershipRepository.save(parentMembership);
-
+            if (membershipWriter.addMembership(parentGroup, user, GroupRole.ROLE_ORDINARY_MEMBER, GroupJoinMethod.SELF_JOINED, code) != null) {
                 bundle.addLog(new GroupLog(parentGroup, user, GroupLogType.GROUP_MEMBER_ADDED_VIA_SUBGROUP_CODE, user, group, null, null));
             }
             parentGroup = parentGroup.getParent();
@@ -635,13 +647,13 @@ public class GroupBrokerImpl implements GroupBroker, ApplicationContextAware {
         }
 
         if (!wasAlreadyMember) {
-            notifyNewMembersOfUpcomingMeetings(bundle, user, group, groupLog);
+            notifyNewMemberOfUpcomingMeetings(bundle, user, group, groupLog, fetchUpcomingMeetings(group));
             triggerWelcomeMessagesAfterCommit(user.getUid(), group.getUid(), Collections.singleton(user.getUid()));
         }
 
         storeBundleAfterCommit(bundle);
 
-        return user.getMembership(group);
+        return membership;
     }
 
     private GroupJoinMethod getJoinMethodFromInterface(UserInterfaceType interfaceType) {
@@ -689,7 +701,7 @@ public class GroupBrokerImpl implements GroupBroker, ApplicationContextAware {
 
     @Override
     @Transactional
-    @Async
+    @Async(AsyncExecutors.MEMBER_IMPORT)
     public void asyncAddMemberships(String initiatorUid, String groupId, Set<MembershipInfo> membershipInfos,
                                     GroupJoinMethod joinMethod, String joinMethodDescriptor, boolean duringGroupCreation, boolean createWelcomeNotifications) {
         User initiator = userRepository.findOneByUid(initiatorUid);
@@ -709,25 +721,14 @@ public class GroupBrokerImpl implements GroupBroker, ApplicationContextAware {
 
         logger.info("number of valid members in import: {}", membershipInfos.size());
 
-        logPhoneNumbersAndEmailAddressesToAdd(membershipInfos);
+        final ExistingUsers existingUsers = findExistingUsers(membershipInfos);
 
-        final Set<Membership> addedMemberships = new HashSet<>();
+        final Map<User, MembershipInfo> membersToAdd = new LinkedHashMap<>();
         final Set<User> newlyCreatedUsers = new HashSet<>();
         final Set<MembershipInfo> taskTeamMembers = new HashSet<>();
 
-        // depends how we're limiting
-        int numberMembersLeft = limitSizeCheck ? accountFeaturesBroker.numberMembersLeftForGroup(group, joinMethod) : 9999;
-
-        final Set<String> existingEmails = userRepository.fetchUsedEmailAddresses();
-        final Set<String> existingPhoneNumbers = userRepository.fetchUserPhoneNumbers();
-
         for (MembershipInfo membershipInfo : membershipInfos) {
-            if (numberMembersLeft < 0) {
-                logger.info("Run out of space on group {}, exiting member add ...");
-                break;
-            }
-
-            final User member = findOrConstructMemberToAdd(membershipInfo, existingEmails, existingPhoneNumbers);
+            final User member = findOrConstructMemberToAdd(membershipInfo, existingUsers);
             if (member == null) {
                 logger.info("Got a null member, not sure why, info: {}", membershipInfo);
                 continue;
@@ -738,38 +739,46 @@ public class GroupBrokerImpl implements GroupBroker, ApplicationContextAware {
                 newlyCreatedUsers.add(member);
             }
 
-            final GroupRole roleName = membershipInfo.getRoleName() == null ? GroupRole.ROLE_ORDINARY_MEMBER : membershipInfo.getRoleName();
-            final GroupJoinMethod memberJoinMethod = joinMethod == null ? GroupJoinMethod.ADDED_BY_OTHER_MEMBER : joinMethod;
-            final Membership membership = group.addMember(member, roleName, memberJoinMethod, joinMethodDescriptor);
-
             if (membershipInfo.hasTaskTeams()) {
                 membershipInfo.setUserUid(member.getUid());
                 taskTeamMembers.add(membershipInfo);
             }
 
-            if (membership != null) {
-                wireUpMembershipTags(membership, membershipInfo);
-
-                addedMemberships.add(membership);
-                numberMembersLeft--;
-            }
+            membersToAdd.putIfAbsent(member, membershipInfo);
         }
 
-        logger.info("completed iteration, added {} users", membershipInfos.size());
+        logger.info("completed iteration, resolved {} users", membersToAdd.size());
         final LogsAndNotificationsBundle bundle = new LogsAndNotificationsBundle();
 
-        // make sure the newly created users are stored
+        // make sure the newly created users are stored, before memberships refer to them
         storeCreatedUsers(group, newlyCreatedUsers, bundle);
 
+        // depends how we're limiting
+        final int numberMembersLeft = limitSizeCheck ? accountFeaturesBroker.numberMembersLeftForGroup(group, joinMethod) : 9999;
+        final GroupJoinMethod memberJoinMethod = joinMethod == null ? GroupJoinMethod.ADDED_BY_OTHER_MEMBER : joinMethod;
+
+        final Set<Membership> addedMemberships = new HashSet<>();
+        for (List<User> chunk : Lists.partition(new ArrayList<>(membersToAdd.keySet()), USER_LOOKUP_CHUNK_SIZE)) {
+            if (addedMemberships.size() > numberMembersLeft) {
+                logger.info("Run out of space on group {}, exiting member add ...", group.getUid());
+                break;
+            }
+            final List<Membership> chunkMemberships = constructNewMemberships(group, chunk, membersToAdd, memberJoinMethod,
+                    joinMethodDescriptor, numberMembersLeft + 1 - addedMemberships.size());
+            storeNewMemberships(group, chunkMemberships);
+            addedMemberships.addAll(chunkMemberships);
+        }
+
         // adding action logs and event notifications ...
         final GroupLogType logType = duringGroupCreation ? GroupLogType.GROUP_MEMBER_ADDED_AT_CREATION : GroupLogType.GROUP_MEMBER_ADDED;
 
         Set<String> addedUserUids = new HashSet<>();
+        final Set<Meeting> upcomingMeetings = addedMemberships.isEmpty() ? Collections.emptySet() : fetchUpcomingMeetings(group);
         for (Membership membership : addedMemberships) {
             User member = membership.getUser();
             final GroupLog groupLog = new GroupLog(group, initiator, logType, member, null, null, null);
             bundle.addLog(groupLog);
-            notifyNewMembersOfUpcomingMeetings(bundle, member, group, groupLog);
+            notifyNewMemberOfUpcomingMeetings(bundle, member, group, groupLog, upcomingMeetings);
             addedUserUids.add(member.getUid());
         }
 
@@ -794,27 +803,82 @@ public class GroupBrokerImpl implements GroupBroker, ApplicationContextAware {
         return bundle;
     }
 
-    private void logPhoneNumbersAndEmailAddressesToAdd(Set<MembershipInfo> membershipInfos) {
-        final Set<String> memberPhoneNumbers = membershipInfos.stream().filter(MembershipInfo::hasValidPhoneNumber)
-                .map(MembershipInfo::getPhoneNumberWithCCode).collect(Collectors.toSet());
+    // resolves the users already on the system with only the incoming numbers and addresses, in chunks, so the cost of
+    // an import depends on its own size and not on the number of users in the system
+    private ExistingUsers findExistingUsers(Set<MembershipInfo> membershipInfos) {
+        final Set<String> memberPhoneNumbers = membershipInfos.stream().map(MembershipInfo::getConvertedNumber)
+                .filter(Optional::isPresent).map(Optional::get).collect(Collectors.toSet());
+        final Set<String> emailAddresses = membershipInfos.stream().map(MembershipInfo::getFormattedEmail)
+                .filter(Optional::isPresent).map(Optional::get).collect(Collectors.toSet());
+
+        logger.info("resolving existing users for {} phone numbers and {} email addresses", memberPhoneNumbers.size(), emailAddresses.size());
 
-        final Set<String> emailAddresses = membershipInfos.stream().filter(MembershipInfo::hasValidEmail)
-                .map(MembershipInfo::getMemberEmail).collect(Collectors.toSet());
+        final ExistingUsers existingUsers = new ExistingUsers();
+        Lists.partition(new ArrayList<>(memberPhoneNumbers), USER_LOOKUP_CHUNK_SIZE).forEach(chunk ->
+                userRepository.findByPhoneNumberIn(chunk).forEach(user -> existingUsers.byPhoneNumber.put(user.getPhoneNumber(), user)));
+        Lists.partition(new ArrayList<>(emailAddresses), USER_LOOKUP_CHUNK_SIZE).forEach(chunk ->
+                userRepository.findByLowerCaseEmailAddressIn(chunk).forEach(user -> existingUsers.byEmailAddress.put(user.getEmailAddress().toLowerCase(), user)));
 
-        logger.info("phoneNumbers returned: .... {}, email addresses: {}", memberPhoneNumbers, emailAddresses);
+        logger.info("found {} existing users by phone number, {} by email address", existingUsers.byPhoneNumber.size(), existingUsers.byEmailAddress.size());
+        return existingUsers;
     }
 
-    private User findOrConstructMemberToAdd(MembershipInfo membershipInfo, Set<String> existingEmails, Set<String> existingPhoneNumbers) {
+    // one existence query per chunk, and the rows built directly, so that neither the group's nor each user's membership
+    // collection is loaded just to add to it
+    private List<Membership> constructNewMemberships(Group group, List<User> chunk, Map<User, MembershipInfo> membershipInfos,
+                                                     GroupJoinMethod joinMethod, String joinMethodDescriptor, int limit) {
+        final List<Long> storedUserIds = chunk.stream().map(User::getId).filter(Objects::nonNull).collect(Collectors.toList());
+        final Set<Long> alreadyMembers = storedUserIds.isEmpty() ? Collections.emptySet() :
+                membershipRepository.findUserIdsByGroupAndUserIdIn(group, storedUserIds);
+
+        final Instant joinTime = Instant.now();
+        final List<Membership> memberships = new ArrayList<>();
+        for (User member : chunk) {
+            if (memberships.size() >= limit) {
+                break;
+            }
+            if (alreadyMembers.contains(member.getId())) {
+                continue;
+            }
+            final MembershipInfo membershipInfo = membershipInfos.get(member);
+            final GroupRole roleName = membershipInfo.getRoleName() == null ? GroupRole.ROLE_ORDINARY_MEMBER : membershipInfo.getRoleName();
+            final Membership membership = new Membership(group, member, roleName, joinTime, joinMethod, joinMethodDescriptor);
+            wireUpMembershipTags(membership, membershipInfo);
+            memberships.add(membership);
+        }
+        return memberships;
+    }
+
+    private void storeNewMemberships(Group group, List<Membership> memberships) {
+        if (memberships.isEmpty()) {
+            return;
+        }
+        membershipRepository.saveAll(memberships);
+        entityManager.flush();
+        // the memberships are dropped from the session once written, unless a collection already loaded here holds them,
+        // in which case that collection is kept in step instead (and the group's cascade would otherwise re-save them)
+        final PersistenceUnitUtil persistenceUtil = entityManager.getEntityManagerFactory().getPersistenceUnitUtil();
+        final boolean groupLoaded = persistenceUtil.isLoaded(group, "memberships");
+        for (Membership membership : memberships) {
+            group.syncAddedMembership(membership);
+            membership.getUser().syncAddedMembership(membership);
+            if (!groupLoaded && !persistenceUtil.isLoaded(membership.getUser(), "memberships")) {
+                entityManager.detach(membership);
+            }
+        }
+    }
+
+    private User findOrConstructMemberToAdd(MembershipInfo membershipInfo, ExistingUsers existingUsers) {
         final Optional<String> msisdn = membershipInfo.getConvertedNumber();
         final Optional<String> emailAddress = membershipInfo.getFormattedEmail();
 
         User member;
-        if (msisdn.isPresent() && existingPhoneNumbers.contains(msisdn.get())) {
-            member = userRepository.findByPhoneNumberAndPhoneNumberNotNull(msisdn.get());
-            logger.debug("Msisdn present, {}, member not null ? : {}", msisdn.get(), member != null);
-        } else if (emailAddress.isPresent() && existingEmails.contains(emailAddress.get())) {
-            member = userRepository.findByEmailAddressIgnoreCaseAndEmailAddressNotNull(emailAddress.get());
-            logger.debug("Email present, {}, member not null ? : {}", emailAddress.get(), member != null);
+        if (msisdn.isPresent() && existingUsers.byPhoneNumber.containsKey(msisdn.get())) {
+            member = existingUsers.byPhoneNumber.get(msisdn.get());
+            logger.debug("Msisdn present, {}, found existing member", msisdn.get());
+        } else if (emailAddress.isPresent() && existingUsers.byEmailAddress.containsKey(emailAddress.get())) {
+            member = existingUsers.byEmailAddress.get(emailAddress.get());
+            logger.debug("Email present, {}, found existing member", emailAddress.get());
         } else {
             logger.debug("Adding a new user, via group creation, with phone number: {}, email: {}", msisdn, emailAddress);
             member = new User(msisdn.orElse(null), membershipInfo.getDisplayName(), emailAddress.orElse(null));
@@ -822,16 +886,11 @@ public class GroupBrokerImpl implements GroupBroker, ApplicationContextAware {
             member.setLastName(membershipInfo.getSurname());
         }
 
-        if (member == null) {
-            logger.error("Constructed null member from set, must be error with existing email or phone sets");
-            return null;
-        }
-
         if (!member.isHasInitiatedSession()) {
-            if (!member.hasEmailAddress() && emailAddress.isPresent() && !existingEmails.contains(emailAddress.get())) {
+            if (!member.hasEmailAddress() && emailAddress.isPresent() && !existingUsers.byEmailAddress.containsKey(emailAddress.get())) {
                 member.setEmailAddress(emailAddress.get());
             }
-            if (!member.hasPhoneNumber() && msisdn.isPresent() && !existingPhoneNumbers.contains(msisdn.get())) {
+            if (!member.hasPhoneNumber() && msisdn.isPresent() && !existingUsers.byPhoneNumber.containsKey(msisdn.get())) {
                 member.setPhoneNumber(msisdn.get());
             }
         }
@@ -916,9 +975,13 @@ public class GroupBrokerImpl implements GroupBroker, ApplicationContextAware {
     // for each meeting that belongs to this group, or it belongs to one of parent groups and apply to subgroups,
     // we create event notification for new member, but in case when meeting belongs to parent group, then only if member
     // is not already contained in this ancestor group (otherwise, it already got the notification for such meetings)
-    private void notifyNewMembersOfUpcomingMeetings(LogsAndNotificationsBundle bundle, User user, Group group, GroupLog groupLog) {
-        @SuppressWarnings("unchecked")
-        Set<Meeting> meetings = (Set) group.getUpcomingEventsIncludingParents(event -> event.getEventType().equals(EventType.MEETING));
+    @SuppressWarnings("unchecked")
+    private Set<Meeting> fetchUpcomingMeetings(Group group) {
+        return (Set) group.getUpcomingEventsIncludingParents(event -> event.getEventType().equals(EventType.MEETING));
+    }
+
+    private void notifyNewMemberOfUpcomingMeetings(LogsAndNotificationsBundle bundle, User user, Group group, GroupLog groupLog,
+                                                   Set<Meeting> meetings) {
         meetings.forEach(m -> {
             Group meetingGroup = m.getAncestorGroup();
             if (meetingGroup.equals(group) || !user.isMemberOf(meetingGroup)) {
@@ -934,8 +997,8 @@ public class GroupBrokerImpl implements GroupBroker, ApplicationContextAware {
 
     private Set<ActionLog> removeMemberships(User initiator, Group group, Set<Membership> memberships) {
         Set<ActionLog> actionLogs = new HashSet<>();
+        membershipWriter.removeMemberships(memberships);
         for (Membership membership : memberships) {
-            group.removeMembership(membership);
             if (gcmRegistrationBroker != null && gcmRegistrationBroker.hasGcmKey(membership.getUser())) {
                 try {
                     gcmRegistrationBroker.changeTopicSubscription(membership.getUser().getUid(), group.getUid(), false);
@@ -967,9 +1030,7 @@ public class GroupBrokerImpl implements GroupBroker, ApplicationContextAware {
 
         logger.info("Removing members: group={}, memberUids={}, user={}", group, memberUids, user);
 
-        Set<Membership> memberships = group.getMemberships().stream()
-                .filter(membership -> memberUids.contains(membership.getUser().getUid()))
-                .collect(Collectors.toSet());
+        Set<Membership> memberships = new HashSet<>(membershipRepository.findByGroupAndUserUidIn(group, memberUids));
 
         Set<ActionLog> actionLogs = removeMemberships(user, group, memberships);
 
@@ -997,9 +1058,7 @@ public class GroupBrokerImpl implements GroupBroker, ApplicationContextAware {
 
         logger.info("Removing from subgroup {}, members {}", child.getName(), memberUids);
 
-        Set<Membership> memberships = child.getMemberships().stream()
-                .filter(membership -> memberUids.contains(membership.getUser().getUid()))
-                .collect(Collectors.toSet());
+        Set<Membership> memberships = new HashSet<>(membershipRepository.findByGroupAndUserUidIn(child, memberUids));
 
         Set<ActionLog> actionLogs = removeMemberships(user, child, memberships);
         logActionLogsAfterCommit(actionLogs);
@@ -1015,7 +1074,7 @@ public class GroupBrokerImpl implements GroupBroker, ApplicationContextAware {
         Group group = groupRepository.findOneByUid(groupUid);
         User user = userRepository.findOneByUid(userUid);
 
-        Membership membership = user.getMembership(group);
+        Membership membership = membershipRepository.findByGroupAndUser(group, user);
 
         if (membership != null && membership.getRole().equals(GroupRole.ROLE_GROUP_ORGANIZER)) {
             if (membershipRepository.count(MembershipSpecifications.groupOrganizers(group)) == 1) {
@@ -1571,6 +1630,7 @@ public class GroupBrokerImpl implements GroupBroker, ApplicationContextAware {
         GroupLog groupLog = new GroupLog(group, user, GroupLogType.JOIN_CODE_ADDED, code);
         LogsAndNotificationsBundle bundle = new LogsAndNotificationsBundle(Collections.singleton(groupLog), Collections.EMPTY_SET);
         logsAndNotificationsBroker.storeBundle(bundle);
+        applicationEventPublisher.publishEvent(new JoinRoutingChangedEvent(this, groupUid));
 
         return gjc;
     }
@@ -1591,6 +1651,7 @@ public class GroupBrokerImpl implements GroupBroker, ApplicationContextAware {
         if (joinCodeOptional.isPresent()) {
             final GroupJoinCode gjc = joinCodeOptional.get();
             gjc.close(Instant.now(), user);
+            applicationEventPublisher.publishEvent(new JoinRoutingChangedEvent(this, groupUid));
         } else {
             logger.error("Asked to close an already closed or non-existing join code, {}, for group {}", code, group);
         }
@@ -1604,7 +1665,7 @@ public class GroupBrokerImpl implements GroupBroker, ApplicationContextAware {
         if (groupToReturn.isPresent())
             return groupToReturn.get();
 
-        Optional<Group> groupFromPhrase = groupJoinCodeRepository.selectGroupWithActiveCode(normalizedPhrase);
+        Optional<Group> groupFromPhrase = joinRoutingTable.groupForJoinWord(normalizedPhrase).map(groupRepository::findOneByUid);
         logger.info("For phrase {}, found optional group: {}", phrase, groupFromPhrase);
 
         return groupFromPhrase.orElse(null);
@@ -1619,8 +1680,8 @@ public class GroupBrokerImpl implements GroupBroker, ApplicationContextAware {
     @Override
     @Transactional(readOnly = true)
     public Map<String, String> getJoinWordsWithGroupIds() {
-        return groupJoinCodeRepository.findByActiveTrue()
-                .stream().collect(Collectors.toMap(GroupJoinCode::getCode, gjc -> gjc.getGroup().getUid()));
+        return groupJoinCodeRepository.selectLowerCaseActiveJoinWordsWithGroupUids().stream()
+                .collect(Collectors.toMap(row -> (String) row[0], row -> (String) row[1], (uid, otherUid) -> uid));
     }
 
     @Override
@@ -1656,17 +1717,11 @@ public class GroupBrokerImpl implements GroupBroker, ApplicationContextAware {
     public void addMemberViaCampaign(User user, Group group, String campaignCode) {
         logger.info("Adding a member via campaign add request: group={}, user={}, code={}", group, user, campaignCode);
 
-        Membership membership = user.addMappedByMembership(group, GroupRole.ROLE_ORDINARY_MEMBER, GroupJoinMethod.SELF_JOINED, null);
-        if (membership != null) {
-            membership = this.membershipRepository.save(membership);
-        }
+        membershipWriter.addMembership(group, user, GroupRole.ROLE_ORDINARY_MEMBER, GroupJoinMethod.SELF_JOINED, null);
 
         Group parentGroup = group.getParent();
         while (parentGroup != null) {
-            Membership parentMembership = user.addMappedByMembership(parentGroup, GroupRole.ROLE_ORDINARY_MEMBER, GroupJoinMethod.ADDED_BY_OTHER_MEMBER, null);
-            if (parentMembership != null) {
-                this.membershipRepository.save(parentMembership);
-            }
+            membershipWriter.addMembership(parentGroup, user, GroupRole.ROLE_ORDINARY_MEMBER, GroupJoinMethod.ADDED_BY_OTHER_MEMBER, null);
             parentGroup = parentGroup.getParent();
         }
         LogsAndNotificationsBundle bundle = new LogsAndNotificationsBundle();
@@ -1674,7 +1729,7 @@ public class GroupBrokerImpl implements GroupBroker, ApplicationContextAware {
                 user, null, null, "Member joined via campaign code: " + campaignCode);
         bundle.addLog(groupLog);
         bundle.addLog(new UserLog(user.getUid(), UserLogType.USED_A_CAMPAIGN, group.getUid(), UNKNOWN));
-        notifyNewMembersOfUpcomingMeetings(bundle, user, group, groupLog);
+        notifyNewMemberOfUpcomingMeetings(bundle, user, group, groupLog, fetchUpcomingMeetings(group));
         storeBundleAfterCommit(bundle);
     }
 
@@ -1730,4 +1785,9 @@ public class GroupBrokerImpl implements GroupBroker, ApplicationContextAware {
     }
 
 
+    private static final class ExistingUsers {
+        private final Map<String, User> byPhoneNumber = new HashMap<>();
+        private final Map<String, User> byEmailAddress = new HashMap<>();
+    }
+
 }
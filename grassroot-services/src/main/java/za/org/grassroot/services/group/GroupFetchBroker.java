@@ -19,6 +19,7 @@ import za.org.grassroot.core.dto.group.GroupTimeChangedDTO;
 import za.org.grassroot.core.dto.group.GroupWebDTO;
 import za.org.grassroot.core.dto.group.MembershipRecordDTO;
 import za.org.grassroot.core.dto.membership.MembershipFullDTO;
+import za.org.grassroot.core.dto.membership.MembershipRecipientProjection;
 import za.org.grassroot.core.enums.Province;
 
 import java.time.Instant;
@@ -63,19 +64,22 @@ public interface GroupFetchBroker {
 
     List<GroupLogDTO> getInboundMessagesForExport(User user, Group group, Instant from, Instant to, String keyword);
 
-    List<Membership> filterGroupMembers(User user, String groupUid,
-                                        Collection<Province> provinces,
-                                        Boolean noProvince, // i.e., unknown
-                                        Collection<String> taskTeams,
-                                        Collection<String> topics,
-                                        Collection<String> affiliations,
-                                        Collection<GroupJoinMethod> joinMethods,
-                                        Collection<String> joinedCampaignsUids,
-                                        Integer joinDaysAgo,
-                                        LocalDate joinDate,
-                                        JoinDateCondition joinDaysAgoCondition,
-                                        String namePhoneOrEmail,
-                                        Collection<String> languages,
-                                        GroupRole groupRole);
+    List<MembershipRecipientProjection> filterGroupMembers(User user, String groupUid,
+                                                           Collection<Province> provinces,
+                                                           Boolean noProvince, // i.e., unknown
+                                                           Collection<String> taskTeams,
+                                                           Collection<String> topics,
+                                                           Collection<String> affiliations,
+                                                           Collection<GroupJoinMethod> joinMethods,
+                                                           Collection<String> joinedCampaignsUids,
+                                                           Integer joinDaysAgo,
+                                                           LocalDate joinDate,
+                                                           JoinDateCondition joinDaysAgoCondition,
+                                                           String namePhoneOrEmail,
+                                                           Collection<String> languages,
+                                                           GroupRole groupRole);
+
+    // for loading the full entities of (a page of) the results of the above, in the order of the ids given
+    List<Membership> fetchMemberships(Collection<Long> membershipIds);
 
 }
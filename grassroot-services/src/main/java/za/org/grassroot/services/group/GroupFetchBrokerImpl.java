@@ -17,12 +17,13 @@ import za.org.grassroot.core.domain.ActionLog;
 import za.org.grassroot.core.domain.GroupRole;
 import za.org.grassroot.core.domain.Permission;
 import za.org.grassroot.core.domain.User;
-import za.org.grassroot.core.domain.campaign.CampaignLog;
+import za.org.grassroot.core.domain.User_;
 import za.org.grassroot.core.domain.group.Group;
 import za.org.grassroot.core.domain.group.GroupJoinMethod;
 import za.org.grassroot.core.domain.group.GroupLog;
 import za.org.grassroot.core.domain.group.JoinDateCondition;
 import za.org.grassroot.core.domain.group.Membership;
+import za.org.grassroot.core.domain.group.Membership_;
 import za.org.grassroot.core.dto.group.GroupFullDTO;
 import za.org.grassroot.core.dto.group.GroupLogDTO;
 import za.org.grassroot.core.dto.group.GroupMembersDTO;
@@ -33,9 +34,8 @@ import za.org.grassroot.core.dto.group.GroupWebDTO;
 import za.org.grassroot.core.dto.group.MembershipRecordDTO;
 import za.org.grassroot.core.dto.membership.MembershipDTO;
 import za.org.grassroot.core.dto.membership.MembershipFullDTO;
-import za.org.grassroot.core.enums.CampaignLogType;
+import za.org.grassroot.core.dto.membership.MembershipRecipientProjection;
 import za.org.grassroot.core.enums.Province;
-import za.org.grassroot.core.repository.CampaignLogRepository;
 import za.org.grassroot.core.repository.GroupLogRepository;
 import za.org.grassroot.core.repository.GroupRepository;
 import za.org.grassroot.core.repository.MembershipRepository;
@@ -48,6 +48,11 @@ import za.org.grassroot.services.exception.MemberLacksPermissionException;
 import za.org.grassroot.services.util.FullTextSearchUtils;
 import za.org.grassroot.services.util.LogsAndNotificationsBroker;
 
+import javax.persistence.EntityManager;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Path;
+import javax.persistence.criteria.Root;
 import java.time.Instant;
 import java.time.LocalDate;
 import java.time.temporal.ChronoUnit;
@@ -72,22 +77,22 @@ public class GroupFetchBrokerImpl implements GroupFetchBroker {
     private final GroupRepository groupRepository;
     private final GroupLogRepository groupLogRepository;
     private final MembershipRepository membershipRepository;
-    private final CampaignLogRepository campaignLogRepository;
     private final PermissionBroker permissionBroker;
     private final LogsAndNotificationsBroker logsBroker;
+    private final EntityManager entityManager;
 
     @Autowired
     public GroupFetchBrokerImpl(UserRepository userRepository, GroupRepository groupRepository,
                                 GroupLogRepository groupLogRepository, MembershipRepository membershipRepository,
-                                CampaignLogRepository campaignLogRepository, LogsAndNotificationsBroker logsBroker,
-                                PermissionBroker permissionBroker) {
+                                LogsAndNotificationsBroker logsBroker, PermissionBroker permissionBroker,
+                                EntityManager entityManager) {
         this.userRepository = userRepository;
         this.groupRepository = groupRepository;
         this.groupLogRepository = groupLogRepository;
         this.membershipRepository = membershipRepository;
-        this.campaignLogRepository = campaignLogRepository;
         this.permissionBroker = permissionBroker;
         this.logsBroker = logsBroker;
+        this.entityManager = entityManager;
     }
 
     @Override
@@ -342,18 +347,19 @@ public class GroupFetchBrokerImpl implements GroupFetchBroker {
     }
 
     @Override
-    public List<Membership> filterGroupMembers(User user, String groupUid,
-                                               Collection<Province> provinces,
-                                               Boolean noProvince,
-                                               Collection<String> taskTeamsUids,
-                                               Collection<String> topics,
-                                               Collection<String> affiliations,
-                                               Collection<GroupJoinMethod> joinMethods,
-                                               Collection<String> joinedCampaignsUids,
-                                               Integer joinDaysAgo,
-                                               LocalDate joinDate,
-                                               JoinDateCondition joinDateCondition,
-                                               String namePhoneOrEmail, Collection<String> languages, GroupRole groupRole) {
+    @Transactional(readOnly = true)
+    public List<MembershipRecipientProjection> filterGroupMembers(User user, String groupUid,
+                                                                  Collection<Province> provinces,
+                                                                  Boolean noProvince,
+                                                                  Collection<String> taskTeamsUids,
+                                                                  Collection<String> topics,
+                                                                  Collection<String> affiliations,
+                                                                  Collection<GroupJoinMethod> joinMethods,
+                                                                  Collection<String> joinedCampaignsUids,
+                                                                  Integer joinDaysAgo,
+                                                                  LocalDate joinDate,
+                                                                  JoinDateCondition joinDateCondition,
+                                                                  String namePhoneOrEmail, Collection<String> languages, GroupRole groupRole) {
 
         Objects.requireNonNull(groupUid);
         Group group = groupRepository.findOneByUid(groupUid);
@@ -366,36 +372,34 @@ public class GroupFetchBrokerImpl implements GroupFetchBroker {
 
         log.info("filtering on, user name: {}, join date condition: {}, join date: {}, provinces: {}, taskTeams: {}",
                 namePhoneOrEmail, joinDateCondition, joinDate, provinces, taskTeamsUids);
-        List<Membership> members = membershipRepository.findAll(
-                MembershipSpecifications.filterGroupMembership(group, provinces, noProvince, taskTeamsUids, joinMethods, joinDaysAgo, joinDate, joinDateCondition, namePhoneOrEmail, languages, groupRole)
-        );
 
+        // topics, affiliations and campaigns are all in the where clause, and we select only what recipients need
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<MembershipRecipientProjection> query = cb.createQuery(MembershipRecipientProjection.class);
+        Root<Membership> root = query.from(Membership.class);
+        Path<User> member = root.get(Membership_.user);
+        query.select(cb.construct(MembershipRecipientProjection.class,
+                root.get(Membership_.id), member.get(User_.id), member.get(User_.phoneNumber), member.get(User_.emailAddress),
+                member.get(User_.messagingPreference), member.get(User_.languageCode)));
+        query.where(MembershipSpecifications.filterGroupMembership(group, provinces, noProvince, taskTeamsUids, topics,
+                affiliations, joinMethods, joinedCampaignsUids, joinDaysAgo, joinDate, joinDateCondition, namePhoneOrEmail,
+                languages, groupRole).toPredicate(root, query, cb));
+
+        List<MembershipRecipientProjection> members = entityManager.createQuery(query).getResultList();
         log.info("post-filtering, have {} members", members.size());
+        return members;
+    }
 
-        if(topics != null && topics.size() > 0){
-            // this is an "and" filter, at present
-            members = members.stream()
-            .filter(m -> m.getTopics().containsAll(topics))
-            .collect(Collectors.toList());
-        }
-
-        if (affiliations != null && !affiliations.isEmpty()) {
-            // i.e., this is an "or" filtering
-            Set<String> affils = new HashSet<>(affiliations);
-            log.info("filtering {} members, looking for affiliations {}", members.size(), affils.toString());
-            members = members.stream().filter(m -> m.getAffiliations().stream().anyMatch(affils::contains))
-                    .collect(Collectors.toList());
-        }
-
-        //this is an alternative to very complicated query
-        if (joinedCampaignsUids != null && joinedCampaignsUids.size() > 0) {
-            List<CampaignLog> campLogs = campaignLogRepository.findByCampaignLogTypeAndCampaignMasterGroupUid(CampaignLogType.CAMPAIGN_USER_ADDED_TO_MASTER_GROUP, groupUid);
-            campLogs = campLogs.stream().filter(cl -> joinedCampaignsUids.contains(cl.getCampaign().getUid())).collect(Collectors.toList());
-            List<User> usersAddedByCampaigns = campLogs.stream().map(cl -> cl.getUser()).collect(Collectors.toList());
-            members = members.stream().filter( m -> usersAddedByCampaigns.contains(m.getUser())).collect(Collectors.toList());
+    @Override
+    @Transactional(readOnly = true)
+    public List<Membership> fetchMemberships(Collection<Long> membershipIds) {
+        if (membershipIds.isEmpty()) {
+            return new ArrayList<>();
         }
-
-        return members;
+        // loaded in no particular order, so put back in the order of the ids, i.e., that of the page they came from
+        Map<Long, Membership> loaded = membershipRepository.findAllById(membershipIds).stream()
+                .collect(Collectors.toMap(Membership::getId, Function.identity()));
+        return membershipIds.stream().map(loaded::get).filter(Objects::nonNull).collect(Collectors.toList());
     }
 
     @Override
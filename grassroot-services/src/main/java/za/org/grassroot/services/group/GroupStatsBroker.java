@@ -1,5 +1,9 @@
 package za.org.grassroot.services.group;
 
+import za.org.grassroot.core.domain.group.GroupLog;
+
+import java.util.Collection;
+import java.util.List;
 import java.util.Map;
 
 public interface GroupStatsBroker {
@@ -18,4 +22,19 @@ public interface GroupStatsBroker {
 
     Map<String, Integer> getTopicInterestStatsRaw(String groupUid, Boolean clearCache);
 
+    // called as member logs are stored, within that transaction, to record the day's adds and removes for growth stats
+    void recordMembershipChanges(Collection<GroupLog> memberChangeLogs);
+
+    // called with what a transaction changed in members, their tags and provinces, just before it commits (see GroupStatsChangeListener)
+    void recordMemberChanges(GroupStatsChanges changes);
+
+    // recounts all of the group's stats from its memberships, and its recent daily changes from its logs
+    void reconcileGroupStats(String groupUid);
+
+    // groups with a change that could not be applied to their stats, for the nightly job to recount
+    List<String> fetchGroupsToReconcile();
+
+    // groups whose stats were asked for before they had any, taken off the list, for the scheduled job to count them
+    List<String> fetchGroupsAwaitingStats();
+
 }
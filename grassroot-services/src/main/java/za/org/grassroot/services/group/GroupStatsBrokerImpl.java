@@ -6,76 +6,67 @@ import net.sf.ehcache.CacheManager;
 import net.sf.ehcache.Element;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
-import za.org.grassroot.core.domain.User;
-import za.org.grassroot.core.domain.group.Group;
-import za.org.grassroot.core.domain.group.GroupJoinMethod;
-import za.org.grassroot.core.domain.group.GroupLog;
-import za.org.grassroot.core.domain.group.Membership;
+import org.springframework.transaction.annotation.Transactional;
+import za.org.grassroot.core.domain.TagHolder;
+import za.org.grassroot.core.domain.group.*;
 import za.org.grassroot.core.enums.GroupLogType;
 import za.org.grassroot.core.enums.Province;
-import za.org.grassroot.core.repository.GroupLogRepository;
-import za.org.grassroot.core.repository.GroupRepository;
-import za.org.grassroot.core.repository.MembershipRepository;
-import za.org.grassroot.core.repository.UserRepository;
+import za.org.grassroot.core.repository.*;
 import za.org.grassroot.core.specifications.GroupLogSpecifications;
 import za.org.grassroot.core.specifications.MembershipSpecifications;
 import za.org.grassroot.core.util.DateTimeUtil;
+import za.org.grassroot.core.util.StringArrayUtil;
 
-import java.time.Clock;
 import java.time.Instant;
 import java.time.LocalDate;
 import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
-import java.util.function.Function;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Predicate;
-import java.util.stream.Collector;
 import java.util.stream.Collectors;
 
 
 @Service @Slf4j
 public class GroupStatsBrokerImpl implements GroupStatsBroker {
 
-    private final static ZoneId ZONE_OFFSET = Clock.systemDefaultZone().getZone();
+    // daily changes are bucketed by South African days, whatever zone the server runs in
+    private final static ZoneId ZONE_OFFSET = DateTimeUtil.getSAST();
 
+    private static final String ALL_MEMBERS_KEY = GroupStatsChanges.ALL_MEMBERS_KEY;
+    private static final String UNKNOWN_KEY = GroupStatsChanges.UNKNOWN_KEY;
+    private static final int RECONCILE_DAYS = 2;
 
     private final GroupLogRepository groupLogRepository;
     private final GroupRepository groupRepository;
     private final MembershipRepository membershipRepository;
     private final UserRepository userRepository;
+    private final GroupStatsCountRepository statsCountRepository;
+    private final GroupMemberDailyChangeRepository dailyChangeRepository;
     private final CacheManager cacheManager;
 
-    private final String ORGANISATION_TAG_PREFIX = "AFFILIATION";
+    // counted by the scheduled job, rather than by the read that found them missing
+    private final Set<String> groupsAwaitingStats = ConcurrentHashMap.newKeySet();
 
     public GroupStatsBrokerImpl(
             GroupLogRepository groupLogRepository,
             GroupRepository groupRepository,
             MembershipRepository membershipRepository,
-            UserRepository userRepository, CacheManager cacheManager) {
+            UserRepository userRepository,
+            GroupStatsCountRepository statsCountRepository,
+            GroupMemberDailyChangeRepository dailyChangeRepository, CacheManager cacheManager) {
         this.groupLogRepository = groupLogRepository;
         this.groupRepository = groupRepository;
         this.membershipRepository = membershipRepository;
         this.userRepository = userRepository;
+        this.statsCountRepository = statsCountRepository;
+        this.dailyChangeRepository = dailyChangeRepository;
         this.cacheManager = cacheManager;
     }
 
-    private Optional<Map<String, Integer>> checkCache(final String cacheName, final String cacheKey) {
-        final Cache cache = cacheManager.getCache(cacheName);
-        final Element element = cache.get(cacheKey);
-        final Map<String, Integer> resultFromCache = element != null ? (Map<String, Integer>) element.getObjectValue() : null;
-        return Optional.ofNullable(resultFromCache);
-    }
-
     @Override
+    @Transactional(readOnly = true)
     public Map<String, Integer> getMembershipGrowthStats(String groupUid, Integer year, Integer month) {
-        final String cacheName = "group_stats_member_count";
-        final String cacheKey = groupUid + "-" + year + "-" + month;
-        return checkCache(cacheName, cacheKey).orElse(calculateMembershipGrowthStats(groupUid, year, month, cacheKey));
-    }
-
-    private Map<String, Integer> calculateMembershipGrowthStats(final String groupUid, final Integer year, final Integer month, final String cacheKey) {
-        final Cache cache = cacheManager.getCache("group_stats_member_count");
-
         DateTimeFormatter dayFormatter = DateTimeFormatter.ofPattern("yyyy-MM-dd");
         DateTimeFormatter monthFormatter = DateTimeFormatter.ofPattern("yyyy-MM");
 
@@ -85,10 +76,6 @@ public class GroupStatsBrokerImpl implements GroupStatsBroker {
         final LocalDate endDay = DateTimeUtil.getEndTime(year, month, startDay);
 
         final Instant start = startDay.atStartOfDay(ZONE_OFFSET).toInstant();
-        final Instant end = endDay.atStartOfDay(ZONE_OFFSET).toInstant();
-
-        Specification<GroupLog> groupLogSpec = GroupLogSpecifications.memberCountChanges(groupUid, start, end);
-        List<GroupLog> memberCountChanges = groupLogRepository.findAll(groupLogSpec);
 
         Specification<Membership> startingMemberCountSpec = Specification.where(
                 MembershipSpecifications.forGroup(group))
@@ -96,17 +83,18 @@ public class GroupStatsBrokerImpl implements GroupStatsBroker {
 
         int currentMemberCount = (int) membershipRepository.count(startingMemberCountSpec);
 
+        // one row per day with changes, rather than every member log in the period
         final DateTimeFormatter timeFormatter = year != null && month !=null ? dayFormatter : monthFormatter;
-        Map<String, List<GroupLog>> groupedChanges = memberCountChanges.stream()
-                .collect(Collectors.groupingBy(gl -> timeFormatter.format(gl.getCreatedDateTime().atZone(ZONE_OFFSET))));
+        Map<String, Integer> groupedChanges = dailyChangeRepository.sumChangesByDate(groupUid, startDay, endDay).stream()
+                .collect(Collectors.toMap(row -> timeFormatter.format((LocalDate) row[0]),
+                        row -> ((Number) row[1]).intValue() - ((Number) row[2]).intValue(), Integer::sum));
 
         final Map<String, Integer> membersCountByTimeStep = new LinkedHashMap<>(); //preserve key order
         if (year != null && month != null) {
             LocalDate currDay = startDay;
             while (currDay.isBefore(endDay)) {
                 final String dayKey = dayFormatter.format(currDay);
-                final List<GroupLog> dayChanges = groupedChanges.get(dayKey);
-                currentMemberCount += countAddedRemoved(dayChanges);
+                currentMemberCount += groupedChanges.getOrDefault(dayKey, 0);
                 membersCountByTimeStep.put(dayKey, currentMemberCount);
                 currDay = currDay.plusDays(1);
             }
@@ -114,114 +102,36 @@ public class GroupStatsBrokerImpl implements GroupStatsBroker {
             LocalDate currMonth = startDay;
             while (currMonth.getYear() < endDay.getYear() || currMonth.getMonthValue() < endDay.getMonthValue()) {
                 final String monthKey = monthFormatter.format(currMonth);
-                final List<GroupLog> monthChanges = groupedChanges.get(monthKey);
-                currentMemberCount += countAddedRemoved(monthChanges);
+                currentMemberCount += groupedChanges.getOrDefault(monthKey, 0);
                 membersCountByTimeStep.put(monthKey, currentMemberCount);
                 currMonth = currMonth.plusMonths(1);
             }
 
         }
 
-        cache.put(new Element(cacheKey, membersCountByTimeStep));
         return membersCountByTimeStep;
     }
 
-    private int countAddedRemoved(List<GroupLog> logs) {
-        if (logs != null) {
-            final int added = countByLogsIn(logs, GroupLogType.targetUserAddedTypes);
-            final int removed = countByLogIs(logs, GroupLogType.GROUP_MEMBER_REMOVED);
-            return added - removed;
-        } else {
-            return 0;
-        }
-    }
-
-    private int countByLogIs(List<GroupLog> logs, GroupLogType type) {
-        return (int) logs.stream().filter(filterByLogIs(type)).count();
-    }
-
-    private int countByLogsIn(List<GroupLog> logs, Collection<GroupLogType> types) {
-        return (int) logs.stream().filter(filterByLogIn(types)).count();
-    }
-
-    private Predicate<? super GroupLog> filterByLogIs(GroupLogType type) {
-        return gl -> gl.getGroupLogType() == type;
-    }
-
-    private Predicate<? super GroupLog> filterByLogIn(Collection<GroupLogType> types) {
-        return gl -> types.contains(gl.getGroupLogType());
-    }
-
-    private Collector<Object, ?, Integer> integerSum() {
-        return Collectors.reducing(0, e -> 1, Integer::sum);
-    }
-
     @Override
+    @Transactional(readOnly = true)
     public Map<String, Integer> getProvincesStats(String groupUid) {
-        final String cacheName = "group_stats_provinces";
-        return checkCache(cacheName, groupUid).orElseGet(() -> {
-            List<Object[]> provinceStats = groupRepository.getGroupProvinceStats(groupUid);
-            Map<String, Integer> data = provinceStats.stream()
-                    .map(objects -> {
-                        return new Object[]{Optional.ofNullable(objects[0]).orElse(""),
-                                Optional.ofNullable(objects[1]).orElse(0L)};
-                    })
-                    .collect(HashMap::new, (hashMap,province)->
-                            hashMap.put((province[0] instanceof String) ?
-                                    "UNKNOWN" :
-                                    ((Province)province[0]).name(),
-                                    Optional.ofNullable(Math.toIntExact((Long)province[1])).orElse(0)),
-                            HashMap::putAll);
-            Cache cache = cacheManager.getCache(cacheName);
-            cache.put(new Element(groupUid, data));
-            return data;
-        });
+        return fetchStats(groupUid, GroupStatsType.PROVINCE);
     }
 
     @Override
+    @Transactional(readOnly = true)
     public Map<String, Integer> getSourcesStats(String groupUid) {
-        final String cacheName = "group_stats_sources";
-        return checkCache(cacheName, groupUid).orElseGet(() -> {
-            List<Object[]> sourceStats = groupRepository.getGroupSourcesStats(groupUid);
-            Map<String, Integer> data = sourceStats.stream()
-                    .map(objects -> {
-                        return new Object[]{Optional.ofNullable(objects[0]).orElse(""),
-                                Optional.ofNullable(objects[1]).orElse(0L)};
-                    })
-                    .collect(HashMap::new, (hashMap, source) ->
-                            hashMap.put((source[0] instanceof String) ?
-                                    "UNKNOWN" :
-                                    ((GroupJoinMethod)source[0]).name(),
-                                    Optional.ofNullable(Math.toIntExact((Long)source[1])).orElse(0)),
-                            HashMap::putAll);
-            Cache cache = cacheManager.getCache(cacheName);
-            cache.put(new Element(groupUid, data));
-            return data;
-        });
+        return fetchStats(groupUid, GroupStatsType.SOURCE);
     }
 
     @Override
+    @Transactional(readOnly = true)
     public Map<String, Integer> getOrganisationsStats(String groupUid) {
-        final String cacheName = "group_stats_organisations";
-        return checkCache(cacheName, groupUid).orElseGet(() -> {
-            final Cache cache = cacheManager.getCache(cacheName);
-
-            List<Membership> memberships = membershipRepository.findAll(MembershipSpecifications.forGroup(groupUid));
-            Map<String, Integer> data = memberships.stream()
-                    .filter(m -> !m.getAffiliations().isEmpty())
-                    .flatMap(m -> m.getAffiliations().stream())
-                    .collect(Collectors.groupingBy(s -> s, integerSum()));
-            data.put("Unknown", memberships.size());
-
-            cache.put(new Element(groupUid, data));
-
-            return data;
-        });
-
-
+        Map<String, Integer> data = new HashMap<>(fetchStats(groupUid, GroupStatsType.AFFILIATION));
+        data.put("Unknown", fetchMemberCount(groupUid));
+        return data;
     }
 
-
     @Override
     public Map<String, Integer> getMemberDetailsStats(String groupUid) {
 
@@ -234,22 +144,14 @@ public class GroupStatsBrokerImpl implements GroupStatsBroker {
             return resultFromCache;
 
         final Group group = groupRepository.findOneByUid(groupUid);
-        final List<User> users = userRepository.findByGroupsPartOfAndIdNot(group, 0L);
-        final int groupSize = membershipRepository.countByGroup(group);
+        final Object[] details = membershipRepository.countMemberDetails(group).get(0);
+        final int groupSize = ((Number) details[0]).intValue();
 
-        double hasEmail = 0;
-        double hasPhoneNumber = 0;
-        double hasProvince = 0;
+        double hasEmail = countOrZero(details[1]);
+        double hasPhoneNumber = countOrZero(details[2]);
+        double hasProvince = countOrZero(details[3]);
         double hasOrganisation = 0;
 
-        for (User user : users) {
-            hasEmail += user.hasEmailAddress() ? 1 : 0;
-            hasPhoneNumber += user.hasPhoneNumber() ? 1 : 0;
-            hasProvince += user.getProvince() != null ? 1 : 0;
-//            hasOrganisation += Arrays.stream(membership.getTags()).anyMatch(tag -> tag.startsWith(ORGANISATION_TAG_PREFIX)) ? 1 : 0;
-        }
-
-
         Map<String, Integer> results = new LinkedHashMap<>();
 
         results.put("EMAIL", groupSize > 0 ? (int) ((hasEmail / groupSize) * 100) : 0);
@@ -263,12 +165,11 @@ public class GroupStatsBrokerImpl implements GroupStatsBroker {
     }
 
     @Override
+    @Transactional(readOnly = true)
     public Map<String, Integer> getTopicInterestStatsPercentage(String groupUid) {
-        Map<String, Integer> topicInterests = new HashMap<>(getTopicInterestStats(groupUid, false));
-
-        List<Membership> memberships = membershipRepository.findAll(MembershipSpecifications.forGroup(groupUid));
+        Map<String, Integer> topicInterests = new HashMap<>(fetchStats(groupUid, GroupStatsType.TOPIC));
 
-        double membersCount = memberships.size();
+        double membersCount = fetchMemberCount(groupUid);
         topicInterests.entrySet().forEach(entry -> {
             if (membersCount > 0)
                 entry.setValue((int) (100 * entry.getValue() / membersCount));
@@ -279,41 +180,222 @@ public class GroupStatsBrokerImpl implements GroupStatsBroker {
     }
 
     @Override
+    @Transactional(readOnly = true)
     public Map<String, Integer> getTopicInterestStatsRaw(String groupUid, Boolean clearCache) {
-        return getTopicInterestStats(groupUid, clearCache);
+        // topic edits adjust the counts as they commit, so there is nothing left to clear
+        return fetchStats(groupUid, GroupStatsType.TOPIC);
     }
 
-    private Map<String, Integer> getTopicInterestStats(String groupUid, Boolean clearCache) {
+    @Override
+    @Transactional
+    public void recordMembershipChanges(Collection<GroupLog> memberChangeLogs) {
+        // the buckets themselves are adjusted as the memberships are flushed (see recordMemberChanges)
+        memberChangeLogs.stream()
+                .filter(filterByLogIn(GroupLogType.targetUserAddedOrRemovedTypes))
+                .collect(Collectors.groupingBy(GroupLog::getGroup))
+                .forEach(this::recordDailyChanges);
+    }
 
-        Cache cache = cacheManager.getCache("group_stats_topic_interests");
-        String cacheKey = groupUid;
-        Element element = cache.get(cacheKey);
-        Map<String, Integer> resultFromCache = element != null ? (Map<String, Integer>) element.getObjectValue() : null;
+    @Override
+    @Transactional
+    public void recordMemberChanges(GroupStatsChanges changes) {
+        if (changes.isEmpty())
+            return;
+
+        Map<Long, Map<GroupStatsType, Map<String, Integer>>> bucketChanges = new HashMap<>();
+        changes.getBucketChanges().forEach((groupId, typeChanges) -> typeChanges.forEach((type, keyChanges) ->
+                keyChanges.forEach((key, change) -> mergeChange(bucketChanges, groupId, type, key, change))));
+        addProvinceChanges(changes, bucketChanges);
+
+        Set<Long> involvedGroupIds = new HashSet<>(bucketChanges.keySet());
+        involvedGroupIds.addAll(changes.getGroupIdsToRecount());
+        Set<Long> groupIdsWithStats = new HashSet<>(changes.getCreatedGroupIds());
+        if (!involvedGroupIds.isEmpty())
+            groupIdsWithStats.addAll(statsCountRepository.findIdsOfGroupsWithStats(involvedGroupIds));
+        Map<Long, Group> groups = groupRepository.findAllById(groupIdsWithStats).stream()
+                .collect(Collectors.toMap(Group::getId, group -> group));
+
+        // new groups start with (empty) stats, so that they never need counting in full
+        changes.getCreatedGroupIds().stream().map(groups::get).filter(Objects::nonNull).forEach(group ->
+                statsCountRepository.save(new GroupStatsCount(group, GroupStatsType.MEMBERS, ALL_MEMBERS_KEY, 0)));
+
+        // groups yet to be counted will be counted in full, with these changes, when first asked for
+        bucketChanges.forEach((groupId, typeChanges) -> {
+            if (groups.containsKey(groupId))
+                adjustCounts(groups.get(groupId), typeChanges);
+        });
+        changes.getGroupIdsToRecount().stream().map(groups::get).filter(Objects::nonNull)
+                .forEach(statsCountRepository::markForRecount);
 
-        if(clearCache) {
-            cache.remove(cacheKey);
-        }else {
-            if (resultFromCache != null)
-                return resultFromCache;
-        }
+        // this runs after the transaction's last flush, so must flush any new buckets itself
+        statsCountRepository.flush();
+    }
+
+    @Override
+    @Transactional
+    public void reconcileGroupStats(String groupUid) {
+        Group group = groupRepository.findOneByUid(groupUid);
+        materialiseStats(group);
+        groupsAwaitingStats.remove(groupUid);
+
+        // the daily changes are only adjusted, never recounted, as logs are stored, so recount the most recent from the logs
+        final LocalDate fromDay = LocalDate.now(ZONE_OFFSET).minusDays(RECONCILE_DAYS - 1);
+        final Instant from = fromDay.atStartOfDay(ZONE_OFFSET).toInstant();
+        List<GroupLog> recentChanges = groupLogRepository.findAll(GroupLogSpecifications.memberCountChanges(groupUid, from, Instant.now()));
+        dailyChangeRepository.deleteByGroupFromDate(group, fromDay);
+        recordDailyChanges(group, recentChanges);
+    }
 
+    @Override
+    @Transactional(readOnly = true)
+    public List<String> fetchGroupsToReconcile() {
+        return statsCountRepository.findUidsOfGroupsNeedingRecount();
+    }
 
-        List<Membership> memberships = membershipRepository.findAll(MembershipSpecifications.forGroup(groupUid));
+    @Override
+    public List<String> fetchGroupsAwaitingStats() {
+        List<String> groupUids = new ArrayList<>(groupsAwaitingStats);
+        groupsAwaitingStats.removeAll(groupUids);
+        return groupUids;
+    }
 
-        Map<String, Integer> topicInterests = new LinkedHashMap<>();
+    private boolean hasMaterialisedStats(String groupUid) {
+        return statsCountRepository.countByGroupUidAndStatType(groupUid, GroupStatsType.MEMBERS) > 0;
+    }
 
-        for (Membership membership : memberships) {
-            for (String topic : membership.getTopics()) {
-                int count = (topicInterests.containsKey(topic) ? topicInterests.get(topic) : 0) + 1;
-                topicInterests.put(topic, count);
-            }
+    private Map<String, Integer> fetchStats(String groupUid, GroupStatsType statType) {
+        // counting a large group in full is too slow for a read, so it is left to the scheduled job, which is only
+        // needed for groups created before the stats were kept, as new groups start with them
+        if (!hasMaterialisedStats(groupUid)) {
+            groupsAwaitingStats.add(groupUid);
+            return Collections.emptyMap();
         }
+        return statsCountRepository.sumCountsByKey(groupUid, statType).stream()
+                .collect(Collectors.toMap(row -> (String) row[0], row -> ((Number) row[1]).intValue()));
+    }
 
-        cache.put(new Element(cacheKey, topicInterests));
+    private int fetchMemberCount(String groupUid) {
+        return fetchStats(groupUid, GroupStatsType.MEMBERS).getOrDefault(ALL_MEMBERS_KEY, 0);
+    }
 
-        return topicInterests;
+    // replaces whatever the group had with a full count from its memberships
+    private Map<GroupStatsType, Map<String, Integer>> materialiseStats(Group group) {
+        Map<GroupStatsType, Map<String, Integer>> stats = countStats(group);
+        statsCountRepository.deleteByGroup(group);
+        List<GroupStatsCount> counts = new ArrayList<>();
+        stats.forEach((type, typeCounts) -> typeCounts.forEach((key, count) -> counts.add(new GroupStatsCount(group, type, key, count))));
+        statsCountRepository.saveAll(counts);
+        return stats;
     }
 
+    private Map<GroupStatsType, Map<String, Integer>> countStats(Group group) {
+        final String groupUid = group.getUid();
+        Map<GroupStatsType, Map<String, Integer>> stats = new EnumMap<>(GroupStatsType.class);
+
+        stats.put(GroupStatsType.MEMBERS, Collections.singletonMap(ALL_MEMBERS_KEY, membershipRepository.countByGroup(group)));
+        stats.put(GroupStatsType.PROVINCE, countsByEnumName(groupRepository.getGroupProvinceStats(groupUid)));
+        stats.put(GroupStatsType.SOURCE, countsByEnumName(groupRepository.getGroupSourcesStats(groupUid)));
+
+        Map<String, Integer> topics = new HashMap<>();
+        Map<String, Integer> affiliations = new HashMap<>();
+        membershipRepository.countMembersByTagCombination(groupUid).forEach(row -> {
+            final List<String> tags = StringArrayUtil.arrayToList((String[]) row[0]);
+            final int count = ((Number) row[1]).intValue();
+            tags.stream().filter(tag -> tag.startsWith(TagHolder.TOPIC_PREFIX))
+                    .forEach(tag -> topics.merge(tag.substring(TagHolder.TOPIC_PREFIX.length()), count, Integer::sum));
+            Membership.extractAffiliations(tags).forEach(affiliation -> affiliations.merge(affiliation, count, Integer::sum));
+        });
+        stats.put(GroupStatsType.TOPIC, topics);
+        stats.put(GroupStatsType.AFFILIATION, affiliations);
+        return stats;
+    }
 
-}
+    // the province a member is counted under is the one they have at the end of the transaction, or had before it if
+    // they left; members who stayed are moved over if it changed
+    private void addProvinceChanges(GroupStatsChanges changes, Map<Long, Map<GroupStatsType, Map<String, Integer>>> bucketChanges) {
+        Set<Long> userIds = new HashSet<>(changes.getProvincesBefore().keySet());
+        changes.getMembershipChanges().values().forEach(userChanges -> userIds.addAll(userChanges.keySet()));
+        if (userIds.isEmpty())
+            return;
+
+        Map<Long, Province> provincesNow = new HashMap<>();
+        userRepository.findAllById(userIds).forEach(user -> provincesNow.put(user.getId(), user.getProvince()));
+
+        changes.getMembershipChanges().forEach((groupId, userChanges) -> userChanges.forEach((userId, change) -> {
+            if (change > 0)
+                mergeChange(bucketChanges, groupId, GroupStatsType.PROVINCE, GroupStatsChanges.provinceKey(provincesNow.get(userId)), 1);
+            else if (change < 0)
+                mergeChange(bucketChanges, groupId, GroupStatsType.PROVINCE, GroupStatsChanges.provinceKey(changes.getProvincesBefore().get(userId)), -1);
+        }));
+
+        changes.getProvincesBefore().forEach((userId, provinceBefore) -> {
+            if (!provincesNow.containsKey(userId) || provinceBefore == provincesNow.get(userId))
+                return;
+            statsCountRepository.findIdsOfGroupsWithStatsForMember(userId).stream()
+                    .filter(groupId -> changes.getMembershipChanges().getOrDefault(groupId, Collections.emptyMap()).getOrDefault(userId, 0) <= 0)
+                    .forEach(groupId -> {
+                        mergeChange(bucketChanges, groupId, GroupStatsType.PROVINCE, GroupStatsChanges.provinceKey(provinceBefore), -1);
+                        mergeChange(bucketChanges, groupId, GroupStatsType.PROVINCE, GroupStatsChanges.provinceKey(provincesNow.get(userId)), 1);
+                    });
+        });
+    }
+
+    private void mergeChange(Map<Long, Map<GroupStatsType, Map<String, Integer>>> bucketChanges, Long groupId,
+                             GroupStatsType statType, String key, int change) {
+        bucketChanges.computeIfAbsent(groupId, id -> new EnumMap<>(GroupStatsType.class))
+                .computeIfAbsent(statType, type -> new HashMap<>())
+                .merge(key, change, Integer::sum);
+    }
+
+    private void adjustCounts(Group group, Map<GroupStatsType, Map<String, Integer>> typeChanges) {
+        typeChanges.forEach((type, counts) -> counts.forEach((key, delta) -> {
+            if (delta == 0 || statsCountRepository.adjustCount(group, type, key, delta) > 0)
+                return;
+            if (delta > 0)
+                statsCountRepository.save(new GroupStatsCount(group, type, key, delta));
+            else // a bucket missing on removal means the counts have drifted, so the group is recounted that night
+                statsCountRepository.markForRecount(group);
+        }));
+    }
 
+    // the repository aggregates return the enum for known values, and a string or null for the rest
+    private Map<String, Integer> countsByEnumName(List<Object[]> aggregates) {
+        return aggregates.stream().collect(Collectors.toMap(
+                row -> row[0] instanceof Enum ? ((Enum<?>) row[0]).name() : UNKNOWN_KEY,
+                row -> row[1] == null ? 0 : Math.toIntExact((Long) row[1]),
+                Integer::sum));
+    }
+
+    private void recordDailyChanges(Group group, List<GroupLog> logs) {
+        Map<LocalDate, List<GroupLog>> logsByDay = logs.stream()
+                .collect(Collectors.groupingBy(gl -> gl.getCreatedDateTime().atZone(ZONE_OFFSET).toLocalDate()));
+        logsByDay.forEach((day, dayLogs) -> {
+            final int added = countByLogsIn(dayLogs, GroupLogType.targetUserAddedTypes);
+            final int removed = countByLogIs(dayLogs, GroupLogType.GROUP_MEMBER_REMOVED);
+            if (dailyChangeRepository.adjustChanges(group, day, added, removed) == 0)
+                dailyChangeRepository.save(new GroupMemberDailyChange(group, day, added, removed));
+        });
+    }
+
+    private int countOrZero(Object sum) {
+        // sums over no rows are null
+        return sum == null ? 0 : ((Number) sum).intValue();
+    }
+
+    private int countByLogIs(List<GroupLog> logs, GroupLogType type) {
+        return (int) logs.stream().filter(filterByLogIs(type)).count();
+    }
+
+    private int countByLogsIn(List<GroupLog> logs, Collection<GroupLogType> types) {
+        return (int) logs.stream().filter(filterByLogIn(types)).count();
+    }
+
+    private Predicate<? super GroupLog> filterByLogIs(GroupLogType type) {
+        return gl -> gl.getGroupLogType() == type;
+    }
+
+    private Predicate<? super GroupLog> filterByLogIn(Collection<GroupLogType> types) {
+        return gl -> types.contains(gl.getGroupLogType());
+    }
+
+}
@@ -0,0 +1,130 @@
+package za.org.grassroot.services.group;
+
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.action.spi.AfterTransactionCompletionProcess;
+import org.hibernate.action.spi.BeforeTransactionCompletionProcess;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.*;
+import org.hibernate.persister.entity.EntityPersister;
+import org.springframework.stereotype.Component;
+import za.org.grassroot.core.domain.User;
+import za.org.grassroot.core.domain.group.Group;
+import za.org.grassroot.core.domain.group.Membership;
+import za.org.grassroot.core.enums.Province;
+
+import javax.annotation.PostConstruct;
+import javax.persistence.EntityManagerFactory;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps the materialised group stats in step with every path that adds or removes members, edits their tags, or
+ * changes their province, by watching those entities as they are flushed, rather than each of those paths calling
+ * the stats broker. What a transaction changed is gathered per session and applied once, just before it commits,
+ * after its last flush, so it commits or rolls back with the changes themselves.
+ */
+@Component @Slf4j
+public class GroupStatsChangeListener implements PostInsertEventListener, PostUpdateEventListener, PostDeleteEventListener {
+
+    private static final String TAGS_PROPERTY = "tags";
+    private static final String PROVINCE_PROPERTY = "province";
+
+    private final EntityManagerFactory entityManagerFactory;
+    private final GroupStatsBroker groupStatsBroker;
+
+    private final Map<SharedSessionContractImplementor, GroupStatsChanges> pendingChanges = new ConcurrentHashMap<>();
+
+    public GroupStatsChangeListener(EntityManagerFactory entityManagerFactory, GroupStatsBroker groupStatsBroker) {
+        this.entityManagerFactory = entityManagerFactory;
+        this.groupStatsBroker = groupStatsBroker;
+    }
+
+    @PostConstruct
+    public void register() {
+        EventListenerRegistry registry = entityManagerFactory.unwrap(SessionFactoryImplementor.class)
+                .getServiceRegistry().getService(EventListenerRegistry.class);
+        registry.appendListeners(EventType.POST_INSERT, this);
+        registry.appendListeners(EventType.POST_UPDATE, this);
+        registry.appendListeners(EventType.POST_DELETE, this);
+    }
+
+    @Override
+    public void onPostInsert(PostInsertEvent event) {
+        if (event.getEntity() instanceof Group) {
+            changesFor(event.getSession()).groupCreated(((Group) event.getEntity()).getId());
+        } else if (event.getEntity() instanceof Membership) {
+            changesFor(event.getSession()).membershipAdded((Membership) event.getEntity());
+        }
+    }
+
+    @Override
+    public void onPostUpdate(PostUpdateEvent event) {
+        if (event.getEntity() instanceof Membership) {
+            final int tagsIndex = propertyIndex(event.getPersister(), TAGS_PROPERTY);
+            if (!isDirty(event.getDirtyProperties(), tagsIndex))
+                return;
+            final Membership membership = (Membership) event.getEntity();
+            // only an entity reattached without its loaded state lacks the old values, and then it can only be recounted
+            if (event.getOldState() == null)
+                changesFor(event.getSession()).recountGroup(membership.getGroup().getId());
+            else
+                changesFor(event.getSession()).tagsChanged(membership.getGroup().getId(),
+                        (String[]) event.getOldState()[tagsIndex], membership.getTags());
+        } else if (event.getEntity() instanceof User) {
+            final int provinceIndex = propertyIndex(event.getPersister(), PROVINCE_PROPERTY);
+            if (event.getOldState() != null && isDirty(event.getDirtyProperties(), provinceIndex))
+                changesFor(event.getSession()).provinceChanged(((User) event.getEntity()).getId(),
+                        (Province) event.getOldState()[provinceIndex]);
+        }
+    }
+
+    @Override
+    public void onPostDelete(PostDeleteEvent event) {
+        if (event.getEntity() instanceof Membership) {
+            changesFor(event.getSession()).membershipRemoved((Membership) event.getEntity());
+        }
+    }
+
+    @Override
+    @SuppressWarnings("deprecation") // still the abstract one in this version of Hibernate
+    public boolean requiresPostCommitHanding(EntityPersister persister) {
+        return false;
+    }
+
+    private GroupStatsChanges changesFor(EventSource session) {
+        return pendingChanges.computeIfAbsent(session, s -> {
+            session.getActionQueue().registerProcess((BeforeTransactionCompletionProcess) completing -> {
+                GroupStatsChanges changes = pendingChanges.remove(completing);
+                try {
+                    if (changes != null)
+                        groupStatsBroker.recordMemberChanges(changes);
+                } catch (Exception e) {
+                    // the stats are secondary to the changes themselves, so should not stop those committing
+                    log.error("Error applying member changes to group stats: " + e.getMessage(), e);
+                }
+            });
+            // also clears the changes of a transaction that rolled back
+            session.getActionQueue().registerProcess((AfterTransactionCompletionProcess) (success, completed) ->
+                    pendingChanges.remove(completed));
+            return new GroupStatsChanges();
+        });
+    }
+
+    private int propertyIndex(EntityPersister persister, String property) {
+        return persister.getEntityMetamodel().getPropertyIndex(property);
+    }
+
+    // without dirty checking, any property may have changed
+    private boolean isDirty(int[] dirtyProperties, int propertyIndex) {
+        if (dirtyProperties == null)
+            return true;
+        for (int dirty : dirtyProperties) {
+            if (dirty == propertyIndex)
+                return true;
+        }
+        return false;
+    }
+
+}
@@ -0,0 +1,102 @@
+package za.org.grassroot.services.group;
+
+import lombok.Getter;
+import za.org.grassroot.core.domain.TagHolder;
+import za.org.grassroot.core.domain.group.GroupJoinMethod;
+import za.org.grassroot.core.domain.group.GroupStatsType;
+import za.org.grassroot.core.domain.group.Membership;
+import za.org.grassroot.core.enums.Province;
+
+import java.util.*;
+
+/**
+ * What one transaction changed in its groups' stats buckets, gathered by {@link GroupStatsChangeListener} as memberships
+ * and users are flushed, and applied by {@link GroupStatsBroker#recordMemberChanges} just before it commits.
+ *
+ * Every bucket but the province one depends only on the membership, so its change is known at flush. A member's
+ * province lives on the user, and may change in the same transaction as their memberships, in either order, so it is
+ * worked out when applied, from the province the user had before the transaction and the one they have at its end.
+ */
+@Getter
+public final class GroupStatsChanges {
+
+    static final String ALL_MEMBERS_KEY = "ALL";
+    static final String UNKNOWN_KEY = "UNKNOWN";
+
+    // group id, then stat type, then bucket, to its change, for all but the province buckets
+    private final Map<Long, Map<GroupStatsType, Map<String, Integer>>> bucketChanges = new HashMap<>();
+
+    // group id, then user id, to 1 for a membership added in the transaction, -1 for one removed, and 0 for both
+    private final Map<Long, Map<Long, Integer>> membershipChanges = new HashMap<>();
+
+    // user id to their province before the transaction, for users whose province changed or who left a group in it
+    private final Map<Long, Province> provincesBefore = new HashMap<>();
+
+    private final Set<Long> createdGroupIds = new HashSet<>();
+
+    // groups with a change that could not be worked out, to be recounted
+    private final Set<Long> groupIdsToRecount = new HashSet<>();
+
+    void groupCreated(Long groupId) {
+        createdGroupIds.add(groupId);
+    }
+
+    void membershipAdded(Membership membership) {
+        changeMembership(membership, 1);
+        changeTags(membership.getGroup().getId(), membership.getTags(), 1);
+    }
+
+    void membershipRemoved(Membership membership) {
+        // a change to the province flushed before now, or with this, has already recorded the one before it
+        provincesBefore.putIfAbsent(membership.getUser().getId(), membership.getUser().getProvince());
+        changeMembership(membership, -1);
+        changeTags(membership.getGroup().getId(), membership.getTags(), -1);
+    }
+
+    void tagsChanged(Long groupId, String[] tagsBefore, String[] tagsAfter) {
+        changeTags(groupId, tagsBefore, -1);
+        changeTags(groupId, tagsAfter, 1);
+    }
+
+    void provinceChanged(Long userId, Province provinceBefore) {
+        provincesBefore.putIfAbsent(userId, provinceBefore);
+    }
+
+    void recountGroup(Long groupId) {
+        groupIdsToRecount.add(groupId);
+    }
+
+    boolean isEmpty() {
+        return bucketChanges.isEmpty() && membershipChanges.isEmpty() && provincesBefore.isEmpty()
+                && createdGroupIds.isEmpty() && groupIdsToRecount.isEmpty();
+    }
+
+    static String provinceKey(Province province) {
+        return province == null ? UNKNOWN_KEY : province.name();
+    }
+
+    private void changeMembership(Membership membership, int change) {
+        final Long groupId = membership.getGroup().getId();
+        membershipChanges.computeIfAbsent(groupId, id -> new HashMap<>())
+                .merge(membership.getUser().getId(), change, Integer::sum);
+        final GroupJoinMethod joinMethod = membership.getJoinMethod();
+        changeBucket(groupId, GroupStatsType.MEMBERS, ALL_MEMBERS_KEY, change);
+        changeBucket(groupId, GroupStatsType.SOURCE, joinMethod == null ? UNKNOWN_KEY : joinMethod.name(), change);
+    }
+
+    private void changeTags(Long groupId, String[] tags, int change) {
+        if (tags == null)
+            return;
+        final List<String> tagList = Arrays.asList(tags);
+        tagList.stream().filter(tag -> tag.startsWith(TagHolder.TOPIC_PREFIX))
+                .forEach(tag -> changeBucket(groupId, GroupStatsType.TOPIC, tag.substring(TagHolder.TOPIC_PREFIX.length()), change));
+        Membership.extractAffiliations(tagList).forEach(affiliation -> changeBucket(groupId, GroupStatsType.AFFILIATION, affiliation, change));
+    }
+
+    private void changeBucket(Long groupId, GroupStatsType statType, String key, int change) {
+        bucketChanges.computeIfAbsent(groupId, id -> new EnumMap<>(GroupStatsType.class))
+                .computeIfAbsent(statType, type -> new HashMap<>())
+                .merge(key, change, Integer::sum);
+    }
+
+}
@@ -0,0 +1,23 @@
+package za.org.grassroot.services.group;
+
+import za.org.grassroot.core.domain.GroupRole;
+import za.org.grassroot.core.domain.User;
+import za.org.grassroot.core.domain.group.Group;
+import za.org.grassroot.core.domain.group.GroupJoinMethod;
+import za.org.grassroot.core.domain.group.Membership;
+
+import java.util.Collection;
+
+/**
+ * Writes and deletes single (or a handful of) membership rows directly, so that neither the group's nor the user's
+ * membership collection is loaded to do so (see the note on Group). Bulk adds are written in chunks by the group
+ * broker, with one existence check per chunk instead of a check per member.
+ */
+public interface MembershipWriter {
+
+    // returns null if the user is already a member of the group, including if a concurrent request has just added them
+    Membership addMembership(Group group, User user, GroupRole role, GroupJoinMethod joinMethod, String joinMethodDescriptor);
+
+    void removeMemberships(Collection<Membership> memberships);
+
+}
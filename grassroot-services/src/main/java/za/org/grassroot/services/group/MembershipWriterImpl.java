@@ -0,0 +1,62 @@
+package za.org.grassroot.services.group;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import za.org.grassroot.core.domain.GroupRole;
+import za.org.grassroot.core.domain.User;
+import za.org.grassroot.core.domain.group.Group;
+import za.org.grassroot.core.domain.group.GroupJoinMethod;
+import za.org.grassroot.core.domain.group.Membership;
+import za.org.grassroot.core.repository.MembershipRepository;
+import za.org.grassroot.core.repository.UserRepository;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+@Service @Slf4j
+public class MembershipWriterImpl implements MembershipWriter {
+
+    private final MembershipRepository membershipRepository;
+    private final UserRepository userRepository;
+
+    public MembershipWriterImpl(MembershipRepository membershipRepository, UserRepository userRepository) {
+        this.membershipRepository = membershipRepository;
+        this.userRepository = userRepository;
+    }
+
+    @Override
+    @Transactional
+    public Membership addMembership(Group group, User user, GroupRole role, GroupJoinMethod joinMethod, String joinMethodDescriptor) {
+        // the probe and insert are serialised per user, as a duplicate rejected by the unique key at flush would leave this
+        // session unusable, and fail the whole request, rather than finding the user already a member
+        userRepository.lockById(user.getId());
+        if (membershipRepository.existsByGroupAndUser(group, user)) {
+            log.debug("User {} already a member of group {}, not adding", user.getUid(), group.getUid());
+            return null;
+        }
+
+        // flushed straight away, so that a later load of either collection in this session (which does not flush) sees it
+        Membership membership = membershipRepository.saveAndFlush(
+                new Membership(group, user, role, Instant.now(), joinMethod, joinMethodDescriptor));
+        group.syncAddedMembership(membership);
+        user.syncAddedMembership(membership);
+        return membership;
+    }
+
+    @Override
+    @Transactional
+    public void removeMemberships(Collection<Membership> memberships) {
+        List<Membership> toRemove = new ArrayList<>(memberships);
+        // taken out of any loaded collections first, otherwise the group's cascade would save them again at flush
+        toRemove.forEach(membership -> {
+            membership.getGroup().syncRemovedMembership(membership);
+            membership.getUser().syncRemovedMembership(membership);
+        });
+        membershipRepository.deleteAll(toRemove);
+        log.debug("Removed {} memberships", toRemove.size());
+    }
+
+}
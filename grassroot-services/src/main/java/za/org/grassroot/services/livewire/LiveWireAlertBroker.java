@@ -81,6 +81,7 @@ public interface LiveWireAlertBroker {
     //@PreAuthorize("hasRole('ROLE_LIVEWIRE_USER')")
     void reviewAlert(String userUid, String alertUid, List<String> tags, boolean send, List<String> publicListUids);
 
+    // radius is in metres, as the around me controller passes it
     List<LiveWireAlert> fetchAlertsNearUser(String userUid, GeoLocation location, int radius, GeographicSearchType searchType);
 
     Page<LiveWireAlert> fetchReleasedAlerts(Pageable pageRequest);
@@ -43,6 +43,8 @@ import za.org.grassroot.core.util.PhoneNumberUtil;
 import za.org.grassroot.integration.location.UssdLocationServicesBroker;
 import za.org.grassroot.services.PermissionBroker;
 import za.org.grassroot.services.geo.GeographicSearchType;
+import za.org.grassroot.services.geo.IndexedLocation;
+import za.org.grassroot.services.geo.NearbyLocationIndex;
 import za.org.grassroot.services.util.LogsAndNotificationsBroker;
 import za.org.grassroot.services.util.LogsAndNotificationsBundle;
 
@@ -55,6 +57,7 @@ import java.time.Instant;
 import java.time.LocalDate;
 import java.time.ZoneOffset;
 import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashSet;
@@ -87,8 +90,7 @@ public class LiveWireAlertBrokerImpl implements LiveWireAlertBroker {
     private UssdLocationServicesBroker locationServicesBroker;
 
     private final PermissionBroker permissionBroker;
-
-    private final static double KM_PER_DEGREE = 111.045;
+    private final NearbyLocationIndex nearbyLocationIndex;
 
     private final ConfigRepository configRepository;
 
@@ -108,7 +110,8 @@ public class LiveWireAlertBrokerImpl implements LiveWireAlertBroker {
                                    ApplicationEventPublisher applicationEventPublisher,
                                    LogsAndNotificationsBroker logsAndNotificationsBroker,
                                    PermissionBroker permissionBroker,
-                                   ConfigRepository configRepository) {
+                                   ConfigRepository configRepository,
+                                   NearbyLocationIndex nearbyLocationIndex) {
         this.alertRepository = alertRepository;
         this.userRepository = userRepository;
         this.groupRepository = groupRepository;
@@ -119,6 +122,7 @@ public class LiveWireAlertBrokerImpl implements LiveWireAlertBroker {
         this.logsAndNotificationsBroker = logsAndNotificationsBroker;
         this.permissionBroker = permissionBroker;
         this.configRepository = configRepository;
+        this.nearbyLocationIndex = nearbyLocationIndex;
     }
 
     @Autowired
@@ -638,11 +642,10 @@ public class LiveWireAlertBrokerImpl implements LiveWireAlertBroker {
                 log);
     }
 
+    @Transactional(readOnly = true)
     public List<LiveWireAlert> fetchAlertsNearUser(String userUid, GeoLocation location,
                                                    int radius, GeographicSearchType searchType) {
 
-        User user = userRepository.findOneByUid(userUid);
-
         if(location == null || !location.isValid()){
             throw new InvalidParameterException("Invalid GeoLocation object.");
         }
@@ -651,44 +654,17 @@ public class LiveWireAlertBrokerImpl implements LiveWireAlertBroker {
             throw new InvalidParameterException("Invalid Radius,should be positive");
         }
 
-        String mineFilter = searchType.equals(GeographicSearchType.PUBLIC) ? " AND l.creatingUser <>:user "
-                : searchType.equals(GeographicSearchType.PRIVATE) ? " AND l.creatingUser = :user " : "";
-
-        log.info("searchType = {}, on whether mine? = {}", searchType, mineFilter);
-
         Instant lastWeekTime = getLastWeekTime();
+        Set<String> alertUids = nearbyLocationIndex.findWithin(JpaEntityType.LIVEWIRE, location, radius).stream()
+                .filter(entry -> entry.getTime().isAfter(lastWeekTime))
+                .filter(entry -> searchType.equals(GeographicSearchType.BOTH) ||
+                        searchType.equals(GeographicSearchType.PRIVATE) == entry.getOwnerUid().equals(userUid))
+                .map(IndexedLocation::getUid)
+                .collect(Collectors.toSet());
 
-        String query = "SELECT l FROM LiveWireAlert l" +
-                " WHERE l.sent = true " +
-                " AND creationTime > :lastWeekTime" +
-                mineFilter +
-                " AND l.location.latitude " +
-                "      BETWEEN :latpoint  - (:radius / :distance_unit) " +
-                "          AND :latpoint  + (:radius / :distance_unit) " +
-                "  AND l.location.longitude " +
-                "      BETWEEN :longpoint - (:radius / (:distance_unit * COS(RADIANS(:latpoint)))) " +
-                "          AND :longpoint + (:radius / (:distance_unit * COS(RADIANS(:latpoint)))) " +
-                "  AND :radius >= (:distance_unit " +
-                "           * DEGREES(ACOS(COS(RADIANS(:latpoint)) " +
-                "           * COS(RADIANS(l.location.latitude)) " +
-                "           * COS(RADIANS(:longpoint - l.location.longitude)) " +
-                "           + SIN(RADIANS(:latpoint)) " +
-                "           * SIN(RADIANS(l.location.latitude))))) ";
-
-        log.debug("livewire alert location search = {}", query);
-
-        TypedQuery<LiveWireAlert> typedQuery = entityManager.createQuery(query,LiveWireAlert.class)
-                .setParameter("radius", (double)radius)
-                .setParameter("distance_unit", KM_PER_DEGREE)
-                .setParameter("latpoint",location.getLatitude())
-                .setParameter("longpoint",location.getLongitude())
-                .setParameter("lastWeekTime",lastWeekTime);
-
-        if (!searchType.equals(GeographicSearchType.BOTH)) {
-            typedQuery = typedQuery.setParameter("user",user);
-        }
+        log.info("searchType = {}, alerts nearby = {}", searchType, alertUids.size());
 
-        return typedQuery.getResultList();
+        return alertUids.isEmpty() ? new ArrayList<>() : alertRepository.findByUidIn(alertUids);
     }
 
     @Override
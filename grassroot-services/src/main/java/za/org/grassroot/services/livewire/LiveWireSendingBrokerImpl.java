@@ -21,6 +21,8 @@ import za.org.grassroot.core.repository.DataSubscriberRepository;
 import za.org.grassroot.core.repository.LiveWireAlertRepository;
 import za.org.grassroot.core.util.PhoneNumberUtil;
 import za.org.grassroot.integration.messaging.MessagingServiceBroker;
+import za.org.grassroot.services.geo.IndexedLocation;
+import za.org.grassroot.services.geo.NearbyLocationIndex;
 
 import java.io.UnsupportedEncodingException;
 import java.net.URLEncoder;
@@ -50,6 +52,7 @@ public class LiveWireSendingBrokerImpl implements LiveWireSendingBroker {
 
     private final MessagingServiceBroker messagingServiceBroker;
     private final MessageSourceAccessor messageSource;
+    private final NearbyLocationIndex nearbyLocationIndex;
 
     private TemplateEngine templateEngine;
 
@@ -57,11 +60,13 @@ public class LiveWireSendingBrokerImpl implements LiveWireSendingBroker {
     public LiveWireSendingBrokerImpl(LiveWireAlertRepository alertRepository,
                                      DataSubscriberRepository subscriberRepository,
                                      MessagingServiceBroker messagingServiceBroker,
-                                     @Qualifier("servicesMessageSourceAccessor") MessageSourceAccessor messageSource) {
+                                     @Qualifier("servicesMessageSourceAccessor") MessageSourceAccessor messageSource,
+                                     NearbyLocationIndex nearbyLocationIndex) {
         this.alertRepository = alertRepository;
         this.subscriberRepository = subscriberRepository;
         this.messagingServiceBroker = messagingServiceBroker;
         this.messageSource = messageSource;
+        this.nearbyLocationIndex = nearbyLocationIndex;
     }
 
     @Autowired(required = false)
@@ -87,6 +92,9 @@ public class LiveWireSendingBrokerImpl implements LiveWireSendingBroker {
         List<GrassrootEmail> emails = generateEmailsForAlert(alert, emailAddresses);
         emails.forEach(messagingServiceBroker::sendEmail);
         alert.setSent(true);
+        if (alert.hasLocation()) {
+            nearbyLocationIndex.putAfterCommit(Collections.singletonList(IndexedLocation.forAlert(alert)));
+        }
 
         logger.info("LiveWire of type {} sent to {} emails! Headline : {}. Setting to sent ...",
                 alert.getDestinationType(), emails.size(), alert.getHeadline());
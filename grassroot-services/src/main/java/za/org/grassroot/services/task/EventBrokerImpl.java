@@ -35,6 +35,7 @@ import za.org.grassroot.core.domain.task.Meeting_;
 import za.org.grassroot.core.domain.task.Vote;
 import za.org.grassroot.core.domain.task.VoteContainer;
 import za.org.grassroot.core.dto.ResponseTotalsDTO;
+import za.org.grassroot.core.dto.task.EventRefDTO;
 import za.org.grassroot.core.enums.DeliveryRoute;
 import za.org.grassroot.core.enums.EventLogType;
 import za.org.grassroot.core.enums.EventRSVPResponse;
@@ -77,6 +78,8 @@ import java.time.Instant;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
 import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
@@ -97,6 +100,9 @@ import static za.org.grassroot.core.util.DateTimeUtil.getSAST;
 @Service @Slf4j
 public class EventBrokerImpl implements EventBroker {
 
+	// logs that count as the user having responded, as in EventLogSpecifications.isResponseToAnEvent
+	private static final List<EventLogType> RESPONSE_LOG_TYPES = Arrays.asList(EventLogType.RSVP, EventLogType.VOTE_OPTION_RESPONSE);
+
 	@Value("${grassroot.events.limit.enabled:false}")
 	private boolean eventMonthlyLimitActive;
 
@@ -114,6 +120,7 @@ public class EventBrokerImpl implements EventBroker {
 	private final AccountFeaturesBroker accountFeaturesBroker;
 	private final GeoLocationBroker geoLocationBroker;
 	private final TaskImageBroker taskImageBroker;
+	private final VoteTallyStore voteTallyStore;
 
 	private final EntityManager entityManager;
 
@@ -122,7 +129,7 @@ public class EventBrokerImpl implements EventBroker {
 	private GraphBroker graphBroker;
 
 	@Autowired
-	public EventBrokerImpl(MeetingRepository meetingRepository, EventLogBroker eventLogBroker, EventRepository eventRepository, VoteRepository voteRepository, UidIdentifiableRepository uidIdentifiableRepository, UserManagementService userService, AccountFeaturesBroker accountFeaturesBroker, GroupRepository groupRepository, PermissionBroker permissionBroker, LogsAndNotificationsBroker logsAndNotificationsBroker, CacheUtilService cacheUtilService, MessageAssemblingService messageAssemblingService, GeoLocationBroker geoLocationBroker, TaskImageBroker taskImageBroker, EntityManager entityManager) {
+	public EventBrokerImpl(MeetingRepository meetingRepository, EventLogBroker eventLogBroker, EventRepository eventRepository, VoteRepository voteRepository, UidIdentifiableRepository uidIdentifiableRepository, UserManagementService userService, AccountFeaturesBroker accountFeaturesBroker, GroupRepository groupRepository, PermissionBroker permissionBroker, LogsAndNotificationsBroker logsAndNotificationsBroker, CacheUtilService cacheUtilService, MessageAssemblingService messageAssemblingService, GeoLocationBroker geoLocationBroker, TaskImageBroker taskImageBroker, VoteTallyStore voteTallyStore, EntityManager entityManager) {
 		this.meetingRepository = meetingRepository;
 		this.eventLogBroker = eventLogBroker;
 		this.eventRepository = eventRepository;
@@ -137,6 +144,7 @@ public class EventBrokerImpl implements EventBroker {
 		this.messageAssemblingService = messageAssemblingService;
 		this.geoLocationBroker = geoLocationBroker;
 		this.taskImageBroker = taskImageBroker;
+		this.voteTallyStore = voteTallyStore;
 		this.entityManager = entityManager;
 	}
 
@@ -556,6 +564,7 @@ public class EventBrokerImpl implements EventBroker {
 		}
 
 		voteRepository.save(vote);
+		voteTallyStore.initialise(vote);
 
 		if (!StringUtils.isEmpty(helper.getTaskImageKey())) {
 			taskImageBroker.recordImageForTask(helper.getUserUid(), vote.getUid(), TaskType.VOTE,
@@ -854,19 +863,25 @@ public class EventBrokerImpl implements EventBroker {
     @Transactional(readOnly = true)
 	public List<Event> getEventsNeedingResponseFromUser(User user) {
 	    long startTime = System.currentTimeMillis();
-		List<Event> cachedRsvps = cacheUtilService.getOutstandingResponseForUser(user.getUid());
-		if (cachedRsvps != null) {
-			return cachedRsvps;
-		}
-
-		Specification<Event> specs = EventSpecifications.upcomingEventsForUser(user);
-		Specification<Event> stripMeetingCreated = (root, query, cb) -> cb.or(cb.notEqual(root.get("type"), EventType.MEETING),
-				cb.notEqual(root.get("createdByUser"), user));
-		List<Event> events = eventRepository
-                .findAll(specs.and(stripMeetingCreated), new Sort(Sort.Direction.ASC, "createdDateTime")).stream()
-				.filter(e -> !eventLogBroker.hasUserRespondedToEvent(e, user))
-				.distinct().collect(Collectors.toList());
-		cacheUtilService.putOutstandingResponseForUser(user.getUid(), events);
+		List<EventRefDTO> outstanding = cacheUtilService.getOutstandingResponseForUser(user.getUid());
+		if (outstanding == null) {
+			outstanding = eventRepository.findUpcomingEventsWithoutResponse(user, Instant.now(), EventType.MEETING,
+					RESPONSE_LOG_TYPES).stream().distinct().collect(Collectors.toList());
+			cacheUtilService.putOutstandingResponseForUser(user.getUid(), outstanding);
+		}
+
+		if (outstanding.isEmpty()) {
+			return new ArrayList<>();
+		}
+
+		// the cached list may be older than a cancellation, or than the start of one of the events, so check those
+		Map<String, Event> eventsByUid = eventRepository.findByUidIn(outstanding.stream()
+				.map(EventRefDTO::getEventUid).collect(Collectors.toSet())).stream()
+				.collect(Collectors.toMap(Event::getUid, Function.identity()));
+		Instant now = Instant.now();
+		List<Event> events = outstanding.stream().map(ref -> eventsByUid.get(ref.getEventUid()))
+				.filter(e -> e != null && !e.isCanceled() && e.getEventStartDateTime().isAfter(now))
+				.collect(Collectors.toList());
         log.info("time to check for responses: {} msecs", System.currentTimeMillis() - startTime);
 		return events;
 	}
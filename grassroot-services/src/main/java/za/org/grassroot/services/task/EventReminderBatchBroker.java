@@ -0,0 +1,27 @@
+package za.org.grassroot.services.task;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Generates the scheduled notifications for events (reminders, meeting thank-yous and response totals) a batch at a
+ * time. Each batch runs in its own transaction, and fetches the members and responses for all its events together, so
+ * the cost of a run grows with the number of batches rather than the number of events.
+ */
+public interface EventReminderBatchBroker {
+
+    List<Long> fetchEventIdsDueForReminder(Instant referenceTime, boolean includeUnpaidGroups);
+
+    List<Long> fetchMeetingIdsForThankYou(Instant startTimeAfter, Instant startTimeBefore, boolean includeUnpaidGroups);
+
+    List<Long> fetchMeetingIdsForResponseTotals(Instant startTimeAfter, Instant createdIntervalStart, Instant createdIntervalEnd);
+
+    // each of the below returns the number of notifications generated for the batch
+
+    int sendRemindersForBatch(List<Long> eventIds);
+
+    int sendThankYousForBatch(List<Long> meetingIds);
+
+    int sendResponseTotalsForBatch(List<Long> meetingIds);
+
+}
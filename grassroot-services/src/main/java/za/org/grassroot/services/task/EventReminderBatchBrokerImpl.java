@@ -0,0 +1,269 @@
+package za.org.grassroot.services.task;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import za.org.grassroot.core.domain.Notification;
+import za.org.grassroot.core.domain.User;
+import za.org.grassroot.core.domain.UserLog;
+import za.org.grassroot.core.domain.notification.EventNotification;
+import za.org.grassroot.core.domain.notification.EventReminderNotification;
+import za.org.grassroot.core.domain.notification.MeetingRsvpTotalsNotification;
+import za.org.grassroot.core.domain.notification.MeetingThankYouNotification;
+import za.org.grassroot.core.domain.notification.UserLanguageNotification;
+import za.org.grassroot.core.domain.task.Event;
+import za.org.grassroot.core.domain.task.EventLog;
+import za.org.grassroot.core.domain.task.Meeting;
+import za.org.grassroot.core.dto.ResponseTotalsDTO;
+import za.org.grassroot.core.enums.EventRSVPResponse;
+import za.org.grassroot.core.enums.EventType;
+import za.org.grassroot.core.enums.UserInterfaceType;
+import za.org.grassroot.core.enums.UserLogType;
+import za.org.grassroot.core.repository.EventLogRepository;
+import za.org.grassroot.core.repository.EventRepository;
+import za.org.grassroot.core.repository.MeetingRepository;
+import za.org.grassroot.core.repository.MembershipRepository;
+import za.org.grassroot.core.repository.NotificationRepository;
+import za.org.grassroot.services.MessageAssemblingService;
+import za.org.grassroot.services.user.UserManagementService;
+import za.org.grassroot.services.util.LogsAndNotificationsBroker;
+import za.org.grassroot.services.util.LogsAndNotificationsBundle;
+
+import java.time.Instant;
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static za.org.grassroot.core.enums.EventLogType.*;
+
+@Service @Slf4j
+public class EventReminderBatchBrokerImpl implements EventReminderBatchBroker {
+
+    private final EventRepository eventRepository;
+    private final MeetingRepository meetingRepository;
+    private final MembershipRepository membershipRepository;
+    private final EventLogRepository eventLogRepository;
+    private final NotificationRepository notificationRepository;
+
+    private final UserManagementService userService;
+    private final EventLogBroker eventLogBroker;
+    private final MessageAssemblingService messageAssemblingService;
+    private final LogsAndNotificationsBroker logsAndNotificationsBroker;
+
+    @Autowired
+    public EventReminderBatchBrokerImpl(EventRepository eventRepository, MeetingRepository meetingRepository, MembershipRepository membershipRepository,
+                                        EventLogRepository eventLogRepository, NotificationRepository notificationRepository,
+                                        UserManagementService userService, EventLogBroker eventLogBroker,
+                                        MessageAssemblingService messageAssemblingService, LogsAndNotificationsBroker logsAndNotificationsBroker) {
+        this.eventRepository = eventRepository;
+        this.meetingRepository = meetingRepository;
+        this.membershipRepository = membershipRepository;
+        this.eventLogRepository = eventLogRepository;
+        this.notificationRepository = notificationRepository;
+        this.userService = userService;
+        this.eventLogBroker = eventLogBroker;
+        this.messageAssemblingService = messageAssemblingService;
+        this.logsAndNotificationsBroker = logsAndNotificationsBroker;
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<Long> fetchEventIdsDueForReminder(Instant referenceTime, boolean includeUnpaidGroups) {
+        return eventRepository.findEventIdsForReminders(referenceTime, includeUnpaidGroups);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<Long> fetchMeetingIdsForThankYou(Instant startTimeAfter, Instant startTimeBefore, boolean includeUnpaidGroups) {
+        return meetingRepository.findMeetingIdsForThankYous(startTimeAfter, startTimeBefore, includeUnpaidGroups);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<Long> fetchMeetingIdsForResponseTotals(Instant startTimeAfter, Instant createdIntervalStart, Instant createdIntervalEnd) {
+        return meetingRepository.findMeetingIdsForResponseTotals(startTimeAfter, createdIntervalStart, createdIntervalEnd);
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public int sendRemindersForBatch(List<Long> eventIds) {
+        // a user may have cancelled an event, or a prior run sent its reminder, since the ids were fetched
+        List<Event> events = eventRepository.findWithGroupAndCreatorByIdIn(eventIds).stream()
+                .filter(event -> !event.isCanceled() && event.isScheduledReminderActive())
+                .collect(Collectors.toList());
+        if (events.isEmpty()) {
+            return 0;
+        }
+
+        Map<Long, Set<User>> eventMembers = fetchMembersByEvent(events);
+        Map<Long, Set<Long>> excludedMembers = fetchReminderExclusions(events);
+
+        LogsAndNotificationsBundle bundle = new LogsAndNotificationsBundle();
+        Set<User> languageCandidates = new HashSet<>();
+        for (Event event : events) {
+            // the notification picker & handler will handle error failures & resending (its proper concern)
+            event.setNoRemindersSent(event.getNoRemindersSent() + 1);
+            event.setScheduledReminderActive(false);
+
+            // we set null for user here, because initiator is the app itself!
+            EventLog eventLog = new EventLog(null, event, REMINDER);
+            Set<User> members = eventMembers.getOrDefault(event.getId(), Collections.emptySet());
+            Set<Long> excluded = excludedMembers.getOrDefault(event.getId(), Collections.emptySet());
+            Set<Notification> notifications = members.stream().filter(member -> !excluded.contains(member.getId()))
+                    .map(member -> new EventReminderNotification(member,
+                            messageAssemblingService.createScheduledEventReminderMessage(member, event), eventLog))
+                    .collect(Collectors.toSet());
+
+            // we only want to include event log if there are some notifications
+            if (!notifications.isEmpty()) {
+                bundle.addLog(eventLog);
+                bundle.addNotifications(notifications);
+            }
+
+            // for meeting calls, send out RSVPs to date to meeting's creator
+            if (event.getEventType().equals(EventType.MEETING) && event.isRsvpRequired()) {
+                bundle.addBundle(constructResponseTotalsBundle((Meeting) event));
+            }
+
+            languageCandidates.addAll(members);
+        }
+
+        addLanguageNotifications(languageCandidates, bundle);
+        logsAndNotificationsBroker.storeBundle(bundle);
+        log.info("Sent reminders for {} events, with {} notifications", events.size(), bundle.getNotifications().size());
+        return bundle.getNotifications().size();
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public int sendThankYousForBatch(List<Long> meetingIds) {
+        List<Meeting> meetings = eventRepository.findWithGroupAndCreatorByIdIn(meetingIds).stream()
+                .filter(event -> event instanceof Meeting && !event.isCanceled() && event.isRsvpRequired())
+                .map(event -> (Meeting) event).collect(Collectors.toList());
+        if (meetings.isEmpty()) {
+            return 0;
+        }
+
+        List<Long> ids = meetings.stream().map(Meeting::getId).collect(Collectors.toList());
+        Map<Long, Set<User>> yesResponders = new HashMap<>();
+        eventLogRepository.findResponsesByEventIds(ids).stream()
+                .filter(row -> EventRSVPResponse.YES.equals(row[2]))
+                .forEach(row -> yesResponders.computeIfAbsent((Long) row[0], id -> new HashSet<>()).add((User) row[1]));
+        Map<Long, Set<Long>> alreadyThanked = fetchNotifiedUserIds(ids, MeetingThankYouNotification.class);
+
+        LogsAndNotificationsBundle bundle = new LogsAndNotificationsBundle();
+        Set<User> languageCandidates = new HashSet<>();
+        for (Meeting meeting : meetings) {
+            EventLog eventLog = new EventLog(null, meeting, THANK_YOU_MESSAGE);
+            Set<User> responders = yesResponders.getOrDefault(meeting.getId(), Collections.emptySet());
+            Set<Long> thanked = alreadyThanked.getOrDefault(meeting.getId(), Collections.emptySet());
+            Set<Notification> notifications = responders.stream().filter(member -> !thanked.contains(member.getId()))
+                    .map(member -> new MeetingThankYouNotification(member,
+                            messageAssemblingService.createMeetingThankYourMessage(member, meeting), eventLog))
+                    .collect(Collectors.toSet());
+
+            // we only want to include log if there are some notifications
+            if (!notifications.isEmpty()) {
+                bundle.addLog(eventLog);
+                bundle.addNotifications(notifications);
+            }
+            languageCandidates.addAll(responders);
+        }
+
+        addLanguageNotifications(languageCandidates, bundle);
+        logsAndNotificationsBroker.storeBundle(bundle);
+        return bundle.getNotifications().size();
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public int sendResponseTotalsForBatch(List<Long> meetingIds) {
+        LogsAndNotificationsBundle bundle = new LogsAndNotificationsBundle();
+        eventRepository.findWithGroupAndCreatorByIdIn(meetingIds).stream()
+                .filter(event -> event instanceof Meeting && !event.isCanceled() && event.isRsvpRequired())
+                .forEach(event -> bundle.addBundle(constructResponseTotalsBundle((Meeting) event)));
+        logsAndNotificationsBroker.storeBundle(bundle);
+        return bundle.getNotifications().size();
+    }
+
+    // one query for the members of all the events assigned to whole groups, and one for the rest
+    private Map<Long, Set<User>> fetchMembersByEvent(List<Event> events) {
+        Map<Long, Set<User>> eventMembers = new HashMap<>();
+
+        Set<Long> groupIds = events.stream().filter(e -> !e.isIncludeSubGroups() && e.isAllGroupMembersAssigned())
+                .map(e -> e.getAncestorGroup().getId()).collect(Collectors.toSet());
+        Map<Long, Set<User>> groupMembers = new HashMap<>();
+        if (!groupIds.isEmpty()) {
+            membershipRepository.findMembersByGroupIds(groupIds)
+                    .forEach(row -> groupMembers.computeIfAbsent((Long) row[0], id -> new HashSet<>()).add((User) row[1]));
+        }
+
+        List<Long> assignedEventIds = events.stream().filter(e -> !e.isIncludeSubGroups() && !e.isAllGroupMembersAssigned())
+                .map(Event::getId).collect(Collectors.toList());
+        if (!assignedEventIds.isEmpty()) {
+            eventRepository.findAssignedMembersByEventIds(assignedEventIds)
+                    .forEach(row -> eventMembers.computeIfAbsent((Long) row[0], id -> new HashSet<>()).add((User) row[1]));
+        }
+
+        for (Event<?> event : events) {
+            if (event.isIncludeSubGroups()) {
+                // rare enough, and recursive, so not worth batching
+                eventMembers.put(event.getId(), new HashSet<>(event.getAllMembers()));
+            } else if (event.isAllGroupMembersAssigned()) {
+                eventMembers.put(event.getId(), groupMembers.getOrDefault(event.getAncestorGroup().getId(), Collections.emptySet()));
+            }
+        }
+        return eventMembers;
+    }
+
+    // as in sending a single reminder: members who have voted, or declined a meeting, or already been reminded
+    private Map<Long, Set<Long>> fetchReminderExclusions(List<Event> events) {
+        List<Long> ids = events.stream().map(Event::getId).collect(Collectors.toList());
+        Set<Long> voteIds = events.stream().filter(e -> EventType.VOTE.equals(e.getEventType())).map(Event::getId).collect(Collectors.toSet());
+
+        Map<Long, Set<Long>> excluded = fetchNotifiedUserIds(ids, EventReminderNotification.class);
+        eventLogRepository.findResponsesByEventIds(ids).stream()
+                .filter(row -> voteIds.contains((Long) row[0]) || EventRSVPResponse.NO.equals(row[2]))
+                .forEach(row -> excluded.computeIfAbsent((Long) row[0], id -> new HashSet<>()).add(((User) row[1]).getId()));
+        return excluded;
+    }
+
+    private Map<Long, Set<Long>> fetchNotifiedUserIds(List<Long> eventIds, Class<? extends EventNotification> notificationClass) {
+        Map<Long, Set<Long>> notified = new HashMap<>();
+        notificationRepository.findTargetIdsByEventIdsAndType(eventIds, notificationClass)
+                .forEach(row -> notified.computeIfAbsent((Long) row[0], id -> new HashSet<>()).add((Long) row[1]));
+        return notified;
+    }
+
+    private LogsAndNotificationsBundle constructResponseTotalsBundle(Meeting meeting) {
+        LogsAndNotificationsBundle bundle = new LogsAndNotificationsBundle();
+
+        EventLog eventLog = new EventLog(null, meeting, RSVP_TOTAL_MESSAGE);
+        bundle.addLog(eventLog);
+
+        ResponseTotalsDTO responseTotalsDTO = eventLogBroker.getResponseCountForEvent(meeting);
+
+        User destination = meeting.getCreatedByUser();
+        String message = messageAssemblingService.createMeetingRsvpTotalMessage(destination, meeting, responseTotalsDTO);
+        bundle.addNotification(new MeetingRsvpTotalsNotification(destination, message, eventLog));
+
+        return bundle;
+    }
+
+    private void addLanguageNotifications(Collection<User> users, LogsAndNotificationsBundle bundle) {
+        Set<User> usersToNotify = userService.findUsersToSendLanguageText(users);
+        if (usersToNotify.isEmpty()) {
+            return;
+        }
+
+        final String languageMessage = messageAssemblingService.createMultiLanguageMessage();
+        log.info("Notifying {} users about multiple languages ...", usersToNotify.size());
+        usersToNotify.forEach(user -> {
+            UserLog userLog = new UserLog(user.getUid(), UserLogType.NOTIFIED_LANGUAGES, null, UserInterfaceType.SYSTEM);
+            bundle.addLog(userLog);
+            bundle.addNotification(new UserLanguageNotification(user, languageMessage, userLog));
+        });
+    }
+
+}
@@ -0,0 +1,20 @@
+package za.org.grassroot.services.task;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Runs the scheduled reminder jobs, splitting the due events into batches and handing those to a bounded pool of
+ * workers, and keeps the stats of the most recent run of each job
+ */
+public interface EventReminderBroker {
+
+    ReminderRunStats sendEventReminders(Instant referenceTime, boolean includeUnpaidGroups);
+
+    ReminderRunStats sendMeetingThankYous(Instant startTimeAfter, Instant startTimeBefore, boolean includeUnpaidGroups);
+
+    ReminderRunStats sendMeetingResponseTotals(Instant startTimeAfter, Instant createdIntervalStart, Instant createdIntervalEnd);
+
+    List<ReminderRunStats> fetchLatestRuns();
+
+}
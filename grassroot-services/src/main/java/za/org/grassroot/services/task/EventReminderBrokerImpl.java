@@ -0,0 +1,102 @@
+package za.org.grassroot.services.task;
+
+import com.google.common.base.Stopwatch;
+import com.google.common.collect.Lists;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+import za.org.grassroot.core.util.AsyncExecutors;
+import za.org.grassroot.services.task.enums.ReminderRunType;
+import za.org.grassroot.services.util.BatchRetry;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+@Service @Slf4j
+public class EventReminderBrokerImpl implements EventReminderBroker {
+
+    @Value("${grassroot.reminders.batch.size:50}")
+    private int batchSize;
+
+    private final EventReminderBatchBroker batchBroker;
+    private final ThreadPoolTaskExecutor reminderExecutor;
+
+    private final Map<ReminderRunType, ReminderRunStats> latestRuns = new ConcurrentHashMap<>();
+
+    public EventReminderBrokerImpl(EventReminderBatchBroker batchBroker,
+                                   @Qualifier(AsyncExecutors.REMINDERS) ThreadPoolTaskExecutor reminderExecutor) {
+        this.batchBroker = batchBroker;
+        this.reminderExecutor = reminderExecutor;
+    }
+
+    @Override
+    public ReminderRunStats sendEventReminders(Instant referenceTime, boolean includeUnpaidGroups) {
+        return dispatch(ReminderRunType.EVENT_REMINDERS, batchBroker.fetchEventIdsDueForReminder(referenceTime, includeUnpaidGroups),
+                batchBroker::sendRemindersForBatch);
+    }
+
+    @Override
+    public ReminderRunStats sendMeetingThankYous(Instant startTimeAfter, Instant startTimeBefore, boolean includeUnpaidGroups) {
+        return dispatch(ReminderRunType.MEETING_THANK_YOUS, batchBroker.fetchMeetingIdsForThankYou(startTimeAfter, startTimeBefore, includeUnpaidGroups),
+                batchBroker::sendThankYousForBatch);
+    }
+
+    @Override
+    public ReminderRunStats sendMeetingResponseTotals(Instant startTimeAfter, Instant createdIntervalStart, Instant createdIntervalEnd) {
+        return dispatch(ReminderRunType.MEETING_RESPONSE_TOTALS, batchBroker.fetchMeetingIdsForResponseTotals(startTimeAfter, createdIntervalStart, createdIntervalEnd),
+                batchBroker::sendResponseTotalsForBatch);
+    }
+
+    @Override
+    public List<ReminderRunStats> fetchLatestRuns() {
+        return new ArrayList<>(latestRuns.values());
+    }
+
+    private ReminderRunStats dispatch(ReminderRunType runType, List<Long> eventIds, Function<List<Long>, Integer> batchSender) {
+        final Instant startTime = Instant.now();
+        final Stopwatch stopwatch = Stopwatch.createStarted();
+        final AtomicInteger eventsFailed = new AtomicInteger();
+
+        List<List<Long>> batches = Lists.partition(eventIds, batchSize);
+        List<Future<Integer>> results = batches.stream()
+                .map(batch -> reminderExecutor.submit(() -> sendBatch(runType, new ArrayList<>(batch), batchSender, eventsFailed)))
+                .collect(Collectors.toList());
+
+        long notificationsGenerated = 0;
+        for (Future<Integer> result : results) {
+            try {
+                notificationsGenerated += result.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                log.error("Interrupted while waiting for {} batches", runType);
+            } catch (ExecutionException e) {
+                log.error("Error in {} batch: {}", runType, e.getMessage());
+            }
+        }
+
+        ReminderRunStats stats = new ReminderRunStats(runType, startTime, eventIds.size(), batches.size(), eventsFailed.get(),
+                notificationsGenerated, stopwatch.elapsed(TimeUnit.MILLISECONDS));
+        latestRuns.put(runType, stats);
+        log.info("Completed {} run: {} events in {} batches, {} failed, {} notifications, took {} msecs", runType,
+                stats.getEventsSelected(), stats.getBatches(), stats.getEventsFailed(), stats.getNotificationsGenerated(), stats.getWallTimeMillis());
+        return stats;
+    }
+
+    private int sendBatch(ReminderRunType runType, List<Long> batch, Function<List<Long>, Integer> batchSender, AtomicInteger eventsFailed) {
+        BatchRetry.Outcome<Long> outcome = BatchRetry.apply(runType + " events", batch, batchSender::apply);
+        eventsFailed.addAndGet(outcome.getFailed().size());
+        return outcome.getResult();
+    }
+
+}
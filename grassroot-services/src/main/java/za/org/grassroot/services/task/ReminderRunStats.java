@@ -0,0 +1,20 @@
+package za.org.grassroot.services.task;
+
+import lombok.Value;
+import za.org.grassroot.services.task.enums.ReminderRunType;
+
+import java.time.Instant;
+
+// summary of one run of a scheduled reminder job, kept so admins can see how long the jobs are taking
+@Value
+public class ReminderRunStats {
+
+    ReminderRunType runType;
+    Instant startTime;
+    int eventsSelected;
+    int batches;
+    int eventsFailed;
+    long notificationsGenerated;
+    long wallTimeMillis;
+
+}
@@ -6,6 +6,7 @@ import za.org.grassroot.core.domain.task.TaskLog;
 import za.org.grassroot.core.enums.EventLogType;
 import za.org.grassroot.core.enums.TaskType;
 import za.org.grassroot.core.enums.TodoLogType;
+import za.org.grassroot.integration.storage.StoredImage;
 
 import java.util.Collection;
 import java.util.List;
@@ -44,9 +45,9 @@ public interface TaskImageBroker {
 
     long countImagesForTask(String userUid, String taskUid, TaskType taskType);
 
-    byte[] fetchImageForTask(String userUid, TaskType taskType, String logUid, boolean checkAnalyzed);
+    StoredImage fetchImageForTask(String userUid, TaskType taskType, String logUid, boolean checkAnalyzed);
 
-    byte[] fetchMicroThumbnailForTask(String userUid, TaskType taskType, String logUid);
+    StoredImage fetchMicroThumbnailForTask(String userUid, TaskType taskType, String logUid);
 
     String removeTaskImageRecord(String userUid, TaskType taskType, String logUid, boolean removeFromStorage);
 
@@ -1,6 +1,8 @@
 package za.org.grassroot.services.task;
 
 import com.google.common.base.Stopwatch;
+import com.google.common.collect.Lists;
+import org.hibernate.Hibernate;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -11,6 +13,7 @@ import org.springframework.data.jpa.domain.Specification;
 import org.springframework.security.access.AccessDeniedException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.interceptor.TransactionAspectSupport;
 import org.springframework.util.CollectionUtils;
 import org.springframework.util.StringUtils;
 import org.thymeleaf.util.MapUtils;
@@ -26,7 +29,10 @@ import za.org.grassroot.core.enums.EventRSVPResponse;
 import za.org.grassroot.core.enums.UserInterfaceType;
 import za.org.grassroot.core.enums.UserLogType;
 import za.org.grassroot.core.repository.EventLogRepository;
+import za.org.grassroot.core.repository.EventRepository;
 import za.org.grassroot.core.repository.MembershipRepository;
+import za.org.grassroot.core.repository.NotificationRepository;
+import za.org.grassroot.core.repository.UserRepository;
 import za.org.grassroot.core.repository.VoteRepository;
 import za.org.grassroot.core.specifications.EventSpecifications;
 import za.org.grassroot.core.util.StringArrayUtil;
@@ -34,14 +40,16 @@ import za.org.grassroot.services.MessageAssemblingService;
 import za.org.grassroot.services.exception.EventStartTimeNotInFutureException;
 import za.org.grassroot.services.exception.TaskFinishedException;
 import za.org.grassroot.services.user.UserManagementService;
+import za.org.grassroot.services.util.CacheUtilService;
 import za.org.grassroot.services.util.LogsAndNotificationsBroker;
 import za.org.grassroot.services.util.LogsAndNotificationsBundle;
 
+import javax.persistence.EntityManager;
 import java.time.Instant;
 import java.time.LocalDateTime;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
@@ -50,6 +58,7 @@ import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
 import static za.org.grassroot.core.enums.EventLogType.CHANGE;
 import static za.org.grassroot.core.specifications.EventLogSpecifications.*;
@@ -67,12 +76,15 @@ public class VoteBrokerImpl implements VoteBroker {
     @Value("${grassroot.vote.option.maxlength:20}")
     private int MAX_OPTION_LENGTH;
 
+    @Value("${grassroot.vote.results.batch.size:500}")
+    private int resultsBatchSize;
+
     private static final Sort SORT_DIRECTION = Sort.by(Sort.Direction.ASC, "eventStartDateTime");
 
     private static final String YES = "YES";
     private static final String NO = "NO";
     private static final String ABSTAIN = "ABSTAIN";
-    private static final List<String> optionsForYesNoVote = Arrays.asList(YES, NO, ABSTAIN);
+    static final List<String> optionsForYesNoVote = Arrays.asList(YES, NO, ABSTAIN);
 
     private final UserManagementService userService;
     private final VoteRepository voteRepository;
@@ -80,15 +92,27 @@ public class VoteBrokerImpl implements VoteBroker {
     private final MembershipRepository membershipRepository;
     private final MessageAssemblingService messageService;
     private final LogsAndNotificationsBroker logsAndNotificationsBroker;
+    private final CacheUtilService cacheUtilService;
+    private final VoteTallyStore voteTallyStore;
+    private final UserRepository userRepository;
+    private final EventRepository eventRepository;
+    private final NotificationRepository notificationRepository;
+    private final EntityManager entityManager;
 
     @Autowired
-    public VoteBrokerImpl(UserManagementService userService, VoteRepository voteRepository, EventLogRepository eventLogRepository, MembershipRepository membershipRepository, MessageAssemblingService messageService, LogsAndNotificationsBroker logsAndNotificationsBroker) {
+    public VoteBrokerImpl(UserManagementService userService, VoteRepository voteRepository, EventLogRepository eventLogRepository, MembershipRepository membershipRepository, MessageAssemblingService messageService, LogsAndNotificationsBroker logsAndNotificationsBroker, CacheUtilService cacheUtilService, VoteTallyStore voteTallyStore, UserRepository userRepository, EventRepository eventRepository, NotificationRepository notificationRepository, EntityManager entityManager) {
         this.userService = userService;
         this.voteRepository = voteRepository;
         this.eventLogRepository = eventLogRepository;
         this.membershipRepository = membershipRepository;
         this.messageService = messageService;
         this.logsAndNotificationsBroker = logsAndNotificationsBroker;
+        this.cacheUtilService = cacheUtilService;
+        this.voteTallyStore = voteTallyStore;
+        this.userRepository = userRepository;
+        this.eventRepository = eventRepository;
+        this.notificationRepository = notificationRepository;
+        this.entityManager = entityManager;
     }
 
     @Override
@@ -168,10 +192,14 @@ public class VoteBrokerImpl implements VoteBroker {
             throw new IllegalArgumentException("Error! Non existent vote option passed to us");
 
         if (priorResponse == null) {
-            // user has not voted before, so adding a new one
+            // user has not voted before, so adding a new one, and the vote is no longer outstanding for them
             eventLogRepository.save(new EventLog(user, vote, EventLogType.VOTE_OPTION_RESPONSE, storedOption.get()));
+            cacheUtilService.clearRsvpCacheForUser(user.getUid());
+            voteTallyStore.recordResponse(vote, user, null, storedOption.get());
         } else {
-            priorResponse.setTag(voteOption);
+            final String priorOption = priorResponse.getTag();
+            priorResponse.setTag(storedOption.get());
+            voteTallyStore.recordResponse(vote, user, priorOption, storedOption.get());
         }
     }
 
@@ -191,37 +219,66 @@ public class VoteBrokerImpl implements VoteBroker {
             Map<String, Long> voteResults = StringArrayUtil.isAllEmptyOrNull(vote.getVoteOptions()) ?
                     calculateYesNoResults(vote) : calculateMultiOptionResults(vote, vote.getVoteOptions());
 
-            LogsAndNotificationsBundle bundle = new LogsAndNotificationsBundle();
-            EventLog eventLog = new EventLog(null, vote, EventLogType.RESULT);
-            Set<User> voteResultsNotificationSentMembers = new HashSet<>(
-                    userService.findUsersNotifiedAboutEvent(vote, VoteResultsNotification.class));
+            List<Long> recipientIds = fetchResultRecipientIds(vote);
+            if (recipientIds.isEmpty()) {
+                logger.info("No members left to send results of vote {} to", vote.getUid());
+                return;
+            }
+
+            // the vote is detached after the first batch is cleared, so its group is loaded now for later messages
+            Hibernate.initialize(vote.getAncestorGroup());
 
-            // in case we need it
+            // the results, and so the message, only differ by the recipient's language, so each is rendered once
+            final EventLog eventLog = new EventLog(null, vote, EventLogType.RESULT);
+            final Map<Locale, String> messagesByLocale = new HashMap<>();
             final String languageMessage = messageService.createMultiLanguageMessage();
 
-            vote.getAllMembers().stream()
-                    .filter(u -> !voteResultsNotificationSentMembers.contains(u))
-                    .peek(u -> {
-                        String msg = messageService.createMultiOptionVoteResultsMessage(u, vote, voteResults);
-                        bundle.addNotification(new VoteResultsNotification(u, msg, eventLog));
-                    })
-                    .filter(userService::shouldSendLanguageText)
-                    .forEach(u -> {
-                        logger.info("Along with vote results, notifying a user about multiple languages ...");
-                        UserLog userLog = new UserLog(u.getUid(), UserLogType.NOTIFIED_LANGUAGES, null, UserInterfaceType.SYSTEM);
-                        bundle.addLog(userLog);
-                        bundle.addNotification(new UserLanguageNotification(u, languageMessage, userLog));
-                    });
-
-            if (!bundle.getNotifications().isEmpty()) {
-                bundle.addLog(eventLog);
+            int sent = 0;
+            for (List<Long> batch : Lists.partition(recipientIds, resultsBatchSize)) {
+                LogsAndNotificationsBundle bundle = new LogsAndNotificationsBundle();
+                if (sent == 0) {
+                    bundle.addLog(eventLog);
+                }
+
+                List<User> users = userRepository.findAllById(batch);
+                users.forEach(u -> bundle.addNotification(new VoteResultsNotification(u, messagesByLocale.computeIfAbsent(u.getLocale(),
+                        locale -> messageService.createMultiOptionVoteResultsMessage(u, vote, voteResults)), eventLog)));
+
+                userService.findUsersToSendLanguageText(users).forEach(u -> {
+                    UserLog userLog = new UserLog(u.getUid(), UserLogType.NOTIFIED_LANGUAGES, null, UserInterfaceType.SYSTEM);
+                    bundle.addLog(userLog);
+                    bundle.addNotification(new UserLanguageNotification(u, languageMessage, userLog));
+                });
+
+                logsAndNotificationsBroker.storeBundle(bundle);
+                // sends this batch's inserts, and stops the persistence context growing with every recipient
+                entityManager.flush();
+                entityManager.clear();
+                sent += users.size();
             }
-
-            logsAndNotificationsBroker.storeBundle(bundle);
+            logger.info("Sent results of vote {} to {} members, in {} languages", vote.getUid(), sent, messagesByLocale.size());
         } catch (Exception e) {
             // just adding this since method is called in a stream / lambda so need to make sure
-            // no exception interrupts it (else will spill over)
+            // no exception interrupts it (else will spill over); the batches already flushed are rolled back with the
+            // result log, so the vote is picked up whole on the next run rather than marked as sent
             logger.error("Error while sending vote results for vote " + vote + ": " + e.getMessage(), e);
+            TransactionAspectSupport.currentTransactionStatus().setRollbackOnly();
+        }
+    }
+
+    // the members not yet sent the results, with the check against sent notifications done in the query
+    private List<Long> fetchResultRecipientIds(Vote vote) {
+        if (vote.isIncludeSubGroups()) {
+            // rare enough, and recursive, so not worth a query of its own
+            Set<Long> notifiedIds = notificationRepository.findTargetIdsByEventIdsAndType(
+                    Collections.singletonList(vote.getId()), VoteResultsNotification.class)
+                    .stream().map(row -> (Long) row[1]).collect(Collectors.toSet());
+            return vote.getAllMembers().stream().map(User::getId).filter(id -> !notifiedIds.contains(id))
+                    .sorted().collect(Collectors.toList());
+        } else if (vote.isAllGroupMembersAssigned()) {
+            return membershipRepository.findUserIdsByGroupNotNotifiedAboutEvent(vote.getAncestorGroup(), vote, VoteResultsNotification.class);
+        } else {
+            return eventRepository.findAssignedMemberIdsNotNotifiedAboutEvent(vote, VoteResultsNotification.class);
         }
     }
 
@@ -351,22 +408,21 @@ public class VoteBrokerImpl implements VoteBroker {
     }
 
     private Map<String, Long> calculateMultiOptionResults(Vote vote, List<String> options) {
+        return multiOptionResults(voteTallyStore.fetchCounts(vote), options);
+    }
+
+    private Map<String, Long> multiOptionResults(Map<String, Long> counts, List<String> options) {
         Map<String, Long> results = new LinkedHashMap<>();
-        long startTime = System.currentTimeMillis();
-//        List<EventLog> eventLogs = eventLogRepository.findAll(Specification.where(isResponseToVote(vote)));
-        options.forEach(o -> results.put(o, eventLogRepository.count(isVoteOptionSelection(vote, o))));
-        logger.info("Result count took {} msecs", System.currentTimeMillis() - startTime);
+        options.forEach(o -> results.put(o, counts.getOrDefault(VoteTallyStore.optionKey(o), 0L)));
         return results;
     }
 
     private Map<String, Long> calculateYesNoResults(Vote vote) {
-        // vote may have been done via old method, so need to do a check, for now, if there are no
+        // vote may have been done via old method, so need to do a check, for now, if it has no
         // option responses (note: if no responses at all, it will still return valid result, since we
         // know at this point that it is a yes/no vote)
-
-        return eventLogRepository.count(Specification.where(ofType(EventLogType.VOTE_OPTION_RESPONSE))) == 0 ?
-                calculateOldVoteResult(vote) :
-                calculateMultiOptionResults(vote, optionsForYesNoVote); // will just return
+        Map<String, Long> counts = voteTallyStore.fetchCounts(vote);
+        return counts.isEmpty() ? calculateOldVoteResult(vote) : multiOptionResults(counts, optionsForYesNoVote);
     }
 
     private Map<String, Long> calculateOldVoteResult(Vote vote) {
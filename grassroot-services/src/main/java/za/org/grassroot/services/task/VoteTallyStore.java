@@ -0,0 +1,163 @@
+package za.org.grassroot.services.task;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import za.org.grassroot.core.domain.User;
+import za.org.grassroot.core.domain.task.Vote;
+import za.org.grassroot.core.domain.task.VoteOptionTally;
+import za.org.grassroot.core.domain.task.VoteOptionTallyKey;
+import za.org.grassroot.core.repository.EventLogRepository;
+import za.org.grassroot.core.repository.VoteOptionTallyRepository;
+import za.org.grassroot.core.repository.VoteRepository;
+import za.org.grassroot.core.util.StringArrayUtil;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Keeps a running count of each vote's responses per option, in vote_option_tally, so that results can be read without
+ * counting the vote's logs, which clients poll for during mass votes. Counts are moved in the same transaction as the
+ * response log is stored or changed. A vote whose tally has not been set up, e.g., one opened before tallies were kept,
+ * is read by counting its logs in one grouped query, and gets its tally built from those logs on its next response.
+ *
+ * Rows are only ever locked in the database's order of (option, stripe), and a vote's rows are never deleted, only reset
+ * by a rebuild, so that responses and rebuilds running together wait on each other rather than deadlock.
+ *
+ * A rebuild also locks the vote's event row FOR UPDATE. On Postgres, inserting a log that refers to the event takes FOR
+ * KEY SHARE on that row, which conflicts with it, so a response flushes its log before it locks any tally row: if the
+ * log were left to be inserted at commit, a responder holding tally rows would wait there on a rebuild that is itself
+ * waiting on those rows. The H2 tests cannot show this, as H2 takes no lock on the referenced row. A vote's rows are
+ * set up when it is created, so rebuilds are left for votes from before tallies and votes whose options change.
+ */
+@Component @Slf4j
+public class VoteTallyStore {
+
+    static final int STRIPES = 8;
+
+    private final VoteOptionTallyRepository tallyRepository;
+    private final EventLogRepository eventLogRepository;
+    private final VoteRepository voteRepository;
+
+    @Autowired
+    public VoteTallyStore(VoteOptionTallyRepository tallyRepository, EventLogRepository eventLogRepository, VoteRepository voteRepository) {
+        this.tallyRepository = tallyRepository;
+        this.eventLogRepository = eventLogRepository;
+        this.voteRepository = voteRepository;
+    }
+
+    /**
+     * Moves the user's response from the prior option, if any, to the new one. Must be called after the response log
+     * has been saved or changed, as a tally that is missing an option is rebuilt from the logs.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recordResponse(Vote vote, User user, String priorOption, String option) {
+        final String newKey = optionKey(Objects.requireNonNull(option));
+        final String priorKey = priorOption == null ? null : optionKey(priorOption);
+        if (newKey.equals(priorKey)) {
+            return;
+        }
+
+        // see the class note: the response log's lock on the event row must be taken before any tally row is
+        eventLogRepository.flush();
+
+        final int stripe = (int) Math.floorMod(user.getId(), (long) STRIPES);
+        final List<String> keys = priorKey == null ? Collections.singletonList(newKey) : Arrays.asList(newKey, priorKey);
+
+        // checked before locking any row, as a rebuild locks the vote first, and once there the rows stay there
+        if (tallyRepository.countRows(vote.getId(), stripe, keys) < keys.size()) {
+            rebuild(vote);
+            return;
+        }
+
+        // locked together, in the order rebuilds lock them, so voters swapping options cannot each hold the other's row
+        tallyRepository.lockRows(vote.getId(), stripe, keys);
+        tallyRepository.addToCount(vote.getId(), newKey, stripe, 1);
+        if (priorKey != null) {
+            tallyRepository.addToCount(vote.getId(), priorKey, stripe, -1);
+        }
+    }
+
+    /**
+     * Sets up a zero count for each of a new vote's options on each stripe. Must be called in the transaction that
+     * creates the vote, before anyone can respond to it, so nothing else can be writing its rows.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void initialise(Vote vote) {
+        voteRepository.flush();
+        Set<String> options = new LinkedHashSet<>();
+        optionsOf(vote).stream().map(VoteTallyStore::optionKey).filter(key -> !key.isEmpty()).forEach(options::add);
+        for (String option : options) {
+            for (int stripe = 0; stripe < STRIPES; stripe++) {
+                tallyRepository.insertCount(vote.getId(), option, stripe, 0L);
+            }
+        }
+    }
+
+    /**
+     * Resets the vote's tally to a count of its response logs, with every option given a row on each stripe. Responses
+     * already holding rows finish first, and are counted from their logs; those after wait, and move the new counts.
+     */
+    @Transactional
+    public void rebuild(Vote vote) {
+        voteRepository.lockById(vote.getId());
+        Set<VoteOptionTallyKey> existing = tallyRepository.lockRows(vote.getId()).stream()
+                .map(VoteOptionTally::getKey).collect(Collectors.toSet());
+        tallyRepository.resetCounts(vote.getId());
+
+        Map<String, Long> logCounts = countLogs(vote);
+        Set<String> options = new LinkedHashSet<>(logCounts.keySet());
+        optionsOf(vote).stream().map(VoteTallyStore::optionKey).filter(key -> !key.isEmpty()).forEach(options::add);
+
+        for (String option : options) {
+            for (int stripe = 0; stripe < STRIPES; stripe++) {
+                final long count = stripe == 0 ? logCounts.getOrDefault(option, 0L) : 0L;
+                if (!existing.contains(new VoteOptionTallyKey(vote.getId(), option, stripe))) {
+                    tallyRepository.insertCount(vote.getId(), option, stripe, count);
+                } else if (count != 0) {
+                    tallyRepository.addToCount(vote.getId(), option, stripe, count);
+                }
+            }
+        }
+        log.debug("Rebuilt tally for vote {}, over {} options", vote.getUid(), options.size());
+    }
+
+    /**
+     * Counts of responses per option key (trimmed and upper case), from the tally if the vote has one, else from its logs.
+     */
+    @Transactional(readOnly = true)
+    public Map<String, Long> fetchCounts(Vote vote) {
+        List<Object[]> tallyRows = tallyRepository.sumCountsByVoteId(vote.getId());
+        return tallyRows.isEmpty() ? countLogs(vote) : toCountMap(tallyRows);
+    }
+
+    static String optionKey(String option) {
+        return option.trim().toUpperCase();
+    }
+
+    private Map<String, Long> countLogs(Vote vote) {
+        return toCountMap(eventLogRepository.countVoteResponsesByOption(vote));
+    }
+
+    private Map<String, Long> toCountMap(List<Object[]> rows) {
+        Map<String, Long> counts = new HashMap<>();
+        rows.forEach(row -> counts.put((String) row[0], ((Number) row[1]).longValue()));
+        return counts;
+    }
+
+    private Collection<String> optionsOf(Vote vote) {
+        List<String> options = vote.getVoteOptions();
+        return StringArrayUtil.isAllEmptyOrNull(options) ? VoteBrokerImpl.optionsForYesNoVote : options;
+    }
+
+}
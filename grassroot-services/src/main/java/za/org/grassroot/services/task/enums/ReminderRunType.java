@@ -0,0 +1,9 @@
+package za.org.grassroot.services.task.enums;
+
+public enum ReminderRunType {
+
+    EVENT_REMINDERS,
+    MEETING_THANK_YOUS,
+    MEETING_RESPONSE_TOTALS
+
+}
@@ -14,6 +14,7 @@ import za.org.grassroot.core.enums.UserInterfaceType;
 import za.org.grassroot.services.exception.NoSuchUserException;
 import za.org.grassroot.services.exception.UserExistsException;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Locale;
 import java.util.Set;
@@ -103,6 +104,9 @@ public interface UserManagementService {
 
     boolean shouldSendLanguageText(User sessionUser);
 
+    // as above, but for many users at once, with a fixed number of queries rather than several per user
+    Set<User> findUsersToSendLanguageText(Collection<User> users);
+
     void sendAndroidLinkSms(String userUid);
 
     List<User> findRelatedUsers(User user, String nameFragment);
@@ -29,7 +29,9 @@ import za.org.grassroot.core.dto.UserDTO;
 import za.org.grassroot.core.dto.UserMinimalProjection;
 import za.org.grassroot.core.enums.*;
 import za.org.grassroot.core.repository.GroupRepository;
+import za.org.grassroot.core.repository.NotificationRepository;
 import za.org.grassroot.core.repository.UserLocationLogRepository;
+import za.org.grassroot.core.repository.UserLogRepository;
 import za.org.grassroot.core.repository.UserRepository;
 import za.org.grassroot.core.repository.UserRequestRepository;
 import za.org.grassroot.core.specifications.NotificationSpecifications;
@@ -45,6 +47,7 @@ import za.org.grassroot.services.exception.InvalidOtpException;
 import za.org.grassroot.services.exception.InvalidTokenException;
 import za.org.grassroot.services.exception.NoSuchUserException;
 import za.org.grassroot.services.exception.UserExistsException;
+import za.org.grassroot.services.group.MembershipWriter;
 import za.org.grassroot.services.util.CacheUtilService;
 import za.org.grassroot.services.util.LogsAndNotificationsBroker;
 import za.org.grassroot.services.util.LogsAndNotificationsBundle;
@@ -53,6 +56,7 @@ import java.time.Instant;
 import java.time.ZonedDateTime;
 import java.time.temporal.ChronoUnit;
 import java.util.*;
+import java.util.stream.Collectors;
 
 /**
  * @author Lesetse Kimwaga
@@ -77,6 +81,9 @@ public class UserManager implements UserManagementService, UserDetailsService {
     @Autowired private MessageAssemblingService messageAssemblingService;
     @Autowired private MessagingServiceBroker messagingServiceBroker;
     @Autowired private UserLocationLogRepository userLocationLogRepository;
+    @Autowired private UserLogRepository userLogRepository;
+    @Autowired private NotificationRepository notificationRepository;
+    @Autowired private MembershipWriter membershipWriter;
 
     @Autowired(required = false) private GraphBroker graphBroker;
 
@@ -450,7 +457,8 @@ public class UserManager implements UserManagementService, UserDetailsService {
             if (user == null)
                 throw new IllegalArgumentException("Error! Phone or email is valid for neither format");
 
-            user = userRepository.save(user);
+            // flushed so that a clash with an existing phone or email surfaces here, as ids no longer force an insert
+            user = userRepository.saveAndFlush(user);
             asyncRecordNewUser(user.getUid(), "Created via loadOrCreate", null);
 
             return user;
@@ -584,8 +592,7 @@ public class UserManager implements UserManagementService, UserDetailsService {
     @Override
     @Transactional(readOnly = true)
     public boolean shouldSendLanguageText(User user) {
-        final boolean isNonPhoneOrNonZA = !user.hasPhoneNumber() || PhoneNumberUtil.isPhoneNumberSouthAfrican(user.getPhoneNumber());
-        if (isNonPhoneOrNonZA || isUserNonEnglish(user) || asyncUserService.hasChangedLanguage(user.getUid()))
+        if (!isLanguageTextCandidate(user) || asyncUserService.hasChangedLanguage(user.getUid()))
             return false;
 
         Specification<Notification> totalCountSpecs = Specification.where(NotificationSpecifications.toUser(user));
@@ -595,6 +602,39 @@ public class UserManager implements UserManagementService, UserDetailsService {
                 && logsAndNotificationsBroker.countNotifications(languageNotifySpecs) == 0;
     }
 
+    @Override
+    @Transactional(readOnly = true)
+    public Set<User> findUsersToSendLanguageText(Collection<User> users) {
+        Map<Long, User> candidates = new HashMap<>();
+        users.stream().filter(this::isLanguageTextCandidate).forEach(user -> candidates.put(user.getId(), user));
+        if (candidates.isEmpty()) {
+            return new HashSet<>();
+        }
+
+        Set<String> changedLanguageUids = new HashSet<>(userLogRepository.findDistinctUserUidsByUserUidInAndUserLogType(
+                candidates.values().stream().map(User::getUid).collect(Collectors.toSet()), UserLogType.CHANGED_LANGUAGE));
+        candidates.values().removeIf(user -> changedLanguageUids.contains(user.getUid()));
+        if (candidates.isEmpty()) {
+            return new HashSet<>();
+        }
+
+        Set<Long> enoughNotificationsIds = new HashSet<>(notificationRepository.findTargetIdsWithNotificationCountAbove(
+                candidates.keySet(), MIN_NOTIFICATIONS_FOR_LANG_PING));
+        candidates.keySet().retainAll(enoughNotificationsIds);
+        if (candidates.isEmpty()) {
+            return new HashSet<>();
+        }
+
+        notificationRepository.findTargetIdsNotifiedForUserLogType(candidates.keySet(), UserLogType.NOTIFIED_LANGUAGES)
+                .forEach(candidates::remove);
+        return new HashSet<>(candidates.values());
+    }
+
+    private boolean isLanguageTextCandidate(User user) {
+        final boolean isNonPhoneOrNonZA = !user.hasPhoneNumber() || PhoneNumberUtil.isPhoneNumberSouthAfrican(user.getPhoneNumber());
+        return !isNonPhoneOrNonZA && !isUserNonEnglish(user);
+    }
+
     private boolean isUserNonEnglish(User user) {
         return !StringUtils.isEmpty(user.getLanguageCode())
                 && !Locale.ENGLISH.getLanguage().equals(user.getLanguageCode());
@@ -653,10 +693,7 @@ public class UserManager implements UserManagementService, UserDetailsService {
         // step 1 : remove user from their memberships, accounts, etc.
         Set<Membership> memberships = user.getMemberships();
         log.info("user now being removed from {} groups", memberships.size());
-        for (Membership membership : memberships) {
-            Group group = membership.getGroup();
-            group.removeMembership(membership); // concurrency?
-        }
+        membershipWriter.removeMemberships(memberships);
         user.setSafetyGroup(null);
 
         log.info("user now being removed from accounts ..");
@@ -0,0 +1,19 @@
+package za.org.grassroot.services.util;
+
+import za.org.grassroot.core.domain.ActionLog;
+
+import java.util.Collection;
+
+/**
+ * Writes action logs in bulk: logs are grouped by their concrete type and each type is saved in one call, so that,
+ * with sequence allocated ids and JDBC batching, a bundle's inserts go out in a few batches rather than one by one
+ */
+public interface ActionLogWriter {
+
+    void saveLogs(Collection<ActionLog> logs);
+
+    // for logs taken off the write-behind queue: saves them in a transaction of their own, along with the campaign stats
+    // they feed (which storeBundle would otherwise have recorded)
+    void saveDeferredLogs(Collection<ActionLog> logs);
+
+}
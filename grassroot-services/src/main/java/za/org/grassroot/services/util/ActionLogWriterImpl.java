@@ -0,0 +1,84 @@
+package za.org.grassroot.services.util;
+
+import com.google.common.collect.ImmutableMap;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import za.org.grassroot.core.domain.ActionLog;
+import za.org.grassroot.core.domain.UserLog;
+import za.org.grassroot.core.domain.account.AccountLog;
+import za.org.grassroot.core.domain.campaign.CampaignLog;
+import za.org.grassroot.core.domain.group.GroupLog;
+import za.org.grassroot.core.domain.livewire.LiveWireLog;
+import za.org.grassroot.core.domain.task.EventLog;
+import za.org.grassroot.core.domain.task.TodoLog;
+import za.org.grassroot.core.repository.AccountLogRepository;
+import za.org.grassroot.core.repository.CampaignLogRepository;
+import za.org.grassroot.core.repository.EventLogRepository;
+import za.org.grassroot.core.repository.GroupLogRepository;
+import za.org.grassroot.core.repository.LiveWireLogRepository;
+import za.org.grassroot.core.repository.TodoLogRepository;
+import za.org.grassroot.core.repository.UserLogRepository;
+import za.org.grassroot.services.campaign.CampaignStatsBroker;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+@Service @Slf4j
+public class ActionLogWriterImpl implements ActionLogWriter {
+
+    private final Map<Class<? extends ActionLog>, CrudRepository<? extends ActionLog, Long>> logRepositories;
+    private final CampaignStatsBroker campaignStatsBroker;
+
+    public ActionLogWriterImpl(GroupLogRepository groupLogRepository, UserLogRepository userLogRepository,
+                               EventLogRepository eventLogRepository, TodoLogRepository todoLogRepository,
+                               AccountLogRepository accountLogRepository, LiveWireLogRepository liveWireLogRepository,
+                               CampaignLogRepository campaignLogRepository, CampaignStatsBroker campaignStatsBroker) {
+        this.logRepositories = ImmutableMap.<Class<? extends ActionLog>, CrudRepository<? extends ActionLog, Long>>builder()
+                .put(GroupLog.class, groupLogRepository)
+                .put(UserLog.class, userLogRepository)
+                .put(EventLog.class, eventLogRepository)
+                .put(TodoLog.class, todoLogRepository)
+                .put(AccountLog.class, accountLogRepository)
+                .put(LiveWireLog.class, liveWireLogRepository)
+                .put(CampaignLog.class, campaignLogRepository)
+                .build();
+        this.campaignStatsBroker = campaignStatsBroker;
+    }
+
+    @Override
+    @Transactional
+    public void saveLogs(Collection<ActionLog> logs) {
+        Map<Class<? extends ActionLog>, List<ActionLog>> logsByType = logs.stream()
+                .collect(Collectors.groupingBy(ActionLog::getClass, LinkedHashMap::new, Collectors.toList()));
+        logsByType.forEach((logType, logsOfType) -> {
+            log.debug("Saving {} logs of type {}", logsOfType.size(), logType.getSimpleName());
+            repositoryFor(logType).saveAll(logsOfType);
+        });
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public void saveDeferredLogs(Collection<ActionLog> logs) {
+        saveLogs(logs);
+        List<CampaignLog> campaignLogs = logs.stream().filter(actionLog -> actionLog instanceof CampaignLog)
+                .map(actionLog -> (CampaignLog) actionLog).collect(Collectors.toList());
+        if (!campaignLogs.isEmpty()) {
+            campaignStatsBroker.recordCampaignLogs(campaignLogs);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private CrudRepository<ActionLog, Long> repositoryFor(Class<? extends ActionLog> logType) {
+        return (CrudRepository<ActionLog, Long>) logRepositories.entrySet().stream()
+                .filter(entry -> entry.getKey().isAssignableFrom(logType))
+                .map(Map.Entry::getValue).findFirst()
+                .orElseThrow(() -> new UnsupportedOperationException("Unsupported log: " + logType.getSimpleName()));
+    }
+
+}
@@ -0,0 +1,57 @@
+package za.org.grassroot.services.util;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.ToIntFunction;
+
+/**
+ * Runs some work over a batch of items in one go and, if that throws, over each item on its own. A failed batch is
+ * rolled back whole, so this keeps one bad item from taking the rest of its batch down with it.
+ */
+@Slf4j
+public final class BatchRetry {
+
+    private BatchRetry() {
+        // static helper only
+    }
+
+    /**
+     * Returns the sum of what the work returned for the items that went through, and the items that still failed on
+     * their own. The description names the items, e.g., "deferred logs", for the log.
+     */
+    public static <T> Outcome<T> apply(String description, List<T> batch, ToIntFunction<List<T>> work) {
+        try {
+            return new Outcome<>(work.applyAsInt(batch), Collections.emptyList());
+        } catch (Exception e) {
+            log.error("Error in batch of {} {}, retrying them singly: {}", batch.size(), description, e.getMessage());
+            int result = 0;
+            List<T> failed = new ArrayList<>();
+            for (T item : batch) {
+                try {
+                    result += work.applyAsInt(Collections.singletonList(item));
+                } catch (Exception singleError) {
+                    failed.add(item);
+                    log.error("Error in single retry of " + description + ", for " + item + ": " + singleError.getMessage(), singleError);
+                }
+            }
+            return new Outcome<>(result, failed);
+        }
+    }
+
+    @Getter
+    public static final class Outcome<T> {
+
+        private final int result;
+        private final List<T> failed;
+
+        private Outcome(int result, List<T> failed) {
+            this.result = result;
+            this.failed = failed;
+        }
+    }
+
+}
@@ -10,10 +10,12 @@ import net.sf.ehcache.statistics.StatisticsGateway;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import za.org.grassroot.core.domain.SafetyEvent;
 import za.org.grassroot.core.domain.User;
-import za.org.grassroot.core.domain.task.Event;
 import za.org.grassroot.core.dto.UserMinimalProjection;
+import za.org.grassroot.core.dto.task.EventRefDTO;
 import za.org.grassroot.core.enums.UserInterfaceType;
 
 import java.util.ArrayList;
@@ -36,13 +38,25 @@ public class CacheUtilManager implements CacheUtilService {
 
     @Override
     public void clearRsvpCacheForUser(String userUid) {
+        removeOutstandingResponses(userUid);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCommit() {
+                    removeOutstandingResponses(userUid);
+                }
+            });
+        }
+    }
+
+    private void removeOutstandingResponses(String userUid) {
         try {
             Cache cache = cacheManager.getCache("userRSVP");
             cache.remove(userUid);
         } catch (Exception e) {
             log.error("FAILED to clear userRSVP..." + userUid + " error: " + e.toString());
         }
-
+        clearPendingResponseForUser(userUid);
     }
 
     @Override
@@ -67,11 +81,11 @@ public class CacheUtilManager implements CacheUtilService {
     }
 
     @Override
-    public List<Event> getOutstandingResponseForUser(String userUid) {
+    public List<EventRefDTO> getOutstandingResponseForUser(String userUid) {
         Cache cache = cacheManager.getCache("userRSVP");
         log.info("getOutstandingResponseForUser... anything in cache : {}", cache.isKeyInCache(userUid));
         try {
-            return cache.isKeyInCache(userUid) ? (List<Event>) cache.get(userUid).getObjectValue() : null;
+            return cache.isKeyInCache(userUid) ? (List<EventRefDTO>) cache.get(userUid).getObjectValue() : null;
         } catch (NullPointerException|ClassCastException e) {
             return null;
         }
@@ -106,6 +120,7 @@ public class CacheUtilManager implements CacheUtilService {
         }
         safetyEventsUserToRespondTo.add(safetyEvent);
         cache.put(new Element(cacheKey,safetyEventsUserToRespondTo));
+        clearPendingResponseForUser(cacheKey);
 
     }
 
@@ -134,7 +149,7 @@ public class CacheUtilManager implements CacheUtilService {
     }
 
     @Override
-    public void putOutstandingResponseForUser(String userUid, List<Event> outstandingRSVPs) {
+    public void putOutstandingResponseForUser(String userUid, List<EventRefDTO> outstandingRSVPs) {
         try {
             Cache cache = cacheManager.getCache("userRSVP");
             cache.put(new Element(userUid,outstandingRSVPs));
@@ -143,6 +158,36 @@ public class CacheUtilManager implements CacheUtilService {
         }
     }
 
+    @Override
+    public boolean hasNoPendingResponse(String userUid) {
+        try {
+            Cache cache = cacheManager.getCache("user_pending_response");
+            return cache.get(userUid) != null;
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    @Override
+    public void putNoPendingResponseForUser(String userUid) {
+        try {
+            Cache cache = cacheManager.getCache("user_pending_response");
+            cache.put(new Element(userUid, false));
+        } catch (Exception e) {
+            log.error("Error, could not put pending response element: {}", e.toString());
+        }
+    }
+
+    @Override
+    public void clearPendingResponseForUser(String userUid) {
+        try {
+            Cache cache = cacheManager.getCache("user_pending_response");
+            cache.remove(userUid);
+        } catch (Exception e) {
+            log.error("FAILED to clear pending response for user {}, error: {}", userUid, e.toString());
+        }
+    }
+
     @Override
     public void putUssdMenuForUser(String phoneNumber, String urlToCache) {
         log.info("Putting USSD menu into cache ..." + urlToCache);
@@ -225,33 +270,10 @@ public class CacheUtilManager implements CacheUtilService {
         }
     }
 
-    @Override
-    public List<PublicActivityLog> getCachedPublicActivity(PublicActivityType activityType) {
-        try {
-            Cache cache = cacheManager.getCache("public_activity_logs");
-            Element cachedElement = cache.get(activityType);
-            return cachedElement == null ? null : (List<PublicActivityLog>) cache.get(activityType).getObjectValue();
-        } catch (NullPointerException|ClassCastException e) {
-            log.error("Error retrieving from cache: {}", e.getMessage());
-            return null;
-        }
-
-    }
-
-    @Override
-    public void putCachedPublicActivity(PublicActivityType activityType, List<PublicActivityLog> activityLogs) {
-        try {
-            Cache cache = cacheManager.getCache("public_activity_logs");
-            cache.put(new Element(activityType, activityLogs));
-        } catch (CacheException e) {
-            log.error("Error putting element in cache");
-        }
-    }
-
     @Override
     @Scheduled(fixedRate = 600000) // every ten minutes
     public void printCacheStats() {
-        final List<String> cacheNames = Arrays.asList("public_activity_logs", "user_session", "user_join_group",
+        final List<String> cacheNames = Arrays.asList("user_session", "user_join_group",
                 "user_language", "userUSSDMenu", "userRSVP", "user_msisdn_minimal", "userSafetyEvents");
         cacheNames.forEach(cacheName -> {
             StatisticsGateway statistics = cacheManager.getCache(cacheName).getStatistics();
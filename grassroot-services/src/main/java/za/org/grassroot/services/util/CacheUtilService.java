@@ -2,8 +2,8 @@ package za.org.grassroot.services.util;
 
 import za.org.grassroot.core.domain.SafetyEvent;
 import za.org.grassroot.core.domain.User;
-import za.org.grassroot.core.domain.task.Event;
 import za.org.grassroot.core.dto.UserMinimalProjection;
+import za.org.grassroot.core.dto.task.EventRefDTO;
 import za.org.grassroot.core.enums.UserInterfaceType;
 
 import java.util.List;
@@ -13,13 +13,18 @@ import java.util.List;
  */
 public interface CacheUtilService {
 
+    /**
+     * Clears the user's outstanding responses, straight away and, if called inside a transaction, again once it has
+     * committed, so that a lookup running alongside the transaction cannot put back what it read before the commit.
+     * @param userUid The uid of the user
+     */
     void clearRsvpCacheForUser(String userUid);
 
     UserMinimalProjection checkCacheForUserMinimalInfo(String msisdn);
 
     void stashUserForMsisdn(String msisdn, UserMinimalProjection user);
 
-    List<Event> getOutstandingResponseForUser(String userUid);
+    List<EventRefDTO> getOutstandingResponseForUser(String userUid);
 
     List<SafetyEvent> getOutstandingSafetyEventResponseForUser(User user);
 
@@ -27,7 +32,20 @@ public interface CacheUtilService {
 
     void clearSafetyEventResponseForUser(User user, SafetyEvent safetyEvent);
 
-    void putOutstandingResponseForUser(String userUid, List<Event> outstandingRSVPs);
+    void putOutstandingResponseForUser(String userUid, List<EventRefDTO> outstandingRSVPs);
+
+    /**
+     * Index of users known to have nothing awaiting their response (votes, meetings, todos, safety alerts), so that
+     * the USSD start menu can skip the response checks. Only the negative is stored, and it is cleared whenever something
+     * might have been put in front of the user, so an absent entry just means "check properly".
+     * @param userUid The uid of the user
+     * @return true if the user was recently found to have nothing pending, and nothing has been created for them since
+     */
+    boolean hasNoPendingResponse(String userUid);
+
+    void putNoPendingResponseForUser(String userUid);
+
+    void clearPendingResponseForUser(String userUid);
 
     void putUssdMenuForUser(String phoneNumber, String urlToCache);
 
@@ -51,10 +69,6 @@ public interface CacheUtilService {
 
     void setSessionOpen(String userUid, UserInterfaceType interfaceType);
 
-    List<PublicActivityLog> getCachedPublicActivity(PublicActivityType activityType);
-
-    void putCachedPublicActivity(PublicActivityType activityType, List<PublicActivityLog> activityLogs);
-
     void printCacheStats();
 
 }
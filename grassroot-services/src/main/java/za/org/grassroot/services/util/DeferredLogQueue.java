@@ -0,0 +1,210 @@
+package za.org.grassroot.services.util;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.Hibernate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import za.org.grassroot.core.domain.ActionLog;
+import za.org.grassroot.core.domain.Notification;
+import za.org.grassroot.core.domain.UserLog;
+import za.org.grassroot.core.domain.campaign.CampaignLog;
+import za.org.grassroot.core.enums.CampaignLogType;
+import za.org.grassroot.core.enums.UserLogType;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * Optional write-behind for audit-type logs (user logs, and campaign engagement logs), so the transaction storing them
+ * does not wait on their inserts. Room in the queue is reserved while the transaction is still open, and the logs only
+ * join the queue once it commits: if the queue is full they are just written with the rest of the bundle, and if the
+ * transaction rolls back they are never written. One worker drains the queue in batches.
+ *
+ * A deferred log can only be read once the worker has written it, usually within a second or so, so session counts may
+ * briefly lag. User logs that are read back to steer a user's next menu (a skipped name or province, a language change)
+ * are never deferred, nor is any log that a notification in the same bundle points to, as the notification can only be
+ * stored with its log.
+ */
+@Component @Slf4j
+public class DeferredLogQueue {
+
+    private static final Set<CampaignLogType> DEFERRABLE_CAMPAIGN_LOG_TYPES = ImmutableSet.of(
+            CampaignLogType.CAMPAIGN_FOUND,
+            CampaignLogType.CAMPAIGN_NOT_FOUND,
+            CampaignLogType.CAMPAIGN_MESSAGE_NOT_FOUND,
+            CampaignLogType.CAMPAIGN_SHARED,
+            CampaignLogType.CAMPAIGN_REPLIED,
+            CampaignLogType.CAMPAIGN_USER_SENT_MEDIA);
+
+    private static final Set<UserLogType> UNDEFERRABLE_USER_LOG_TYPES = ImmutableSet.of(
+            UserLogType.USER_SKIPPED_NAME,
+            UserLogType.USER_SKIPPED_PROVINCE,
+            UserLogType.CHANGED_LANGUAGE);
+
+    @Value("${grassroot.logs.writebehind.enabled:false}")
+    private boolean enabled;
+
+    @Value("${grassroot.logs.writebehind.capacity:10000}")
+    private int capacity;
+
+    @Value("${grassroot.logs.writebehind.batch:500}")
+    private int batchSize;
+
+    private final ActionLogWriter actionLogWriter;
+
+    private final BlockingQueue<ActionLog> queue = new LinkedBlockingQueue<>();
+    // logs queued, or promised a place in the queue by an open transaction, and not yet written
+    private final AtomicInteger reserved = new AtomicInteger();
+
+    private ExecutorService worker;
+    private volatile boolean running;
+
+    public DeferredLogQueue(ActionLogWriter actionLogWriter) {
+        this.actionLogWriter = actionLogWriter;
+    }
+
+    @PostConstruct
+    public void init() {
+        if (enabled) {
+            running = true;
+            worker = Executors.newSingleThreadExecutor(new ThreadFactoryBuilder().setNameFormat("log-writer-%d").build());
+            worker.submit(this::drainQueue);
+            log.info("Started log write-behind, capacity: {}, batch size: {}", capacity, batchSize);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        if (worker != null) {
+            running = false;
+            worker.shutdown();
+            worker.awaitTermination(10, TimeUnit.SECONDS);
+            List<ActionLog> remaining = new ArrayList<>();
+            queue.drainTo(remaining);
+            log.info("Writing {} remaining deferred logs before shutdown", remaining.size());
+            Lists.partition(remaining, batchSize).forEach(this::writeBatch);
+        }
+    }
+
+    /**
+     * Takes the logs that can be written behind, if there is room for them, and returns those that must be written now,
+     * which include any that the notifications being stored with them refer to
+     */
+    public List<ActionLog> deferWhereAllowed(Collection<ActionLog> logs, Collection<? extends Notification> notifications) {
+        if (!running) {
+            return new ArrayList<>(logs);
+        }
+
+        Set<ActionLog> notifiedLogs = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (Notification notification : notifications) {
+            if (notification.getUserLog() != null) {
+                notifiedLogs.add(notification.getUserLog());
+            }
+            if (notification.getCampaignLog() != null) {
+                notifiedLogs.add(notification.getCampaignLog());
+            }
+        }
+
+        Map<Boolean, List<ActionLog>> logsByDeferrable = logs.stream()
+                .collect(Collectors.partitioningBy(actionLog -> !notifiedLogs.contains(actionLog) && isDeferrable(actionLog)));
+        List<ActionLog> deferrable = logsByDeferrable.get(true);
+        if (deferrable.isEmpty() || !reserve(deferrable.size())) {
+            return new ArrayList<>(logs);
+        }
+
+        // the worker has no session, so load what the campaign stats will need from these while we still have one
+        deferrable.stream().filter(actionLog -> actionLog instanceof CampaignLog).map(actionLog -> (CampaignLog) actionLog)
+                .forEach(campaignLog -> {
+                    Hibernate.initialize(campaignLog.getCampaign());
+                    Hibernate.initialize(campaignLog.getUser());
+                });
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status == TransactionSynchronization.STATUS_COMMITTED) {
+                        queue.addAll(deferrable);
+                    } else {
+                        reserved.addAndGet(-deferrable.size());
+                    }
+                }
+            });
+        } else {
+            queue.addAll(deferrable);
+        }
+
+        return logsByDeferrable.get(false);
+    }
+
+    public int countPending() {
+        return reserved.get();
+    }
+
+    private boolean isDeferrable(ActionLog actionLog) {
+        return (actionLog instanceof UserLog && !UNDEFERRABLE_USER_LOG_TYPES.contains(((UserLog) actionLog).getUserLogType())) || (actionLog instanceof CampaignLog &&
+                DEFERRABLE_CAMPAIGN_LOG_TYPES.contains(((CampaignLog) actionLog).getCampaignLogType()));
+    }
+
+    private boolean reserve(int count) {
+        while (true) {
+            int current = reserved.get();
+            if (current + count > capacity) {
+                log.debug("Write-behind queue full, writing {} logs with their bundle", count);
+                return false;
+            }
+            if (reserved.compareAndSet(current, current + count)) {
+                return true;
+            }
+        }
+    }
+
+    private void drainQueue() {
+        while (running) {
+            try {
+                ActionLog first = queue.poll(1, TimeUnit.SECONDS);
+                if (first != null) {
+                    List<ActionLog> batch = new ArrayList<>(batchSize);
+                    batch.add(first);
+                    queue.drainTo(batch, batchSize - 1);
+                    writeBatch(batch);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private void writeBatch(List<ActionLog> batch) {
+        try {
+            BatchRetry.apply("deferred logs", batch, logs -> {
+                actionLogWriter.saveDeferredLogs(logs);
+                return logs.size();
+            });
+        } finally {
+            reserved.addAndGet(-batch.size());
+        }
+    }
+
+}
@@ -33,6 +33,10 @@ public interface LogsAndNotificationsBroker {
 
 	List<PublicActivityLog> fetchMostRecentPublicLogs(Integer numberLogs);
 
+	PublicActivitySnapshot fetchPublicActivityFeed();
+
+	void loadPublicActivityFeed();
+
 	void updateCache(Collection<ActionLog> actionLogs);
 
 	void abortNotificationSend(Specification specifications);
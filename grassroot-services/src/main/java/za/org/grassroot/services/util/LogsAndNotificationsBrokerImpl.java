@@ -3,15 +3,17 @@ package za.org.grassroot.services.util;
 import com.google.common.collect.ImmutableSet;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.scheduling.annotation.Async;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import za.org.grassroot.core.domain.ActionLog;
 import za.org.grassroot.core.domain.Notification;
 import za.org.grassroot.core.domain.User;
@@ -41,6 +43,7 @@ import za.org.grassroot.core.repository.BroadcastNotificationRepository;
 import za.org.grassroot.core.repository.CampaignLogRepository;
 import za.org.grassroot.core.repository.EventLogRepository;
 import za.org.grassroot.core.repository.GroupLogRepository;
+import za.org.grassroot.core.repository.GroupRepository;
 import za.org.grassroot.core.repository.LiveWireLogRepository;
 import za.org.grassroot.core.repository.NotificationRepository;
 import za.org.grassroot.core.repository.TodoLogRepository;
@@ -49,8 +52,10 @@ import za.org.grassroot.core.specifications.EventLogSpecifications;
 import za.org.grassroot.core.specifications.GroupLogSpecifications;
 import za.org.grassroot.core.specifications.NotificationSpecifications;
 import za.org.grassroot.core.specifications.TodoLogSpecifications;
-import za.org.grassroot.core.util.AfterTxCommitTask;
+import za.org.grassroot.core.util.AsyncExecutors;
 import za.org.grassroot.core.util.DateTimeUtil;
+import za.org.grassroot.services.campaign.CampaignStatsBroker;
+import za.org.grassroot.services.group.GroupStatsBroker;
 
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
@@ -85,12 +90,16 @@ public class LogsAndNotificationsBrokerImpl implements LogsAndNotificationsBroke
 	private final LiveWireLogRepository liveWireLogRepository;
 	private final CampaignLogRepository campaignLogRepository;
 	private final CacheUtilService cacheService;
-
-	private final ApplicationEventPublisher applicationEventPublisher;
+	private final GroupStatsBroker groupStatsBroker;
+	private final CampaignStatsBroker campaignStatsBroker;
+	private final GroupRepository groupRepository;
+	private final ActionLogWriter actionLogWriter;
+	private final DeferredLogQueue deferredLogQueue;
+	private final PublicActivityFeed publicActivityFeed;
 
 	@Autowired
 	public LogsAndNotificationsBrokerImpl(NotificationRepository notificationRepository, BroadcastNotificationRepository broadcastNotificationRepository, GroupLogRepository groupLogRepository,
-										  UserLogRepository userLogRepository, EventLogRepository eventLogRepository, TodoLogRepository todoLogRepository, AccountLogRepository accountLogRepository, LiveWireLogRepository liveWireLogRepository, CampaignLogRepository campaignLogRepository, CacheUtilService cacheService, ApplicationEventPublisher applicationEventPublisher) {
+										  UserLogRepository userLogRepository, EventLogRepository eventLogRepository, TodoLogRepository todoLogRepository, AccountLogRepository accountLogRepository, LiveWireLogRepository liveWireLogRepository, CampaignLogRepository campaignLogRepository, CacheUtilService cacheService, GroupStatsBroker groupStatsBroker, CampaignStatsBroker campaignStatsBroker, GroupRepository groupRepository, ActionLogWriter actionLogWriter, DeferredLogQueue deferredLogQueue, PublicActivityFeed publicActivityFeed) {
 		this.notificationRepository = notificationRepository;
 		this.broadcastNotificationRepository = broadcastNotificationRepository;
 		this.groupLogRepository = groupLogRepository;
@@ -101,11 +110,16 @@ public class LogsAndNotificationsBrokerImpl implements LogsAndNotificationsBroke
 		this.liveWireLogRepository = liveWireLogRepository;
 		this.campaignLogRepository = campaignLogRepository;
 		this.cacheService = cacheService;
-		this.applicationEventPublisher = applicationEventPublisher;
+		this.groupStatsBroker = groupStatsBroker;
+		this.campaignStatsBroker = campaignStatsBroker;
+		this.groupRepository = groupRepository;
+		this.actionLogWriter = actionLogWriter;
+		this.deferredLogQueue = deferredLogQueue;
+		this.publicActivityFeed = publicActivityFeed;
 	}
 
 
-	@Async
+	@Async(AsyncExecutors.NOTIFICATIONS)
 	@Override
 	@Transactional
 	public void asyncStoreBundle(LogsAndNotificationsBundle bundle) {
@@ -122,14 +136,28 @@ public class LogsAndNotificationsBrokerImpl implements LogsAndNotificationsBroke
 			log.debug("Storing {} logs", logs.size());
 		}
 
+		List<ActionLog> logsToSave = deferredLogQueue.deferWhereAllowed(logs, bundle.getNotifications());
+		actionLogWriter.saveLogs(logsToSave);
+
 		Set<Group> groupsToUpdateLogTimestamp = new HashSet<>();
 		Set<Group> groupsToUpdateTaskTimestamp = new HashSet<>();
+		List<GroupLog> memberChangeLogs = new ArrayList<>();
 		for (ActionLog actionLog : logs) {
-			log.debug("Saving log {}", actionLog);
-			saveLog(actionLog);
 			checkForGroupLogUpdate(actionLog, groupsToUpdateLogTimestamp);
 			checkForTaskUpdate(actionLog, groupsToUpdateTaskTimestamp);
-			log.debug("saving log, check thread ...");
+			checkForMemberChange(actionLog, memberChangeLogs);
+		}
+
+		// deferred campaign logs have their stats recorded when they are written
+		List<CampaignLog> campaignLogs = logsToSave.stream().filter(actionLog -> actionLog instanceof CampaignLog)
+				.map(actionLog -> (CampaignLog) actionLog).collect(Collectors.toList());
+
+		if (!memberChangeLogs.isEmpty()) {
+			groupStatsBroker.recordMembershipChanges(memberChangeLogs);
+		}
+
+		if (!campaignLogs.isEmpty()) {
+			campaignStatsBroker.recordCampaignLogs(campaignLogs);
 		}
 
 		Set<Notification> notifications = bundle.getNotifications();
@@ -138,42 +166,60 @@ public class LogsAndNotificationsBrokerImpl implements LogsAndNotificationsBroke
 		}
 
 		notificationRepository.saveAll(notifications);
+		clearPendingResponseIndex(memberChangeLogs, notifications);
 
+		// bulk updates, so any of these groups already loaded in this session keep their prior timestamps until reloaded
 		Instant now = Instant.now();
-		groupsToUpdateLogTimestamp.forEach(g -> g.setLastGroupChangeTime(now));
-		groupsToUpdateTaskTimestamp.forEach(g -> g.setLastTaskCreationTime(now));
-
-		// getting lots of null pointers in here, method not ready, need to come back to this
-		AfterTxCommitTask cacheUpdate = () -> {
-			log.debug("this should execute after the method is finished, and TX committed");
-			this.updateCache(logs);
-		};
-		applicationEventPublisher.publishEvent(cacheUpdate);
+		Set<Long> logTimestampGroupIds = collectGroupIds(groupsToUpdateLogTimestamp);
+		if (!logTimestampGroupIds.isEmpty()) {
+			groupRepository.updateLastGroupChangeTime(logTimestampGroupIds, now);
+		}
+		Set<Long> taskTimestampGroupIds = collectGroupIds(groupsToUpdateTaskTimestamp);
+		if (!taskTimestampGroupIds.isEmpty()) {
+			groupRepository.updateLastTaskCreationTime(taskTimestampGroupIds, now);
+		}
 
-		log.debug("executing main part of method");
+		// mapped now, while the session is open, but only added to the feed once the logs are committed
+		List<PublicActivityLog> publicActivity = toPublicActivity(logs);
+		if (!publicActivity.isEmpty()) {
+			if (TransactionSynchronizationManager.isSynchronizationActive()) {
+				TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+					@Override
+					public void afterCommit() {
+						publicActivity.forEach(publicActivityFeed::record);
+					}
+				});
+			} else {
+				publicActivity.forEach(publicActivityFeed::record);
+			}
+		}
 	}
 
     @Override
     public List<PublicActivityLog> fetchMostRecentPublicLogs(Integer numberLogs) {
         int largestPage = numberLogs == null ? MAX_PUBLIC_LOGS : Math.min(numberLogs, MAX_PUBLIC_LOGS);
-        // check, in order: campaign logs, group logs, event logs, account logs (for broadcasts), livewire logs
+        return publicActivityFeed.mostRecent(largestPage);
+    }
 
-        return Arrays.stream(PublicActivityType.values())
-                .map(this::activityLogList).flatMap(List::stream)
-                .sorted(Comparator.comparing(PublicActivityLog::getActionTimeMillis).reversed())
-                .limit(largestPage)
-                .collect(Collectors.toList());
+    @Override
+    public PublicActivitySnapshot fetchPublicActivityFeed() {
+        return publicActivityFeed.snapshot();
     }
 
-    public List<PublicActivityLog> activityLogList(PublicActivityType activityType) {
-        List<PublicActivityLog> activityLogs = cacheService.getCachedPublicActivity(activityType);
-        if (activityLogs != null) {
-            log.debug("returning logs from cache, not hitting DB");
-            return activityLogs;
-        }
+    // the feed is kept up to date from stored bundles, so this is mostly to seed it on start up, and to pick up what other nodes have stored
+    @Override
+    @Transactional(readOnly = true)
+    @Scheduled(initialDelay = 10000, fixedDelayString = "${grassroot.activity.feed.reload.interval:1800000}")
+    public void loadPublicActivityFeed() {
+        Arrays.stream(PublicActivityType.values()).forEach(activityType ->
+                publicActivityFeed.load(activityType, activityLogList(activityType)));
+    }
+
+    private List<PublicActivityLog> activityLogList(PublicActivityType activityType) {
+        List<PublicActivityLog> activityLogs;
         log.debug("calling DB for activity type: {}", activityType);
         final List<PublicActivityType> oldTypes = Arrays.asList(CALLED_MEETING, CALLED_VOTE, CREATED_GROUP, JOINED_GROUP);
-        Pageable pageable = PageRequest.of(0, MAX_PUBLIC_LOGS, Sort.Direction.DESC,
+        Pageable pageable = PageRequest.of(0, publicActivityFeed.getCapacity(), Sort.Direction.DESC,
                 oldTypes.contains(activityType) ? "createdDateTime" : "creationTime");
         switch (activityType) {
             case SIGNED_PETITION:
@@ -225,15 +271,12 @@ public class LogsAndNotificationsBrokerImpl implements LogsAndNotificationsBroke
             default:
                 activityLogs = new ArrayList<>();
         }
-        cacheService.putCachedPublicActivity(activityType, activityLogs);
         return activityLogs;
     }
 
-    @Async
     @Override
     public void updateCache(Collection<ActionLog> actionLogs) {
-        log.debug("updating logs, should be after TX ...");
-        actionLogs.forEach(this::updateCacheSingle);
+        toPublicActivity(actionLogs).forEach(publicActivityFeed::record);
     }
 
 	@Override
@@ -255,7 +298,9 @@ public class LogsAndNotificationsBrokerImpl implements LogsAndNotificationsBroke
 	}
 
 	@Override
+	@Transactional
 	public void removeCampaignLog(User user, Campaign campaign, CampaignLogType logType) {
+		campaignStatsBroker.recordCampaignLogsRemoval(campaign, user, logType);
 		campaignLogRepository.deleteAllByCampaignAndUserAndCampaignLogType(campaign, user, logType);
 	}
 
@@ -265,10 +310,17 @@ public class LogsAndNotificationsBrokerImpl implements LogsAndNotificationsBroke
 		return userLogRepository.count(userLogSpecification);
 	}
 
-	private void updateCacheSingle(ActionLog actionLog) {
+	private List<PublicActivityLog> toPublicActivity(Collection<ActionLog> actionLogs) {
+		return actionLogs.stream().map(this::toPublicActivity).filter(Objects::nonNull).collect(Collectors.toList());
+	}
+
+	private PublicActivityLog toPublicActivity(ActionLog actionLog) {
         PublicActivityType activityType = null;
 
         log.debug("checking for public action type, log = {}", actionLog);
+        if (actionLog.getActionLogType() == null) {
+            return null;
+        }
         switch (actionLog.getActionLogType()) {
             case GROUP_LOG:
                 GroupLogType logType = ((GroupLog) actionLog).getGroupLogType();
@@ -300,16 +352,9 @@ public class LogsAndNotificationsBrokerImpl implements LogsAndNotificationsBroke
 
         log.debug("okay tested for type, comes out as : {}", activityType);
 
-        if (activityType != null) {
-            List<PublicActivityLog> activityLogs = cacheService.getCachedPublicActivity(activityType);
-            if (activityLogs == null) {
-                activityLogs = new ArrayList<>();
-            }
-
-            activityLogs.add(new PublicActivityLog(activityType, actionLog.getUser().getName(), actionLog.getCreationTime().toEpochMilli()));
-            log.debug("activity type positive, adding to public cache: {}", activityLogs);
-            cacheService.putCachedPublicActivity(activityType, activityLogs);
-        }
+        // this runs inside storeBundle, so be careful of logs without a user (e.g., system generated group changes)
+        return activityType == null || actionLog.getCreationTime() == null ? null : new PublicActivityLog(activityType,
+                actionLog.getUser() == null ? null : actionLog.getUser().getName(), actionLog.getCreationTime().toEpochMilli());
     }
 
     @Override
@@ -405,25 +450,8 @@ public class LogsAndNotificationsBrokerImpl implements LogsAndNotificationsBroke
 		return campaignLogRepository.count(specs);
 	}
 
-	private void saveLog(ActionLog actionLog) {
-		if (actionLog instanceof GroupLog) {
-			groupLogRepository.save((GroupLog) actionLog);
-			((GroupLog) actionLog).getGroup().setLastGroupChangeTime(Instant.now());
-		} else if (actionLog instanceof UserLog) {
-			userLogRepository.save((UserLog) actionLog);
-		} else if (actionLog instanceof EventLog) {
-			eventLogRepository.save((EventLog) actionLog);
-		} else if (actionLog instanceof TodoLog) {
-			todoLogRepository.save((TodoLog) actionLog);
-		} else if (actionLog instanceof AccountLog) {
-			accountLogRepository.save((AccountLog) actionLog);
-		} else if (actionLog instanceof LiveWireLog) {
-			liveWireLogRepository.save((LiveWireLog) actionLog);
-		}else if (actionLog instanceof CampaignLog) {
-			campaignLogRepository.save((CampaignLog) actionLog);
-		}  else {
-			throw new UnsupportedOperationException("Unsupported log: " + actionLog);
-		}
+	private Set<Long> collectGroupIds(Set<Group> groups) {
+		return groups.stream().map(Group::getId).filter(Objects::nonNull).collect(Collectors.toSet());
 	}
 
 	private void checkForGroupLogUpdate(ActionLog log, Set<Group> groups) {
@@ -432,6 +460,22 @@ public class LogsAndNotificationsBrokerImpl implements LogsAndNotificationsBroke
 		}
 	}
 
+	// anyone notified, or newly added to a group, may now have something to respond to, so must be rechecked on USSD
+	private void clearPendingResponseIndex(List<GroupLog> memberChangeLogs, Set<Notification> notifications) {
+		Set<String> userUids = new HashSet<>();
+		memberChangeLogs.stream().filter(groupLog -> groupLog.getTargetUser() != null)
+				.forEach(groupLog -> userUids.add(groupLog.getTargetUser().getUid()));
+		notifications.stream().filter(notification -> notification.getTarget() != null)
+				.forEach(notification -> userUids.add(notification.getTarget().getUid()));
+		userUids.forEach(cacheService::clearPendingResponseForUser);
+	}
+
+	private void checkForMemberChange(ActionLog log, List<GroupLog> memberChangeLogs) {
+		if (log instanceof GroupLog && GroupLogType.targetUserAddedOrRemovedTypes.contains(((GroupLog) log).getGroupLogType())) {
+			memberChangeLogs.add((GroupLog) log);
+		}
+	}
+
 	private void checkForTaskUpdate(ActionLog log, Set<Group> groups) {
 		if (log instanceof TaskLog && ((TaskLog) log).isCreationLog()) {
 			groups.add(((TaskLog) log).getTask().getAncestorGroup());
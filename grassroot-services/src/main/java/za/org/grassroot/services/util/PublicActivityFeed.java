@@ -0,0 +1,138 @@
+package za.org.grassroot.services.util;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Holds the most recent public activity in memory, in a fixed size ring per activity type, so the (heavily polled) public
+ * feed never has to go to the DB. Writers claim a slot with a single atomic increment, so recording never blocks, and
+ * the merged feed is only rebuilt when something has been recorded since it was last built. Reloading a type builds its
+ * ring aside and swaps it in whole, and only if it holds something different, so readers never see it half loaded.
+ */
+@Component @Slf4j
+public class PublicActivityFeed {
+
+    @Value("${grassroot.activity.feed.capacity:100}")
+    private int capacity;
+
+    private final Map<PublicActivityType, AtomicReference<ActivityRing>> rings = new EnumMap<>(PublicActivityType.class);
+    private final AtomicLong version = new AtomicLong();
+    private final String epoch = Long.toString(System.currentTimeMillis(), 36);
+
+    private volatile BuiltSnapshot latest;
+
+    @PostConstruct
+    public void init() {
+        for (PublicActivityType activityType : PublicActivityType.values()) {
+            rings.put(activityType, new AtomicReference<>(new ActivityRing(capacity)));
+        }
+        latest = new BuiltSnapshot(0, new PublicActivitySnapshot(formTag(0), Collections.emptyList()));
+    }
+
+    public void record(PublicActivityLog activityLog) {
+        rings.get(activityLog.getType()).get().add(activityLog);
+        version.incrementAndGet();
+    }
+
+    // how many logs the feed holds, of each type and in all, so loading more than this is wasted
+    public int getCapacity() {
+        return capacity;
+    }
+
+    // replaces whatever is held for the type, e.g., with what is in the DB on start up, unless it is the same; anything
+    // recorded while the replacement was built is in the DB too, so will be in the next load if not in this one
+    public void load(PublicActivityType activityType, List<PublicActivityLog> activityLogs) {
+        ActivityRing loaded = new ActivityRing(capacity);
+        activityLogs.stream().sorted(Comparator.comparing(PublicActivityLog::getActionTimeMillis)).forEach(loaded::add);
+        AtomicReference<ActivityRing> ring = rings.get(activityType);
+        if (loaded.sortedEntries().equals(ring.get().sortedEntries())) {
+            log.debug("Public activity feed for {} unchanged on reload", activityType);
+            return;
+        }
+        ring.set(loaded);
+        version.incrementAndGet();
+        log.debug("Loaded {} logs into public activity feed for {}", activityLogs.size(), activityType);
+    }
+
+    // the whole feed, most recent first, tagged with a value that only changes when the feed does
+    public PublicActivitySnapshot snapshot() {
+        final long currentVersion = version.get();
+        BuiltSnapshot built = latest;
+        if (built.version == currentVersion) {
+            return built.snapshot;
+        }
+
+        List<PublicActivityLog> merged = new ArrayList<>(capacity * rings.size());
+        rings.values().forEach(ring -> ring.get().copyInto(merged));
+        merged.sort(Comparator.comparing(PublicActivityLog::getActionTimeMillis).reversed());
+        PublicActivitySnapshot snapshot = new PublicActivitySnapshot(formTag(currentVersion),
+                Collections.unmodifiableList(merged.size() > capacity ? new ArrayList<>(merged.subList(0, capacity)) : merged));
+        latest = new BuiltSnapshot(currentVersion, snapshot);
+        return snapshot;
+    }
+
+    public List<PublicActivityLog> mostRecent(int numberLogs) {
+        List<PublicActivityLog> logs = snapshot().getLogs();
+        return logs.size() > numberLogs ? logs.subList(0, numberLogs) : logs;
+    }
+
+    // includes a start up marker so that a client switching between (or across restarts of) nodes does not get a false match
+    private String formTag(long feedVersion) {
+        return epoch + "-" + feedVersion;
+    }
+
+    private static final class BuiltSnapshot {
+
+        private final long version;
+        private final PublicActivitySnapshot snapshot;
+
+        private BuiltSnapshot(long version, PublicActivitySnapshot snapshot) {
+            this.version = version;
+            this.snapshot = snapshot;
+        }
+    }
+
+    private static final class ActivityRing {
+
+        private final AtomicReferenceArray<PublicActivityLog> entries;
+        private final AtomicLong head = new AtomicLong();
+
+        private ActivityRing(int capacity) {
+            this.entries = new AtomicReferenceArray<>(capacity);
+        }
+
+        private void add(PublicActivityLog activityLog) {
+            entries.set((int) (head.getAndIncrement() % entries.length()), activityLog);
+        }
+
+        private List<PublicActivityLog> sortedEntries() {
+            List<PublicActivityLog> held = new ArrayList<>(entries.length());
+            copyInto(held);
+            held.sort(Comparator.comparing(PublicActivityLog::getActionTimeMillis));
+            return held;
+        }
+
+        // a slot that has been claimed but not yet written may still hold its previous entry, which is fine for a feed
+        private void copyInto(List<PublicActivityLog> target) {
+            for (int i = 0; i < entries.length(); i++) {
+                PublicActivityLog entry = entries.get(i);
+                if (entry != null) {
+                    target.add(entry);
+                }
+            }
+        }
+    }
+
+}
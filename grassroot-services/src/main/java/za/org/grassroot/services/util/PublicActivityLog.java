@@ -1,9 +1,10 @@
 package za.org.grassroot.services.util;
 
+import lombok.EqualsAndHashCode;
 import lombok.Getter;
 import lombok.ToString;
 
-@Getter @ToString
+@Getter @ToString @EqualsAndHashCode
 public class PublicActivityLog {
 
     private PublicActivityType type;
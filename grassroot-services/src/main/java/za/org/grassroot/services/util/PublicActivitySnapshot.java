@@ -0,0 +1,18 @@
+package za.org.grassroot.services.util;
+
+import lombok.Getter;
+import lombok.ToString;
+
+import java.util.List;
+
+@Getter @ToString
+public class PublicActivitySnapshot {
+
+    private final String tag;
+    private final List<PublicActivityLog> logs;
+
+    public PublicActivitySnapshot(String tag, List<PublicActivityLog> logs) {
+        this.tag = tag;
+        this.logs = logs;
+    }
+}
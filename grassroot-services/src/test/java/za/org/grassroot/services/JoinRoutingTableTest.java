@@ -0,0 +1,80 @@
+package za.org.grassroot.services;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.springframework.test.context.junit4.SpringRunner;
+import za.org.grassroot.core.events.JoinRoutingChangedEvent;
+import za.org.grassroot.core.repository.CampaignRepository;
+import za.org.grassroot.core.repository.GroupJoinCodeRepository;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@RunWith(SpringRunner.class)
+public class JoinRoutingTableTest {
+
+    @Mock
+    private CampaignRepository campaignRepository;
+    @Mock
+    private GroupJoinCodeRepository groupJoinCodeRepository;
+
+    private JoinRoutingTable joinRoutingTable;
+
+    @Before
+    public void setUp() {
+        joinRoutingTable = new JoinRoutingTable(campaignRepository, groupJoinCodeRepository);
+    }
+
+    @Test
+    public void shouldRouteCodesAndWordsWithoutFurtherQueries() {
+        Instant later = Instant.now().plus(10, ChronoUnit.DAYS);
+        given(campaignRepository.fetchRoutingDetailsOfCampaignsEndingAfter(any(Instant.class))).willReturn(Arrays.asList(
+                row("campaign-1", "234", later, "PUBLIC_JOIN:Water", "JOIN_TOPIC:health"),
+                row("campaign-2", null, later)));
+        given(groupJoinCodeRepository.selectLowerCaseActiveJoinWordsWithGroupUids())
+                .willReturn(Collections.singletonList(new Object[] { "garden", "group-1" }));
+
+        assertEquals(Optional.of("campaign-1"), joinRoutingTable.campaignForCode("234"));
+        assertEquals(Optional.of("campaign-1"), joinRoutingTable.campaignForJoinWord(" WATER "));
+        assertEquals(Optional.empty(), joinRoutingTable.campaignForJoinWord("health"));
+        assertEquals(Optional.of("group-1"), joinRoutingTable.groupForJoinWord("Garden"));
+        assertEquals(Optional.empty(), joinRoutingTable.groupForJoinWord("water"));
+        assertEquals(Optional.empty(), joinRoutingTable.campaignForCode("235"));
+
+        verify(campaignRepository, times(1)).fetchRoutingDetailsOfCampaignsEndingAfter(any(Instant.class));
+        verify(groupJoinCodeRepository, times(1)).selectLowerCaseActiveJoinWordsWithGroupUids();
+    }
+
+    @Test
+    public void shouldDropCampaignOnceEndedAndPickUpChanges() {
+        Instant justEnded = Instant.now().minus(1, ChronoUnit.SECONDS);
+        Instant later = Instant.now().plus(10, ChronoUnit.DAYS);
+        given(campaignRepository.fetchRoutingDetailsOfCampaignsEndingAfter(any(Instant.class)))
+                .willReturn(Collections.singletonList(row("ended", "234", justEnded)))
+                .willReturn(Collections.singletonList(row("successor", "234", later)));
+        given(groupJoinCodeRepository.selectLowerCaseActiveJoinWordsWithGroupUids()).willReturn(Collections.emptyList());
+
+        assertEquals(Optional.empty(), joinRoutingTable.campaignForCode("234"));
+
+        // outside of a transaction, so rebuilds straight away
+        joinRoutingTable.onApplicationEvent(new JoinRoutingChangedEvent(this, "successor"));
+        assertEquals(Optional.of("successor"), joinRoutingTable.campaignForCode("234"));
+    }
+
+    private Object[] row(String uid, String code, Instant endTime, String... tags) {
+        return new Object[] { uid, code, endTime, tags.length == 0 ? null : tags };
+    }
+
+}
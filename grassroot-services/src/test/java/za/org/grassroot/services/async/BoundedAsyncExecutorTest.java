@@ -0,0 +1,111 @@
+package za.org.grassroot.services.async;
+
+import org.junit.After;
+import org.junit.Test;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class BoundedAsyncExecutorTest {
+
+    private final CountDownLatch release = new CountDownLatch(1);
+    private BoundedAsyncExecutor executor;
+
+    @After
+    public void tearDown() {
+        release.countDown();
+        executor.shutdown();
+    }
+
+    @Test
+    public void shouldDropWhenFullIfSet() throws InterruptedException {
+        executor = started(BoundedAsyncExecutor.WhenFull.DROP);
+        CountDownLatch running = new CountDownLatch(1);
+        executor.execute(() -> { running.countDown(); awaitRelease(); });
+        assertTrue(running.await(5, TimeUnit.SECONDS));
+        executor.execute(() -> {});
+        executor.execute(() -> {}); // queue holds one, so this has nowhere to go
+
+        AsyncExecutorStats stats = executor.stats();
+        assertEquals(2, stats.getSubmitted());
+        assertEquals(1, stats.getQueueDepth());
+        assertEquals(1, stats.getDropped());
+        assertEquals(0, stats.getRanOnCaller());
+    }
+
+    @Test
+    public void shouldRunOnCallerWhenFullIfSet() throws InterruptedException {
+        executor = started(BoundedAsyncExecutor.WhenFull.RUN_ON_CALLER);
+        CountDownLatch running = new CountDownLatch(1);
+        executor.execute(() -> { running.countDown(); awaitRelease(); });
+        assertTrue(running.await(5, TimeUnit.SECONDS));
+        executor.execute(() -> {});
+
+        AtomicReference<Thread> ranOn = new AtomicReference<>();
+        executor.execute(() -> ranOn.set(Thread.currentThread()));
+
+        assertEquals(Thread.currentThread(), ranOn.get());
+        AsyncExecutorStats stats = executor.stats();
+        assertEquals(1, stats.getRanOnCaller());
+        assertEquals(1, stats.getCompleted());
+        assertEquals(0, stats.getDropped());
+    }
+
+    @Test
+    public void shouldRunOnCallerOutsideItsTransaction() throws InterruptedException {
+        EmbeddedDatabase database = new EmbeddedDatabaseBuilder().setType(EmbeddedDatabaseType.H2).generateUniqueName(true).build();
+        try {
+            PlatformTransactionManager transactionManager = new DataSourceTransactionManager(database);
+            executor = started(BoundedAsyncExecutor.WhenFull.RUN_ON_CALLER, () -> transactionManager);
+            CountDownLatch running = new CountDownLatch(1);
+            executor.execute(() -> { running.countDown(); awaitRelease(); });
+            assertTrue(running.await(5, TimeUnit.SECONDS));
+            executor.execute(() -> {});
+
+            AtomicReference<Boolean> taskInTransaction = new AtomicReference<>();
+            boolean callerStillInTransaction = new TransactionTemplate(transactionManager).execute(status -> {
+                executor.execute(() -> taskInTransaction.set(TransactionSynchronizationManager.isActualTransactionActive()));
+                return TransactionSynchronizationManager.isActualTransactionActive();
+            });
+
+            assertFalse(taskInTransaction.get());
+            assertTrue(callerStillInTransaction);
+            assertEquals(1, executor.stats().getRanOnCaller());
+        } finally {
+            database.shutdown();
+        }
+    }
+
+    private BoundedAsyncExecutor started(BoundedAsyncExecutor.WhenFull whenFull) {
+        return started(whenFull, () -> null);
+    }
+
+    private BoundedAsyncExecutor started(BoundedAsyncExecutor.WhenFull whenFull, Supplier<PlatformTransactionManager> transactionManager) {
+        BoundedAsyncExecutor started = new BoundedAsyncExecutor("test", 1, 1, whenFull, transactionManager);
+        started.setWaitForTasksToCompleteOnShutdown(false);
+        started.initialize();
+        return started;
+    }
+
+    private void awaitRelease() {
+        try {
+            release.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+}
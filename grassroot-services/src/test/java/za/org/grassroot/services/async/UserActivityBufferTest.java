@@ -0,0 +1,188 @@
+package za.org.grassroot.services.async;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+import za.org.grassroot.core.domain.UserLog;
+import za.org.grassroot.core.enums.UserInterfaceType;
+import za.org.grassroot.core.enums.UserLogType;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.BDDMockito.willAnswer;
+import static org.mockito.BDDMockito.willThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+public class UserActivityBufferTest {
+
+    @Rule
+    public TemporaryFolder spillFolder = new TemporaryFolder();
+
+    private UserActivityWriter userActivityWriter;
+
+    @Before
+    public void setUp() {
+        userActivityWriter = mock(UserActivityWriter.class);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void shouldWriteBufferedActivityTogetherWithFlagsMerged() throws Exception {
+        UserActivityBuffer buffer = startBuffer(userActivityWriter, 100);
+
+        UserLog webLogin = new UserLog("user-1", UserLogType.USER_SESSION, "", UserInterfaceType.WEB);
+        UserLog ussdSession = new UserLog("user-1", UserLogType.USER_SESSION, "", UserInterfaceType.USSD);
+        UserLog otherUser = new UserLog("user-2", UserLogType.USSD_INTERRUPTED, "/vote", UserInterfaceType.USSD);
+        assertTrue(buffer.buffer(webLogin, UserProfileFlag.forLogin(UserInterfaceType.WEB)));
+        assertTrue(buffer.buffer(ussdSession, UserProfileFlag.forLogin(UserInterfaceType.USSD)));
+        assertTrue(buffer.buffer(otherUser));
+        verify(userActivityWriter, never()).write(anyCollection(), anyMap());
+
+        buffer.flush();
+
+        ArgumentCaptor<Collection<UserLog>> logs = ArgumentCaptor.forClass(Collection.class);
+        ArgumentCaptor<Map<String, Set<UserProfileFlag>>> flags = ArgumentCaptor.forClass(Map.class);
+        verify(userActivityWriter).write(logs.capture(), flags.capture());
+        assertEquals(uids(webLogin, ussdSession, otherUser), logs.getValue().stream().map(UserLog::getUid).collect(Collectors.toSet()));
+        assertEquals(Collections.singletonMap("user-1", EnumSet.of(UserProfileFlag.INITIATED_SESSION, UserProfileFlag.WEB_PROFILE)),
+                flags.getValue());
+
+        buffer.shutdown();
+        assertEquals(0, spillFolder.getRoot().list().length);
+    }
+
+    @Test
+    public void shouldRefuseOnceFull() throws Exception {
+        UserActivityBuffer buffer = startBuffer(userActivityWriter, 2);
+
+        assertTrue(buffer.buffer(new UserLog("user-1", UserLogType.USER_SESSION, "", UserInterfaceType.USSD)));
+        assertFalse(buffer.buffer(new UserLog("user-2", UserLogType.USER_SESSION, "", UserInterfaceType.USSD),
+                UserProfileFlag.forLogin(UserInterfaceType.USSD)));
+        buffer.shutdown();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void shouldRestoreUnflushedActivityOnNextStart() throws Exception {
+        UserActivityBuffer crashed = startBuffer(userActivityWriter, 100);
+        UserLog login = new UserLog("user-1", UserLogType.USER_SESSION, "", UserInterfaceType.ANDROID);
+        UserLog dateInput = new UserLog("user-2", UserLogType.USSD_DATE_ENTERED, "input: tomorrow", UserInterfaceType.USSD);
+        crashed.buffer(login, UserProfileFlag.forLogin(UserInterfaceType.ANDROID));
+        crashed.buffer(dateInput);
+        // no shutdown, as if the node died, so the entries are only in the spill file
+
+        UserActivityWriter restartedWriter = mock(UserActivityWriter.class);
+        UserActivityBuffer restarted = startBuffer(restartedWriter, 100);
+        // nothing is read back while starting, when the database may not be reachable yet, only by the flushing thread
+        verify(restartedWriter, never()).writeRestored(anyCollection(), anyMap());
+        restarted.restoreSpilled();
+
+        ArgumentCaptor<Collection<UserLog>> logs = ArgumentCaptor.forClass(Collection.class);
+        ArgumentCaptor<Map<String, Set<UserProfileFlag>>> flags = ArgumentCaptor.forClass(Map.class);
+        verify(restartedWriter).writeRestored(logs.capture(), flags.capture());
+        verify(restartedWriter, never()).write(anyCollection(), any());
+        assertEquals(uids(login, dateInput), logs.getValue().stream().map(UserLog::getUid).collect(Collectors.toSet()));
+        UserLog restoredDateInput = logs.getValue().stream().filter(l -> l.getUid().equals(dateInput.getUid())).findFirst().get();
+        assertEquals(dateInput.getCreationTime().toEpochMilli(), restoredDateInput.getCreationTime().toEpochMilli());
+        assertEquals("input: tomorrow", restoredDateInput.getDescription());
+        assertEquals(Collections.singletonMap("user-1", EnumSet.of(UserProfileFlag.INITIATED_SESSION, UserProfileFlag.ANDROID_PROFILE)),
+                flags.getValue());
+
+        restarted.shutdown();
+        crashed.shutdown();
+    }
+
+    @Test
+    public void shouldKeepSpillFileWhenWriterThrows() throws Exception {
+        willThrow(new IllegalStateException("database down")).given(userActivityWriter).write(anyCollection(), anyMap());
+        UserActivityBuffer buffer = startBuffer(userActivityWriter, 100);
+        ReflectionTestUtils.setField(buffer, "spillRetryMillis", 0L);
+        UserLog login = new UserLog("user-1", UserLogType.USER_SESSION, "", UserInterfaceType.WEB);
+        UserLog interrupted = new UserLog("user-2", UserLogType.USSD_INTERRUPTED, "/meeting", UserInterfaceType.USSD);
+        buffer.buffer(login, UserProfileFlag.forLogin(UserInterfaceType.WEB));
+        buffer.buffer(interrupted);
+
+        buffer.flush();
+
+        // the batch, and then each log on its own, failed, so the file is kept, with both entries
+        verify(userActivityWriter, times(3)).write(anyCollection(), anyMap());
+        File[] kept = spillFiles();
+        assertEquals(1, kept.length);
+        assertEquals(2, Files.readAllLines(kept[0].toPath()).size());
+
+        // once the database is back the file is read back, and removed when stored
+        buffer.restoreSpilled();
+        verify(userActivityWriter).writeRestored(Arrays.asList(login, interrupted),
+                Collections.singletonMap("user-1", UserProfileFlag.forLogin(UserInterfaceType.WEB)));
+        assertEquals(0, spillFiles().length);
+        buffer.shutdown();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void shouldKeepPartlyStoredSpillFileForRestart() throws Exception {
+        UserLog bad = new UserLog("user-1", UserLogType.USSD_DATE_ENTERED, "input: never", UserInterfaceType.USSD);
+        UserLog good = new UserLog("user-2", UserLogType.USER_SESSION, "", UserInterfaceType.USSD);
+        willAnswer(invocation -> {
+            if (((Collection<UserLog>) invocation.getArgument(0)).contains(bad)) {
+                throw new IllegalArgumentException("bad log");
+            }
+            return null;
+        }).given(userActivityWriter).write(anyCollection(), anyMap());
+        UserActivityBuffer buffer = startBuffer(userActivityWriter, 100);
+        ReflectionTestUtils.setField(buffer, "spillRetryMillis", 0L);
+        buffer.buffer(bad);
+        buffer.buffer(good);
+
+        buffer.flush();
+
+        verify(userActivityWriter).write(Collections.singletonList(good), Collections.emptyMap());
+        assertEquals(1, spillFiles().length);
+        // some of it was stored, so the rest looks like bad data, and is left for the next start rather than retried now
+        buffer.restoreSpilled();
+        verify(userActivityWriter, never()).writeRestored(anyCollection(), anyMap());
+        buffer.shutdown();
+        assertEquals(1, spillFiles().length);
+    }
+
+    // leaves out the file being appended to, which is empty until something more is buffered
+    private File[] spillFiles() {
+        return spillFolder.getRoot().listFiles(file -> file.getName().endsWith(".spill") && file.length() > 0);
+    }
+
+    private UserActivityBuffer startBuffer(UserActivityWriter writer, int capacity) throws Exception {
+        UserActivityBuffer buffer = new UserActivityBuffer(writer);
+        ReflectionTestUtils.setField(buffer, "enabled", true);
+        ReflectionTestUtils.setField(buffer, "capacity", capacity);
+        ReflectionTestUtils.setField(buffer, "flushSize", 1000);
+        ReflectionTestUtils.setField(buffer, "flushIntervalMillis", 60000L);
+        ReflectionTestUtils.setField(buffer, "spillDirectory", spillFolder.getRoot().getAbsolutePath());
+        buffer.init();
+        return buffer;
+    }
+
+    private Set<String> uids(UserLog... userLogs) {
+        return Arrays.stream(userLogs).map(UserLog::getUid).collect(Collectors.toSet());
+    }
+
+}
@@ -0,0 +1,84 @@
+package za.org.grassroot.services.geo;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import za.org.grassroot.core.domain.JpaEntityType;
+import za.org.grassroot.core.domain.geo.GeoLocation;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class NearbyLocationIndexTest {
+
+    private NearbyLocationIndex index;
+
+    @Before
+    public void setUp() {
+        index = new NearbyLocationIndex();
+        ReflectionTestUtils.setField(index, "cellDegrees", 0.05);
+    }
+
+    @Test
+    public void shouldFindOnlyThoseWithinRadius() {
+        index.put(group("centre", -26.2041, 28.0473));
+        index.put(group("next-cell", -26.2041, 28.0973)); // about 5km east, in the next cell over
+        index.put(group("far", -26.3041, 28.0473)); // about 11km south
+
+        assertEquals(uids("centre"), found(-26.2041, 28.0473, 1000));
+        assertEquals(uids("centre", "next-cell"), found(-26.2041, 28.0473, 6000));
+        assertEquals(uids("centre", "next-cell", "far"), found(-26.2041, 28.0473, 15000));
+        assertTrue(index.findWithin(JpaEntityType.MEETING, new GeoLocation(-26.2041, 28.0473), 15000).isEmpty());
+    }
+
+    @Test
+    public void shouldMoveEntryWhenPutAgain() {
+        index.put(group("moving", -26.2041, 28.0473));
+        index.put(group("moving", -33.9249, 18.4241));
+
+        assertTrue(found(-26.2041, 28.0473, 5000).isEmpty());
+        assertEquals(uids("moving"), found(-33.9249, 18.4241, 5000));
+        assertEquals(1, index.size(JpaEntityType.GROUP));
+    }
+
+    @Test
+    public void shouldFindAcrossAntimeridian() {
+        index.put(group("west", -17.0, 179.99));
+        index.put(group("east", -17.0, -179.99));
+
+        assertEquals(uids("west", "east"), found(-17.0, 179.995, 5000));
+    }
+
+    @Test
+    public void loadShouldReplaceAllButLaterWrites() {
+        index.put(group("dropped", -26.2041, 28.0473));
+        long mark = index.mark();
+        index.put(group("written-during-load", -26.2041, 28.0473));
+
+        index.load(JpaEntityType.GROUP, Arrays.asList(group("loaded", -26.2041, 28.0473),
+                group("written-during-load", -33.9249, 18.4241)), mark);
+
+        assertEquals(uids("loaded", "written-during-load"), found(-26.2041, 28.0473, 1000));
+        assertTrue(found(-33.9249, 18.4241, 1000).isEmpty());
+    }
+
+    private IndexedLocation group(String uid, double latitude, double longitude) {
+        return new IndexedLocation(JpaEntityType.GROUP, uid, new GeoLocation(latitude, longitude), 1.0f, null, null);
+    }
+
+    private Set<String> found(double latitude, double longitude, int radiusInMetres) {
+        List<IndexedLocation> found = index.findWithin(JpaEntityType.GROUP, new GeoLocation(latitude, longitude), radiusInMetres);
+        return found.stream().map(IndexedLocation::getUid).collect(Collectors.toSet());
+    }
+
+    private Set<String> uids(String... uids) {
+        return Arrays.stream(uids).collect(Collectors.toSet());
+    }
+
+}
@@ -7,21 +7,47 @@ import net.sf.ehcache.Element;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Captor;
 import org.mockito.Mock;
 import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.util.ReflectionTestUtils;
+import za.org.grassroot.core.domain.GroupRole;
+import za.org.grassroot.core.domain.User;
+import za.org.grassroot.core.domain.group.Group;
+import za.org.grassroot.core.domain.group.GroupLog;
+import za.org.grassroot.core.domain.group.GroupPermissionTemplate;
+import za.org.grassroot.core.domain.group.GroupStatsCount;
+import za.org.grassroot.core.domain.group.GroupStatsType;
+import za.org.grassroot.core.domain.group.Membership;
+import za.org.grassroot.core.enums.GroupLogType;
+import za.org.grassroot.core.enums.Province;
 import za.org.grassroot.core.repository.GroupLogRepository;
+import za.org.grassroot.core.repository.GroupMemberDailyChangeRepository;
 import za.org.grassroot.core.repository.GroupRepository;
+import za.org.grassroot.core.repository.GroupStatsCountRepository;
 import za.org.grassroot.core.repository.MembershipRepository;
 import za.org.grassroot.core.repository.UserRepository;
 
+import java.time.Instant;
+import java.time.LocalDate;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.stream.Collectors;
 
 import static com.google.common.base.CharMatcher.any;
 import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static za.org.grassroot.core.domain.group.GroupJoinMethod.*;
 import static za.org.grassroot.core.enums.Province.*;
 
@@ -38,11 +64,19 @@ public class GroupStatsBrokerTest {
     @Mock
     private UserRepository userRepository;
     @Mock
+    private GroupStatsCountRepository statsCountRepository;
+    @Mock
+    private GroupMemberDailyChangeRepository dailyChangeRepository;
+    @Mock
+    private Group group;
+    @Mock
     private CacheManager cacheManager;
     @Mock
     private Cache cache;
     @Mock
     private Element element;
+    @Captor
+    private ArgumentCaptor<List<GroupStatsCount>> savedCounts;
 
     private GroupStatsBroker groupStatsBroker;
 
@@ -50,7 +84,11 @@ public class GroupStatsBrokerTest {
     public void setUp() {
         given(cacheManager.getCache(anyString())).willReturn(cache);
         given(cache.get(any())).willReturn(element);
-        groupStatsBroker = new GroupStatsBrokerImpl(groupLogRepository,groupRepository,membershipRepository,userRepository,cacheManager);
+        // stats not yet materialised, so are counted from the repository aggregates when reconciled
+        given(groupRepository.findOneByUid(anyString())).willReturn(group);
+        given(group.getUid()).willReturn("groupUuid");
+        groupStatsBroker = new GroupStatsBrokerImpl(groupLogRepository,groupRepository,membershipRepository,userRepository,
+                statsCountRepository,dailyChangeRepository,cacheManager);
     }
 
     @Test
@@ -59,7 +97,7 @@ public class GroupStatsBrokerTest {
         Object[][] repositoryProvinceStats = {{"unspecified", new Long(10)}};
         List<Object[]> groupRepositoryProvinceStats = Arrays.asList(repositoryProvinceStats);
         given(groupRepository.getGroupProvinceStats(anyString())).willReturn(groupRepositoryProvinceStats);
-        Map<String, Integer> mapProvinceStats = groupStatsBroker.getProvincesStats("groupUuid");
+        Map<String, Integer> mapProvinceStats = countedStats(GroupStatsType.PROVINCE);
         mapProvinceStats.forEach((province, size) -> {
             assertEquals("UNKNOWN", province);
             assertEquals((Integer) 10, size);
@@ -71,7 +109,7 @@ public class GroupStatsBrokerTest {
         Object[][] repositoryProvinceStats = {{ZA_GP, 3L},{ZA_LP, 5L},{ZA_EC,23L}};
         List<Object[]> groupRepositoryProvinceStats = Arrays.asList(repositoryProvinceStats);
         given(groupRepository.getGroupProvinceStats(anyString())).willReturn(groupRepositoryProvinceStats);
-        Map<String, Integer> mapProvinceStats = groupStatsBroker.getProvincesStats("groupUuid");
+        Map<String, Integer> mapProvinceStats = countedStats(GroupStatsType.PROVINCE);
         assertEquals(3, mapProvinceStats.size());
     }
 
@@ -80,7 +118,7 @@ public class GroupStatsBrokerTest {
         Object[][] repositoryProvinceStats = {{null, 3L}};
         List<Object[]> groupRepositoryProvinceStats = Arrays.asList(repositoryProvinceStats);
         given(groupRepository.getGroupProvinceStats(anyString())).willReturn(groupRepositoryProvinceStats);
-        Map<String, Integer> mapProvinceStats = groupStatsBroker.getProvincesStats("groupUuid");
+        Map<String, Integer> mapProvinceStats = countedStats(GroupStatsType.PROVINCE);
         mapProvinceStats.forEach((province, size) -> {
             assertEquals("UNKNOWN", province);
             assertEquals((Integer) 3, size);
@@ -92,7 +130,7 @@ public class GroupStatsBrokerTest {
         Object[][] repositoryProvinceStats = {{ZA_LP, null}};
         List<Object[]> groupRepositoryProvinceStats = Arrays.asList(repositoryProvinceStats);
         given(groupRepository.getGroupProvinceStats(anyString())).willReturn(groupRepositoryProvinceStats);
-        Map<String, Integer> mapProvinceStats = groupStatsBroker.getProvincesStats("groupUuid");
+        Map<String, Integer> mapProvinceStats = countedStats(GroupStatsType.PROVINCE);
         mapProvinceStats.forEach((province, size) -> {
             assertEquals(ZA_LP.name(), province);
             assertEquals((Integer) 0, size);
@@ -104,7 +142,7 @@ public class GroupStatsBrokerTest {
         Object[][] repositorySourceStats = {{"unspecified", 4L}};
         List<Object[]> groupRepositorySourceStats = Arrays.asList(repositorySourceStats);
         given(groupRepository.getGroupSourcesStats(anyString())).willReturn(groupRepositorySourceStats);
-        Map<String, Integer> mapSourceStats = groupStatsBroker.getSourcesStats("groupUuid");
+        Map<String, Integer> mapSourceStats = countedStats(GroupStatsType.SOURCE);
         mapSourceStats.forEach((source, size) -> {
             assertEquals("UNKNOWN", source);
             assertEquals((Integer) 4, size);
@@ -116,7 +154,7 @@ public class GroupStatsBrokerTest {
         Object[][] repositorySourceStats = {{ADDED_BY_OTHER_MEMBER, 5L},{ADDED_AT_CREATION, 2L},{ADDED_BY_SYS_ADMIN, 10L}};
         List<Object[]> groupRepositorySourceStats = Arrays.asList(repositorySourceStats);
         given(groupRepository.getGroupSourcesStats(anyString())).willReturn(groupRepositorySourceStats);
-        Map<String, Integer> mapSourceStats = groupStatsBroker.getSourcesStats("groupUuid");
+        Map<String, Integer> mapSourceStats = countedStats(GroupStatsType.SOURCE);
         assertEquals(3, mapSourceStats.size());
     }
 
@@ -125,7 +163,7 @@ public class GroupStatsBrokerTest {
         Object[][] repositorySourceStats = {{ADDED_BY_OTHER_MEMBER, 2L}};
         List<Object[]> groupRepositorySourceStats = Arrays.asList(repositorySourceStats);
         given(groupRepository.getGroupSourcesStats(anyString())).willReturn(groupRepositorySourceStats);
-        Map<String, Integer> mapSourceStats = groupStatsBroker.getSourcesStats("groupUuid");
+        Map<String, Integer> mapSourceStats = countedStats(GroupStatsType.SOURCE);
         mapSourceStats.forEach((source, size) -> {
             assertEquals(ADDED_BY_OTHER_MEMBER.name(), source);
             assertEquals((Integer) 2, size);
@@ -137,7 +175,7 @@ public class GroupStatsBrokerTest {
         Object[][] repositorySourceStats = {{"unspecified", 3L}};
         List<Object[]> groupRepositorySourceStats = Arrays.asList(repositorySourceStats);
         given(groupRepository.getGroupSourcesStats(anyString())).willReturn(groupRepositorySourceStats);
-        Map<String, Integer> mapSourceStats = groupStatsBroker.getSourcesStats("groupUuid");
+        Map<String, Integer> mapSourceStats = countedStats(GroupStatsType.SOURCE);
         mapSourceStats.forEach((source, size) -> {
             assertEquals("UNKNOWN", source);
             assertEquals((Integer) 3, size);
@@ -149,10 +187,126 @@ public class GroupStatsBrokerTest {
         Object[][] repositorySourceStats = {{ADDED_BY_SYS_ADMIN, null}};
         List<Object[]> groupRepositorySourceStats = Arrays.asList(repositorySourceStats);
         given(groupRepository.getGroupSourcesStats(anyString())).willReturn(groupRepositorySourceStats);
-        Map<String, Integer> mapSourceStats = groupStatsBroker.getSourcesStats("groupUuid");
+        Map<String, Integer> mapSourceStats = countedStats(GroupStatsType.SOURCE);
         mapSourceStats.forEach((source, size) -> {
             assertEquals(ADDED_BY_SYS_ADMIN.name(), source);
             assertEquals((Integer) 0, size);
         });
     }
+
+    @Test
+    public void testGetProvincesStats_ShouldLeaveCountToScheduledJobWhenStatsNotMaterialised() {
+        assertEquals(Collections.emptyMap(), groupStatsBroker.getProvincesStats("groupUuid"));
+        verify(groupRepository, never()).getGroupProvinceStats(anyString());
+        verify(statsCountRepository, never()).saveAll(anyCollection());
+        assertEquals(Collections.singletonList("groupUuid"), groupStatsBroker.fetchGroupsAwaitingStats());
+        assertEquals(Collections.emptyList(), groupStatsBroker.fetchGroupsAwaitingStats());
+    }
+
+    @Test
+    public void testGetMemberDetailsStats_ShouldCountRatherThanLoadMembers() {
+        given(membershipRepository.countMemberDetails(group)).willReturn(Collections.singletonList(new Object[]{4L, 1L, 4L, 2L}));
+        Map<String, Integer> details = groupStatsBroker.getMemberDetailsStats("groupUuid");
+        assertEquals((Integer) 25, details.get("EMAIL"));
+        assertEquals((Integer) 100, details.get("PHONE"));
+        assertEquals((Integer) 50, details.get("PROVINCE"));
+        verify(userRepository, never()).findByGroupsPartOfAndIdNot(ArgumentMatchers.any(Group.class), ArgumentMatchers.anyLong());
+    }
+
+    @Test
+    public void testRecordMembershipChanges_ShouldOnlyRecordDailyChanges() {
+        User organizer = new User("0810001111", "organizer", null);
+        Group realGroup = new Group("counted group", GroupPermissionTemplate.DEFAULT_GROUP, organizer);
+
+        groupStatsBroker.recordMembershipChanges(Arrays.asList(
+                new GroupLog(realGroup, organizer, GroupLogType.GROUP_MEMBER_ADDED, organizer, null, null, null),
+                new GroupLog(realGroup, organizer, GroupLogType.GROUP_MEMBER_REMOVED, organizer, null, null, null)));
+
+        verify(dailyChangeRepository).adjustChanges(eq(realGroup), ArgumentMatchers.any(LocalDate.class), eq(1), eq(1));
+        verify(statsCountRepository, never()).adjustCount(ArgumentMatchers.any(Group.class), ArgumentMatchers.any(GroupStatsType.class),
+                anyString(), anyInt());
+    }
+
+    @Test
+    public void testRecordMemberChanges_ShouldMoveTopicsAndStayingMembersProvince() {
+        Group realGroup = storedGroup(1L);
+        User mover = storedUser(2L, ZA_LP);
+        given(statsCountRepository.findIdsOfGroupsWithStats(anyCollection())).willReturn(Collections.singleton(1L));
+        given(statsCountRepository.findIdsOfGroupsWithStatsForMember(2L)).willReturn(Collections.singletonList(1L));
+        given(userRepository.findAllById(anyCollection())).willReturn(Collections.singletonList(mover));
+        givenBucketsExist();
+
+        GroupStatsChanges changes = new GroupStatsChanges();
+        changes.provinceChanged(2L, ZA_GP);
+        changes.tagsChanged(1L, new String[]{"TOPIC:housing"}, new String[]{"TOPIC:water", "AFFILIATION:union"});
+        groupStatsBroker.recordMemberChanges(changes);
+
+        verify(statsCountRepository).adjustCount(realGroup, GroupStatsType.PROVINCE, ZA_GP.name(), -1);
+        verify(statsCountRepository).adjustCount(realGroup, GroupStatsType.PROVINCE, ZA_LP.name(), 1);
+        verify(statsCountRepository).adjustCount(realGroup, GroupStatsType.TOPIC, "housing", -1);
+        verify(statsCountRepository).adjustCount(realGroup, GroupStatsType.TOPIC, "water", 1);
+        verify(statsCountRepository).adjustCount(realGroup, GroupStatsType.AFFILIATION, "union", 1);
+        verify(statsCountRepository, never()).deleteByGroup(ArgumentMatchers.any(Group.class));
+    }
+
+    @Test
+    public void testRecordMemberChanges_ShouldTakeOffDepartingMemberWithoutRecount() {
+        Group realGroup = storedGroup(1L);
+        User leaver = storedUser(3L, ZA_LP);
+        given(statsCountRepository.findIdsOfGroupsWithStats(anyCollection())).willReturn(Collections.singleton(1L));
+        given(userRepository.findAllById(anyCollection())).willReturn(Collections.singletonList(leaver));
+        givenBucketsExist();
+
+        GroupStatsChanges changes = new GroupStatsChanges();
+        changes.membershipRemoved(new Membership(realGroup, leaver, GroupRole.ROLE_ORDINARY_MEMBER, Instant.now(), ADDED_BY_OTHER_MEMBER, null));
+        groupStatsBroker.recordMemberChanges(changes);
+
+        verify(statsCountRepository).adjustCount(realGroup, GroupStatsType.MEMBERS, "ALL", -1);
+        verify(statsCountRepository).adjustCount(realGroup, GroupStatsType.PROVINCE, ZA_LP.name(), -1);
+        verify(statsCountRepository).adjustCount(realGroup, GroupStatsType.SOURCE, ADDED_BY_OTHER_MEMBER.name(), -1);
+        verify(membershipRepository, never()).countByGroup(ArgumentMatchers.any(Group.class));
+        verify(statsCountRepository, never()).deleteByGroup(ArgumentMatchers.any(Group.class));
+        verify(statsCountRepository, never()).markForRecount(ArgumentMatchers.any(Group.class));
+    }
+
+    @Test
+    public void testRecordMemberChanges_ShouldFlagGroupForRecountWhenBucketMissing() {
+        Group realGroup = storedGroup(1L);
+        User leaver = storedUser(3L, null);
+        given(statsCountRepository.findIdsOfGroupsWithStats(anyCollection())).willReturn(Collections.singleton(1L));
+        given(userRepository.findAllById(anyCollection())).willReturn(Collections.singletonList(leaver));
+
+        GroupStatsChanges changes = new GroupStatsChanges();
+        changes.membershipRemoved(new Membership(realGroup, leaver, GroupRole.ROLE_ORDINARY_MEMBER, Instant.now(), ADDED_BY_OTHER_MEMBER, null));
+        groupStatsBroker.recordMemberChanges(changes);
+
+        verify(statsCountRepository, atLeastOnce()).markForRecount(realGroup);
+        verify(statsCountRepository, never()).save(ArgumentMatchers.any(GroupStatsCount.class));
+    }
+
+    private Map<String, Integer> countedStats(GroupStatsType statType) {
+        groupStatsBroker.reconcileGroupStats("groupUuid");
+        verify(statsCountRepository).saveAll(savedCounts.capture());
+        return savedCounts.getValue().stream().filter(count -> count.getStatType() == statType)
+                .collect(Collectors.toMap(GroupStatsCount::getStatKey, GroupStatsCount::getMemberCount));
+    }
+
+    private Group storedGroup(Long id) {
+        Group storedGroup = new Group("counted group", GroupPermissionTemplate.DEFAULT_GROUP, new User("0810001111", "organizer", null));
+        ReflectionTestUtils.setField(storedGroup, "id", id);
+        given(groupRepository.findAllById(anyCollection())).willReturn(Collections.singletonList(storedGroup));
+        return storedGroup;
+    }
+
+    private User storedUser(Long id, Province province) {
+        User user = new User("081000" + id + "000", "member " + id, null);
+        ReflectionTestUtils.setField(user, "id", id);
+        user.setProvince(province);
+        return user;
+    }
+
+    private void givenBucketsExist() {
+        given(statsCountRepository.adjustCount(ArgumentMatchers.any(Group.class), ArgumentMatchers.any(GroupStatsType.class),
+                anyString(), anyInt())).willReturn(1);
+    }
 }
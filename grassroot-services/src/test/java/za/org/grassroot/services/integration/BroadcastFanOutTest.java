@@ -0,0 +1,184 @@
+package za.org.grassroot.services.integration;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import za.org.grassroot.core.domain.GroupRole;
+import za.org.grassroot.core.domain.User;
+import za.org.grassroot.core.domain.account.Account;
+import za.org.grassroot.core.domain.broadcast.Broadcast;
+import za.org.grassroot.core.domain.broadcast.BroadcastSchedule;
+import za.org.grassroot.core.domain.group.Group;
+import za.org.grassroot.core.domain.group.GroupJoinMethod;
+import za.org.grassroot.core.domain.group.GroupLog;
+import za.org.grassroot.core.domain.group.GroupPermissionTemplate;
+import za.org.grassroot.core.domain.notification.BroadcastNotification;
+import za.org.grassroot.core.domain.notification.NotificationStatus;
+import za.org.grassroot.core.dto.GrassrootEmail;
+import za.org.grassroot.core.enums.AccountType;
+import za.org.grassroot.core.enums.DeliveryRoute;
+import za.org.grassroot.core.enums.GroupLogType;
+import za.org.grassroot.core.repository.AccountRepository;
+import za.org.grassroot.core.repository.BroadcastNotificationRepository;
+import za.org.grassroot.core.repository.BroadcastRepository;
+import za.org.grassroot.core.repository.GroupLogRepository;
+import za.org.grassroot.core.repository.GroupRepository;
+import za.org.grassroot.core.repository.UserRepository;
+import za.org.grassroot.integration.messaging.MessagingServiceBroker;
+import za.org.grassroot.services.ServicesTestConfig;
+import za.org.grassroot.services.broadcasts.BroadcastFanOutBroker;
+import za.org.grassroot.services.user.PasswordTokenService;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anySet;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static za.org.grassroot.core.specifications.NotificationSpecifications.forBroadcast;
+
+// not run in a test transaction, as each chunk commits in a transaction of its own
+@RunWith(SpringRunner.class) @DataJpaTest
+@ContextConfiguration(classes = ServicesTestConfig.class)
+@TestPropertySource(properties = "grassroot.broadcast.fanout.interval=3600000")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public class BroadcastFanOutTest {
+
+    @MockBean
+    private MessagingServiceBroker messagingServiceBroker;
+
+    @MockBean
+    private PasswordTokenService passwordTokenService;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private BroadcastFanOutBroker fanOutBroker;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @Autowired
+    private GroupRepository groupRepository;
+
+    @Autowired
+    private GroupLogRepository groupLogRepository;
+
+    @Autowired
+    private BroadcastRepository broadcastRepository;
+
+    @Autowired
+    private BroadcastNotificationRepository broadcastNotificationRepository;
+
+    @Test
+    public void shouldEmailEachRecipientOnceWhenChunkFailsAndIsResumed() {
+        Broadcast broadcast = new TransactionTemplate(transactionManager).execute(status -> storeEmailBroadcast("08277777", ""));
+        Set<String> memberUids = broadcast.getGroup().getMembers().stream().map(User::getUid).collect(Collectors.toSet());
+
+        // counted from another thread, so only sees what has been committed by the time the email goes out
+        AtomicLong committedWhenSent = new AtomicLong(-1);
+        given(messagingServiceBroker.sendEmail(any(GrassrootEmail.class))).willAnswer(invocation -> {
+            committedWhenSent.set(CompletableFuture.supplyAsync(() ->
+                    broadcastNotificationRepository.count(Specification.where(forBroadcast(broadcast)))).get());
+            return true;
+        });
+        doThrow(new IllegalStateException("token store unavailable")).doNothing()
+                .when(passwordTokenService).generateResponseTokens(anySet(), anyString(), isNull());
+
+        final String broadcastUid = broadcast.getUid();
+        List<Long> recipientIds = fanOutBroker.fetchOutstandingRecipientIds(broadcastUid, 10);
+        try {
+            fanOutBroker.fanOutToRecipients(broadcastUid, recipientIds);
+            fail("Chunk should have failed");
+        } catch (IllegalStateException e) {
+            // rolled back, so nothing may have been mailed
+        }
+        verify(messagingServiceBroker, never()).sendEmail(any(GrassrootEmail.class));
+        assertEquals(recipientIds, fanOutBroker.fetchOutstandingRecipientIds(broadcastUid, 10));
+
+        assertEquals(3, fanOutBroker.fanOutToRecipients(broadcastUid, recipientIds));
+        fanOutBroker.completeFanOut(broadcastUid);
+        assertTrue(fanOutBroker.fetchOutstandingRecipientIds(broadcastUid, 10).isEmpty());
+
+        ArgumentCaptor<GrassrootEmail> sent = ArgumentCaptor.forClass(GrassrootEmail.class);
+        verify(messagingServiceBroker).sendEmail(sent.capture());
+        assertEquals(memberUids, sent.getValue().getToUserUids());
+        assertEquals(3, committedWhenSent.get());
+
+        List<BroadcastNotification> notifications = broadcastNotificationRepository.findAll(Specification.where(forBroadcast(broadcast)));
+        assertEquals(3, notifications.size());
+        notifications.forEach(n -> assertEquals(NotificationStatus.DELIVERED, n.getStatus()));
+    }
+
+    @Test
+    public void shouldPageRecipientsFromCursor() {
+        Broadcast broadcast = new TransactionTemplate(transactionManager).execute(status -> storeEmailBroadcast("08277778", "paged"));
+        final String broadcastUid = broadcast.getUid();
+        given(messagingServiceBroker.sendEmail(any(GrassrootEmail.class))).willReturn(true);
+
+        List<Long> firstPage = fanOutBroker.fetchOutstandingRecipientIds(broadcastUid, 2);
+        assertEquals(2, firstPage.size());
+        assertTrue(firstPage.get(0) < firstPage.get(1));
+
+        assertEquals(2, fanOutBroker.fanOutToRecipients(broadcastUid, firstPage));
+        List<Long> secondPage = fanOutBroker.fetchOutstandingRecipientIds(broadcastUid, 2);
+        assertEquals(1, secondPage.size());
+        assertTrue(secondPage.get(0) > firstPage.get(1));
+
+        assertEquals(1, fanOutBroker.fanOutToRecipients(broadcastUid, secondPage));
+        assertTrue(fanOutBroker.fetchOutstandingRecipientIds(broadcastUid, 2).isEmpty());
+    }
+
+    // each test commits its broadcast, so each stores its members under its own numbers and addresses
+    private Broadcast storeEmailBroadcast(String numberPrefix, String emailPrefix) {
+        User organizer = userRepository.save(new User(numberPrefix + "01", "organizer", emailPrefix + "organizer@grassroot.org.za"));
+        User first = userRepository.save(new User(numberPrefix + "02", "first", emailPrefix + "first@grassroot.org.za"));
+        User second = userRepository.save(new User(numberPrefix + "03", "second", emailPrefix + "second@grassroot.org.za"));
+        Group group = new Group("emailed group", GroupPermissionTemplate.DEFAULT_GROUP, organizer);
+        group.addMember(organizer, GroupRole.ROLE_GROUP_ORGANIZER, GroupJoinMethod.ADDED_AT_CREATION, null);
+        group.addMember(first, GroupRole.ROLE_ORDINARY_MEMBER, GroupJoinMethod.ADDED_BY_OTHER_MEMBER, null);
+        group.addMember(second, GroupRole.ROLE_ORDINARY_MEMBER, GroupJoinMethod.ADDED_BY_OTHER_MEMBER, null);
+        group = groupRepository.save(group);
+        group.getMembers().size();
+
+        Account account = accountRepository.save(new Account(organizer, "paying", AccountType.ENTERPRISE, organizer));
+
+        Broadcast broadcast = Broadcast.builder().createdByUser(organizer).account(account).title("notice").group(group)
+                .broadcastSchedule(BroadcastSchedule.IMMEDIATE).build();
+        broadcast.setEmailContent("meeting on friday");
+        broadcast.setEmailDeliveryRoute(DeliveryRoute.EMAIL_GRASSROOT);
+        broadcast.setFanOutPending(true);
+        broadcast = broadcastRepository.save(broadcast);
+        GroupLog sendingLog = new GroupLog(group, organizer, GroupLogType.BROADCAST_SENT, null, null, null, null);
+        sendingLog.setBroadcast(broadcast);
+        groupLogRepository.save(sendingLog);
+        return broadcast;
+    }
+
+}
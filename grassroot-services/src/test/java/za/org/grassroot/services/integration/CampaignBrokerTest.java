@@ -13,23 +13,33 @@ import za.org.grassroot.core.domain.User;
 import za.org.grassroot.core.domain.account.Account;
 import za.org.grassroot.core.domain.campaign.Campaign;
 import za.org.grassroot.core.domain.campaign.CampaignActionType;
+import za.org.grassroot.core.domain.campaign.CampaignLog;
 import za.org.grassroot.core.domain.campaign.CampaignType;
 import za.org.grassroot.core.domain.group.Group;
 import za.org.grassroot.core.domain.group.GroupPermissionTemplate;
+import za.org.grassroot.core.dto.CampaignLogsDataCollection;
 import za.org.grassroot.core.enums.AccountType;
+import za.org.grassroot.core.enums.CampaignLogType;
 import za.org.grassroot.core.enums.UserInterfaceType;
 import za.org.grassroot.core.repository.AccountRepository;
+import za.org.grassroot.core.repository.CampaignLogRepository;
+import za.org.grassroot.core.repository.CampaignStatsRollupRepository;
 import za.org.grassroot.core.repository.GroupRepository;
 import za.org.grassroot.core.repository.UserRepository;
 import za.org.grassroot.core.util.DateTimeUtil;
 import za.org.grassroot.services.ServicesTestConfig;
 import za.org.grassroot.services.campaign.CampaignBroker;
 import za.org.grassroot.services.campaign.CampaignMessageDTO;
+import za.org.grassroot.services.campaign.CampaignStatsBroker;
 import za.org.grassroot.services.campaign.MessageLanguagePair;
+import za.org.grassroot.services.util.LogsAndNotificationsBroker;
+import za.org.grassroot.services.util.LogsAndNotificationsBundle;
 
 import java.time.Instant;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Locale;
+import java.util.Map;
 
 @RunWith(SpringRunner.class) @DataJpaTest
 @ContextConfiguration(classes = ServicesTestConfig.class)
@@ -39,6 +49,18 @@ public class CampaignBrokerTest {
     @Autowired
     private CampaignBroker campaignBroker;
 
+    @Autowired
+    private CampaignStatsBroker campaignStatsBroker;
+
+    @Autowired
+    private LogsAndNotificationsBroker logsAndNotificationsBroker;
+
+    @Autowired
+    private CampaignLogRepository campaignLogRepository;
+
+    @Autowired
+    private CampaignStatsRollupRepository rollupRepository;
+
     @Autowired
     private UserRepository userRepository;
 
@@ -97,4 +119,55 @@ public class CampaignBrokerTest {
         Assert.assertEquals(linkedCampaign.getMasterGroup().getId(),testGroup.getId());
     }
 
+    @Test
+    public void testCampaignStatsFollowStoredLogs() {
+        Campaign campaign = campaignBroker.create("stats campaign", "235", "a campaign to count", testUser.getUid(),
+                testGroup.getUid(), Instant.now(), DateTimeUtil.getVeryLongAwayInstant(), null, CampaignType.INFORMATION, null, false, 0, null);
+        User signer = userRepository.save(new User("0605550001", "signer", null));
+        User browser = userRepository.save(new User("0605550002", "browser", null));
+
+        // the first bundle builds the rollup from the logs, the second adjusts it
+        LogsAndNotificationsBundle firstBundle = new LogsAndNotificationsBundle();
+        firstBundle.addLog(new CampaignLog(signer, CampaignLogType.CAMPAIGN_FOUND, campaign, UserInterfaceType.USSD, null));
+        firstBundle.addLog(new CampaignLog(browser, CampaignLogType.CAMPAIGN_FOUND, campaign, UserInterfaceType.WEB_2, null));
+        logsAndNotificationsBroker.storeBundle(firstBundle);
+
+        LogsAndNotificationsBundle secondBundle = new LogsAndNotificationsBundle();
+        secondBundle.addLog(new CampaignLog(signer, CampaignLogType.CAMPAIGN_PETITION_SIGNED, campaign, UserInterfaceType.USSD, null));
+        secondBundle.addLog(new CampaignLog(browser, CampaignLogType.CAMPAIGN_FOUND, campaign, UserInterfaceType.WEB_2, null));
+        logsAndNotificationsBroker.storeBundle(secondBundle);
+
+        Map<String, Long> conversion = campaignStatsBroker.getCampaignConversionStats(campaign.getUid());
+        Assert.assertEquals(2, conversion.size());
+        Assert.assertEquals(1L, (long) conversion.get(CampaignLogType.CAMPAIGN_FOUND.name()));
+        Assert.assertEquals(1L, (long) conversion.get(CampaignLogType.CAMPAIGN_PETITION_SIGNED.name()));
+
+        Map<String, Long> channels = campaignStatsBroker.getCampaignChannelStats(campaign.getUid());
+        Assert.assertEquals(1L, (long) channels.get(UserInterfaceType.USSD.name()));
+        Assert.assertEquals(1L, (long) channels.get(UserInterfaceType.WEB_2.name()));
+
+        campaignStatsBroker.rebuildCampaignStats(campaign.getUid());
+        Assert.assertEquals(2L, (long) campaignStatsBroker.getCampaignProvinceStats(campaign.getUid()).get("UNKNOWN"));
+        CampaignLogsDataCollection logData = campaignStatsBroker.getCampaignLogData(campaign.getUid());
+        Assert.assertEquals(2L, logData.getTotalEngaged());
+        Assert.assertEquals(1L, logData.getTotalSigned());
+        Assert.assertEquals(0L, logData.getTotalJoined());
+    }
+
+    @Test
+    public void testCampaignStatsReadWithoutStoringRollup() {
+        Campaign campaign = campaignBroker.create("unrolled campaign", "236", "a campaign not yet rolled up", testUser.getUid(),
+                testGroup.getUid(), Instant.now(), DateTimeUtil.getVeryLongAwayInstant(), null, CampaignType.INFORMATION, null, false, 0, null);
+        User signer = userRepository.save(new User("0605550003", "signer", null));
+        // stored directly, as logs from before the rollup existed would be
+        campaignLogRepository.saveAll(Arrays.asList(
+                new CampaignLog(signer, CampaignLogType.CAMPAIGN_FOUND, campaign, UserInterfaceType.USSD, null),
+                new CampaignLog(signer, CampaignLogType.CAMPAIGN_PETITION_SIGNED, campaign, UserInterfaceType.USSD, null)));
+
+        Map<String, Long> conversion = campaignStatsBroker.getCampaignConversionStats(campaign.getUid());
+        Assert.assertEquals(Collections.singletonMap(CampaignLogType.CAMPAIGN_PETITION_SIGNED.name(), 1L), conversion);
+        Assert.assertEquals(1L, campaignStatsBroker.getCampaignLogData(campaign.getUid()).getTotalSigned());
+        Assert.assertFalse(rollupRepository.existsByCampaign(campaign));
+    }
+
 }
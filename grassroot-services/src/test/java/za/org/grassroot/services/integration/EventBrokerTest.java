@@ -1,5 +1,6 @@
 package za.org.grassroot.services.integration;
 
+import com.google.common.collect.Sets;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.slf4j.Logger;
@@ -14,16 +15,26 @@ import za.org.grassroot.core.domain.group.Group;
 import za.org.grassroot.core.domain.group.GroupJoinMethod;
 import za.org.grassroot.core.domain.group.GroupPermissionTemplate;
 import za.org.grassroot.core.domain.task.Event;
+import za.org.grassroot.core.domain.task.EventLog;
+import za.org.grassroot.core.domain.task.Meeting;
+import za.org.grassroot.core.domain.task.Vote;
+import za.org.grassroot.core.enums.EventLogType;
+import za.org.grassroot.core.enums.EventRSVPResponse;
 import za.org.grassroot.core.repository.EventLogRepository;
 import za.org.grassroot.core.repository.EventRepository;
 import za.org.grassroot.core.repository.GroupRepository;
 import za.org.grassroot.core.repository.UserRepository;
 import za.org.grassroot.services.ServicesTestConfig;
 import za.org.grassroot.services.task.EventBroker;
+import za.org.grassroot.services.util.CacheUtilService;
 
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Collections;
 import java.util.List;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 
 /**
@@ -54,6 +65,9 @@ public class EventBrokerTest {
     @Autowired
     EventLogRepository eventLogRepository;
 
+    @Autowired
+    CacheUtilService cacheUtilService;
+
     @Test
     public void shouldNotReturnOutstandingRSVPEventForSecondLevelUserAndParentGroupEvent() {
         User user = userRepository.save(new User("0825555511", null, null));
@@ -72,4 +86,28 @@ public class EventBrokerTest {
         assertEquals(0,outstanding.size());
     }
 
+    @Test
+    public void shouldReturnOnlyEventsStillAwaitingResponse() {
+        User organizer = userRepository.save(new User("0825555531", null, null));
+        User member = userRepository.save(new User("0825555532", null, null));
+        Group group = new Group("rsvp outstanding", GroupPermissionTemplate.DEFAULT_GROUP, organizer);
+        group.addMember(organizer, GroupRole.ROLE_GROUP_ORGANIZER, GroupJoinMethod.ADDED_AT_CREATION, null);
+        group.addMember(member, GroupRole.ROLE_ORDINARY_MEMBER, GroupJoinMethod.ADDED_BY_OTHER_MEMBER, null);
+        group = groupRepository.save(group);
+
+        Instant startTime = Instant.now().plus(2, ChronoUnit.DAYS);
+        Meeting meeting = eventRepository.save(new Meeting("organizer meeting", startTime, organizer, group, "hall"));
+        Meeting ownMeeting = eventRepository.save(new Meeting("member meeting", startTime, member, group, "hall"));
+        Vote vote = eventRepository.save(new Vote("member vote", startTime, member, group));
+        Vote pastVote = eventRepository.save(new Vote("past vote", Instant.now().minus(1, ChronoUnit.DAYS), organizer, group));
+
+        assertEquals(Sets.newHashSet(meeting, vote), Sets.newHashSet(eventBroker.getEventsNeedingResponseFromUser(member)));
+        assertEquals(Sets.newHashSet(ownMeeting, vote), Sets.newHashSet(eventBroker.getEventsNeedingResponseFromUser(organizer)));
+        assertFalse(eventBroker.getEventsNeedingResponseFromUser(organizer).contains(pastVote));
+
+        eventLogRepository.save(new EventLog(member, meeting, EventLogType.RSVP, EventRSVPResponse.YES));
+        cacheUtilService.clearRsvpCacheForUser(member.getUid());
+        assertEquals(Collections.singletonList(vote), eventBroker.getEventsNeedingResponseFromUser(member));
+    }
+
 }
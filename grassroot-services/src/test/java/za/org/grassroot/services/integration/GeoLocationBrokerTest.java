@@ -112,6 +112,39 @@ public class GeoLocationBrokerTest {
 		Assert.assertEquals(40, center1.getLongitude(), 0.001);
 	}
 
+	@Test
+	public void testPreviousPeriodSlidesOnFromPriorDay() {
+		ZoneId zoneId = DateTimeUtil.getSAST();
+		geoLocationBroker.logUserLocation("111", 50.00, 40.00, LocalDateTime.of(2016, 3, 5, 13, 15).atZone(zoneId).toInstant(), UserInterfaceType.ANDROID);
+		geoLocationBroker.logUserLocation("111", 60.00, 40.00, LocalDateTime.of(2016, 3, 7, 13, 15).atZone(zoneId).toInstant(), UserInterfaceType.ANDROID);
+		geoLocationBroker.logUserLocation("222", 50.00, 40.00, LocalDateTime.of(2016, 4, 4, 9, 0).atZone(zoneId).toInstant(), UserInterfaceType.ANDROID);
+		geoLocationBroker.calculatePreviousPeriodUserLocations(LocalDate.of(2016, 4, 4));
+
+		// one late in the prior day, after it was first summed, and one on the new day, while the first log drops out
+		geoLocationBroker.logUserLocation("222", 40.00, 40.00, LocalDateTime.of(2016, 4, 4, 21, 0).atZone(zoneId).toInstant(), UserInterfaceType.ANDROID);
+		geoLocationBroker.logUserLocation("333", 30.00, 20.00, LocalDateTime.of(2016, 4, 5, 8, 0).atZone(zoneId).toInstant(), UserInterfaceType.ANDROID);
+		LocalDate slidDate = LocalDate.of(2016, 4, 5);
+		geoLocationBroker.calculatePreviousPeriodUserLocations(slidDate);
+
+		HashSet<String> userUids = Sets.newHashSet("111", "222", "333");
+		List<PreviousPeriodUserLocation> slid = previousPeriodUserLocationRepository.findByKeyLocalDateAndKeyUserUidIn(slidDate, userUids);
+		Assert.assertEquals(3, slid.size());
+		PreviousPeriodUserLocation user111 = findPreviousPeriodUserLocationByUserUid(slid, "111");
+		Assert.assertEquals(60, user111.getLocation().getLatitude(), 0.001);
+		Assert.assertEquals(1, user111.getLogCount());
+		PreviousPeriodUserLocation user222 = findPreviousPeriodUserLocationByUserUid(slid, "222");
+		Assert.assertEquals(45, user222.getLocation().getLatitude(), 0.001);
+		Assert.assertEquals(40, user222.getLocation().getLongitude(), 0.001);
+		Assert.assertEquals(2, user222.getLogCount());
+		Assert.assertEquals(20, findPreviousPeriodUserLocationByUserUid(slid, "333").getLocation().getLongitude(), 0.001);
+
+		// and the next day, with nothing new, only the first of user 111's logs is still there until it too drops out
+		geoLocationBroker.calculatePreviousPeriodUserLocations(LocalDate.of(2016, 4, 6));
+		Assert.assertEquals(3, previousPeriodUserLocationRepository.findByKeyLocalDateAndKeyUserUidIn(LocalDate.of(2016, 4, 6), userUids).size());
+		geoLocationBroker.calculatePreviousPeriodUserLocations(LocalDate.of(2016, 4, 7));
+		Assert.assertEquals(2, previousPeriodUserLocationRepository.findByKeyLocalDateAndKeyUserUidIn(LocalDate.of(2016, 4, 7), userUids).size());
+	}
+
 	private PreviousPeriodUserLocation findPreviousPeriodUserLocationByUserUid(List<PreviousPeriodUserLocation> result1, String userUid) {
 		return result1.stream()
 				.filter(location -> location.getKey().getUserUid().equals(userUid))
@@ -131,6 +164,12 @@ public class GeoLocationBrokerTest {
 		Assert.assertEquals(groupLocations.size(), 0);
 	}
 
+	@Test
+	public void loadingNearbyLocationIndexShouldSucceed () {
+		geoLocationBroker.loadNearbyLocationIndex();
+		Assert.assertEquals(0, geoLocationBroker.fetchPublicGroupsNearbyWithLocation(new GeoLocation(53.4808, 2.2426), 10).size());
+	}
+
 	@Test(expected=InvalidParameterException.class)
 	public void nullGeoLocationShouldThrowExceptionWhenFetchingGroupLocations () {
 		geoLocationBroker.fetchPublicGroupsNearbyWithLocation(null, 10);
@@ -6,22 +6,31 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
 import org.springframework.test.annotation.Rollback;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit4.AbstractTransactionalJUnit4SpringContextTests;
 import org.springframework.test.context.junit4.SpringRunner;
+import za.org.grassroot.core.domain.GroupRole;
 import za.org.grassroot.core.domain.User;
 import za.org.grassroot.core.domain.group.Group;
+import za.org.grassroot.core.domain.group.GroupJoinMethod;
 import za.org.grassroot.core.domain.group.GroupPermissionTemplate;
+import za.org.grassroot.core.domain.group.Membership;
 import za.org.grassroot.core.enums.UserInterfaceType;
 import za.org.grassroot.core.repository.GroupRepository;
+import za.org.grassroot.core.repository.MembershipRepository;
 import za.org.grassroot.core.repository.UserRepository;
 import za.org.grassroot.services.PermissionBroker;
 import za.org.grassroot.services.ServicesTestConfig;
 import za.org.grassroot.services.group.GroupBroker;
 import za.org.grassroot.services.user.UserManagementService;
 
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+
 import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertThat;
 
@@ -46,6 +55,12 @@ public class GroupBrokerTest extends AbstractTransactionalJUnit4SpringContextTes
     @Autowired
     private PermissionBroker permissionBroker;
 
+    @Autowired
+    private MembershipRepository membershipRepository;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
     private final String testUserBase = "081000555";
     private final String testGroupBase = "test group ";
 
@@ -74,6 +89,28 @@ public class GroupBrokerTest extends AbstractTransactionalJUnit4SpringContextTes
     Testing group member addition and group consolidation
      */
 
+    @Test
+    public void shouldJoinViaCodeWithoutLoadingGroupMembers() {
+        User organiser = userRepository.save(new User("0824444443", null, null));
+        Group group = new Group(testGroupBase + "3", GroupPermissionTemplate.DEFAULT_GROUP, organiser);
+        group.addMember(organiser, GroupRole.ROLE_GROUP_ORGANIZER, GroupJoinMethod.ADDED_AT_CREATION, null);
+        group.setGroupTokenCode("1234");
+        group.setTokenExpiryDateTime(Instant.now().plus(1, ChronoUnit.DAYS));
+        groupRepository.save(group);
+        User joiner = userRepository.save(new User("0824444444", null, null));
+        entityManager.flush();
+        entityManager.clear();
+
+        Membership membership = groupBroker.addMemberViaJoinCode(joiner.getUid(), group.getUid(), "1234", UserInterfaceType.USSD);
+        assertNotNull(membership);
+        groupBroker.addMemberViaJoinCode(joiner.getUid(), group.getUid(), "1234", UserInterfaceType.USSD);
+
+        Group groupFromDb = groupRepository.findOneByUid(group.getUid());
+        assertFalse(entityManager.getEntityManager().getEntityManagerFactory().getPersistenceUnitUtil().isLoaded(groupFromDb, "memberships"));
+        assertThat(membershipRepository.countByGroup(groupFromDb), is(2));
+    }
+
+
     /* @Test
     @Rollback
     public void shouldNotDuplicateMembers() {
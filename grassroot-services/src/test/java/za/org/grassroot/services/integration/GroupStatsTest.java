@@ -0,0 +1,94 @@
+package za.org.grassroot.services.integration;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import za.org.grassroot.core.domain.GroupRole;
+import za.org.grassroot.core.domain.User;
+import za.org.grassroot.core.domain.group.Group;
+import za.org.grassroot.core.domain.group.GroupJoinMethod;
+import za.org.grassroot.core.domain.group.GroupPermissionTemplate;
+import za.org.grassroot.core.enums.Province;
+import za.org.grassroot.core.repository.GroupRepository;
+import za.org.grassroot.core.repository.MembershipRepository;
+import za.org.grassroot.core.repository.UserRepository;
+import za.org.grassroot.services.ServicesTestConfig;
+import za.org.grassroot.services.group.GroupStatsBroker;
+
+import java.util.Collections;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+// not run in a test transaction, as the stats are only adjusted as each change commits
+@RunWith(SpringRunner.class) @DataJpaTest
+@ContextConfiguration(classes = ServicesTestConfig.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public class GroupStatsTest {
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private GroupStatsBroker groupStatsBroker;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private GroupRepository groupRepository;
+
+    @Autowired
+    private MembershipRepository membershipRepository;
+
+    @Test
+    public void shouldKeepStatsOfNewGroupAsMembersAndProvincesChange() {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        final String groupUid = transactionTemplate.execute(status -> {
+            User organizer = userRepository.save(new User("0827770001", "organizer", null));
+            User mover = new User("0827770002", "mover", null);
+            mover.setProvince(Province.ZA_GP);
+            mover = userRepository.save(mover);
+            Group group = new Group("counted group", GroupPermissionTemplate.DEFAULT_GROUP, organizer);
+            group.addMember(organizer, GroupRole.ROLE_GROUP_ORGANIZER, GroupJoinMethod.ADDED_AT_CREATION, null);
+            group.addMember(mover, GroupRole.ROLE_ORDINARY_MEMBER, GroupJoinMethod.ADDED_BY_OTHER_MEMBER, null);
+            return groupRepository.save(group).getUid();
+        });
+
+        Map<String, Integer> provinces = groupStatsBroker.getProvincesStats(groupUid);
+        assertEquals(2, provinces.size());
+        assertEquals(1, (int) provinces.get(Province.ZA_GP.name()));
+        assertEquals(1, (int) provinces.get("UNKNOWN"));
+        assertEquals(1, (int) groupStatsBroker.getSourcesStats(groupUid).get(GroupJoinMethod.ADDED_BY_OTHER_MEMBER.name()));
+        // counted as it was created, so never left for the scheduled job
+        assertTrue(groupStatsBroker.fetchGroupsAwaitingStats().isEmpty());
+
+        transactionTemplate.execute(status -> {
+            userRepository.findByPhoneNumberAndPhoneNumberNotNull("0827770002").setProvince(Province.ZA_LP);
+            return null;
+        });
+        assertEquals(1, (int) groupStatsBroker.getProvincesStats(groupUid).get(Province.ZA_LP.name()));
+        assertEquals(null, groupStatsBroker.getProvincesStats(groupUid).get(Province.ZA_GP.name()));
+
+        transactionTemplate.execute(status -> {
+            User mover = userRepository.findByPhoneNumberAndPhoneNumberNotNull("0827770002");
+            // moved again, and then left, so the member is taken off the province they had before this transaction
+            mover.setProvince(Province.ZA_EC);
+            userRepository.flush();
+            membershipRepository.delete(membershipRepository.findByGroupUidAndUserUid(groupUid, mover.getUid()));
+            return null;
+        });
+        assertEquals(Collections.singletonMap("UNKNOWN", 1), groupStatsBroker.getProvincesStats(groupUid));
+        assertEquals(1, (int) groupStatsBroker.getOrganisationsStats(groupUid).get("Unknown"));
+        assertTrue(groupStatsBroker.fetchGroupsToReconcile().isEmpty());
+    }
+
+}
@@ -0,0 +1,230 @@
+package za.org.grassroot.services.integration;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.util.AopTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import za.org.grassroot.core.domain.GroupRole;
+import za.org.grassroot.core.domain.User;
+import za.org.grassroot.core.domain.group.Group;
+import za.org.grassroot.core.domain.group.GroupJoinMethod;
+import za.org.grassroot.core.domain.group.GroupPermissionTemplate;
+import za.org.grassroot.core.domain.notification.VoteResultsNotification;
+import za.org.grassroot.core.domain.task.EventLog;
+import za.org.grassroot.core.domain.task.Vote;
+import za.org.grassroot.core.enums.EventLogType;
+import za.org.grassroot.core.repository.EventLogRepository;
+import za.org.grassroot.core.repository.EventRepository;
+import za.org.grassroot.core.repository.GroupRepository;
+import za.org.grassroot.core.repository.NotificationRepository;
+import za.org.grassroot.core.repository.UserRepository;
+import za.org.grassroot.core.repository.VoteOptionTallyRepository;
+import za.org.grassroot.services.ServicesTestConfig;
+import za.org.grassroot.services.task.VoteBroker;
+import za.org.grassroot.services.task.VoteTallyStore;
+import za.org.grassroot.services.util.LogsAndNotificationsBroker;
+import za.org.grassroot.services.util.LogsAndNotificationsBundle;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doCallRealMethod;
+import static org.mockito.Mockito.reset;
+
+@RunWith(SpringRunner.class) @DataJpaTest
+@ContextConfiguration(classes = ServicesTestConfig.class)
+@TestPropertySource(properties = "grassroot.vote.results.batch.size=2")
+public class VoteBrokerTest {
+
+    @Autowired
+    private VoteBroker voteBroker;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private GroupRepository groupRepository;
+
+    @Autowired
+    private EventRepository eventRepository;
+
+    @Autowired
+    private EventLogRepository eventLogRepository;
+
+    @Autowired
+    private NotificationRepository notificationRepository;
+
+    @Autowired
+    private VoteOptionTallyRepository voteOptionTallyRepository;
+
+    @Autowired
+    private VoteTallyStore voteTallyStore;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @SpyBean
+    private LogsAndNotificationsBroker logsAndNotificationsBroker;
+
+    @Test
+    public void shouldTallyResponsesIncludingThoseLoggedBeforeTallyAndChanges() {
+        User organizer = userRepository.save(new User("0825555541", null, null));
+        User first = userRepository.save(new User("0825555542", null, null));
+        User second = userRepository.save(new User("0825555543", null, null));
+        Group group = new Group("tallied vote", GroupPermissionTemplate.DEFAULT_GROUP, organizer);
+        group.addMember(organizer, GroupRole.ROLE_GROUP_ORGANIZER, GroupJoinMethod.ADDED_AT_CREATION, null);
+        group.addMember(first, GroupRole.ROLE_ORDINARY_MEMBER, GroupJoinMethod.ADDED_BY_OTHER_MEMBER, null);
+        group.addMember(second, GroupRole.ROLE_ORDINARY_MEMBER, GroupJoinMethod.ADDED_BY_OTHER_MEMBER, null);
+        group = groupRepository.save(group);
+
+        Vote vote = new Vote("colours", Instant.now().plus(2, ChronoUnit.DAYS), organizer, group);
+        vote.setVoteOptions(Arrays.asList("Red", "Blue"));
+        vote = eventRepository.save(vote);
+
+        // as if responded before tallies were kept
+        eventLogRepository.save(new EventLog(organizer, vote, EventLogType.VOTE_OPTION_RESPONSE, " blue"));
+
+        voteBroker.recordUserVote(first.getUid(), vote.getUid(), "red");
+        voteBroker.recordUserVote(second.getUid(), vote.getUid(), "Blue");
+        voteBroker.recordUserVote(second.getUid(), vote.getUid(), "RED ");
+
+        Map<String, Long> results = voteBroker.fetchVoteResults(organizer.getUid(), vote.getUid(), false);
+        assertEquals(Long.valueOf(2), results.get("Red"));
+        assertEquals(Long.valueOf(1), results.get("Blue"));
+        assertEquals(Long.valueOf(3), results.get("TOTAL_VOTE_MEMBERS"));
+    }
+
+    @Test
+    public void shouldResetTallyInPlaceWhenOptionAdded() {
+        User organizer = userRepository.save(new User("0825555561", null, null));
+        User first = userRepository.save(new User("0825555562", null, null));
+        User second = userRepository.save(new User("0825555563", null, null));
+        Group group = new Group("changed vote", GroupPermissionTemplate.DEFAULT_GROUP, organizer);
+        group.addMember(organizer, GroupRole.ROLE_GROUP_ORGANIZER, GroupJoinMethod.ADDED_AT_CREATION, null);
+        group.addMember(first, GroupRole.ROLE_ORDINARY_MEMBER, GroupJoinMethod.ADDED_BY_OTHER_MEMBER, null);
+        group.addMember(second, GroupRole.ROLE_ORDINARY_MEMBER, GroupJoinMethod.ADDED_BY_OTHER_MEMBER, null);
+        group = groupRepository.save(group);
+
+        Vote vote = new Vote("colours", Instant.now().plus(2, ChronoUnit.DAYS), organizer, group);
+        vote.setVoteOptions(Arrays.asList("Red", "Blue"));
+        vote = eventRepository.save(vote);
+
+        voteBroker.recordUserVote(first.getUid(), vote.getUid(), "Red");
+        voteBroker.recordUserVote(second.getUid(), vote.getUid(), "Blue");
+        assertEquals(2 * 8, voteOptionTallyRepository.count());
+
+        voteBroker.updateVoteOptions(organizer.getUid(), vote.getUid(), Arrays.asList("Red", "Blue", "Green"), null);
+        voteBroker.recordUserVote(first.getUid(), vote.getUid(), "Green");
+        voteBroker.recordUserVote(second.getUid(), vote.getUid(), "green");
+
+        Map<String, Long> results = voteBroker.fetchVoteResults(organizer.getUid(), vote.getUid(), false);
+        assertEquals(Long.valueOf(0), results.get("Red"));
+        assertEquals(Long.valueOf(0), results.get("Blue"));
+        assertEquals(Long.valueOf(2), results.get("Green"));
+        assertEquals(3 * 8, voteOptionTallyRepository.count());
+    }
+
+    @Test
+    public void shouldSetUpTallyForNewVoteSoResponsesNeedNoRebuild() {
+        User organizer = userRepository.save(new User("0825555581", null, null));
+        User first = userRepository.save(new User("0825555582", null, null));
+        Group group = new Group("new vote", GroupPermissionTemplate.DEFAULT_GROUP, organizer);
+        group.addMember(organizer, GroupRole.ROLE_GROUP_ORGANIZER, GroupJoinMethod.ADDED_AT_CREATION, null);
+        group.addMember(first, GroupRole.ROLE_ORDINARY_MEMBER, GroupJoinMethod.ADDED_BY_OTHER_MEMBER, null);
+        group = groupRepository.save(group);
+
+        Vote vote = new Vote("colours", Instant.now().plus(2, ChronoUnit.DAYS), organizer, group);
+        vote.setVoteOptions(Arrays.asList("Red", "Blue"));
+        vote = eventRepository.save(vote);
+        voteTallyStore.initialise(vote);
+        assertEquals(2 * 8, voteOptionTallyRepository.count());
+
+        // a response logged outside the tally would be picked up by a rebuild, so it stays uncounted if none happens
+        eventLogRepository.save(new EventLog(organizer, vote, EventLogType.VOTE_OPTION_RESPONSE, "Blue"));
+        voteBroker.recordUserVote(first.getUid(), vote.getUid(), "Red");
+
+        Map<String, Long> results = voteBroker.fetchVoteResults(organizer.getUid(), vote.getUid(), false);
+        assertEquals(Long.valueOf(1), results.get("Red"));
+        assertEquals(Long.valueOf(0), results.get("Blue"));
+    }
+
+    @Test
+    public void shouldSendResultsOnceToEachMemberAcrossBatches() {
+        User organizer = userRepository.save(new User("0825555551", null, null));
+        User english = userRepository.save(new User("0825555552", null, null));
+        User zulu = userRepository.save(new User("0825555553", null, null));
+        zulu.setLanguageCode("zu");
+        User alreadySent = userRepository.save(new User("0825555554", null, null));
+        Group group = new Group("results vote", GroupPermissionTemplate.DEFAULT_GROUP, organizer);
+        group.addMember(organizer, GroupRole.ROLE_GROUP_ORGANIZER, GroupJoinMethod.ADDED_AT_CREATION, null);
+        group.addMember(english, GroupRole.ROLE_ORDINARY_MEMBER, GroupJoinMethod.ADDED_BY_OTHER_MEMBER, null);
+        group.addMember(zulu, GroupRole.ROLE_ORDINARY_MEMBER, GroupJoinMethod.ADDED_BY_OTHER_MEMBER, null);
+        group.addMember(alreadySent, GroupRole.ROLE_ORDINARY_MEMBER, GroupJoinMethod.ADDED_BY_OTHER_MEMBER, null);
+        group = groupRepository.save(group);
+
+        Vote vote = eventRepository.save(new Vote("closing", Instant.now().plus(1, ChronoUnit.HOURS), organizer, group));
+        EventLog priorResult = eventLogRepository.save(new EventLog(null, vote, EventLogType.RESULT));
+        notificationRepository.save(new VoteResultsNotification(alreadySent, "results", priorResult));
+
+        voteBroker.calculateAndSendVoteResults(vote.getUid());
+        assertEquals(Arrays.asList(organizer.getId(), english.getId(), zulu.getId(), alreadySent.getId()), resultTargetIds(vote));
+
+        // nothing left to send, so a second run stores nothing further
+        voteBroker.calculateAndSendVoteResults(vote.getUid());
+        assertEquals(4, resultTargetIds(vote).size());
+    }
+
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED) // so that what the broker commits, or not, can be seen
+    public void shouldStoreNoResultsWhenLaterBatchFails() {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        Vote vote = transactionTemplate.execute(status -> {
+            User organizer = userRepository.save(new User("0825555571", null, null));
+            Group group = new Group("failing results vote", GroupPermissionTemplate.DEFAULT_GROUP, organizer);
+            group.addMember(organizer, GroupRole.ROLE_GROUP_ORGANIZER, GroupJoinMethod.ADDED_AT_CREATION, null);
+            for (int i = 2; i <= 4; i++) {
+                group.addMember(userRepository.save(new User("082555557" + i, null, null)), GroupRole.ROLE_ORDINARY_MEMBER,
+                        GroupJoinMethod.ADDED_BY_OTHER_MEMBER, null);
+            }
+            return eventRepository.save(new Vote("closing", Instant.now().plus(1, ChronoUnit.HOURS), organizer, groupRepository.save(group)));
+        });
+
+        // the spy sits behind the transactional proxy
+        LogsAndNotificationsBroker spied = AopTestUtils.getUltimateTargetObject(logsAndNotificationsBroker);
+        doCallRealMethod().doThrow(new IllegalStateException("notification store unavailable"))
+                .when(spied).storeBundle(any(LogsAndNotificationsBundle.class));
+        voteBroker.calculateAndSendVoteResults(vote.getUid());
+
+        // the first batch went through, but is rolled back with the second, along with the result log
+        assertTrue(transactionTemplate.execute(status -> resultTargetIds(vote)).isEmpty());
+        assertTrue(transactionTemplate.execute(status ->
+                eventLogRepository.findByEventAndEventLogType(vote, EventLogType.RESULT)).isEmpty());
+
+        reset(spied);
+        voteBroker.calculateAndSendVoteResults(vote.getUid());
+        assertEquals(4, transactionTemplate.execute(status -> resultTargetIds(vote)).size());
+    }
+
+    private List<Long> resultTargetIds(Vote vote) {
+        return notificationRepository.findTargetIdsByEventIdsAndType(Collections.singletonList(vote.getId()), VoteResultsNotification.class)
+                .stream().map(row -> (Long) row[1]).sorted().collect(Collectors.toList());
+    }
+
+}
@@ -0,0 +1,68 @@
+package za.org.grassroot.services.util;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import za.org.grassroot.core.domain.ActionLog;
+import za.org.grassroot.core.domain.User;
+import za.org.grassroot.core.domain.UserLog;
+import za.org.grassroot.core.domain.notification.UserLanguageNotification;
+import za.org.grassroot.core.enums.UserInterfaceType;
+import za.org.grassroot.core.enums.UserLogType;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+
+public class DeferredLogQueueTest {
+
+    private ActionLogWriter actionLogWriter;
+    private DeferredLogQueue deferredLogQueue;
+
+    @Before
+    public void setUp() {
+        actionLogWriter = mock(ActionLogWriter.class);
+        deferredLogQueue = new DeferredLogQueue(actionLogWriter);
+        ReflectionTestUtils.setField(deferredLogQueue, "enabled", true);
+        ReflectionTestUtils.setField(deferredLogQueue, "capacity", 100);
+        ReflectionTestUtils.setField(deferredLogQueue, "batchSize", 10);
+        deferredLogQueue.init();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        deferredLogQueue.shutdown();
+    }
+
+    @Test
+    public void shouldNotDeferLogsThatNotificationsReferTo() {
+        User user = new User("0605550001", "test user", null);
+        UserLog session = new UserLog(user.getUid(), UserLogType.USER_SESSION, "", UserInterfaceType.USSD);
+        UserLog welcomed = new UserLog(user.getUid(), UserLogType.CREATED_IN_DB, "", UserInterfaceType.USSD);
+        UserLanguageNotification notification = new UserLanguageNotification(user, "welcome", welcomed);
+
+        List<ActionLog> writeNow = deferredLogQueue.deferWhereAllowed(Arrays.asList(session, welcomed),
+                Collections.singleton(notification));
+
+        assertEquals(Collections.singletonList(welcomed), writeNow);
+        verify(actionLogWriter, timeout(5000)).saveDeferredLogs(Collections.singletonList(session));
+    }
+
+    @Test
+    public void shouldNotDeferLogsReadBackForMenus() {
+        UserLog changedLanguage = new UserLog("user-1", UserLogType.CHANGED_LANGUAGE, "zu", UserInterfaceType.USSD);
+
+        List<ActionLog> writeNow = deferredLogQueue.deferWhereAllowed(Collections.singletonList(changedLanguage),
+                Collections.emptySet());
+
+        assertEquals(Collections.singletonList(changedLanguage), writeNow);
+        assertEquals(0, deferredLogQueue.countPending());
+    }
+
+}
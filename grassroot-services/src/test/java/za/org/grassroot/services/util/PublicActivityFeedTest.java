@@ -0,0 +1,82 @@
+package za.org.grassroot.services.util;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertSame;
+
+public class PublicActivityFeedTest {
+
+    private PublicActivityFeed feed;
+
+    @Before
+    public void setUp() {
+        feed = new PublicActivityFeed();
+        ReflectionTestUtils.setField(feed, "capacity", 3);
+        feed.init();
+    }
+
+    @Test
+    public void shouldMergeTypesMostRecentFirst() {
+        feed.load(PublicActivityType.JOINED_GROUP, Arrays.asList(activity(PublicActivityType.JOINED_GROUP, 10),
+                activity(PublicActivityType.JOINED_GROUP, 30)));
+        feed.record(activity(PublicActivityType.CALLED_VOTE, 20));
+
+        List<PublicActivityLog> logs = feed.snapshot().getLogs();
+        assertEquals(3, logs.size());
+        assertEquals(30, logs.get(0).getActionTimeMillis());
+        assertEquals(PublicActivityType.CALLED_VOTE, logs.get(1).getType());
+        assertEquals(10, logs.get(2).getActionTimeMillis());
+        assertEquals(2, feed.mostRecent(2).size());
+    }
+
+    @Test
+    public void shouldOverwriteOldestOnceFull() {
+        for (int i = 1; i <= 5; i++) {
+            feed.record(activity(PublicActivityType.CREATED_GROUP, i));
+        }
+
+        List<PublicActivityLog> logs = feed.snapshot().getLogs();
+        assertEquals(3, logs.size());
+        assertEquals(5, logs.get(0).getActionTimeMillis());
+        assertEquals(3, logs.get(2).getActionTimeMillis());
+    }
+
+    @Test
+    public void shouldOnlyChangeTagWhenFeedChanges() {
+        feed.record(activity(PublicActivityType.SIGNED_PETITION, 1));
+        PublicActivitySnapshot first = feed.snapshot();
+        assertSame(first, feed.snapshot());
+
+        feed.record(activity(PublicActivityType.SIGNED_PETITION, 2));
+        assertNotEquals(first.getTag(), feed.snapshot().getTag());
+    }
+
+    @Test
+    public void shouldKeepTagWhenReloadFindsNothingNew() {
+        feed.record(activity(PublicActivityType.JOINED_GROUP, 2));
+        feed.record(activity(PublicActivityType.JOINED_GROUP, 1));
+        PublicActivitySnapshot first = feed.snapshot();
+
+        feed.load(PublicActivityType.JOINED_GROUP, Arrays.asList(activity(PublicActivityType.JOINED_GROUP, 1),
+                activity(PublicActivityType.JOINED_GROUP, 2)));
+        assertSame(first, feed.snapshot());
+
+        feed.load(PublicActivityType.JOINED_GROUP, Arrays.asList(activity(PublicActivityType.JOINED_GROUP, 1),
+                activity(PublicActivityType.JOINED_GROUP, 3)));
+        assertNotEquals(first.getTag(), feed.snapshot().getTag());
+        assertEquals(3, feed.snapshot().getLogs().get(0).getActionTimeMillis());
+        assertEquals(2, feed.snapshot().getLogs().size());
+    }
+
+    private PublicActivityLog activity(PublicActivityType type, long timeMillis) {
+        return new PublicActivityLog(type, null, timeMillis);
+    }
+
+}
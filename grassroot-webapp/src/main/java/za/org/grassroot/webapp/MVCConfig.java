@@ -16,6 +16,7 @@ import org.springframework.web.servlet.i18n.LocaleChangeInterceptor;
 import org.springframework.web.servlet.i18n.SessionLocaleResolver;
 import za.org.grassroot.webapp.interceptor.SimpleLoggingInterceptor;
 import za.org.grassroot.webapp.interceptor.TokenValidationInterceptor;
+import za.org.grassroot.webapp.interceptor.USSDLatencyInterceptor;
 
 import java.util.Locale;
 
@@ -31,6 +32,9 @@ public class MVCConfig implements WebMvcConfigurer {
     @Autowired
     private TokenValidationInterceptor tokenValidationInterceptor;
 
+    @Autowired
+    private USSDLatencyInterceptor ussdLatencyInterceptor;
+
     @Bean
     public SimpleLoggingInterceptor loggingInterceptor(){return  new SimpleLoggingInterceptor();}
 
@@ -67,6 +71,8 @@ public class MVCConfig implements WebMvcConfigurer {
                 .excludePathPatterns("/api/news/list")
                 .excludePathPatterns("/api/user/profile/image/**")
                 .excludePathPatterns("/api/activity/list");
+        registry.addInterceptor(ussdLatencyInterceptor)
+                .addPathPatterns("/ussd/**");
     }
 
     @Bean (name = "messageSource")
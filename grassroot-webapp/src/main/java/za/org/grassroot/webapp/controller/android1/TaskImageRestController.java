@@ -15,6 +15,7 @@ import za.org.grassroot.core.domain.User;
 import za.org.grassroot.core.enums.TaskType;
 import za.org.grassroot.integration.exception.NoMicroVersionException;
 import za.org.grassroot.integration.exception.StoredMediaRetrievalFailure;
+import za.org.grassroot.integration.storage.StoredImage;
 import za.org.grassroot.services.task.TaskImageBroker;
 import za.org.grassroot.services.user.UserManagementService;
 import za.org.grassroot.webapp.enums.RestMessage;
@@ -100,11 +101,12 @@ public class TaskImageRestController {
         try {
             HttpHeaders headers = new HttpHeaders();
             headers.setContentType(MediaType.IMAGE_JPEG);
-            byte[] image = taskImageBroker.fetchImageForTask(null, taskType, logUid, true);
+            StoredImage image = taskImageBroker.fetchImageForTask(null, taskType, logUid, true);
             return ResponseEntity.ok()
                     .lastModified(24000)
+                    .eTag(image.getEtag())
                     .headers(headers)
-                    .body(image);
+                    .body(image.getContent());
         } catch (StoredMediaRetrievalFailure e) {
             return RestUtil.errorResponse(HttpStatus.BAD_REQUEST, RestMessage.TASK_IMAGE_ERROR);
         }
@@ -115,10 +117,11 @@ public class TaskImageRestController {
         try {
             HttpHeaders headers = new HttpHeaders();
             headers.setContentType(MediaType.IMAGE_JPEG);
-            byte[] image = taskImageBroker.fetchMicroThumbnailForTask(null, taskType, logUid);
+            StoredImage image = taskImageBroker.fetchMicroThumbnailForTask(null, taskType, logUid);
             return ResponseEntity.ok()
+                    .eTag(image.getEtag())
                     .headers(headers)
-                    .body(image);
+                    .body(image.getContent());
         } catch (NoMicroVersionException e) {
             logger.info("failed, going for the full image ...");
             return fetchTaskImage(taskType, logUid);
@@ -29,13 +29,18 @@ import za.org.grassroot.core.util.PhoneNumberUtil;
 import za.org.grassroot.integration.authentication.CreateJwtTokenRequest;
 import za.org.grassroot.integration.authentication.JwtService;
 import za.org.grassroot.integration.authentication.JwtType;
+import za.org.grassroot.integration.authentication.VerifiedJwtCache;
 import za.org.grassroot.integration.location.MunicipalFilteringBroker;
 import za.org.grassroot.integration.messaging.MessagingServiceBroker;
 import za.org.grassroot.services.AdminService;
 import za.org.grassroot.services.account.AccountFeaturesBroker;
+import za.org.grassroot.services.async.AsyncExecutorStats;
+import za.org.grassroot.services.async.BoundedAsyncExecutor;
 import za.org.grassroot.services.exception.NoSuchUserException;
 import za.org.grassroot.services.group.GroupBroker;
 import za.org.grassroot.services.group.MemberDataExportBroker;
+import za.org.grassroot.services.task.EventReminderBroker;
+import za.org.grassroot.services.task.ReminderRunStats;
 import za.org.grassroot.services.user.PasswordTokenService;
 import za.org.grassroot.services.user.UserManagementService;
 import za.org.grassroot.webapp.controller.rest.BaseRestController;
@@ -51,6 +56,7 @@ import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
 import java.util.function.Function;
+import java.util.stream.Collectors;
 
 import static za.org.grassroot.webapp.util.RestUtil.convertWorkbookToDownload;
 
@@ -74,6 +80,8 @@ public class AdminRestController extends BaseRestController{
     private MemberDataExportBroker memberDataExportBroker;
     private MunicipalFilteringBroker municipalFilteringBroker;
     private final MembershipRepository membershipRepository;
+    private final EventReminderBroker eventReminderBroker;
+    private final List<BoundedAsyncExecutor> asyncExecutors;
 
     public AdminRestController(UserManagementService userManagementService,
                                JwtService jwtService,
@@ -83,7 +91,9 @@ public class AdminRestController extends BaseRestController{
                                MessagingServiceBroker messagingServiceBroker,
                                PasswordTokenService passwordTokenService,
                                AccountFeaturesBroker accountFeaturesBroker,
-                               MembershipRepository membershipRepository) {
+                               MembershipRepository membershipRepository,
+                               EventReminderBroker eventReminderBroker,
+                               List<BoundedAsyncExecutor> asyncExecutors) {
         super(jwtService,userManagementService);
         this.adminService = adminService;
         this.userManagementService = userManagementService;
@@ -94,6 +104,8 @@ public class AdminRestController extends BaseRestController{
         this.jwtService = jwtService;
         this.accountFeaturesBroker = accountFeaturesBroker;
         this.membershipRepository = membershipRepository;
+        this.eventReminderBroker = eventReminderBroker;
+        this.asyncExecutors = asyncExecutors;
     }
 
     @Autowired(required = false) // as it depends on WhatsApp being active
@@ -249,6 +261,25 @@ public class AdminRestController extends BaseRestController{
     }
 
 
+    @RequestMapping(value = "/reminders/runs", method = RequestMethod.GET)
+    @ApiOperation(value = "Fetch stats from the latest run of each of the scheduled event reminder jobs")
+    public ResponseEntity<List<ReminderRunStats>> fetchLatestReminderRuns() {
+        return ResponseEntity.ok(eventReminderBroker.fetchLatestRuns());
+    }
+
+    @RequestMapping(value = "/async/executors", method = RequestMethod.GET)
+    @ApiOperation(value = "Fetch queue depths, wait times and rejections for each of the async executors")
+    public ResponseEntity<List<AsyncExecutorStats>> fetchAsyncExecutorStats() {
+        return ResponseEntity.ok(asyncExecutors.stream().map(BoundedAsyncExecutor::stats)
+                .sorted(Comparator.comparing(AsyncExecutorStats::getName)).collect(Collectors.toList()));
+    }
+
+    @RequestMapping(value = "/jwt/cache", method = RequestMethod.GET)
+    @ApiOperation(value = "Fetch hits, misses and failures for the cache of verified JWTs, and how long verification takes")
+    public ResponseEntity<VerifiedJwtCache.Stats> fetchJwtCacheStats() {
+        return ResponseEntity.ok(jwtService.getVerificationStats());
+    }
+
     @RequestMapping(value = "/config/fetch", method = RequestMethod.GET)
     public ResponseEntity<Map<String, String>> fetchConfigVars() {
         return ResponseEntity.ok(adminService.getCurrentConfigVariables());
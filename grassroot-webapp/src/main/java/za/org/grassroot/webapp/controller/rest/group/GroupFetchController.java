@@ -42,6 +42,7 @@ import za.org.grassroot.core.dto.group.GroupTimeChangedDTO;
 import za.org.grassroot.core.dto.group.GroupWebDTO;
 import za.org.grassroot.core.dto.group.MembershipRecordDTO;
 import za.org.grassroot.core.dto.membership.MembershipFullDTO;
+import za.org.grassroot.core.dto.membership.MembershipRecipientProjection;
 import za.org.grassroot.core.dto.membership.MembershipStdDTO;
 import za.org.grassroot.core.enums.Province;
 import za.org.grassroot.core.repository.MembershipRepository;
@@ -257,25 +258,28 @@ public class GroupFetchController extends BaseRestController {
         log.info("filtering, name phone or email = {}", namePhoneOrEmail);
         log.info("Do we have municipality ID? {}",municipalityId);
 
-        List<Membership> memberships = groupFetchBroker.filterGroupMembers(getUserFromRequest(request), groupUid,
+        List<MembershipRecipientProjection> members = groupFetchBroker.filterGroupMembers(getUserFromRequest(request), groupUid,
                 provinces, noProvince, taskTeams, topics, affiliations, joinMethods, joinedCampaignsUids,
                 joinDaysAgo, joinDate, joinDaysAgoCondition, namePhoneOrEmail, languages, groupRole);
 
         if (municipalFilteringBroker != null && municipalityId != null) {
             List<Membership> membershipsInMunicipality = municipalFilteringBroker.getMembersInMunicipality(groupUid,municipalityId + "");
-            memberships.retainAll(membershipsInMunicipality);
+            Set<Long> userIdsInMunicipality = membershipsInMunicipality.stream().map(m -> m.getUser().getId()).collect(Collectors.toSet());
+            members = members.stream().filter(m -> userIdsInMunicipality.contains(m.getUserId())).collect(Collectors.toList());
             log.info("Members in Municipality with id: {} is: {}",municipalityId,membershipsInMunicipality);
         }
-        // if this becomes non-performant, use a projection
+
+        // counts come off the projection, and only the page we return is loaded in full
         GroupFilterResponse response = new GroupFilterResponse();
-        List<MembershipStdDTO> dtos = memberships.stream().map(MembershipStdDTO::new).collect(Collectors.toList());
-        // dtos are now in memory so this is fine
-        response.setNumberSms(dtos.stream().filter(MembershipStdDTO::hasPhone).count());
-        response.setNumberEmail(dtos.stream().filter(MembershipStdDTO::hasEmail).count());
-        response.setNumberSmsAndEmail(dtos.stream().filter(MembershipStdDTO::hasBoth).count());
-        response.setTotalElements(dtos.size());
-        // sublist too fragile, hence using this, though looks slightly clumsy
-        response.setContent(dtos.stream().limit(maxEntities).collect(Collectors.toList()));
+        response.setNumberSms(members.stream().filter(MembershipRecipientProjection::hasPhone).count());
+        response.setNumberEmail(members.stream().filter(MembershipRecipientProjection::hasEmail).count());
+        response.setNumberSmsAndEmail(members.stream().filter(MembershipRecipientProjection::hasBoth).count());
+        response.setTotalElements(members.size());
+
+        List<Long> membershipIdsToReturn = members.stream().limit(maxEntities)
+                .map(MembershipRecipientProjection::getMembershipId).collect(Collectors.toList());
+        response.setContent(groupFetchBroker.fetchMemberships(membershipIdsToReturn).stream()
+                .map(MembershipStdDTO::new).collect(Collectors.toList()));
 
         return response;
     }
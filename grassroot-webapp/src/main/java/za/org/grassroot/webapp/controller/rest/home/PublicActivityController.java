@@ -4,12 +4,15 @@ import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
 import za.org.grassroot.services.util.LogsAndNotificationsBroker;
 import za.org.grassroot.services.util.PublicActivityLog;
+import za.org.grassroot.services.util.PublicActivitySnapshot;
 import za.org.grassroot.webapp.controller.rest.Grassroot2RestController;
 
 import java.util.List;
@@ -32,4 +35,16 @@ public class PublicActivityController {
         return logsAndNotificationsBroker.fetchMostRecentPublicLogs(Math.min(100, numberToFetch));
     }
 
+    @RequestMapping(value = "/feed", method = RequestMethod.GET)
+    @ApiOperation(value = "Fetches the whole public activity feed, most recent first", notes = "Returns an ETag that only " +
+            "changes when the feed does, so pollers should send it back as If-None-Match, to get a 304 if nothing has happened")
+    public ResponseEntity<List<PublicActivityLog>> fetchActivityFeed(WebRequest request) {
+        PublicActivitySnapshot feed = logsAndNotificationsBroker.fetchPublicActivityFeed();
+        final String eTag = "\"" + feed.getTag() + "\"";
+        if (request.checkNotModified(eTag)) {
+            return null;
+        }
+        return ResponseEntity.ok().eTag(eTag).body(feed.getLogs());
+    }
+
 }
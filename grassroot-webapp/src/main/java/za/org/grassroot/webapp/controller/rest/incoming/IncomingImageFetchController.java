@@ -4,6 +4,8 @@ import com.amazonaws.util.IOUtils;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.InputStreamResource;
+import org.springframework.core.io.Resource;
 import org.springframework.http.*;
 import org.springframework.web.bind.annotation.*;
 import za.org.grassroot.core.domain.group.Group;
@@ -20,6 +22,7 @@ import javax.servlet.http.HttpServletRequest;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.Locale;
 import java.util.Optional;
 
@@ -50,27 +53,13 @@ public class IncomingImageFetchController {
     }
 
     @RequestMapping(value = "/broadcast/{mediaFileKey}", method = RequestMethod.GET)
-    public ResponseEntity<byte[]> getBroadcastImage(@PathVariable String mediaFileKey)
-            throws IOException {
+    public ResponseEntity<Resource> getBroadcastImage(@PathVariable String mediaFileKey) {
         MediaFileRecord record = mediaFileBroker.load(MediaFunction.BROADCAST_IMAGE, mediaFileKey);
-        File imageFile = storageBroker.fetchFileFromRecord(record);
-        byte[] data = IOUtils.toByteArray(new FileInputStream(imageFile));
-        HttpHeaders headers = new HttpHeaders();
-        try {
-            headers.setContentType(MediaType.parseMediaType(record.getMimeType()));
-        } catch (InvalidMediaTypeException e) {
-            log.info("error processing mime type, record has: {}", record.getMimeType());
-            log.error("couldn't set MIME heading ... {}", e.getMessage());
-        }
-        String filename = "image-" + mediaFileKey + "." + record.getMimeType();
-        log.debug("file name : {}", filename);
-        headers.setContentDispositionFormData(filename, filename);
-        headers.setCacheControl("must-revalidate, post-check=0, pre-check=0");
-        return new ResponseEntity<>(data, headers, HttpStatus.OK);
+        return convertRecordToResponse(record);
     }
 
     @RequestMapping(value = "/user/{userUid}", method = RequestMethod.GET)
-    public ResponseEntity<byte[]> viewProfileImage(@PathVariable String userUid) throws IOException {
+    public ResponseEntity<Resource> viewProfileImage(@PathVariable String userUid) {
         MediaFileRecord userImgRecord = mediaFileBroker.load(MediaFunction.USER_PROFILE_IMAGE,
                 userProfileImagesFolder + "/" + userUid);
         log.info("Fetched record: {}", userImgRecord);
@@ -123,16 +112,16 @@ public class IncomingImageFetchController {
     }
 
     @RequestMapping(value = "/{mediaFunction}/{imageKey}", method = RequestMethod.GET)
-    public ResponseEntity<byte[]> fetchImage(@PathVariable MediaFunction mediaFunction,
-                                             @PathVariable String imageKey) throws IOException {
+    public ResponseEntity<Resource> fetchImage(@PathVariable MediaFunction mediaFunction,
+                                               @PathVariable String imageKey) {
         MediaFileRecord record = mediaFileBroker.load(mediaFunction, imageKey);
         log.info("record retrieved: {}", record);
         return convertRecordToResponse(record);
     }
 
-    private ResponseEntity<byte[]> convertRecordToResponse(MediaFileRecord record) throws IOException {
-        File imageFile = storageBroker.fetchFileFromRecord(record);
-        byte[] data = IOUtils.toByteArray(new FileInputStream(imageFile));
+    // streams the stored file on to the response as it comes from storage, which closes it once written
+    private ResponseEntity<Resource> convertRecordToResponse(MediaFileRecord record) {
+        InputStream imageData = storageBroker.openFileFromRecord(record);
         HttpHeaders headers = new HttpHeaders();
         try {
             headers.setContentType(MediaType.parseMediaType(record.getMimeType()));
@@ -144,7 +133,7 @@ public class IncomingImageFetchController {
         log.debug("file name : {}", filename);
         headers.setContentDispositionFormData(filename, filename);
         headers.setCacheControl("must-revalidate, post-check=0, pre-check=0");
-        return new ResponseEntity<>(data, headers, HttpStatus.OK);
+        return new ResponseEntity<>(new InputStreamResource(imageData), headers, HttpStatus.OK);
     }
 
     private ResponseEntity<byte[]> convertFileToResponse(File imageFile, MediaType mediaType) throws IOException {
@@ -22,6 +22,7 @@ import za.org.grassroot.core.enums.GroupLogType;
 import za.org.grassroot.core.enums.UserInterfaceType;
 import za.org.grassroot.core.enums.UserLogType;
 import za.org.grassroot.core.util.PhoneNumberUtil;
+import za.org.grassroot.services.JoinRoutingTable;
 import za.org.grassroot.services.UserResponseBroker;
 import za.org.grassroot.services.account.AccountFeaturesBroker;
 import za.org.grassroot.services.campaign.CampaignBroker;
@@ -36,7 +37,6 @@ import java.time.Duration;
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
 import java.util.*;
-import java.util.stream.Collectors;
 
 /**
  * Created by paballo on 2016/02/17.
@@ -62,6 +62,7 @@ public class IncomingSMSController {
 
     private final CampaignBroker campaignBroker;
     private final CampaignTextBroker campaignTextBroker;
+    private final JoinRoutingTable joinRoutingTable;
 
     private final LogsAndNotificationsBroker logsAndNotificationsBroker;
 
@@ -77,7 +78,8 @@ public class IncomingSMSController {
     @Autowired
     public IncomingSMSController(UserResponseBroker userResponseBroker, UserManagementService userManager, GroupBroker groupBroker,
                                  AccountFeaturesBroker accountFeaturesBroker, CampaignBroker campaignBroker,
-                                 CampaignTextBroker campaignTextBroker, LogsAndNotificationsBroker logsAndNotificationsBroker) {
+                                 CampaignTextBroker campaignTextBroker, JoinRoutingTable joinRoutingTable,
+                                 LogsAndNotificationsBroker logsAndNotificationsBroker) {
         this.userResponseBroker = userResponseBroker;
         this.userManager = userManager;
         this.groupBroker = groupBroker;
@@ -85,6 +87,7 @@ public class IncomingSMSController {
         this.campaignTextBroker = campaignTextBroker;
         this.logsAndNotificationsBroker = logsAndNotificationsBroker;
         this.campaignBroker = campaignBroker;
+        this.joinRoutingTable = joinRoutingTable;
     }
 
     @RequestMapping(value = "initiated/group", method = RequestMethod.GET)
@@ -92,8 +95,7 @@ public class IncomingSMSController {
     public @ResponseBody String receiveGroupSms(@RequestParam(value = FROM_PARAMETER_NEW) String phoneNumber,
                     @RequestParam(value = MSG_TEXT_PARAM_NEW) String message) {
         // temporary fix while we get second inbound number running
-        Map<String, String> campaignTags = campaignBroker.getActiveCampaignJoinWords();
-        if (campaignTags != null && campaignTags.keySet().contains(message.trim().toLowerCase())) {
+        if (joinRoutingTable.campaignForJoinWord(message).isPresent()) {
             log.info("matched a campaign word, triggering campaign sequence, in precedence to group");
             return receiveNewlyInitiatedSms(phoneNumber, message);
         }
@@ -105,16 +107,11 @@ public class IncomingSMSController {
         LogsAndNotificationsBundle bundle = new LogsAndNotificationsBundle();
         bundle.addLog(new UserLog(user.getUid(), UserLogType.INBOUND_JOIN_WORD, RECEIVED + message, UserInterfaceType.INCOMING_SMS));
 
-        Map<String, String> groupJoinWords = groupBroker.getJoinWordsWithGroupIds();
-
-        Set<String> groupMatches = groupJoinWords.entrySet().stream()
-                .filter(entry -> entry.getKey().toLowerCase().equalsIgnoreCase(message.trim()))
-                .map(Map.Entry::getValue).collect(Collectors.toSet());
+        Optional<String> groupMatch = joinRoutingTable.groupForJoinWord(message);
 
         final String reply;
-        if (!groupMatches.isEmpty()) {
-            // disambiguate somehow ... for the moment, just adding the first
-            final String groupUid = groupMatches.iterator().next();
+        if (groupMatch.isPresent()) {
+            final String groupUid = groupMatch.get();
             Membership membership = groupBroker.addMemberViaJoinCode(user.getUid(), groupUid, message, UserInterfaceType.INCOMING_SMS);
             // if group has custom welcome messages those will be triggered for everyone, in group broker, so don't do it here
             reply = membership.getGroup().isPaidFor() && !accountFeaturesBroker.hasGroupWelcomeMessages(groupUid) ?
@@ -140,17 +137,11 @@ public class IncomingSMSController {
         User user = userManager.loadOrCreateUser(phoneNumber, UserInterfaceType.INCOMING_SMS); // this may be a user we don't know
         LogsAndNotificationsBundle bundle = new LogsAndNotificationsBundle();
 
-        Map<String, String> campaignTags = campaignBroker.getActiveCampaignJoinWords();
-        log.info("active campaign tags = {}", campaignTags);
-
-        Set<String> campaignMatches = campaignTags.entrySet().stream()
-                .filter(entry -> entry.getKey().toLowerCase().equalsIgnoreCase(message.trim()))
-                .map(Map.Entry::getValue).collect(Collectors.toSet());
+        Optional<String> campaignMatch = joinRoutingTable.campaignForJoinWord(message);
 
         final String reply;
-        if (!campaignMatches.isEmpty()) {
-            // disambiguate somehow ... for the moment, just adding the first
-            final String campaignUid = campaignMatches.iterator().next();
+        if (campaignMatch.isPresent()) {
+            final String campaignUid = campaignMatch.get();
             bundle.addLog(new UserLog(user.getUid(), UserLogType.INBOUND_JOIN_WORD, MATCHED + message, UserInterfaceType.INCOMING_SMS));
             campaignBroker.recordEngagement(campaignUid, user.getUid(), UserInterfaceType.INCOMING_SMS, message);
 
@@ -9,6 +9,7 @@ import org.springframework.web.bind.annotation.RestController;
 import za.org.grassroot.webapp.model.ussd.AAT.Request;
 
 import java.net.URISyntaxException;
+import java.util.Optional;
 
 import static org.springframework.web.bind.annotation.RequestMethod.GET;
 import static za.org.grassroot.webapp.controller.ussd.UssdSupport.homePath;
@@ -38,7 +39,8 @@ public class USSDHomeController {
     @ResponseBody
     public Request startMenu(@RequestParam(value = phoneNumber) String inputNumber,
                              @RequestParam(value = UssdSupport.userInputParam, required = false) String enteredUSSD) throws URISyntaxException {
-		return this.ussdHomeService.processStartMenu(inputNumber, enteredUSSD);
+		Optional<Request> cachedMenu = this.ussdHomeService.processCachedStartMenu(inputNumber, enteredUSSD);
+		return cachedMenu.isPresent() ? cachedMenu.get() : this.ussdHomeService.processStartMenu(inputNumber, enteredUSSD);
 	}
 
     /*
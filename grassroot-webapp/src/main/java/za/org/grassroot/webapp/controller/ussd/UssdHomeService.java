@@ -3,8 +3,15 @@ package za.org.grassroot.webapp.controller.ussd;
 import za.org.grassroot.webapp.model.ussd.AAT.Request;
 
 import java.net.URISyntaxException;
+import java.util.Optional;
 
 public interface UssdHomeService {
+	/**
+	 * Serves the default start menu from cache alone, without a transaction, for a returning user with nothing to respond to.
+	 * Empty if the full start menu (processStartMenu) is needed.
+	 */
+	Optional<Request> processCachedStartMenu(String inputNumber, String enteredUSSD) throws URISyntaxException;
+
 	Request processStartMenu(String inputNumber, String enteredUSSD) throws URISyntaxException;
 
 	Request processForceStartMenu(String inputNumber, String trailingDigits) throws URISyntaxException;
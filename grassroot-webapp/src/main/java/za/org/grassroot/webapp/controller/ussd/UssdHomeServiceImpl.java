@@ -20,6 +20,7 @@ import za.org.grassroot.core.domain.group.Membership;
 import za.org.grassroot.core.domain.task.Event;
 import za.org.grassroot.core.domain.task.Todo;
 import za.org.grassroot.core.domain.task.Vote;
+import za.org.grassroot.core.dto.UserMinimalProjection;
 import za.org.grassroot.core.enums.UserInterfaceType;
 import za.org.grassroot.core.enums.UserLogType;
 import za.org.grassroot.integration.location.LocationInfoBroker;
@@ -38,6 +39,7 @@ import za.org.grassroot.webapp.enums.USSDSection;
 import za.org.grassroot.webapp.model.ussd.AAT.Option;
 import za.org.grassroot.webapp.model.ussd.AAT.Request;
 import za.org.grassroot.webapp.util.USSDCampaignConstants;
+import za.org.grassroot.webapp.util.USSDLatencyHistogram;
 import za.org.grassroot.webapp.util.USSDUrlUtil;
 
 import javax.annotation.PostConstruct;
@@ -94,12 +96,14 @@ public class UssdHomeServiceImpl implements UssdHomeService {
 	private final GroupQueryBroker groupQueryBroker;
 	private final AccountFeaturesBroker accountFeaturesBroker;
 	private final GroupBroker groupBroker;
+	private final USSDLatencyHistogram latencyHistogram;
 
 	private static final USSDSection thisSection = HOME;
 
 	public UssdHomeServiceImpl(UssdSupport ussdSupport, UssdLiveWireService ussdLiveWireService, @Autowired(required = false) UssdGeoApiService ussdGeoApiService, UssdTodoService ussdTodoService, UssdVoteService ussdVoteService, UssdMeetingService ussdMeetingService,
 							   UssdSafetyGroupService ussdSafetyGroupService, LocationInfoBroker locationInfoBroker, UserManagementService userManager, CampaignBroker campaignBroker, CampaignTextBroker campaignTextBroker, AsyncUserLogger userLogger,
-							   CacheUtilService cacheManager, UserResponseBroker userResponseBroker, GroupQueryBroker groupQueryBroker, AccountFeaturesBroker accountFeaturesBroker, GroupBroker groupBroker) {
+							   CacheUtilService cacheManager, UserResponseBroker userResponseBroker, GroupQueryBroker groupQueryBroker, AccountFeaturesBroker accountFeaturesBroker, GroupBroker groupBroker,
+							   USSDLatencyHistogram latencyHistogram) {
 		this.ussdLiveWireService = ussdLiveWireService;
 		this.ussdSafetyGroupService = ussdSafetyGroupService;
 		this.locationInfoBroker = locationInfoBroker;
@@ -117,6 +121,7 @@ public class UssdHomeServiceImpl implements UssdHomeService {
 		this.groupQueryBroker = groupQueryBroker;
 		this.accountFeaturesBroker = accountFeaturesBroker;
 		this.groupBroker = groupBroker;
+		this.latencyHistogram = latencyHistogram;
 	}
 
 	@PostConstruct
@@ -130,6 +135,26 @@ public class UssdHomeServiceImpl implements UssdHomeService {
 		}
 	}
 
+	@Override
+	public Optional<Request> processCachedStartMenu(String inputNumber, String enteredUSSD) throws URISyntaxException {
+		final Stopwatch stopwatch = Stopwatch.createStarted();
+		if (parseTrailingDigits(enteredUSSD).isPresent() || userInterrupted(inputNumber)) {
+			return Optional.empty();
+		}
+
+		// only users who have been through the full start menu recently, with a name set, will be in both caches
+		final UserMinimalProjection user = cacheManager.checkCacheForUserMinimalInfo(inputNumber);
+		if (user == null || !user.hasName() || !cacheManager.hasNoPendingResponse(user.getUid())) {
+			return Optional.empty();
+		}
+
+		final USSDMenu openingMenu = defaultStartMenu(user);
+		userLogger.recordUserSession(user.getUid(), UserInterfaceType.USSD, null);
+		log.info("Generating home menu from cache, time taken: {} msecs", stopwatch.elapsed(TimeUnit.MILLISECONDS));
+		latencyHistogram.record(startMenu + ".cached", stopwatch.elapsed(TimeUnit.MILLISECONDS));
+		return Optional.of(ussdSupport.menuBuilder(openingMenu, true));
+	}
+
 	@Override
 	@Transactional
 	public Request processStartMenu(String inputNumber, String enteredUSSD) throws URISyntaxException {
@@ -153,6 +178,7 @@ public class UssdHomeServiceImpl implements UssdHomeService {
 
 			userLogger.recordUserSession(sessionUser.getUid(), UserInterfaceType.USSD, openingMenu.getLinkedEntity());
 			log.info("Generating home menu, time taken: {} msecs", stopwatch.elapsed(TimeUnit.MILLISECONDS));
+			latencyHistogram.record(startMenu + ".full", stopwatch.elapsed(TimeUnit.MILLISECONDS));
 			return ussdSupport.menuBuilder(openingMenu, true);
 		}
 	}
@@ -203,9 +229,14 @@ public class UssdHomeServiceImpl implements UssdHomeService {
 		recordInitiatedAndSendWelcome(user, true);
 		EntityForUserResponse entity = userResponseBroker.checkForEntityForUserResponse(user.getUid(), true);
 		USSDResponseTypes neededResponse = neededResponse(entity, user);
-		return neededResponse.equals(USSDResponseTypes.NONE)
-				? defaultStartMenu(user)
-				: requestUserResponse(user, neededResponse, entity);
+		if (!neededResponse.equals(USSDResponseTypes.NONE)) {
+			return requestUserResponse(user, neededResponse, entity);
+		}
+		// so the next session can skip all of the above, until something is created for the user
+		if (user.hasName()) {
+			cacheManager.putNoPendingResponseForUser(user.getUid());
+		}
+		return defaultStartMenu(user);
 	}
 
 	@Override
@@ -348,6 +379,11 @@ public class UssdHomeServiceImpl implements UssdHomeService {
 		return ussdSupport.welcomeMenu(welcomeMessage, sessionUser);
 	}
 
+	private USSDMenu defaultStartMenu(UserMinimalProjection sessionUser) {
+		String welcomeMessage = ussdSupport.getMessage(thisSection, startMenu, ussdSupport.promptKey + "-named", sessionUser.getDisplayName(), sessionUser);
+		return ussdSupport.welcomeMenu(welcomeMessage, sessionUser);
+	}
+
 	private USSDMenu requestUserResponse(User user, USSDResponseTypes response, EntityForUserResponse entity) throws URISyntaxException {
 		switch (response) {
 			case RESPOND_SAFETY:
@@ -126,6 +126,10 @@ public class UssdSupport {
 	}
 
 	public USSDMenu welcomeMenu(String opening, User user) {
+		return welcomeMenu(opening, convert(user));
+	}
+
+	public USSDMenu welcomeMenu(String opening, UserMinimalProjection user) {
 		USSDMenu homeMenu = new USSDMenu(opening);
 		openingSequenceWithGroups.forEach(s -> {
 			String[] urlMsgPair = openingMenuOptions.get(s);
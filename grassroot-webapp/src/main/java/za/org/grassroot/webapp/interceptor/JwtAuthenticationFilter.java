@@ -6,6 +6,7 @@ import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.filter.OncePerRequestFilter;
 import za.org.grassroot.core.domain.StandardRole;
 import za.org.grassroot.integration.authentication.JwtService;
+import za.org.grassroot.integration.authentication.VerifiedJwt;
 import za.org.grassroot.webapp.model.http.AuthorizationHeader;
 
 import javax.servlet.FilterChain;
@@ -13,7 +14,7 @@ import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
-import java.util.List;
+import java.util.Optional;
 import java.util.Set;
 import java.util.stream.Collectors;
 
@@ -40,11 +41,11 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
         log.debug("auth headers: {}, token: {}", request.getHeaderNames(), token);
 
-        if (authorizationHeader.hasBearerToken() && jwtService.isJwtTokenValid(token)) {
-            String userId = jwtService.getUserIdFromJwtToken(token);
+        final Optional<VerifiedJwt> verifiedJwt = authorizationHeader.hasBearerToken() ? jwtService.verifyJwtToken(token) : Optional.empty();
+        if (verifiedJwt.isPresent()) {
+            String userId = verifiedJwt.get().getUserUid();
             log.debug("User ID: {}", userId);
-            final List<String> standardRolesNames = jwtService.getStandardRolesFromJwtToken(token);
-            final Set<StandardRole> standardRoles = standardRolesNames.stream().map(StandardRole::valueOf).collect(Collectors.toSet());
+            final Set<StandardRole> standardRoles = verifiedJwt.get().getStandardRoles().stream().map(StandardRole::valueOf).collect(Collectors.toSet());
             log.debug("and user roles = {}", standardRoles);
             JwtBasedAuthentication auth = new JwtBasedAuthentication(standardRoles, token, userId);
             SecurityContextHolder.getContext().setAuthentication(auth);
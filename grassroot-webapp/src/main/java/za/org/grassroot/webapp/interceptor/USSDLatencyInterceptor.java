@@ -0,0 +1,46 @@
+package za.org.grassroot.webapp.interceptor;
+
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.handler.HandlerInterceptorAdapter;
+import za.org.grassroot.webapp.util.USSDLatencyHistogram;
+import za.org.grassroot.webapp.util.USSDUrlUtil;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Times each USSD hop and records it against the menu path, e.g., "start" or "vote/respond"
+ */
+@Component
+public class USSDLatencyInterceptor extends HandlerInterceptorAdapter {
+
+    private static final String startTimeAttribute = "ussdStartNanos";
+
+    private final USSDLatencyHistogram latencyHistogram;
+
+    public USSDLatencyInterceptor(USSDLatencyHistogram latencyHistogram) {
+        this.latencyHistogram = latencyHistogram;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        request.setAttribute(startTimeAttribute, System.nanoTime());
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        Object startTime = request.getAttribute(startTimeAttribute);
+        if (startTime != null) {
+            long elapsedMillis = (System.nanoTime() - (Long) startTime) / 1_000_000;
+            latencyHistogram.record(menuPath(request), elapsedMillis);
+        }
+    }
+
+    private String menuPath(HttpServletRequest request) {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        int menuStart = path.indexOf(USSDUrlUtil.homePath);
+        return menuStart == -1 ? path : path.substring(menuStart + USSDUrlUtil.homePath.length());
+    }
+
+}
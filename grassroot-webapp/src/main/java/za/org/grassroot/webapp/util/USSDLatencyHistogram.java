@@ -0,0 +1,76 @@
+package za.org.grassroot.webapp.util;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bucketed response times per USSD menu, so we can see how close each hop is getting to the gateway's time limit.
+ * Counts are per window: each time the distribution is logged, the window is reset.
+ */
+@Component @Slf4j
+public class USSDLatencyHistogram {
+
+    // upper bounds of the buckets, in msecs, with a final overflow bucket for anything past the last bound
+    private static final long[] BUCKET_BOUNDS = { 50, 100, 250, 500, 1000, 2000, 4000 };
+
+    private final Map<String, LongAdder[]> menuBuckets = new ConcurrentHashMap<>();
+
+    public void record(String menu, long elapsedMillis) {
+        LongAdder[] buckets = menuBuckets.computeIfAbsent(menu, key -> newBuckets());
+        int i = 0;
+        while (i < BUCKET_BOUNDS.length && elapsedMillis > BUCKET_BOUNDS[i]) {
+            i++;
+        }
+        buckets[i].increment();
+    }
+
+    // returns the counts per bucket for each menu, in the order of the bounds, with the overflow bucket last
+    public Map<String, long[]> snapshot() {
+        Map<String, long[]> counts = new TreeMap<>();
+        menuBuckets.forEach((menu, buckets) -> counts.put(menu, Arrays.stream(buckets).mapToLong(LongAdder::sum).toArray()));
+        return counts;
+    }
+
+    @Scheduled(fixedRateString = "${grassroot.ussd.latency.log.interval:900000}")
+    public void logAndReset() {
+        Map<String, long[]> counts = snapshot();
+        if (counts.isEmpty()) {
+            return;
+        }
+        log.info("USSD menu latencies, buckets (msecs) of <= {} and over", Arrays.toString(BUCKET_BOUNDS));
+        counts.forEach((menu, buckets) -> log.info("{}: {}, p95 {}", menu, Arrays.toString(buckets), formatBound(percentileBucket(buckets, 0.95))));
+        menuBuckets.clear();
+    }
+
+    private int percentileBucket(long[] buckets, double percentile) {
+        long total = Arrays.stream(buckets).sum();
+        long cumulative = 0;
+        for (int i = 0; i < buckets.length; i++) {
+            cumulative += buckets[i];
+            if (cumulative >= total * percentile) {
+                return i;
+            }
+        }
+        return buckets.length - 1;
+    }
+
+    private String formatBound(int bucket) {
+        return bucket < BUCKET_BOUNDS.length ? "<= " + BUCKET_BOUNDS[bucket] + " msecs" : "> " + BUCKET_BOUNDS[BUCKET_BOUNDS.length - 1] + " msecs";
+    }
+
+    private static LongAdder[] newBuckets() {
+        LongAdder[] buckets = new LongAdder[BUCKET_BOUNDS.length + 1];
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = new LongAdder();
+        }
+        return buckets;
+    }
+
+}
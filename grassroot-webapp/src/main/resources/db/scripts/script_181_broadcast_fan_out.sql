@@ -0,0 +1,8 @@
+-- progress of notification fan-out, so interrupted broadcasts can resume
+alter table broadcast add column fan_out_pending boolean default false;
+alter table broadcast add column fan_out_cursor bigint;
+alter table broadcast add column recipients_processed bigint default 0;
+create index idx_broadcast_fan_out_pending on broadcast(fan_out_pending) where fan_out_pending = true;
+
+-- notification ids are now allocated by hibernate in blocks of 50, so inserts can be batched
+alter sequence notification_id_seq increment by 50;
@@ -0,0 +1,5 @@
+alter sequence notification_id_seq increment by 1;
+drop index if exists idx_broadcast_fan_out_pending;
+alter table broadcast drop column recipients_processed;
+alter table broadcast drop column fan_out_cursor;
+alter table broadcast drop column fan_out_pending;
@@ -0,0 +1,34 @@
+-- materialised group stats, adjusted as member logs are stored (see GroupStatsBroker)
+create table group_stats_count (
+  id  bigserial not null,
+  group_id int8 not null,
+  stat_type varchar(50) not null,
+  stat_key varchar(255) not null,
+  member_count int4 not null,
+  primary key (id)
+);
+
+alter table group_stats_count add constraint fk_group_stats_count_group foreign key (group_id) references group_profile;
+create index idx_group_stats_count_group_type on group_stats_count(group_id, stat_type);
+
+create table group_member_daily_change (
+  id  bigserial not null,
+  group_id int8 not null,
+  change_date date not null,
+  members_added int4 not null,
+  members_removed int4 not null,
+  primary key (id)
+);
+
+alter table group_member_daily_change add constraint fk_group_member_change_group foreign key (group_id) references group_profile;
+create index idx_group_member_change_group_date on group_member_daily_change(group_id, change_date);
+
+-- growth stats now read these instead of replaying the logs, so fill in the history
+insert into group_member_daily_change (group_id, change_date, members_added, members_removed)
+  select group_id, cast(created_date_time as date),
+    sum(case when group_log_type = 'GROUP_MEMBER_REMOVED' then 0 else 1 end),
+    sum(case when group_log_type = 'GROUP_MEMBER_REMOVED' then 1 else 0 end)
+  from group_log
+  where group_log_type in ('GROUP_MEMBER_ADDED', 'GROUP_MEMBER_ADDED_AT_CREATION', 'GROUP_MEMBER_ADDED_VIA_CAMPAIGN',
+    'GROUP_MEMBER_ADDED_VIA_JOIN_CODE', 'GROUP_MEMBER_REMOVED')
+  group by group_id, cast(created_date_time as date);
@@ -0,0 +1,2 @@
+drop table group_member_daily_change;
+drop table group_stats_count;
@@ -0,0 +1,19 @@
+-- hourly campaign engagement rollup, fed as campaign logs are stored (see CampaignStatsBroker)
+-- campaigns are rebuilt from their logs when next logged to (and read from the logs until then), so there is no backfill here
+create table campaign_stats_rollup (
+  id  bigserial not null,
+  campaign_id int8 not null,
+  period_start timestamp not null,
+  campaign_log_type varchar(50) not null,
+  channel varchar(50) not null,
+  province varchar(50) not null,
+  users_reached int4 not null default 0,
+  users_current int4 not null default 0,
+  primary key (id)
+);
+
+alter table campaign_stats_rollup add constraint fk_campaign_stats_rollup_campaign foreign key (campaign_id) references campaign;
+create index idx_campaign_stats_rollup_campaign_period on campaign_stats_rollup(campaign_id, period_start);
+
+-- for the per-user history read as each log is stored
+create index if not exists idx_campaign_log_campaign_user on campaign_log(campaign_id, user_id);
@@ -0,0 +1,2 @@
+drop index if exists idx_campaign_log_campaign_user;
+drop table campaign_stats_rollup;
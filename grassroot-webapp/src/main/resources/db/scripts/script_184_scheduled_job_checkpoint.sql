@@ -0,0 +1,16 @@
+-- progress of long running scheduled jobs, so an interrupted run can be resumed (see GeoAggregationBroker)
+create table scheduled_job_checkpoint (
+  id  bigserial not null,
+  job_name varchar(255) not null,
+  run_date date not null,
+  baseline_date date,
+  last_processed_id int8 not null default 0,
+  completed boolean not null default false,
+  update_date_time timestamp not null,
+  primary key (id)
+);
+
+alter table scheduled_job_checkpoint add constraint uk_scheduled_job_checkpoint_job_name unique (job_name);
+
+-- for the nightly group location run, which walks active groups in id order and looks up member location logs by time
+create index if not exists idx_user_location_log_timestamp on user_location_log(timestamp);
@@ -0,0 +1,2 @@
+drop index if exists idx_user_location_log_timestamp;
+drop table scheduled_job_checkpoint;
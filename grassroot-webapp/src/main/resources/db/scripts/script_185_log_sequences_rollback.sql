@@ -0,0 +1,7 @@
+alter sequence group_log_id_seq increment by 1;
+alter sequence user_log_id_seq increment by 1;
+alter sequence event_log_id_seq increment by 1;
+alter sequence action_todo_log_id_seq increment by 1;
+alter sequence account_log_id_seq increment by 1;
+alter sequence live_wire_log_id_seq increment by 1;
+alter sequence campaign_log_id_seq increment by 1;
@@ -0,0 +1,2 @@
+alter sequence user_profile_id_seq increment by 50;
+alter sequence group_user_membership_id_seq increment by 50;
@@ -0,0 +1,2 @@
+alter table only group_profile add column latest_activity timestamp without time zone;
+update group_profile set latest_activity = greatest(created_date_time, last_log_creation_time, last_task_creation_time);
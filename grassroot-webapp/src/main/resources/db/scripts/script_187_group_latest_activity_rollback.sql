@@ -0,0 +1 @@
+alter table only group_profile drop column latest_activity;
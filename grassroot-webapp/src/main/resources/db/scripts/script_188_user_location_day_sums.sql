@@ -0,0 +1,17 @@
+-- per user, per day sums of location logs as unit vectors, so the nightly month average can be slid a day at a time
+create table user_location_day_sum (
+  user_uid varchar(50) not null,
+  local_date date not null,
+  sum_x float8 not null,
+  sum_y float8 not null,
+  sum_z float8 not null,
+  log_count int4 not null,
+  primary key (user_uid, local_date)
+);
+
+create index if not exists idx_user_location_day_sum_date on user_location_day_sum(local_date);
+
+-- the month totals behind each average, null on rows calculated before these were kept
+alter table prev_period_user_location add column sum_x float8;
+alter table prev_period_user_location add column sum_y float8;
+alter table prev_period_user_location add column sum_z float8;
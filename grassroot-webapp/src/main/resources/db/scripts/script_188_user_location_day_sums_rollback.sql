@@ -0,0 +1,5 @@
+alter table prev_period_user_location drop column sum_z;
+alter table prev_period_user_location drop column sum_y;
+alter table prev_period_user_location drop column sum_x;
+drop index if exists idx_user_location_day_sum_date;
+drop table user_location_day_sum;
@@ -0,0 +1,8 @@
+-- running count of each vote's responses per option, split over a few stripes so concurrent responses rarely share a row
+create table vote_option_tally (
+  vote_id bigint not null references event(id) on delete cascade,
+  vote_option varchar(255) not null,
+  stripe int4 not null,
+  vote_count int8 not null,
+  primary key (vote_id, vote_option, stripe)
+);
@@ -0,0 +1,14 @@
+-- set on a group's member total when a change could not be applied to its stats, so the nightly job recounts the group
+alter table group_stats_count add column needs_recount boolean not null default false;
+
+-- daily changes are bucketed by South African days, as GroupStatsBroker does, whatever the database's own zone (log
+-- times are written in UTC), so the history is filled in again from the logs
+delete from group_member_daily_change;
+insert into group_member_daily_change (group_id, change_date, members_added, members_removed)
+  select group_id, cast(created_date_time at time zone 'UTC' at time zone 'Africa/Johannesburg' as date),
+    sum(case when group_log_type = 'GROUP_MEMBER_REMOVED' then 0 else 1 end),
+    sum(case when group_log_type = 'GROUP_MEMBER_REMOVED' then 1 else 0 end)
+  from group_log
+  where group_log_type in ('GROUP_MEMBER_ADDED', 'GROUP_MEMBER_ADDED_AT_CREATION', 'GROUP_MEMBER_ADDED_VIA_CAMPAIGN',
+    'GROUP_MEMBER_ADDED_VIA_JOIN_CODE', 'GROUP_MEMBER_REMOVED')
+  group by group_id, cast(created_date_time at time zone 'UTC' at time zone 'Africa/Johannesburg' as date);
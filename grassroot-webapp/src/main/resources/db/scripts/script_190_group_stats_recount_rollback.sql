@@ -0,0 +1 @@
+alter table group_stats_count drop column needs_recount;
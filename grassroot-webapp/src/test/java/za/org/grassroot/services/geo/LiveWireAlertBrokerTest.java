@@ -7,6 +7,8 @@ import org.junit.runner.RunWith;
 import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnitRunner;
 import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.test.util.ReflectionTestUtils;
+import za.org.grassroot.core.domain.JpaEntityType;
 import za.org.grassroot.core.domain.User;
 import za.org.grassroot.core.domain.geo.GeoLocation;
 import za.org.grassroot.core.domain.livewire.LiveWireAlert;
@@ -21,15 +23,17 @@ import za.org.grassroot.services.livewire.LiveWireAlertBrokerImpl;
 import za.org.grassroot.services.util.LogsAndNotificationsBroker;
 
 import javax.persistence.EntityManager;
-import javax.persistence.TypedQuery;
 import java.security.InvalidParameterException;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 
-import static org.mockito.BDDMockito.given;
-import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
 
 @RunWith(MockitoJUnitRunner.class)
 public class LiveWireAlertBrokerTest {
@@ -55,27 +59,27 @@ public class LiveWireAlertBrokerTest {
     @Mock
     private PermissionBroker permissionBrokerMock;
 
-    @Mock
-    private TypedQuery<LiveWireAlert> mockQuery;
-
     @Mock
     private ConfigRepository configRepositoryMock;
 
+    private NearbyLocationIndex nearbyLocationIndex;
+
     private User testUser;
     private Integer testRadius = 5;
     private GeoLocation testLocation;
 
     @Before
     public void setUp () {
+        nearbyLocationIndex = new NearbyLocationIndex();
+        ReflectionTestUtils.setField(nearbyLocationIndex, "cellDegrees", 0.05);
+
         liveWireAlertBroker = new LiveWireAlertBrokerImpl(alertRepositoryMock,userRepositoryMock,
                 groupRepositoryMock,meetingRepositoryMock,entityManagerMock,dataSubscriberRepositoryMock,
-                applicationEventPublisherMock,logsAndNotificationsBrokerMock, permissionBrokerMock, configRepositoryMock);
+                applicationEventPublisherMock,logsAndNotificationsBrokerMock, permissionBrokerMock, configRepositoryMock,
+                nearbyLocationIndex);
 
         testUser = new User("1234567899","Testing", null);
         testLocation = new GeoLocation(-11.00, 11.0);
-        given(mockQuery.setParameter(nullable(String.class),any())).willReturn(mockQuery);
-        given(mockQuery.getResultList()).willAnswer(l -> Arrays.asList());
-        given(entityManagerMock.createQuery(nullable(String.class),eq(LiveWireAlert.class))).willReturn(mockQuery);
     }
 
     @Test(expected = InvalidParameterException.class)
@@ -103,10 +107,25 @@ public class LiveWireAlertBrokerTest {
         List<LiveWireAlert> liveWireAlerts =
                 liveWireAlertBroker.fetchAlertsNearUser(testUser.getUid(),testLocation, testRadius,GeographicSearchType.BOTH);
 
-        verify(mockQuery,times(1)).getResultList();
-        verify(entityManagerMock, times(1)).createQuery(nullable(String.class), eq(LiveWireAlert.class));
+        verifyZeroInteractions(entityManagerMock, alertRepositoryMock);
 
         Assert.assertNotNull(liveWireAlerts);
         Assert.assertEquals(liveWireAlerts.size(), 0);
     }
+
+    @Test
+    public void shouldOnlyLoadRecentAlertsWithinRadius(){
+        Instant now = Instant.now();
+        nearbyLocationIndex.put(new IndexedLocation(JpaEntityType.LIVEWIRE, "near", new GeoLocation(-11.001, 11.0), 1.0f, now, "other"));
+        nearbyLocationIndex.put(new IndexedLocation(JpaEntityType.LIVEWIRE, "mine", new GeoLocation(-11.001, 11.001), 1.0f, now, testUser.getUid()));
+        nearbyLocationIndex.put(new IndexedLocation(JpaEntityType.LIVEWIRE, "far", new GeoLocation(-11.1, 11.0), 1.0f, now, "other"));
+        nearbyLocationIndex.put(new IndexedLocation(JpaEntityType.LIVEWIRE, "old", new GeoLocation(-11.0, 11.001), 1.0f,
+                now.minus(30, ChronoUnit.DAYS), "other"));
+
+        liveWireAlertBroker.fetchAlertsNearUser(testUser.getUid(), testLocation, 1000, GeographicSearchType.PUBLIC);
+        verify(alertRepositoryMock, times(1)).findByUidIn(Collections.singleton("near"));
+
+        liveWireAlertBroker.fetchAlertsNearUser(testUser.getUid(), testLocation, 1000, GeographicSearchType.BOTH);
+        verify(alertRepositoryMock, times(1)).findByUidIn(new HashSet<>(Arrays.asList("near", "mine")));
+    }
 }
@@ -5,13 +5,17 @@ import org.junit.Test;
 import za.org.grassroot.core.domain.User;
 import za.org.grassroot.core.domain.group.Group;
 import za.org.grassroot.core.domain.group.GroupPermissionTemplate;
+import za.org.grassroot.core.dto.UserMinimalProjection;
 import za.org.grassroot.core.enums.UserInterfaceType;
 import za.org.grassroot.webapp.controller.ussd.menus.USSDMenu;
+import za.org.grassroot.webapp.util.USSDLatencyHistogram;
 
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
 import java.util.Optional;
 
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.*;
 
 /**
@@ -34,7 +38,7 @@ public class UssdHomeServiceTest extends UssdUnitTest {
 
 		this.ussdLiveWireServiceMock = mock(UssdLiveWireService.class);
 		this.ussdHomeService = new UssdHomeServiceImpl(ussdSupport, this.ussdLiveWireServiceMock, null, null, null, null, null,
-                locationInfoBrokerMock, userManagementServiceMock, campaignBrokerMock, null, userLoggerMock, cacheUtilManagerMock, userResponseBrokerMock, groupQueryBrokerMock, accountFeaturesBrokerMock, groupBrokerMock);
+                locationInfoBrokerMock, userManagementServiceMock, campaignBrokerMock, null, userLoggerMock, cacheUtilManagerMock, userResponseBrokerMock, groupQueryBrokerMock, accountFeaturesBrokerMock, groupBrokerMock, new USSDLatencyHistogram());
     }
 
     @Test
@@ -93,6 +97,32 @@ public class UssdHomeServiceTest extends UssdUnitTest {
         this.ussdHomeService.processForceStartMenu(phoneForTests, null);
     }
 
+    @Test
+    public void returningUserWithNothingPendingShouldGetCachedMenu() throws Exception {
+        UserMinimalProjection cachedUser = UserMinimalProjection.extractFromUser(testUser);
+        when(cacheUtilManagerMock.checkCacheForUserMinimalInfo(phoneForTests)).thenReturn(cachedUser);
+        when(cacheUtilManagerMock.hasNoPendingResponse(testUser.getUid())).thenReturn(true);
+
+        assertTrue(this.ussdHomeService.processCachedStartMenu(phoneForTests, null).isPresent());
+
+        verify(userLoggerMock, times(1)).recordUserSession(testUser.getUid(), UserInterfaceType.USSD, null);
+        verifyZeroInteractions(userManagementServiceMock);
+        verifyZeroInteractions(userResponseBrokerMock);
+    }
+
+    @Test
+    public void fullStartMenuShouldRecordNothingPending() throws Exception {
+        testUser.setHasInitiatedSession(true);
+        when(cacheUtilManagerMock.checkCacheForUserMinimalInfo(phoneForTests)).thenReturn(UserMinimalProjection.extractFromUser(testUser));
+        when(userManagementServiceMock.loadOrCreateUser(phoneForTests, UserInterfaceType.USSD)).thenReturn(testUser);
+
+        assertFalse(this.ussdHomeService.processCachedStartMenu(phoneForTests, null).isPresent());
+        this.ussdHomeService.processStartMenu(phoneForTests, null);
+
+        verify(userResponseBrokerMock, times(1)).checkForEntityForUserResponse(testUser.getUid(), true);
+        verify(cacheUtilManagerMock, times(1)).putNoPendingResponseForUser(testUser.getUid());
+    }
+
     @Test
     public void groupJoinTokenShouldWorkInAllLanguages() throws Exception {
         testUser.setDisplayName("");
@@ -21,6 +21,7 @@ import za.org.grassroot.core.enums.EventType;
 import za.org.grassroot.core.enums.TaskType;
 import za.org.grassroot.core.enums.UserInterfaceType;
 import za.org.grassroot.services.task.enums.EventListTimeType;
+import za.org.grassroot.webapp.util.USSDLatencyHistogram;
 
 import java.time.Instant;
 import java.time.LocalDate;
@@ -68,7 +69,7 @@ public class UssdMeetingServiceTest extends UssdUnitTest {
 //        ussdEventUtil.setMessageSource(messageSource());
 
         this.ussdMeetingService = new UssdMeetingServiceImpl(false, false, taskBrokerMock, ussdSupport, userManagementServiceMock, eventBrokerMock, eventRequestBrokerMock, eventLogBrokerMock, accountFeaturesBrokerMock, null, ussdEventUtil, ussdGroupUtil, groupBrokerMock, cacheUtilManagerMock);
-        this.ussdHomeService = new UssdHomeServiceImpl(ussdSupport, null, null, null, null, ussdMeetingService, null, locationInfoBrokerMock, userManagementServiceMock, campaignBrokerMock, null, userLoggerMock, cacheUtilManagerMock, userResponseBrokerMock, groupQueryBrokerMock, accountFeaturesBrokerMock, groupBrokerMock);
+        this.ussdHomeService = new UssdHomeServiceImpl(ussdSupport, null, null, null, null, ussdMeetingService, null, locationInfoBrokerMock, userManagementServiceMock, campaignBrokerMock, null, userLoggerMock, cacheUtilManagerMock, userResponseBrokerMock, groupQueryBrokerMock, accountFeaturesBrokerMock, groupBrokerMock, new USSDLatencyHistogram());
     }
 
     @Test
@@ -5,6 +5,7 @@ import org.junit.Test;
 import za.org.grassroot.core.domain.User;
 import za.org.grassroot.core.enums.UserInterfaceType;
 import za.org.grassroot.services.geo.AddressBroker;
+import za.org.grassroot.webapp.util.USSDLatencyHistogram;
 
 import static org.mockito.Mockito.*;
 
@@ -23,7 +24,7 @@ public class UssdUserServiceTest extends UssdUnitTest {
 		testUser = new User(testUserPhone, null, null);
 
 		this.ussdUserService = new UssdUserServiceImpl(ussdSupport, userManagementServiceMock, userLoggerMock, locationInfoBrokerMock, mock(AddressBroker.class));
-		this.ussdHomeService = new UssdHomeServiceImpl(ussdSupport, null, null, null, null, null, null, locationInfoBrokerMock, userManagementServiceMock, campaignBrokerMock, null, userLoggerMock, cacheUtilManagerMock, userResponseBrokerMock, groupQueryBrokerMock, accountFeaturesBrokerMock, groupBrokerMock);
+		this.ussdHomeService = new UssdHomeServiceImpl(ussdSupport, null, null, null, null, null, null, locationInfoBrokerMock, userManagementServiceMock, campaignBrokerMock, null, userLoggerMock, cacheUtilManagerMock, userResponseBrokerMock, groupQueryBrokerMock, accountFeaturesBrokerMock, groupBrokerMock, new USSDLatencyHistogram());
 	}
 
 	/*
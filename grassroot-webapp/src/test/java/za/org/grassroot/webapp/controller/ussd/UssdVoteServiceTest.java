@@ -10,6 +10,7 @@ import za.org.grassroot.core.domain.group.GroupPermissionTemplate;
 import za.org.grassroot.core.domain.task.Vote;
 import za.org.grassroot.core.domain.task.VoteRequest;
 import za.org.grassroot.core.enums.UserInterfaceType;
+import za.org.grassroot.webapp.util.USSDLatencyHistogram;
 
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
@@ -36,7 +37,7 @@ public class UssdVoteServiceTest extends UssdUnitTest {
     public void setUp() {
         testUser = new User(testUserPhone, null, null);
         this.ussdVoteService = new UssdVoteServiceImpl(eventBrokerMock, ussdSupport, voteBrokerMock, userManagementServiceMock, cacheUtilManagerMock, permissionBrokerMock, ussdEventUtil, ussdGroupUtil, eventRequestBrokerMock, userLoggerMock, accountFeaturesBrokerMock);
-        this.ussdHomeService = new UssdHomeServiceImpl(ussdSupport, null, null, null, ussdVoteService, null, null, locationInfoBrokerMock, userManagementServiceMock, campaignBrokerMock, null, userLoggerMock, cacheUtilManagerMock, userResponseBrokerMock, groupQueryBrokerMock, accountFeaturesBrokerMock, groupBrokerMock);
+        this.ussdHomeService = new UssdHomeServiceImpl(ussdSupport, null, null, null, ussdVoteService, null, null, locationInfoBrokerMock, userManagementServiceMock, campaignBrokerMock, null, userLoggerMock, cacheUtilManagerMock, userResponseBrokerMock, groupQueryBrokerMock, accountFeaturesBrokerMock, groupBrokerMock, new USSDLatencyHistogram());
     }
 
     @Test